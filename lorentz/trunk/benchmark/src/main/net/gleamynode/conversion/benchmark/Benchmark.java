@@ -0,0 +1,63 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.benchmark;
+
+/**
+ * An operation whose throughput is measured by {@link BenchmarkRunner}.
+ * {@link #operation(int)} is invoked by all benchmark threads concurrently,
+ * so it must be thread-safe.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public abstract class Benchmark {
+    private final String name;
+
+    protected Benchmark(String name) {
+        if (name == null)
+            throw new NullPointerException("name");
+        this.name = name;
+    }
+
+    public final String getName() {
+        return name;
+    }
+
+    /**
+     * Override this method to prepare the benchmark.  It is invoked once
+     * before the warm-up.
+     */
+    public void setUp() throws Exception {
+    }
+
+    /**
+     * Override this method to release the resources acquired by
+     * {@link #setUp()}.
+     */
+    public void tearDown() throws Exception {
+    }
+
+    /**
+     * Implement this method to perform the operation to measure once.
+     * Return the result of the operation so that it is not optimized away.
+     *
+     * @param threadId the index of the calling thread (0 ~ threads - 1)
+     */
+    public abstract Object operation(int threadId) throws Exception;
+}
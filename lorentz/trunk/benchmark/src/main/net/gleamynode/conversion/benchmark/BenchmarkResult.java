@@ -0,0 +1,79 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.benchmark;
+
+/**
+ * The throughput of a {@link Benchmark} measured by {@link BenchmarkRunner}.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class BenchmarkResult {
+    private final String name;
+    private final int threads;
+    private final long operations;
+    private final long elapsedMillis;
+
+    public BenchmarkResult(String name, int threads, long operations, long elapsedMillis) {
+        this.name = name;
+        this.threads = threads;
+        this.operations = operations;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getOperations() {
+        return operations;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Returns the number of operations per second.
+     */
+    public double getThroughput() {
+        if (elapsedMillis == 0)
+            return 0;
+        return operations * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * Returns the average time in microseconds that an operation took.
+     */
+    public double getAverageTime() {
+        if (operations == 0)
+            return 0;
+        return elapsedMillis * 1000.0 * threads / operations;
+    }
+
+    public String toString() {
+        return name + " (" + threads + " thread(s)): " +
+               (long) getThroughput() + " ops/s, " +
+               getAverageTime() + " us/op";
+    }
+}
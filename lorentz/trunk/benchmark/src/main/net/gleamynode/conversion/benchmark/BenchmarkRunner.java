@@ -0,0 +1,130 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.benchmark;
+
+/**
+ * Runs a {@link Benchmark} with the specified number of threads and
+ * measures its throughput.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class BenchmarkRunner {
+    private final long warmUpMillis;
+    private final long measurementMillis;
+
+    /**
+     * Creates a new runner which warms up for 2 seconds and measures for
+     * 5 seconds.
+     */
+    public BenchmarkRunner() {
+        this(2000, 5000);
+    }
+
+    public BenchmarkRunner(long warmUpMillis, long measurementMillis) {
+        if (warmUpMillis < 0)
+            throw new IllegalArgumentException("warmUpMillis: " + warmUpMillis);
+        if (measurementMillis <= 0)
+            throw new IllegalArgumentException("measurementMillis: " + measurementMillis);
+        this.warmUpMillis = warmUpMillis;
+        this.measurementMillis = measurementMillis;
+    }
+
+    public BenchmarkResult run(Benchmark benchmark, int threads) throws Exception {
+        if (threads <= 0)
+            throw new IllegalArgumentException("threads: " + threads);
+
+        benchmark.setUp();
+        try {
+            if (warmUpMillis > 0) {
+                run0(benchmark, threads, warmUpMillis);
+            }
+            return run0(benchmark, threads, measurementMillis);
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    private BenchmarkResult run0(Benchmark benchmark, int threads, long duration) throws Exception {
+        Worker[] workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(benchmark, i);
+        }
+        for (int i = 0; i < threads; i++) {
+            workers[i].start();
+        }
+
+        Thread.sleep(duration);
+
+        // Stop the workers and collect the counts.
+        for (int i = 0; i < threads; i++) {
+            workers[i].running = false;
+        }
+
+        long operations = 0;
+        long startTime = Long.MAX_VALUE;
+        long endTime = 0;
+        for (int i = 0; i < threads; i++) {
+            Worker w = workers[i];
+            w.join();
+            if (w.cause != null) {
+                if (w.cause instanceof Exception)
+                    throw (Exception) w.cause;
+                throw (Error) w.cause;
+            }
+            operations += w.operations;
+            startTime = Math.min(startTime, w.startTime);
+            endTime = Math.max(endTime, w.endTime);
+        }
+
+        return new BenchmarkResult(
+                benchmark.getName(), threads, operations, endTime - startTime);
+    }
+
+    private static class Worker extends Thread {
+        private final Benchmark benchmark;
+        private final int threadId;
+        private volatile boolean running = true;
+        private long operations;
+        private long startTime;
+        private long endTime;
+        private Throwable cause;
+        // Keeps the results reachable so that they are not optimized away.
+        private int sink;
+
+        private Worker(Benchmark benchmark, int threadId) {
+            super(benchmark.getName() + '-' + threadId);
+            this.benchmark = benchmark;
+            this.threadId = threadId;
+        }
+
+        public void run() {
+            startTime = System.currentTimeMillis();
+            try {
+                while (running) {
+                    sink ^= System.identityHashCode(benchmark.operation(threadId));
+                    operations ++;
+                }
+            } catch (Throwable t) {
+                cause = t;
+            }
+            endTime = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.benchmark;
+
+import net.gleamynode.conversion.ConversionPath;
+import net.gleamynode.conversion.Converter;
+import net.gleamynode.conversion.ConverterContext;
+import net.gleamynode.conversion.support.ConversionPathImpl;
+import net.gleamynode.conversion.support.ConversionPlan;
+import net.gleamynode.conversion.support.FusedConversionPlan;
+
+/**
+ * Compares the throughput of the conversion chains of 1, 2 and 3 hops
+ * executed by {@link ConversionPathImpl}, {@link ConversionPlan} and
+ * {@link FusedConversionPlan}, which fuses only the chains of 2 and 3 hops.  The converters do almost nothing, so the
+ * result shows the overhead of walking a chain rather than the cost of
+ * the conversions.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class ConversionChainBenchmark extends Benchmark {
+
+    private static final Converter[] CONVERTERS = new Converter[] {
+        new Converter(Integer.class, Long.class) {
+            public Object doConversion(Object o, ConverterContext ctx) {
+                return new Long(((Integer) o).longValue());
+            }
+        },
+        new Converter(Long.class, Double.class) {
+            public Object doConversion(Object o, ConverterContext ctx) {
+                return new Double(((Long) o).doubleValue());
+            }
+        },
+        new Converter(Double.class, Float.class) {
+            public Object doConversion(Object o, ConverterContext ctx) {
+                return new Float(((Double) o).floatValue());
+            }
+        },
+    };
+    private static final Integer[] SOURCES = new Integer[256];
+
+    static {
+        for (int i = 0; i < SOURCES.length; i++) {
+            SOURCES[i] = new Integer(i);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = new BenchmarkRunner();
+        for (int hops = 1; hops <= FusedConversionPlan.MAX_LENGTH; hops++) {
+            Converter[] converters = new Converter[hops];
+            System.arraycopy(CONVERTERS, 0, converters, 0, hops);
+            ConversionPlan plan = new ConversionPlan(converters);
+
+            ConversionPathImpl interpreted = new ConversionPathImpl();
+            interpreted.setAll(converters);
+
+            System.out.println(runner.run(
+                    new ConversionChainBenchmark(hops + "-hop ConversionPathImpl", interpreted), 1));
+            System.out.println(runner.run(
+                    new ConversionChainBenchmark(hops + "-hop ConversionPlan", plan), 1));
+            if (hops >= FusedConversionPlan.MIN_LENGTH) {
+                System.out.println(runner.run(
+                        new ConversionChainBenchmark(hops + "-hop FusedConversionPlan",
+                                FusedConversionPlan.fuse(plan)), 1));
+            }
+        }
+    }
+
+    private final ConversionPath path;
+    private final ConverterContext ctx = new ConverterContext();
+    private int index;
+
+    public ConversionChainBenchmark(String name, ConversionPath path) {
+        super(name);
+        this.path = path;
+        ctx.setPathTracking(false);
+    }
+
+    public Object operation(int threadId) {
+        return path.convert(SOURCES[index++ & 255], ctx);
+    }
+}
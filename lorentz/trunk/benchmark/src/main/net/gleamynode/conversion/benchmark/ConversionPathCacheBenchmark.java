@@ -0,0 +1,131 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.benchmark;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import net.gleamynode.conversion.ConversionPath;
+import net.gleamynode.conversion.Converter;
+import net.gleamynode.conversion.support.ConversionKey;
+import net.gleamynode.conversion.support.ConversionPathCache;
+import net.gleamynode.conversion.support.ConversionPathImpl;
+
+/**
+ * Compares the lookup throughput of {@link ConversionPathCache} with the
+ * previous implementation which allocated a {@link ConversionKey} per lookup
+ * and synchronized on a single map.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class ConversionPathCacheBenchmark {
+    private static final Class[] TYPES = new Class[] {
+        String.class, Integer.class, Long.class, Short.class,
+        Byte.class, Double.class, Float.class, Boolean.class,
+        Character.class, BigInteger.class, BigDecimal.class, Date.class,
+        Locale.class, List.class, Set.class, Map.class,
+        Collection.class, Number.class, Serializable.class, Object.class,
+    };
+    private static final int[] THREADS = new int[] { 1, 8, 32 };
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = new BenchmarkRunner();
+        for (int i = 0; i < THREADS.length; i++) {
+            System.out.println(runner.run(new LegacyCacheLookup(), THREADS[i]));
+            System.out.println(runner.run(new CacheLookup(), THREADS[i]));
+        }
+    }
+
+    private static ConversionPath newPath(Class sourceType, Class targetType) {
+        ConversionPathImpl path = new ConversionPathImpl();
+        path.add(new Converter(sourceType, targetType) {});
+        return path;
+    }
+
+    private abstract static class AbstractLookup extends Benchmark {
+        private final int[] counters = new int[32 * 16];
+
+        protected AbstractLookup(String name) {
+            super(name);
+        }
+
+        public void setUp() {
+            for (int i = 0; i < TYPES.length; i++) {
+                for (int j = 0; j < TYPES.length; j++) {
+                    if (i != j) {
+                        add(TYPES[i], TYPES[j], newPath(TYPES[i], TYPES[j]));
+                    }
+                }
+            }
+        }
+
+        public Object operation(int threadId) {
+            // Pad the counters to avoid false sharing between threads.
+            int n = counters[(threadId & 31) << 4]++;
+            Class sourceType = TYPES[n % TYPES.length];
+            Class targetType = TYPES[(n + 1) % TYPES.length];
+            return get(sourceType, targetType);
+        }
+
+        protected abstract void add(Class sourceType, Class targetType, ConversionPath path);
+        protected abstract ConversionPath get(Class sourceType, Class targetType);
+    }
+
+    private static class CacheLookup extends AbstractLookup {
+        private final ConversionPathCache cache = new ConversionPathCache();
+
+        private CacheLookup() {
+            super("ConversionPathCache");
+        }
+
+        protected void add(Class sourceType, Class targetType, ConversionPath path) {
+            cache.add(sourceType, targetType, path);
+        }
+
+        protected ConversionPath get(Class sourceType, Class targetType) {
+            return cache.get(sourceType, targetType);
+        }
+    }
+
+    private static class LegacyCacheLookup extends AbstractLookup {
+        private final Map map = Collections.synchronizedMap(new HashMap());
+
+        private LegacyCacheLookup() {
+            super("ConversionPathCache (synchronized)");
+        }
+
+        protected void add(Class sourceType, Class targetType, ConversionPath path) {
+            map.put(new ConversionKey(sourceType, targetType), path.clone());
+        }
+
+        protected ConversionPath get(Class sourceType, Class targetType) {
+            return (ConversionPath) map.get(new ConversionKey(sourceType, targetType));
+        }
+    }
+}
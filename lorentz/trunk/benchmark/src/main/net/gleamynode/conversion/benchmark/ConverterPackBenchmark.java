@@ -0,0 +1,347 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TimeZone;
+import java.util.regex.Pattern;
+
+import net.gleamynode.conversion.Converter;
+import net.gleamynode.conversion.ConverterContext;
+import net.gleamynode.conversion.ConverterPack;
+import net.gleamynode.conversion.IntermediaryTypes;
+import net.gleamynode.conversion.converter.jdk13.Jdk13ConverterPack;
+import net.gleamynode.conversion.converter.jdk14.Jdk14ConverterPack;
+import net.gleamynode.conversion.support.ConversionEngine;
+import net.gleamynode.conversion.support.ConversionPathCache;
+import net.gleamynode.conversion.support.ConversionPlan;
+import net.gleamynode.conversion.support.ConverterGraph;
+import net.gleamynode.conversion.support.ConverterRegistry;
+
+/**
+ * Measures the conversion throughput of every converter in
+ * {@link Jdk13ConverterPack} and {@link Jdk14ConverterPack}, and of the
+ * multi-hop conversions between their types.  Each case is run with a warm path cache and with no path
+ * cache (so that every conversion searches its path), and the mixed cases
+ * are run by one thread and by as many threads as there are processors.
+ * <p>
+ * The results are written as CSV to the file specified as the first
+ * argument, or to the standard output if no argument is given, so that
+ * the results of two releases can be compared:
+ * <pre>
+ * java net.gleamynode.conversion.benchmark.ConverterPackBenchmark result.csv
+ * </pre>
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class ConverterPackBenchmark extends Benchmark {
+    private static final String[] KEY_COLUMNS = new String[] {
+        "benchmark", "cache", "hops", "source", "target",
+    };
+    private static final int MAX_THREADS = 64;
+
+    public static void main(String[] args) throws Exception {
+        Writer out = args.length > 0?
+                (Writer) new FileWriter(args[0]) : new OutputStreamWriter(System.out);
+        try {
+            run(new BenchmarkRunner(1000, 2000), new CsvReport(out, KEY_COLUMNS));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void run(BenchmarkRunner runner, CsvReport report) throws Exception {
+        List converters = new ArrayList();
+        addAll(converters, new Jdk13ConverterPack());
+        addAll(converters, new Jdk14ConverterPack());
+
+        ConversionEngine warm = newEngine(new ConversionPathCache(), converters);
+        ConversionEngine cold = newEngine(new ConversionPathCache(0, 0), converters);
+        Map samples = newSamples();
+
+        List singleHops = new ArrayList();
+        List multiHops = new ArrayList();
+        findCases(warm, converters, samples, singleHops, multiHops);
+
+        for (Iterator i = singleHops.iterator(); i.hasNext();) {
+            Case c = (Case) i.next();
+            Object[] sources = new Object[] { c.source };
+            Class[] targets = new Class[] { c.targetType };
+            String hops = String.valueOf(c.hops);
+            String source = c.source.getClass().getName();
+            String target = c.targetType.getName();
+
+            report.add(new String[] { "single-hop", "warm", hops, source, target },
+                    runner.run(new ConverterPackBenchmark(c.toString(), warm, sources, targets), 1));
+            report.add(new String[] { "single-hop", "cold", hops, source, target },
+                    runner.run(new ConverterPackBenchmark(c.toString(), cold, sources, targets), 1));
+        }
+
+        // Use at least 4 threads to see the contention on a small machine.
+        int[] threads = new int[] {
+            1, Math.max(4, Math.min(Runtime.getRuntime().availableProcessors(), MAX_THREADS)),
+        };
+        for (int i = 0; i < threads.length; i++) {
+            runMixed(runner, report, "single-hop", "warm", warm, singleHops, threads[i]);
+            runMixed(runner, report, "single-hop", "cold", cold, singleHops, threads[i]);
+            runMixed(runner, report, "multi-hop", "warm", warm, multiHops, threads[i]);
+            runMixed(runner, report, "multi-hop", "cold", cold, multiHops, threads[i]);
+        }
+        report.flush();
+    }
+
+    private static void runMixed(
+            BenchmarkRunner runner, CsvReport report, String benchmark, String cache,
+            ConversionEngine engine, List cases, int threads) throws Exception {
+        if (cases.isEmpty()) {
+            return;
+        }
+
+        Object[] sources = new Object[cases.size()];
+        Class[] targets = new Class[cases.size()];
+        for (int i = 0; i < sources.length; i++) {
+            Case c = (Case) cases.get(i);
+            sources[i] = c.source;
+            targets[i] = c.targetType;
+        }
+
+        String name = benchmark + " (" + cases.size() + " cases)";
+        report.add(new String[] { benchmark, cache, "mixed", "*", "*" },
+                runner.run(new ConverterPackBenchmark(name, engine, sources, targets), threads));
+    }
+
+    private static void addAll(List converters, ConverterPack pack) {
+        for (Iterator i = pack.newConverters(); i.hasNext();) {
+            converters.add(i.next());
+        }
+    }
+
+    private static ConverterRegistry newRegistry(
+            ConversionPathCache conversionCache, ConversionPathCache copyCache, List converters) {
+        ConverterRegistry registry = new ConverterRegistry(conversionCache, copyCache);
+        registry.register((Converter[]) converters.toArray(new Converter[converters.size()]));
+        return registry;
+    }
+
+    private static ConversionEngine newEngine(ConversionPathCache cache, List converters) {
+        ConversionPathCache copyCache = new ConversionPathCache();
+        return new ConversionEngine(newRegistry(cache, copyCache, converters), cache, copyCache);
+    }
+
+    /**
+     * Returns the sample objects of the types the converter packs deal with.
+     */
+    private static Map newSamples() throws Exception {
+        Map samples = new HashMap();
+        samples.put(Object.class, new StringBuffer("lorentz"));
+        samples.put(Class.class, String.class);
+        samples.put(Boolean.class, Boolean.TRUE);
+        samples.put(Byte.class, new Byte((byte) 42));
+        samples.put(Short.class, new Short((short) 4242));
+        samples.put(Integer.class, new Integer(424242));
+        samples.put(Long.class, new Long(4242424242L));
+        samples.put(Float.class, new Float(42.42f));
+        samples.put(Double.class, new Double(4242.4242));
+        samples.put(Number.class, new Integer(42));
+        samples.put(BigInteger.class, new BigInteger("42424242424242424242"));
+        samples.put(BigDecimal.class, new BigDecimal("4242424242.4242424242"));
+        samples.put(Character.class, new Character('L'));
+        samples.put(Date.class, new Date(1131961557000L));
+        samples.put(File.class, new File("lorentz.txt"));
+        samples.put(URL.class, new URL("http://gleamynode.net/"));
+        samples.put(Locale.class, Locale.KOREA);
+        samples.put(TimeZone.class, TimeZone.getTimeZone("Asia/Seoul"));
+        samples.put(List.class, Arrays.asList(new String[] { "a", "b", "c" }));
+        samples.put(java.util.Collection.class, samples.get(List.class));
+        samples.put(java.util.Set.class, new HashSet((List) samples.get(List.class)));
+        Map map = new HashMap();
+        map.put("a", "1");
+        map.put("b", "2");
+        samples.put(Map.class, map);
+        Properties properties = new Properties();
+        properties.putAll(map);
+        samples.put(Properties.class, properties);
+        // Literal addresses don't need a name lookup.
+        InetAddress address = InetAddress.getByName("127.0.0.1");
+        samples.put(InetAddress.class, address);
+        samples.put(InetSocketAddress.class, new InetSocketAddress(address, 8080));
+        samples.put(Charset.class, Charset.forName("UTF-8"));
+        samples.put(Currency.class, Currency.getInstance("KRW"));
+        samples.put(Pattern.class, Pattern.compile("[a-z]+"));
+        return samples;
+    }
+
+    /**
+     * Finds the cases to measure.  A single-hop case is found for each
+     * converter and a multi-hop case for each pair of the sample types whose
+     * path is longer than one converter.  The source of a converter from
+     * {@link String} is made by converting the sample of its target type, so
+     * that it can be parsed back.  The single-hop cases which fail to convert
+     * are reported to the standard error and skipped.  Many multi-hop pairs
+     * fail by nature (e.g. {@link Long} to {@link Byte} via {@link String}),
+     * so they are just counted.
+     */
+    private static void findCases(
+            ConversionEngine engine, List converters, Map samples,
+            List singleHops, List multiHops) {
+        ConverterContext ctx = new ConverterContext();
+        ConverterGraph graph = newRegistry(
+                new ConversionPathCache(), new ConversionPathCache(), converters).getGraph();
+        IntermediaryTypes exclusions = new IntermediaryTypes();
+
+        for (Iterator i = converters.iterator(); i.hasNext();) {
+            Converter converter = (Converter) i.next();
+            Class sourceType = converter.getSourceType();
+            Class targetType = converter.getTargetType();
+            Object source;
+            if (sourceType == String.class) {
+                Object sample = samples.get(targetType);
+                if (sample instanceof Date) {
+                    // Date.toString() can't be parsed back.
+                    source = ctx.getThreadLocalDateFormat().format((Date) sample);
+                } else {
+                    source = sample == null? null : toString(engine, sample, ctx);
+                }
+            } else {
+                source = samples.get(sourceType);
+            }
+            if (source == null) {
+                System.err.println("No sample for " + converter + "; skipped.");
+                continue;
+            }
+            ConversionPlan plan = graph.findConversionPath(
+                    source.getClass(), targetType, exclusions, null);
+            Case c = new Case(source, targetType, plan == null? 0 : plan.length());
+            try {
+                engine.convert(source, targetType, ctx);
+                singleHops.add(c);
+            } catch (RuntimeException e) {
+                System.err.println("Failed to convert " + c + "; skipped: " + e);
+            }
+        }
+
+        int failures = 0;
+        for (Iterator i = samples.keySet().iterator(); i.hasNext();) {
+            Class sourceType = (Class) i.next();
+            if (sourceType == Object.class) {
+                // Any object can be converted into a string, but the string
+                // means nothing to the other converters.
+                continue;
+            }
+            Object source = samples.get(sourceType);
+            for (Iterator j = samples.keySet().iterator(); j.hasNext();) {
+                Class targetType = (Class) j.next();
+                if (targetType.isInstance(source)) {
+                    continue;
+                }
+                ConversionPlan plan = graph.findConversionPath(
+                        source.getClass(), targetType, exclusions, null);
+                if (plan == null || plan.length() < 2) {
+                    continue;
+                }
+                try {
+                    engine.convert(source, targetType, ctx);
+                    multiHops.add(new Case(source, targetType, plan.length()));
+                } catch (RuntimeException e) {
+                    failures ++;
+                }
+            }
+        }
+        System.err.println(
+                multiHops.size() + " multi-hop cases found; " +
+                failures + " pairs skipped because they failed to convert.");
+    }
+
+    private static String toString(ConversionEngine engine, Object o, ConverterContext ctx) {
+        try {
+            return (String) engine.convert(o, String.class, ctx);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private final ConversionEngine engine;
+    private final Object[] sources;
+    private final Class[] targetTypes;
+    private final ConverterContext[] contexts = new ConverterContext[MAX_THREADS];
+    private final int[] counters = new int[MAX_THREADS * 16];
+
+    public ConverterPackBenchmark(String name, ConversionEngine engine, Object[] sources, Class[] targetTypes) {
+        super(name);
+        if (engine == null)
+            throw new NullPointerException("engine");
+        if (sources.length != targetTypes.length)
+            throw new IllegalArgumentException("sources and targetTypes differ in length.");
+        this.engine = engine;
+        this.sources = sources;
+        this.targetTypes = targetTypes;
+    }
+
+    public void setUp() {
+        // A context per thread, because a context is not thread-safe.
+        for (int i = 0; i < contexts.length; i++) {
+            contexts[i] = new ConverterContext();
+            contexts[i].setPathTracking(false);
+        }
+    }
+
+    public Object operation(int threadId) {
+        int t = threadId % MAX_THREADS;
+        // Pad the counters to avoid false sharing between threads.
+        int i = counters[t << 4]++ % sources.length;
+        return engine.convert(sources[i], targetTypes[i], contexts[t]);
+    }
+
+    private static class Case {
+        private final Object source;
+        private final Class targetType;
+        private final int hops;
+
+        private Case(Object source, Class targetType, int hops) {
+            this.source = source;
+            this.targetType = targetType;
+            this.hops = hops;
+        }
+
+        public String toString() {
+            return source.getClass().getName() + " -> " + targetType.getName();
+        }
+    }
+}
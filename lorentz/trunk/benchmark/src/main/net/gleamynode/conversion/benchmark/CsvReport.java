@@ -0,0 +1,121 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.benchmark;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * Writes {@link BenchmarkResult}s as comma-separated values so that the
+ * results of two runs can be compared by a program.  Each row starts with
+ * the key columns which identify the measured case, followed by
+ * <tt>threads</tt>, <tt>operations</tt>, <tt>elapsed_ms</tt>,
+ * <tt>ops_per_sec</tt> and <tt>us_per_op</tt>.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class CsvReport {
+    private static final String[] RESULT_COLUMNS = new String[] {
+        "threads", "operations", "elapsed_ms", "ops_per_sec", "us_per_op",
+    };
+
+    private final PrintWriter out;
+    private final int keyColumns;
+
+    /**
+     * Creates a new report and writes its header.
+     *
+     * @param keyColumns the names of the columns which identify a result
+     */
+    public CsvReport(Writer out, String[] keyColumns) {
+        if (out == null)
+            throw new NullPointerException("out");
+        if (keyColumns == null)
+            throw new NullPointerException("keyColumns");
+        this.out = out instanceof PrintWriter? (PrintWriter) out : new PrintWriter(out);
+        this.keyColumns = keyColumns.length;
+
+        String[] header = new String[keyColumns.length + RESULT_COLUMNS.length];
+        System.arraycopy(keyColumns, 0, header, 0, keyColumns.length);
+        System.arraycopy(RESULT_COLUMNS, 0, header, keyColumns.length, RESULT_COLUMNS.length);
+        writeRow(header);
+    }
+
+    /**
+     * Writes a row.
+     *
+     * @param keys the values of the key columns
+     */
+    public void add(String[] keys, BenchmarkResult result) {
+        if (keys.length != keyColumns)
+            throw new IllegalArgumentException(
+                    "expected " + keyColumns + " keys: " + keys.length);
+
+        String[] row = new String[keys.length + RESULT_COLUMNS.length];
+        System.arraycopy(keys, 0, row, 0, keys.length);
+        row[keys.length] = String.valueOf(result.getThreads());
+        row[keys.length + 1] = String.valueOf(result.getOperations());
+        row[keys.length + 2] = String.valueOf(result.getElapsedMillis());
+        row[keys.length + 3] = String.valueOf((long) result.getThroughput());
+        row[keys.length + 4] = String.valueOf(result.getAverageTime());
+        writeRow(row);
+    }
+
+    /**
+     * Flushes the written rows.  The underlying {@link Writer} is not
+     * closed.
+     */
+    public void flush() {
+        out.flush();
+    }
+
+    private void writeRow(String[] values) {
+        StringBuffer buf = new StringBuffer();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                buf.append(',');
+            }
+            if (values[i] != null) {
+                append(buf, values[i]);
+            }
+        }
+        out.println(buf);
+        // Flush every row so that an interrupted run leaves usable results.
+        out.flush();
+    }
+
+    private static void append(StringBuffer buf, String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 &&
+                value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            buf.append(value);
+            return;
+        }
+
+        buf.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                buf.append('"');
+            }
+            buf.append(c);
+        }
+        buf.append('"');
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.benchmark;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import net.gleamynode.conversion.Converter;
+import net.gleamynode.conversion.ConverterPack;
+import net.gleamynode.conversion.IntermediaryTypes;
+import net.gleamynode.conversion.converter.jdk13.Jdk13ConverterPack;
+import net.gleamynode.conversion.converter.jdk14.Jdk14ConverterPack;
+import net.gleamynode.conversion.support.ConversionPathCache;
+import net.gleamynode.conversion.support.ConverterGraph;
+import net.gleamynode.conversion.support.ConverterRegistry;
+
+/**
+ * Measures the latency of a conversion path search on a cache miss.
+ * Every operation searches the path of a pair from the type matrix of
+ * {@link Jdk13ConverterPack} and {@link Jdk14ConverterPack}, whether the
+ * path exists or not.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class PathSearchBenchmark extends Benchmark {
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkResult result = new BenchmarkRunner().run(new PathSearchBenchmark(), 1);
+        System.out.println(result);
+    }
+
+    private final IntermediaryTypes exclusions = new IntermediaryTypes();
+    private ConverterGraph graph;
+    private Class[] sourceTypes;
+    private Class[] targetTypes;
+    private int index;
+
+    public PathSearchBenchmark() {
+        super("Cold path search");
+    }
+
+    public void setUp() {
+        ConverterRegistry registry = new ConverterRegistry(
+                new ConversionPathCache(), new ConversionPathCache());
+        List types = new ArrayList();
+        register(registry, new Jdk13ConverterPack(), types);
+        register(registry, new Jdk14ConverterPack(), types);
+        graph = registry.getGraph();
+
+        List sourceTypes = new ArrayList();
+        List targetTypes = new ArrayList();
+        for (int i = 0; i < types.size(); i++) {
+            for (int j = 0; j < types.size(); j++) {
+                if (i != j) {
+                    sourceTypes.add(types.get(i));
+                    targetTypes.add(types.get(j));
+                }
+            }
+        }
+        this.sourceTypes = (Class[]) sourceTypes.toArray(new Class[sourceTypes.size()]);
+        this.targetTypes = (Class[]) targetTypes.toArray(new Class[targetTypes.size()]);
+    }
+
+    private static void register(ConverterRegistry registry, ConverterPack pack, List types) {
+        for (Iterator i = pack.newConverters(); i.hasNext();) {
+            Converter c = (Converter) i.next();
+            registry.register(c);
+            if (!types.contains(c.getSourceType())) {
+                types.add(c.getSourceType());
+            }
+            if (!types.contains(c.getTargetType())) {
+                types.add(c.getTargetType());
+            }
+        }
+    }
+
+    public Object operation(int threadId) {
+        int i = index++ % sourceTypes.length;
+        return graph.findConversionPath(sourceTypes[i], targetTypes[i], exclusions, null);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.support.lang;
+
+import java.io.FileWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import net.gleamynode.conversion.benchmark.Benchmark;
+import net.gleamynode.conversion.benchmark.BenchmarkRunner;
+import net.gleamynode.conversion.benchmark.CsvReport;
+
+/**
+ * Measures the throughput of {@link Entities#escape(String)} and
+ * {@link Entities#unescape(String)} of the HTML 4.0 entities with every
+ * {@link Entities.EntityMap} implementation, for a text which has entities
+ * and for a plain text which has none.  This class is in the package of
+ * {@link Entities} because the entity maps are package-private.
+ * <p>
+ * The results are written as CSV to the file specified as the first
+ * argument, or to the standard output if no argument is given:
+ * <pre>
+ * java net.gleamynode.conversion.support.lang.EntitiesBenchmark result.csv
+ * </pre>
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class EntitiesBenchmark extends Benchmark {
+    private static final String[] KEY_COLUMNS = new String[] {
+        "operation", "text", "map",
+    };
+
+    private static final String PLAIN_TEXT;
+    private static final String TEXT;
+
+    static {
+        StringBuffer plain = new StringBuffer();
+        StringBuffer text = new StringBuffer();
+        for (int i = 0; i < 16; i++) {
+            plain.append("The quick brown fox jumps over the lazy dog. ");
+            text.append("<p>Fran\u00e7ais & \"\u00fcber\" \u00a9 2005 \u2013 caf\u00e9 \u03b1\u03b2\u03b3 \u20ac</p> ");
+        }
+        PLAIN_TEXT = plain.toString();
+        TEXT = text.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Writer out = args.length > 0?
+                (Writer) new FileWriter(args[0]) : new OutputStreamWriter(System.out);
+        try {
+            run(new BenchmarkRunner(1000, 2000), new CsvReport(out, KEY_COLUMNS));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void run(BenchmarkRunner runner, CsvReport report) throws Exception {
+        Entities.EntityMap[] maps = new Entities.EntityMap[] {
+            new Entities.IndexedEntityMap(),
+            new Entities.LookupEntityMap(),
+            new Entities.PrimitiveEntityMap(),
+            new Entities.HashEntityMap(),
+            new Entities.TreeEntityMap(),
+            new Entities.ArrayEntityMap(),
+            new Entities.BinaryEntityMap(),
+        };
+
+        for (int i = 0; i < maps.length; i++) {
+            Entities entities = new Entities();
+            entities.map = maps[i];
+            Entities.fillWithHtml40Entities(entities);
+            String map = getShortName(maps[i].getClass());
+
+            String escaped = entities.escape(TEXT);
+            report.add(new String[] { "escape", "entities", map },
+                    runner.run(new EntitiesBenchmark(entities, true, TEXT), 1));
+            report.add(new String[] { "escape", "plain", map },
+                    runner.run(new EntitiesBenchmark(entities, true, PLAIN_TEXT), 1));
+            report.add(new String[] { "unescape", "entities", map },
+                    runner.run(new EntitiesBenchmark(entities, false, escaped), 1));
+            report.add(new String[] { "unescape", "plain", map },
+                    runner.run(new EntitiesBenchmark(entities, false, PLAIN_TEXT), 1));
+        }
+        report.flush();
+    }
+
+    private static String getShortName(Class type) {
+        String name = type.getName();
+        return name.substring(name.lastIndexOf('$') + 1);
+    }
+
+    private final Entities entities;
+    private final boolean escape;
+    private final String text;
+
+    private EntitiesBenchmark(Entities entities, boolean escape, String text) {
+        super((escape? "escape" : "unescape") + " with " + getShortName(entities.map.getClass()));
+        this.entities = entities;
+        this.escape = escape;
+        this.text = text;
+    }
+
+    public Object operation(int threadId) {
+        return escape? entities.escape(text) : entities.unescape(text);
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.support.lang.builder;
+
+import java.io.FileWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import net.gleamynode.conversion.benchmark.Benchmark;
+import net.gleamynode.conversion.benchmark.BenchmarkRunner;
+import net.gleamynode.conversion.benchmark.CsvReport;
+
+/**
+ * Measures the throughput of the reflection methods of
+ * {@link EqualsBuilder}, {@link HashCodeBuilder}, {@link CompareToBuilder}
+ * and {@link ReflectionToStringBuilder} for a class with a superclass and a
+ * mix of primitive and object fields.  They are compared with the same
+ * builders appended explicitly, and <tt>equals</tt> and <tt>hashCode</tt>
+ * also with the previous implementation which looked up the fields and made
+ * them accessible on every call.  <tt>toString</tt> is also measured
+ * writing into a reused buffer with
+ * {@link ReflectionToStringBuilder#toStringBuffer()}.
+ * <p>
+ * The results are written as CSV to the file specified as the first
+ * argument, or to the standard output if no argument is given:
+ * <pre>
+ * java net.gleamynode.conversion.support.lang.builder.ReflectionBuilderBenchmark result.csv
+ * </pre>
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class ReflectionBuilderBenchmark {
+    private static final String[] KEY_COLUMNS = new String[] {
+        "operation", "implementation",
+    };
+    private static final int[] THREADS = new int[] { 1, 8 };
+
+    public static void main(String[] args) throws Exception {
+        Writer out = args.length > 0?
+                (Writer) new FileWriter(args[0]) : new OutputStreamWriter(System.out);
+        try {
+            run(new BenchmarkRunner(1000, 2000), new CsvReport(out, KEY_COLUMNS));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void run(BenchmarkRunner runner, CsvReport report) throws Exception {
+        Operation[] operations = new Operation[] {
+            new Equals("explicit"), new Equals("reflection"), new Equals("uncached"),
+            new HashCode("explicit"), new HashCode("reflection"), new HashCode("uncached"),
+            new CompareTo("explicit"), new CompareTo("reflection"),
+            new ToString("explicit"), new ToString("reflection"), new ToString("buffer"),
+        };
+
+        for (int i = 0; i < THREADS.length; i++) {
+            for (int j = 0; j < operations.length; j++) {
+                Operation o = operations[j];
+                report.add(new String[] { o.operation, o.implementation },
+                        runner.run(o, THREADS[i]));
+            }
+        }
+        report.flush();
+    }
+
+    private abstract static class Operation extends Benchmark {
+        protected final Bean lhs = new Bean();
+        protected final Bean rhs = new Bean();
+        private final String operation;
+        private final String implementation;
+
+        protected Operation(String operation, String implementation) {
+            super(operation + " (" + implementation + ")");
+            this.operation = operation;
+            this.implementation = implementation;
+        }
+
+        protected boolean is(String implementation) {
+            return this.implementation.equals(implementation);
+        }
+    }
+
+    private static class Equals extends Operation {
+        private Equals(String implementation) {
+            super("equals", implementation);
+        }
+
+        public Object operation(int threadId) throws Exception {
+            boolean equals;
+            if (is("explicit")) {
+                equals = lhs.explicitEquals(rhs);
+            } else if (is("reflection")) {
+                equals = EqualsBuilder.reflectionEquals(lhs, rhs);
+            } else {
+                EqualsBuilder builder = new EqualsBuilder();
+                for (Class c = Bean.class; c != Object.class; c = c.getSuperclass()) {
+                    Field[] fields = c.getDeclaredFields();
+                    AccessibleObject.setAccessible(fields, true);
+                    for (int i = 0; i < fields.length && builder.isEquals(); i++) {
+                        if (isAppended(fields[i])) {
+                            builder.append(fields[i].get(lhs), fields[i].get(rhs));
+                        }
+                    }
+                }
+                equals = builder.isEquals();
+            }
+            return equals? Boolean.TRUE : Boolean.FALSE;
+        }
+    }
+
+    private static class HashCode extends Operation {
+        private HashCode(String implementation) {
+            super("hashCode", implementation);
+        }
+
+        public Object operation(int threadId) throws Exception {
+            int hashCode;
+            if (is("explicit")) {
+                hashCode = lhs.explicitHashCode();
+            } else if (is("reflection")) {
+                hashCode = HashCodeBuilder.reflectionHashCode(lhs);
+            } else {
+                HashCodeBuilder builder = new HashCodeBuilder();
+                for (Class c = Bean.class; c != Object.class; c = c.getSuperclass()) {
+                    Field[] fields = c.getDeclaredFields();
+                    AccessibleObject.setAccessible(fields, true);
+                    for (int i = 0; i < fields.length; i++) {
+                        if (isAppended(fields[i])) {
+                            builder.append(fields[i].get(lhs));
+                        }
+                    }
+                }
+                hashCode = builder.toHashCode();
+            }
+            return new Integer(hashCode);
+        }
+    }
+
+    private static class CompareTo extends Operation {
+        private CompareTo(String implementation) {
+            super("compareTo", implementation);
+        }
+
+        public Object operation(int threadId) {
+            return new Integer(is("explicit")?
+                    lhs.explicitCompareTo(rhs) :
+                    CompareToBuilder.reflectionCompare(lhs, rhs));
+        }
+    }
+
+    private static class ToString extends Operation {
+        // A buffer per thread, which is reused like a log message being built
+        private final StringBuffer[] buffers = new StringBuffer[32];
+
+        private ToString(String implementation) {
+            super("toString", implementation);
+        }
+
+        public Object operation(int threadId) {
+            if (is("explicit")) {
+                return lhs.explicitToString();
+            }
+            if (is("reflection")) {
+                return ReflectionToStringBuilder.toString(lhs);
+            }
+
+            StringBuffer buffer = buffers[threadId & 31];
+            if (buffer == null) {
+                buffer = new StringBuffer(512);
+                buffers[threadId & 31] = buffer;
+            }
+            buffer.setLength(0);
+            return new ReflectionToStringBuilder(lhs, null, buffer).toStringBuffer();
+        }
+    }
+
+    /**
+     * Filters the fields as the builders did on every call before they
+     * cached the fields.
+     */
+    private static boolean isAppended(Field f) {
+        return f.getName().indexOf('$') == -1
+                && !Modifier.isTransient(f.getModifiers())
+                && !Modifier.isStatic(f.getModifiers());
+    }
+
+    private static class BaseBean {
+        // Static and transient fields are skipped.
+        private static final int DEFAULT_ID = 42;
+
+        private String name = "base";
+        private int id = DEFAULT_ID;
+        protected long timestamp = 1124380800000L;
+    }
+
+    private static class Bean extends BaseBean {
+        private int count = 1;
+        private double ratio = 2.5;
+        private String text = "The quick brown fox";
+        private boolean enabled = true;
+        private Integer size = new Integer(1000);
+        private char grade = 'A';
+        private long total = 77777L;
+        private transient int cachedHashCode;
+
+        private boolean explicitEquals(Bean that) {
+            return new EqualsBuilder()
+                    .append(count, that.count)
+                    .append(ratio, that.ratio)
+                    .append(text, that.text)
+                    .append(enabled, that.enabled)
+                    .append(size, that.size)
+                    .append(grade, that.grade)
+                    .append(total, that.total)
+                    .append(((BaseBean) this).name, ((BaseBean) that).name)
+                    .append(((BaseBean) this).id, ((BaseBean) that).id)
+                    .append(timestamp, that.timestamp)
+                    .isEquals();
+        }
+
+        private int explicitHashCode() {
+            return new HashCodeBuilder()
+                    .append(count).append(ratio).append(text).append(enabled)
+                    .append(size).append(grade).append(total)
+                    .append(((BaseBean) this).name).append(((BaseBean) this).id)
+                    .append(timestamp)
+                    .toHashCode();
+        }
+
+        private int explicitCompareTo(Bean that) {
+            return new CompareToBuilder()
+                    .append(count, that.count)
+                    .append(ratio, that.ratio)
+                    .append(text, that.text)
+                    .append(enabled, that.enabled)
+                    .append(size, that.size)
+                    .append(grade, that.grade)
+                    .append(total, that.total)
+                    .append(((BaseBean) this).name, ((BaseBean) that).name)
+                    .append(((BaseBean) this).id, ((BaseBean) that).id)
+                    .append(timestamp, that.timestamp)
+                    .toComparison();
+        }
+
+        private String explicitToString() {
+            return new ToStringBuilder(this)
+                    .append("count", count)
+                    .append("ratio", ratio)
+                    .append("text", text)
+                    .append("enabled", enabled)
+                    .append("size", size)
+                    .append("grade", grade)
+                    .append("total", total)
+                    .append("name", ((BaseBean) this).name)
+                    .append("id", ((BaseBean) this).id)
+                    .append("timestamp", timestamp)
+                    .toString();
+        }
+    }
+}
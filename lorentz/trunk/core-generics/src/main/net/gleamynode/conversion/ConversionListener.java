@@ -0,0 +1,70 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion;
+
+/**
+ * Listens to the conversions and the conversion path lookups performed by
+ * {@link Converter}.  Set it with {@link Converter#setListener(ConversionListener)}.
+ * <p>
+ * The methods are invoked by the converting threads concurrently, so they
+ * must be thread-safe and return quickly.  All times are in nanoseconds.
+ * On a pre-1.5 JVM, they are measured with
+ * {@link System#currentTimeMillis()}, so they are multiples of a
+ * millisecond.
+ * <p>
+ * The conversions by {@link Converter#convert(Object, Class, ConverterContext)},
+ * {@link Converter#copy(Object, Object, ConverterContext)} and
+ * <tt>Converter.convertToXxx()</tt> are reported.  The elements converted
+ * by <tt>Converter.convertAll()</tt> and the conversions through a
+ * {@link ConversionPath} are not, though the path lookups they perform are.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public interface ConversionListener {
+    /**
+     * Invoked when the conversion or copy path between the specified types
+     * has been looked up.
+     *
+     * @param pathLength the number of converters in the path, or <tt>0</tt>
+     *                   if there's no path
+     * @param cached <tt>true</tt> if the path or its absence was found in the
+     *               cache
+     * @param searchTime the time spent searching the path; <tt>0</tt> if
+     *                   <tt>cached</tt> is <tt>true</tt>
+     */
+    void pathLookedUp(Class sourceType, Class targetType, int pathLength, boolean cached, long searchTime);
+
+    /**
+     * Invoked when an object of the specified source type has been converted
+     * into the specified target type, or copied into an object of it.
+     *
+     * @param time the time the conversion took including the path lookup
+     */
+    void converted(Class sourceType, Class targetType, long time);
+
+    /**
+     * Invoked when an object of the specified source type has failed to be
+     * converted into the specified target type, or copied into an object
+     * of it.
+     *
+     * @param time the time spent until the failure
+     */
+    void conversionFailed(Class sourceType, Class targetType, RuntimeException cause, long time);
+}
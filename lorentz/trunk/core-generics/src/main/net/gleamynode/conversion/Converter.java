@@ -18,8 +18,12 @@
  */
 package net.gleamynode.conversion;
 
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.List;
 
 import net.gleamynode.conversion.support.ConversionEngine;
 import net.gleamynode.conversion.support.ConversionPathCache;
@@ -70,6 +74,9 @@ public abstract class Converter implements Comparable {
     private static final ConversionEngine engine = new ConversionEngine(registry, conversionCache, copyCache);
     
     private static ConverterContext defaultContext = new ConverterContext();
+    // The reusable copy of the default context for each thread
+    private static final ThreadLocal<ConverterContext> localContext =
+        new ThreadLocal<ConverterContext>();
 
     static {
         registerServiceProviders();
@@ -99,10 +106,321 @@ public abstract class Converter implements Comparable {
      */
     public static <T> T convert(Object source, Class<T> targetType, ConverterContext ctx)
             throws ConversionException {
-        if (ctx == null) {
-            ctx = defaultContext.clone();
+        if (ctx != null) {
+            return engine.convert(source, targetType, ctx);
+        }
+        
+        ctx = acquireLocalContext();
+        try {
+            return engine.convert(source, targetType, ctx);
+        } finally {
+            ctx.inUse = false;
+        }
+    }
+    
+    /**
+     * Converts the specified source object into an <tt>int</tt> without boxing
+     * the result when the last converter implements {@link IntConverter}.
+     * 
+     * @throws NullPointerException if <tt>source</tt> is <tt>null</tt>
+     * @throws ConversionException if failed to convert
+     */
+    public static int convertToInt(Object source) throws ConversionException {
+        return convertToInt(source, null);
+    }
+    
+    /**
+     * Converts the specified source object into an <tt>int</tt> without boxing
+     * the result when the last converter implements {@link IntConverter}.
+     * 
+     * @param ctx a context object to be passed to {@link Converter#doConversion(Object, ConverterContext)} implementations
+     * @throws NullPointerException if <tt>source</tt> is <tt>null</tt>
+     * @throws ConversionException if failed to convert
+     */
+    public static int convertToInt(Object source, ConverterContext ctx)
+            throws ConversionException {
+        if (ctx != null) {
+            return engine.convertToInt(source, ctx);
+        }
+        
+        ctx = acquireLocalContext();
+        try {
+            return engine.convertToInt(source, ctx);
+        } finally {
+            ctx.inUse = false;
+        }
+    }
+    
+    /**
+     * Converts the specified source object into a <tt>long</tt> without boxing
+     * the result when the last converter implements {@link LongConverter}.
+     * 
+     * @throws NullPointerException if <tt>source</tt> is <tt>null</tt>
+     * @throws ConversionException if failed to convert
+     */
+    public static long convertToLong(Object source) throws ConversionException {
+        return convertToLong(source, null);
+    }
+    
+    /**
+     * Converts the specified source object into a <tt>long</tt> without boxing
+     * the result when the last converter implements {@link LongConverter}.
+     * 
+     * @param ctx a context object to be passed to {@link Converter#doConversion(Object, ConverterContext)} implementations
+     * @throws NullPointerException if <tt>source</tt> is <tt>null</tt>
+     * @throws ConversionException if failed to convert
+     */
+    public static long convertToLong(Object source, ConverterContext ctx)
+            throws ConversionException {
+        if (ctx != null) {
+            return engine.convertToLong(source, ctx);
+        }
+        
+        ctx = acquireLocalContext();
+        try {
+            return engine.convertToLong(source, ctx);
+        } finally {
+            ctx.inUse = false;
+        }
+    }
+    
+    /**
+     * Converts the specified source object into a <tt>double</tt> without boxing
+     * the result when the last converter implements {@link DoubleConverter}.
+     * 
+     * @throws NullPointerException if <tt>source</tt> is <tt>null</tt>
+     * @throws ConversionException if failed to convert
+     */
+    public static double convertToDouble(Object source) throws ConversionException {
+        return convertToDouble(source, null);
+    }
+    
+    /**
+     * Converts the specified source object into a <tt>double</tt> without boxing
+     * the result when the last converter implements {@link DoubleConverter}.
+     * 
+     * @param ctx a context object to be passed to {@link Converter#doConversion(Object, ConverterContext)} implementations
+     * @throws NullPointerException if <tt>source</tt> is <tt>null</tt>
+     * @throws ConversionException if failed to convert
+     */
+    public static double convertToDouble(Object source, ConverterContext ctx)
+            throws ConversionException {
+        if (ctx != null) {
+            return engine.convertToDouble(source, ctx);
+        }
+        
+        ctx = acquireLocalContext();
+        try {
+            return engine.convertToDouble(source, ctx);
+        } finally {
+            ctx.inUse = false;
+        }
+    }
+    
+    /**
+     * Converts the specified source object into a <tt>boolean</tt> without boxing
+     * the result when the last converter implements {@link BooleanConverter}.
+     * 
+     * @throws NullPointerException if <tt>source</tt> is <tt>null</tt>
+     * @throws ConversionException if failed to convert
+     */
+    public static boolean convertToBoolean(Object source) throws ConversionException {
+        return convertToBoolean(source, null);
+    }
+    
+    /**
+     * Converts the specified source object into a <tt>boolean</tt> without boxing
+     * the result when the last converter implements {@link BooleanConverter}.
+     * 
+     * @param ctx a context object to be passed to {@link Converter#doConversion(Object, ConverterContext)} implementations
+     * @throws NullPointerException if <tt>source</tt> is <tt>null</tt>
+     * @throws ConversionException if failed to convert
+     */
+    public static boolean convertToBoolean(Object source, ConverterContext ctx)
+            throws ConversionException {
+        if (ctx != null) {
+            return engine.convertToBoolean(source, ctx);
+        }
+        
+        ctx = acquireLocalContext();
+        try {
+            return engine.convertToBoolean(source, ctx);
+        } finally {
+            ctx.inUse = false;
+        }
+    }
+    
+    /**
+     * Converts all the specified source objects into a new array whose
+     * component type is the specified target type.  A primitive target type
+     * such as <tt>int.class</tt> returns a primitive array.
+     * 
+     * @return an array of <tt>targetType</tt>
+     * @throws ConversionException if failed to convert
+     * @see #convertAll(Object[], Object, ConverterContext)
+     */
+    public static Object convertAll(Object[] sources, Class<?> targetType)
+            throws ConversionException {
+        return convertAll(sources, targetType, null);
+    }
+    
+    /**
+     * Converts all the specified source objects into a new array whose
+     * component type is the specified target type.  A primitive target type
+     * such as <tt>int.class</tt> returns a primitive array.
+     * 
+     * @param ctx a context object to be passed to {@link Converter#doConversion(Object, ConverterContext)} implementations
+     * @return an array of <tt>targetType</tt>
+     * @throws ConversionException if failed to convert
+     * @see #convertAll(Object[], Object, ConverterContext)
+     */
+    public static Object convertAll(Object[] sources, Class<?> targetType, ConverterContext ctx)
+            throws ConversionException {
+        Object targetArray = Array.newInstance(targetType, sources.length);
+        convertAll(sources, targetArray, ctx);
+        return targetArray;
+    }
+    
+    /**
+     * Converts all the specified source objects into the specified array.
+     * 
+     * @throws ConversionException if failed to convert
+     * @see #convertAll(Object[], Object, ConverterContext)
+     */
+    public static void convertAll(Object[] sources, Object targetArray)
+            throws ConversionException {
+        convertAll(sources, targetArray, null);
+    }
+    
+    /**
+     * Converts all the specified source objects into the specified array.
+     * The component type of <tt>targetArray</tt> is the target type, and
+     * <tt>sources[i]</tt> is stored at <tt>targetArray[i]</tt>.
+     * <p>
+     * This is faster than calling {@link #convert(Object, Class, ConverterContext)}
+     * for each element because the conversion path is looked up only once
+     * per distinct source type and only one context is used for the whole
+     * array.  Note that, unlike separate calls, a change a converter makes
+     * to the context is visible to the conversion of the later elements.
+     * If <tt>targetArray</tt> is an <tt>int</tt>, <tt>long</tt>,
+     * <tt>double</tt> or <tt>boolean</tt> array, the converted values are
+     * not boxed as {@link #convertToInt(Object, ConverterContext)} does.
+     * 
+     * @param ctx a context object to be passed to {@link Converter#doConversion(Object, ConverterContext)} implementations
+     * @throws NullPointerException if <tt>targetArray</tt> is a primitive array
+     *                              and <tt>sources</tt> contains <tt>null</tt>
+     * @throws IllegalArgumentException if <tt>targetArray</tt> is not an array
+     *                                  or shorter than <tt>sources</tt>
+     * @throws ConversionException if failed to convert
+     */
+    public static void convertAll(Object[] sources, Object targetArray, ConverterContext ctx)
+            throws ConversionException {
+        if (ctx != null) {
+            engine.convertAll(sources, targetArray, ctx);
+            return;
+        }
+        
+        ctx = acquireLocalContext();
+        try {
+            engine.convertAll(sources, targetArray, ctx);
+        } finally {
+            ctx.inUse = false;
+        }
+    }
+    
+    /**
+     * Converts all the elements of the specified collection into a new
+     * array whose component type is the specified target type.
+     * 
+     * @return an array of <tt>targetType</tt>
+     * @throws ConversionException if failed to convert
+     * @see #convertAll(Object[], Object, ConverterContext)
+     */
+    public static Object convertAll(Collection<?> sources, Class<?> targetType)
+            throws ConversionException {
+        return convertAll(sources.toArray(), targetType, null);
+    }
+    
+    /**
+     * Converts all the elements of the specified collection into a new
+     * array whose component type is the specified target type.
+     * 
+     * @param ctx a context object to be passed to {@link Converter#doConversion(Object, ConverterContext)} implementations
+     * @return an array of <tt>targetType</tt>
+     * @throws ConversionException if failed to convert
+     * @see #convertAll(Object[], Object, ConverterContext)
+     */
+    public static Object convertAll(Collection<?> sources, Class<?> targetType, ConverterContext ctx)
+            throws ConversionException {
+        return convertAll(sources.toArray(), targetType, ctx);
+    }
+    
+    /**
+     * Converts all the remaining elements of the specified iterator into a
+     * new array whose component type is the specified target type.
+     * 
+     * @return an array of <tt>targetType</tt>
+     * @throws ConversionException if failed to convert
+     * @see #convertAll(Object[], Object, ConverterContext)
+     */
+    public static Object convertAll(Iterator<?> sources, Class<?> targetType)
+            throws ConversionException {
+        return convertAll(sources, targetType, null);
+    }
+    
+    /**
+     * Converts all the remaining elements of the specified iterator into a
+     * new array whose component type is the specified target type.
+     * 
+     * @param ctx a context object to be passed to {@link Converter#doConversion(Object, ConverterContext)} implementations
+     * @return an array of <tt>targetType</tt>
+     * @throws ConversionException if failed to convert
+     * @see #convertAll(Object[], Object, ConverterContext)
+     */
+    public static Object convertAll(Iterator<?> sources, Class<?> targetType, ConverterContext ctx)
+            throws ConversionException {
+        List<Object> list = new ArrayList<Object>();
+        while (sources.hasNext()) {
+            list.add(sources.next());
+        }
+        return convertAll(list.toArray(), targetType, ctx);
+    }
+    
+    /**
+     * Returns the path which converts an object of <tt>sourceType</tt> into
+     * an object of <tt>targetType</tt>.  Use this method to look up the path
+     * only once when you convert many objects of the same type.  The
+     * returned path is immutable, and its
+     * {@link ConversionPath#convert(Object, ConverterContext)} requires a
+     * context.
+     * 
+     * @throws ConversionException if there's no such path
+     */
+    public static ConversionPath getConversionPath(Class sourceType, Class targetType)
+            throws ConversionException {
+        return getConversionPath(sourceType, targetType, null);
+    }
+    
+    /**
+     * Returns the path which converts an object of <tt>sourceType</tt> into
+     * an object of <tt>targetType</tt>.
+     * 
+     * @param ctx the context whose exclusions are applied to the path
+     * @throws ConversionException if there's no such path
+     * @see #getConversionPath(Class, Class)
+     */
+    public static ConversionPath getConversionPath(Class sourceType, Class targetType, ConverterContext ctx)
+            throws ConversionException {
+        if (ctx != null) {
+            return engine.getConversionPath(sourceType, targetType, ctx);
+        }
+        
+        ctx = acquireLocalContext();
+        try {
+            return engine.getConversionPath(sourceType, targetType, ctx);
+        } finally {
+            ctx.inUse = false;
         }
-        return engine.convert(source, targetType, ctx);
     }
     
     /**
@@ -131,10 +449,37 @@ public abstract class Converter implements Comparable {
      */
     public static void copy(Object source, Object target, ConverterContext ctx)
             throws ConversionException {
-        if (ctx == null) {
-            ctx = defaultContext.clone();
+        if (ctx != null) {
+            engine.copy(source, target, ctx);
+            return;
+        }
+        
+        ctx = acquireLocalContext();
+        try {
+            engine.copy(source, target, ctx);
+        } finally {
+            ctx.inUse = false;
         }
-        engine.copy(source, target, ctx);
+    }
+    
+    /**
+     * Returns the copy of the default context which can be used by the
+     * current thread.  A copy is reused as long as converters don't modify
+     * it, so most conversions without a context allocate no context.
+     */
+    private static ConverterContext acquireLocalContext() {
+        ConverterContext defaultContext = Converter.defaultContext;
+        ConverterContext ctx = localContext.get();
+        if (ctx == null || !ctx.isUnmodifiedCopyOf(defaultContext)) {
+            ctx = defaultContext.newReusableCopy();
+            localContext.set(ctx);
+        } else if (ctx.inUse) {
+            // A converter is converting an object without a context;
+            // don't let it share the context with the outer conversion.
+            ctx = defaultContext.newReusableCopy();
+        }
+        ctx.inUse = true;
+        return ctx;
     }
     
     /**
@@ -194,16 +539,20 @@ public abstract class Converter implements Comparable {
         registry.register(converter);
     }
     
+    /**
+     * Registers all the specified converters to the global converter
+     * registry at once.  This is much faster than registering them one by one.
+     */
+    public static void register(Converter[] converters) {
+        registry.register(converters);
+    }
+    
     /**
      * Registers all converters which the specified {@link ConverterPack}
      * contains to the global converter registry. 
      */
     public static void register(ConverterPack converterPack) {
-        Iterator i = converterPack.newConverters();
-        while (i.hasNext()) {
-            Converter c = (Converter) i.next();
-            register(c);
-        }
+        register(toArray(converterPack));
     }
     
     /**
@@ -213,16 +562,62 @@ public abstract class Converter implements Comparable {
        registry.deregister(converter);
     }
     
+    /**
+     * Deregisters all the specified converters from the global converter
+     * registry at once.
+     */
+    public static void deregister(Converter[] converters) {
+        registry.deregister(converters);
+    }
+    
     /**
      * Deregisters all converters which the specified {@link ConverterPack}
      * contains from the global converter registry. 
      */
     public static void deregister(ConverterPack converterPack) {
-        Iterator i = converterPack.newConverters();
-        while (i.hasNext()) {
-            Converter c = (Converter) i.next();
-            deregister(c);
+        deregister(toArray(converterPack));
+    }
+    
+    /**
+     * Registers the {@link Copier} which copies the source object whose class
+     * is exactly the specified type when it is converted into its own type or
+     * one of its supertypes.  A type without a registered copier is copied by
+     * its public <tt>clone()</tt> method or copy constructor if it has one.
+     */
+    public static void registerCopier(Class type, Copier copier) {
+        engine.getCopierRegistry().register(type, copier);
+    }
+    
+    /**
+     * Deregisters the {@link Copier} registered with the specified type.
+     */
+    public static void deregisterCopier(Class type) {
+        engine.getCopierRegistry().deregister(type);
+    }
+    
+    /**
+     * Returns the {@link ConversionListener} which is notified of all the
+     * conversions, or <tt>null</tt> if there's none.
+     */
+    public static ConversionListener getListener() {
+        return engine.getListener();
+    }
+    
+    /**
+     * Sets the {@link ConversionListener} which is notified of all the
+     * conversions.  <tt>null</tt> removes the current one.  The conversions
+     * cost nothing extra while no listener is set.
+     */
+    public static void setListener(ConversionListener listener) {
+        engine.setListener(listener);
+    }
+    
+    private static Converter[] toArray(ConverterPack converterPack) {
+        List<Converter> converters = new ArrayList<Converter>();
+        for (Iterator i = converterPack.newConverters(); i.hasNext();) {
+            converters.add((Converter) i.next());
         }
+        return converters.toArray(new Converter[converters.size()]);
     }
 
     /**
@@ -230,16 +625,20 @@ public abstract class Converter implements Comparable {
      * found using SPI.
      */
     private static void registerServiceProviders() {
+        // Collect all of them first so that they are registered at once.
+        List<Converter> converters = new ArrayList<Converter>();
         for (Enumeration e = Service.providers(ConverterPack.class);
              e.hasMoreElements();) {
             ConverterPack p = (ConverterPack) e.nextElement();
-            register(p);
+            for (Iterator i = p.newConverters(); i.hasNext();) {
+                converters.add((Converter) i.next());
+            }
         }
         for (Enumeration e = Service.providers(Converter.class);
              e.hasMoreElements();) {
-            Converter c = (Converter) e.nextElement();
-            register(c);
+            converters.add((Converter) e.nextElement());
         }
+        register(converters.toArray(new Converter[converters.size()]));
     }
     
     private final Class sourceType;
@@ -301,6 +700,38 @@ public abstract class Converter implements Comparable {
                 target + " (" + targetType.getName() + ") is unsupported." );
     }
     
+    /**
+     * Returns <tt>true</tt> if this converter implements
+     * {@link #doConversion(Object, ConverterContext)}.  {@link ConverterPack}
+     * authors are encouraged to override this method to tell it explicitly;
+     * the default implementation checks if the method is overridden.
+     */
+    public boolean supportsConversion() {
+        return isOverridden("doConversion", new Class[] {
+                Object.class, ConverterContext.class });
+    }
+
+    /**
+     * Returns <tt>true</tt> if this converter implements
+     * {@link #doCopy(Object, Object, ConverterContext)}, which means the
+     * target type is mutable.  {@link ConverterPack} authors are encouraged
+     * to override this method to tell it explicitly; the default
+     * implementation checks if the method is overridden.
+     */
+    public boolean supportsCopy() {
+        return isOverridden("doCopy", new Class[] {
+                Object.class, Object.class, ConverterContext.class });
+    }
+
+    private boolean isOverridden(String methodName, Class[] parameterTypes) {
+        try {
+            return getClass().getMethod(methodName, parameterTypes).getDeclaringClass() != Converter.class;
+        } catch (NoSuchMethodException e) {
+            // Never happens
+            return false;
+        }
+    }
+
     public final boolean equals(Object o) {
         // This makes it easy to manage converters with HashSet.
         return this == o;
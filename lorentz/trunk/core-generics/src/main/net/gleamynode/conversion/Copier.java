@@ -0,0 +1,38 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion;
+
+/**
+ * Copies an object of a certain type.  {@link Converter#convert(Object, Class)}
+ * uses the copier registered with {@link Converter#registerCopier(Class, Copier)}
+ * when the source object is already an instance of the target type but
+ * cannot be returned as it is because it is mutable.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public interface Copier {
+    /**
+     * Returns a copy of the specified object.
+     *
+     * @return <tt>null</tt> to let the conversion path copy the object instead
+     * @throws Exception if failed to copy
+     */
+    Object copy(Object source) throws Exception;
+}
@@ -35,6 +35,9 @@ import java.util.Set;
  */
 public class IntermediaryTypes {
     private final Set<Class> types = new HashSet<Class>();
+    // Increases on every modification so that ConverterContext can tell if
+    // its exclusions have been modified.
+    int modCount;
 
     public IntermediaryTypes() {
     }
@@ -61,10 +64,12 @@ public class IntermediaryTypes {
     }
 
     public boolean add(Class type) {
+        modCount ++;
         return types.add(type);
     }
 
     public boolean remove(Class type) {
+        modCount ++;
         return types.remove(type);
     }
 
@@ -74,18 +79,22 @@ public class IntermediaryTypes {
     }
 
     public boolean addAll(IntermediaryTypes types) {
+        modCount ++;
         return this.types.addAll(types.types);
     }
 
     public boolean retainAll(IntermediaryTypes types) {
+        modCount ++;
         return this.types.retainAll(types.types);
     }
 
     public boolean removeAll(IntermediaryTypes types) {
+        modCount ++;
         return this.types.removeAll(types.types);
     }
 
     public void clear() {
+        modCount ++;
         types.clear();
     }
 }
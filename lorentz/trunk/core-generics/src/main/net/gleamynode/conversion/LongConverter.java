@@ -0,0 +1,37 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion;
+
+/**
+ * A {@link Converter} whose target type is {@link Long} implements this
+ * interface to convert an object into a <tt>long</tt> without boxing it.
+ * {@link Converter#convertToLong(Object)} uses this interface when the last
+ * converter of the conversion path implements it.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public interface LongConverter {
+    /**
+     * Converts the specified object into a <tt>long</tt>.
+     *
+     * @throws Exception if failed to convert
+     */
+    long doLongConversion(Object o, ConverterContext ctx) throws Exception;
+}
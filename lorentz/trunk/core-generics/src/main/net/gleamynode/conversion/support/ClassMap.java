@@ -0,0 +1,148 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.support;
+
+/**
+ * An immutable map whose keys are {@link Class}es.  {@link #get(Class)}
+ * neither acquires a lock nor allocates an object, and updates return a
+ * modified copy, so a reader never sees a half-updated table.  Publish a new
+ * copy through a <tt>volatile</tt> field to share it between threads.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public final class ClassMap<V> {
+    private static final ClassMap<Object> EMPTY =
+        new ClassMap<Object>(new Class[2], new Object[2], 0);
+
+    /**
+     * Returns an empty map.
+     */
+    public static <V> ClassMap<V> empty() {
+        return (ClassMap<V>) EMPTY;
+    }
+
+    private final Class[] keys;
+    private final Object[] values;
+    private final int size;
+
+    private ClassMap(Class[] keys, Object[] values, int size) {
+        this.keys = keys;
+        this.values = values;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(Class key) {
+        return keys[indexOf(key)] != null;
+    }
+
+    public V get(Class key) {
+        return (V) values[indexOf(key)];
+    }
+
+    /**
+     * Returns a copy of this map with the specified mapping added.
+     */
+    public ClassMap<V> put(Class key, V value) {
+        if (key == null)
+            throw new NullPointerException("key");
+
+        int newSize = containsKey(key)? size : size + 1;
+        ClassMap<V> ret = newInstance(newSize);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null && keys[i] != key) {
+                ret.insert(keys[i], values[i]);
+            }
+        }
+        ret.insert(key, value);
+        return ret;
+    }
+
+    /**
+     * Returns a copy of this map without the mapping of the specified key.
+     */
+    public ClassMap<V> remove(Class key) {
+        if (!containsKey(key))
+            return this;
+        if (size == 1)
+            return empty();
+
+        ClassMap<V> ret = newInstance(size - 1);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null && keys[i] != key) {
+                ret.insert(keys[i], values[i]);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns a newly-created array of all keys in this map.
+     */
+    public Class[] keys() {
+        Class[] ret = new Class[size];
+        int j = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                ret[j++] = keys[i];
+            }
+        }
+        return ret;
+    }
+
+    private int indexOf(Class key) {
+        Class[] keys = this.keys;
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        for (;;) {
+            Class k = keys[i];
+            if (k == key || k == null)
+                return i;
+            i = (i + 1) & mask;
+        }
+    }
+
+    private void insert(Class key, Object value) {
+        int i = indexOf(key);
+        keys[i] = key;
+        values[i] = value;
+    }
+
+    private static <V> ClassMap<V> newInstance(int size) {
+        // Keep the load factor under 0.5 so that probing stays short.
+        int capacity = 2;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        return new ClassMap<V>(new Class[capacity], new Object[capacity], size);
+    }
+
+    private static int hash(Class key) {
+        int h = System.identityHashCode(key);
+        return h ^ (h >>> 16);
+    }
+}
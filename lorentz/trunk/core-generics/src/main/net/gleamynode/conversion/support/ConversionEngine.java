@@ -18,119 +18,351 @@
  */
 package net.gleamynode.conversion.support;
 
-import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
+import java.lang.reflect.Array;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import net.gleamynode.conversion.ConversionException;
+import net.gleamynode.conversion.ConversionListener;
 import net.gleamynode.conversion.ConversionPath;
-import net.gleamynode.conversion.Converter;
 import net.gleamynode.conversion.ConverterContext;
+import net.gleamynode.conversion.Copier;
+import net.gleamynode.conversion.IntermediaryTypes;
 import net.gleamynode.conversion.NoConversionPathException;
 
 public class ConversionEngine {
-    private static final Collection<Converter> EMPTY_COLLECTION = new ArrayList<Converter>(); 
     private final ConverterRegistry registry;
+    private final ConverterGraph graph;
     private final ConversionPathCache conversionCache;
     private final ConversionPathCache copyCache;
+    private final CopierRegistry copiers = new CopierRegistry();
+    private volatile ConversionListener listener;
 
     public ConversionEngine(ConverterRegistry registry, ConversionPathCache conversionCache, ConversionPathCache copyCache ) {
         this.registry = registry;
+        this.graph = registry.getGraph();
         this.conversionCache = conversionCache;
         this.copyCache = copyCache;
     }
     
+    /**
+     * Returns the registry of the {@link Copier}s which copy the source
+     * object that is already an instance of the target type.
+     */
+    public CopierRegistry getCopierRegistry() {
+        return copiers;
+    }
+    
+    /**
+     * Returns the listener which is notified of the conversions and the path
+     * lookups, or <tt>null</tt> if there's none.
+     */
+    public ConversionListener getListener() {
+        return listener;
+    }
+    
+    /**
+     * Sets the listener which is notified of the conversions and the path
+     * lookups.  <tt>null</tt> removes the current one.
+     */
+    public void setListener(ConversionListener listener) {
+        this.listener = listener;
+    }
+    
     public <T> T convert(Object source, Class<T> targetType, ConverterContext ctx) {
+        ConversionListener listener = this.listener;
+        if (listener == null || source == null) {
+            return convert0(source, targetType, ctx);
+        }
+        
+        long startTime = currentTime();
+        T result;
+        try {
+            result = convert0(source, targetType, ctx);
+        } catch (RuntimeException e) {
+            listener.conversionFailed(
+                    source.getClass(), targetType, e, currentTime() - startTime);
+            throw e;
+        }
+        listener.converted(source.getClass(), targetType, currentTime() - startTime);
+        return result;
+    }
+    
+    private <T> T convert0(Object source, Class<T> targetType, ConverterContext ctx) {
         if (source == null)
             return null;
         
         Class sourceType = source.getClass();
         if (targetType.isAssignableFrom(sourceType)) {
-            // Return back the source object if it is immutable.
-            if (registry.isImmutable(sourceType)) {
-                return targetType.cast(source);
-            } else {
-                try
-                {
-                    Method cloneMethod = sourceType.getMethod("clone", (Class[]) null);
-                    return targetType.cast(cloneMethod.invoke(source, (Object[]) null));
-                }
-                catch( Exception e )
-                {
-                    // Abandon cloning
-                }
+            Object copy = copyAssignable(source, sourceType, ctx);
+            if (copy != null) {
+                return targetType.cast(copy);
             }
         }
         
-        ConversionPath path = conversionCache.get(new ConversionKey(sourceType, targetType));
-        if (path != null) {
-            return targetType.cast(path.convert(source, ctx));
+        return targetType.cast(getConversionPlan(sourceType, targetType, ctx).convert(source, ctx));
+    }
+    
+    /**
+     * Returns the specified source object itself if it can be shared, or a
+     * copy of it made by its {@link Copier}.
+     * 
+     * @return <tt>null</tt> if the source object has to be copied via the
+     *         conversion path
+     */
+    private Object copyAssignable(Object source, Class sourceType, ConverterContext ctx) {
+        // Return back the source object if it is immutable.
+        if (ctx.isSourceSharingAllowed() ||
+                (registry.isImmutable(sourceType) && !copiers.isRegistered(sourceType))) {
+            return source;
         }
         
-        ((ConversionPathImpl) ctx.getPath()).clear();
-        T target = convert0(source, sourceType, targetType, ctx, new HashSet<Class>());
-        if (target == null)
-            throw new NoConversionPathException();
-
-        return target;
+        Copier copier = copiers.get(sourceType);
+        if (copier == null) {
+            return null;
+        }
+        try {
+            return copier.copy(source);
+        } catch (Exception e) {
+            throw new ConversionException(e);
+        }
     }
     
-    private <T> T convert0(Object source, Class initialSourceType, Class<T> targetType, ConverterContext ctx, Set<Class> triedClasses) {
-        Collection<Converter> converters = getConverters(source.getClass(), targetType, false, new HashSet<Class>());
-        if (converters.size() == 0) {
-            return null;
+    public int convertToInt(Object source, ConverterContext ctx) {
+        if (source == null)
+            throw new NullPointerException("source");
+        ConversionListener listener = this.listener;
+        if (listener == null) {
+            return convertToInt0(source, ctx);
+        }
+        
+        long startTime = currentTime();
+        int result;
+        try {
+            result = convertToInt0(source, ctx);
+        } catch (RuntimeException e) {
+            listener.conversionFailed(
+                    source.getClass(), Integer.class, e, currentTime() - startTime);
+            throw e;
+        }
+        listener.converted(source.getClass(), Integer.class, currentTime() - startTime);
+        return result;
+    }
+    
+    private int convertToInt0(Object source, ConverterContext ctx) {
+        if (source instanceof Integer)
+            return ((Integer) source).intValue();
+        
+        return getConversionPlan(source.getClass(), Integer.class, ctx).convertToInt(source, ctx);
+    }
+    
+    public long convertToLong(Object source, ConverterContext ctx) {
+        if (source == null)
+            throw new NullPointerException("source");
+        ConversionListener listener = this.listener;
+        if (listener == null) {
+            return convertToLong0(source, ctx);
         }
         
-        Iterator<Converter> it = converters.iterator();
+        long startTime = currentTime();
+        long result;
+        try {
+            result = convertToLong0(source, ctx);
+        } catch (RuntimeException e) {
+            listener.conversionFailed(
+                    source.getClass(), Long.class, e, currentTime() - startTime);
+            throw e;
+        }
+        listener.converted(source.getClass(), Long.class, currentTime() - startTime);
+        return result;
+    }
+    
+    private long convertToLong0(Object source, ConverterContext ctx) {
+        if (source instanceof Long)
+            return ((Long) source).longValue();
+        
+        return getConversionPlan(source.getClass(), Long.class, ctx).convertToLong(source, ctx);
+    }
+    
+    public double convertToDouble(Object source, ConverterContext ctx) {
+        if (source == null)
+            throw new NullPointerException("source");
+        ConversionListener listener = this.listener;
+        if (listener == null) {
+            return convertToDouble0(source, ctx);
+        }
         
-        while (it.hasNext()) {
-            Converter c = it.next();
-            // Prevent unnecessary recursion
-            if (triedClasses.contains(c.getTargetType()) ||
-                    (!targetType.isAssignableFrom(initialSourceType) &&
-                            ((Class<?>) c.getTargetType()).isAssignableFrom(initialSourceType))) {
-                continue;
+        long startTime = currentTime();
+        double result;
+        try {
+            result = convertToDouble0(source, ctx);
+        } catch (RuntimeException e) {
+            listener.conversionFailed(
+                    source.getClass(), Double.class, e, currentTime() - startTime);
+            throw e;
+        }
+        listener.converted(source.getClass(), Double.class, currentTime() - startTime);
+        return result;
+    }
+    
+    private double convertToDouble0(Object source, ConverterContext ctx) {
+        if (source instanceof Double)
+            return ((Double) source).doubleValue();
+        
+        return getConversionPlan(source.getClass(), Double.class, ctx).convertToDouble(source, ctx);
+    }
+    
+    public boolean convertToBoolean(Object source, ConverterContext ctx) {
+        if (source == null)
+            throw new NullPointerException("source");
+        ConversionListener listener = this.listener;
+        if (listener == null) {
+            return convertToBoolean0(source, ctx);
+        }
+        
+        long startTime = currentTime();
+        boolean result;
+        try {
+            result = convertToBoolean0(source, ctx);
+        } catch (RuntimeException e) {
+            listener.conversionFailed(
+                    source.getClass(), Boolean.class, e, currentTime() - startTime);
+            throw e;
+        }
+        listener.converted(source.getClass(), Boolean.class, currentTime() - startTime);
+        return result;
+    }
+    
+    private boolean convertToBoolean0(Object source, ConverterContext ctx) {
+        if (source instanceof Boolean)
+            return ((Boolean) source).booleanValue();
+        
+        return getConversionPlan(source.getClass(), Boolean.class, ctx).convertToBoolean(source, ctx);
+    }
+    
+    public void convertAll(Object[] sources, Object targetArray, ConverterContext ctx) {
+        Class componentType = targetArray.getClass().getComponentType();
+        if (componentType == null)
+            throw new IllegalArgumentException(
+                    "targetArray is not an array: " + targetArray.getClass().getName());
+        if (Array.getLength(targetArray) < sources.length)
+            throw new IllegalArgumentException(
+                    "targetArray is shorter than sources: " +
+                    Array.getLength(targetArray) + " < " + sources.length);
+        
+        if (componentType == int.class) {
+            int[] array = (int[]) targetArray;
+            PlanMemo plans = new PlanMemo(Integer.class, ctx);
+            for (int i = 0; i < sources.length; i ++) {
+                Object source = checkNotNull(sources, i);
+                if (source instanceof Integer)
+                    array[i] = ((Integer) source).intValue();
+                else
+                    array[i] = plans.get(source.getClass()).convertToInt(source, ctx);
             }
-            
-            boolean terminal = targetType.isAssignableFrom(c.getTargetType());
-
-            // Skip if the converter's target type is intermediary 
-            // and it is in exclusion list.
-            if (!terminal &&
-                    ctx.getExclusions().contains(c.getTargetType())) {
-                continue;
+        } else if (componentType == long.class) {
+            long[] array = (long[]) targetArray;
+            PlanMemo plans = new PlanMemo(Long.class, ctx);
+            for (int i = 0; i < sources.length; i ++) {
+                Object source = checkNotNull(sources, i);
+                if (source instanceof Long)
+                    array[i] = ((Long) source).longValue();
+                else
+                    array[i] = plans.get(source.getClass()).convertToLong(source, ctx);
             }
-            
-            ((ConversionPathImpl) ctx.getPath()).add(c);
-            try {
-                Object result = c.doConversion(source, ctx);
-                if (terminal) {
-                    conversionCache.add(
-                            new ConversionKey(initialSourceType, targetType),
-                            ctx.getPath());
-                    return targetType.cast(result);
-                } else {
-                    triedClasses.add(c.getSourceType());
-                    try {
-                        result = convert0(result, initialSourceType, targetType, ctx, triedClasses);
-                        if (result != null)
-                            return targetType.cast(result);
-                    } finally {
-                        triedClasses.remove(c.getSourceType());
-                    }
-                }
-            } catch( Throwable t ) {
+        } else if (componentType == double.class) {
+            double[] array = (double[]) targetArray;
+            PlanMemo plans = new PlanMemo(Double.class, ctx);
+            for (int i = 0; i < sources.length; i ++) {
+                Object source = checkNotNull(sources, i);
+                if (source instanceof Double)
+                    array[i] = ((Double) source).doubleValue();
+                else
+                    array[i] = plans.get(source.getClass()).convertToDouble(source, ctx);
+            }
+        } else if (componentType == boolean.class) {
+            boolean[] array = (boolean[]) targetArray;
+            PlanMemo plans = new PlanMemo(Boolean.class, ctx);
+            for (int i = 0; i < sources.length; i ++) {
+                Object source = checkNotNull(sources, i);
+                if (source instanceof Boolean)
+                    array[i] = ((Boolean) source).booleanValue();
+                else
+                    array[i] = plans.get(source.getClass()).convertToBoolean(source, ctx);
+            }
+        } else if (componentType.isPrimitive()) {
+            // No unboxed path for the other primitives; let Array.set() unwrap.
+            Class wrapperType = PrimitiveTypeUtil.toWrapperType(componentType);
+            PlanMemo plans = new PlanMemo(wrapperType, ctx);
+            for (int i = 0; i < sources.length; i ++) {
+                Object source = checkNotNull(sources, i);
+                Array.set(targetArray, i, plans.convert(source));
+            }
+        } else {
+            Object[] array = (Object[]) targetArray;
+            PlanMemo plans = new PlanMemo(componentType, ctx);
+            for (int i = 0; i < sources.length; i ++) {
+                array[i] = plans.convert(sources[i]);
             }
-            ((ConversionPathImpl) ctx.getPath()).remove();
+        }
+    }
+    
+    private static Object checkNotNull(Object[] sources, int index) {
+        Object source = sources[index];
+        if (source == null)
+            throw new NullPointerException("sources[" + index + "]");
+        return source;
+    }
+    
+    /**
+     * Returns the path which converts an object of <tt>sourceType</tt> into
+     * an object of <tt>targetType</tt>.  The returned path is immutable and
+     * can be reused to convert many objects of the same type without looking
+     * up the path again.
+     * 
+     * @throws NoConversionPathException if there's no such path
+     */
+    public ConversionPath getConversionPath(Class sourceType, Class targetType, ConverterContext ctx) {
+        return getConversionPlan(sourceType, targetType, ctx);
+    }
+    
+    private ConversionPlan getConversionPlan(Class sourceType, Class targetType, ConverterContext ctx) {
+        return getPlan(sourceType, targetType, false, ctx);
+    }
+    
+    private ConversionPlan getPlan(Class sourceType, Class targetType, boolean copy, ConverterContext ctx) {
+        ConversionPathCache cache = copy? copyCache : conversionCache;
+        ConversionPlan plan = (ConversionPlan) cache.get(sourceType, targetType);
+        ConversionListener listener = this.listener;
+        if (listener == null) {
+            return plan != null? plan : findPath(sourceType, targetType, copy, ctx);
+        }
+        
+        if (plan != null) {
+            listener.pathLookedUp(sourceType, targetType, plan.length(), true, 0);
+            return plan;
         }
         
-        return null;
+        boolean cachedFailure = !ctx.hasExclusions() &&
+                cache.getFailure(sourceType, targetType) != null;
+        long startTime = currentTime();
+        try {
+            plan = findPath(sourceType, targetType, copy, ctx);
+        } catch (NoConversionPathException e) {
+            listener.pathLookedUp(
+                    sourceType, targetType, 0, cachedFailure,
+                    cachedFailure? 0 : currentTime() - startTime);
+            throw e;
+        }
+        listener.pathLookedUp(
+                sourceType, targetType, plan.length(), false, currentTime() - startTime);
+        return plan;
+    }
+    
+    private static long currentTime() {
+        return System.nanoTime();
     }
     
     public void copy(Object source, Object target, ConverterContext ctx) {
@@ -141,205 +373,125 @@ public class ConversionEngine {
             throw new NullPointerException("target");
         }
         
-        ConversionPath path = copyCache.get(new ConversionKey(source.getClass(), target.getClass()));
-        if (path != null) {
-            path.copy(source, target, ctx);
+        ConversionListener listener = this.listener;
+        if (listener == null) {
+            copy0(source, target, ctx);
+            return;
         }
-        else
-        {
-            ((ConversionPathImpl) ctx.getPath()).clear();
-            boolean done = copy0(source, target, source.getClass(), ctx, new HashSet<Class>());
-            if (!done)
-                throw new NoConversionPathException();
+        
+        long startTime = currentTime();
+        try {
+            copy0(source, target, ctx);
+        } catch (RuntimeException e) {
+            listener.conversionFailed(
+                    source.getClass(), target.getClass(), e, currentTime() - startTime);
+            throw e;
         }
+        listener.converted(source.getClass(), target.getClass(), currentTime() - startTime);
     }
     
-    private boolean copy0(Object source, Object target, Class initialSourceType, ConverterContext ctx, Set<Class> triedClasses) {
-        Collection<Converter> converters = getConverters(source.getClass(), target.getClass(), true, new HashSet<Class>());
-        if (converters.size() == 0) {
-            return false;
-        }
-        
-        Iterator<Converter> it = converters.iterator();
+    private void copy0(Object source, Object target, ConverterContext ctx) {
+        getPlan(source.getClass(), target.getClass(), true, ctx).copy(source, target, ctx);
+    }
+    
+    private ConversionPlan findPath(Class sourceType, Class targetType, boolean copy, ConverterContext ctx) {
+        ConversionPathCache cache = copy? copyCache : conversionCache;
         
-        while (it.hasNext()) {
-            Converter c = it.next();
-            
-            // Prevent unnecessary recursion
-            if (triedClasses.contains(c.getTargetType()) ||
-                    (!target.getClass().isAssignableFrom(initialSourceType) &&
-                            ((Class<?>) c.getTargetType()).isAssignableFrom(initialSourceType))) {
-                continue;
-            }
-            
-            boolean terminal = target.getClass().isAssignableFrom(c.getTargetType());
-            
-            // Skip if the converter's target type is intermediary 
-            // and it is in exclusion list.
-            if (!terminal &&
-                    ctx.getExclusions().contains(c.getTargetType())) {
-                continue;
-            }
-            
-            ((ConversionPathImpl) ctx.getPath()).add(c);
-            try {
-                Object result;
-                if (terminal) {
-                    c.doCopy(source, target, ctx);
-                    copyCache.add(
-                            new ConversionKey(initialSourceType, target.getClass()),
-                            ctx.getPath());
-                    return true;
-                } else {
-                    result = c.doConversion(source, ctx);
+        // A path found with exclusions is not cached because it is not
+        // always the shortest one.
+        boolean cacheable = !ctx.hasExclusions();
+        IntermediaryTypes exclusions = cacheable? null : ctx.getExclusions();
+        if (cacheable) {
+            NoConversionPathException failure = cache.getFailure(sourceType, targetType);
+            if (failure != null) {
+                if (ctx.isPreallocatedExceptionEnabled()) {
+                    throw failure;
                 }
-                
-                triedClasses.add(c.getSourceType());
-                try {
-                    boolean done = copy0(result, target, initialSourceType, ctx, triedClasses);
-                    if (done)
-                        return true;
-                } finally {
-                    triedClasses.remove(c.getSourceType());
-                }
-            } catch( Throwable t ) {
+                throw new NoConversionPathException(failure.getMessage());
             }
-            ((ConversionPathImpl) ctx.getPath()).remove();
         }
         
-        return false;
-    }
-
-    public Collection<Converter> getConverters(Class sourceType, final Class targetType, final boolean copy, Set<Class> triedClasses)
-            throws ConversionException {
-        if (triedClasses.contains(sourceType))
-            return EMPTY_COLLECTION;
-        triedClasses.add(sourceType);
-
-        List<Converter> result = new ArrayList<Converter>();
-        result.addAll(registry.getConverters(sourceType).values());
-        if (!sourceType.isPrimitive()) {
-            // Find a superclass first (except Object)
-            Class superClass = sourceType.getSuperclass();
-            if (superClass != null && superClass != Object.class) {
-                result.addAll(getConverters(superClass, targetType, copy, triedClasses));
-            }
-
-            // And then interfaces
-            Class[] interfaces = sourceType.getInterfaces();
-            for (int i = 0; i < interfaces.length; i++) {
-                result.addAll(getConverters(interfaces[i], targetType, copy, triedClasses));
-            }
-            
-            // Try Object lastly
-            result.addAll(getConverters(Object.class, targetType, copy, triedClasses));
+        int generation = cache.getGeneration();
+        Set<Class> dependencies = cacheable? new HashSet<Class>() : null;
+        ConversionPlan path;
+        if (copy) {
+            path = graph.findCopyPath(sourceType, targetType, exclusions, dependencies);
+        } else {
+            path = graph.findConversionPath(sourceType, targetType, exclusions, dependencies);
         }
-
-        // Sort the result by possibility of choosing the shortest path ASAP.
-        // Please note that Collections.sort uses stable sort algorithm, so
-        // we will retain the original order unless we can't figure out the
-        // exact order of the candidate converters.
-        Collections.sort(result, new Comparator<Converter>() {
-            public int compare( Converter a, Converter b )
-            {
-                boolean isATerminal = ((Class<?>) a.getTargetType()).isAssignableFrom(targetType);
-                boolean isBTerminal = ((Class<?>) b.getTargetType()).isAssignableFrom(targetType);
-                boolean doesASupportConversion = registry.supportsConversion(a);
-                boolean doesBSupportConversion = registry.supportsConversion(b);
-                boolean doesASupportCopy = registry.supportsCopy(a);
-                boolean doesBSupportCopy = registry.supportsCopy(b);
-                
-                if (isATerminal) {
-                    if (isBTerminal) {
-                        if (copy) {
-                            if (doesASupportCopy) {
-                                if (doesBSupportCopy) {
-                                    return 0;
-                                } else {
-                                    return -1;
-                                }
-                            } else {
-                                if (doesBSupportCopy) {
-                                    return 1;
-                                } else {
-                                    return 0;
-                                }
-                            }
-                        } else { // conversion
-                            if (doesASupportConversion) {
-                                if (doesBSupportConversion) {
-                                    return 0;
-                                } else {
-                                    return -1;
-                                }
-                            } else {
-                                if (doesBSupportConversion) {
-                                    return 1; 
-                                } else {
-                                    return 0;
-                                }
-                            }
-                        }
-                    } else {
-                        if (copy) {
-                            if (doesASupportCopy) {
-                                return -1;
-                            } else {
-                                return 0;
-                            }
-                        } else {
-                            if (doesASupportConversion) {
-                                return -1;
-                            } else {
-                                return 0;
-                            }
-                        }
-                    }
-                } else { // A is not a terminal converter.
-                    if (isBTerminal) {
-                        if (copy) {
-                            if (doesBSupportCopy) {
-                                return 1;
-                            } else {
-                                return 0;
-                            }
-                        } else { // conversion
-                            if (doesBSupportConversion) {
-                                return 1;
-                            } else {
-                                return 0;
-                            }
-                        }
-                    } else {
-                        return 0;
-                    }
-                }
+        
+        if (path == null) {
+            String message = "No " + (copy? "copy" : "conversion") + " path from " +
+                    sourceType.getName() + " to " + targetType.getName();
+            if (cacheable) {
+                cache.addFailure(sourceType, targetType,
+                        new PreallocatedNoConversionPathException(message),
+                        toArray(dependencies), generation);
             }
-        });
+            throw new NoConversionPathException(message);
+        }
         
-        return result;
+        if (cacheable) {
+            cache.add(sourceType, targetType, path, toArray(dependencies), generation);
+        }
+        return path;
+    }
+    
+    private static Class[] toArray(Set<Class> types) {
+        return types.toArray(new Class[types.size()]);
     }
     
-    /*
-    private static String toConversionChainString(Object source, List converters) {
-        StringBuffer buf = new StringBuffer();
-        Iterator it = converters.iterator();
-        Converter c = (Converter) it.next();
-        if (source.getClass() != c.getSourceType()) {
-            buf.append(source.getClass().getName());
-            buf.append(" -> ");
+    /**
+     * Remembers the plans resolved during a batch conversion so that the
+     * path is looked up only once per distinct source type.  Most batches
+     * are homogeneous, so the last plan is checked before the map.
+     */
+    private class PlanMemo {
+        private final Class<?> targetType;
+        private final ConverterContext ctx;
+        private Class<?> lastSourceType;
+        private ConversionPlan lastPlan;
+        private Map<Class, ConversionPlan> plans;
+        
+        private PlanMemo(Class<?> targetType, ConverterContext ctx) {
+            this.targetType = targetType;
+            this.ctx = ctx;
         }
-        buf.append(c.getSourceType().getName());
-        buf.append(" -> ");
-        buf.append(c.getTargetType().getName());
         
-        while (it.hasNext()) {
-            c = (Converter) it.next();
-            buf.append(" -> ");
-            buf.append(c.getTargetType().getName());
+        private ConversionPlan get(Class<?> sourceType) {
+            if (sourceType == lastSourceType) {
+                return lastPlan;
+            }
+            
+            ConversionPlan plan;
+            if (lastSourceType == null) {
+                plan = getConversionPlan(sourceType, targetType, ctx);
+            } else {
+                if (plans == null) {
+                    plans = new HashMap<Class, ConversionPlan>();
+                    plans.put(lastSourceType, lastPlan);
+                }
+                plan = plans.get(sourceType);
+                if (plan == null) {
+                    plan = getConversionPlan(sourceType, targetType, ctx);
+                    plans.put(sourceType, plan);
+                }
+            }
+            lastSourceType = sourceType;
+            lastPlan = plan;
+            return plan;
         }
         
-        return buf.toString();
+        private Object convert(Object source) {
+            if (source == null)
+                return null;
+            
+            Class<?> sourceType = source.getClass();
+            if (targetType.isAssignableFrom(sourceType)) {
+                // Let the engine decide whether to pass through or clone.
+                return convert0(source, targetType, ctx);
+            }
+            return get(sourceType).convert(source, ctx);
+        }
     }
-    */
 }
@@ -18,34 +18,467 @@
  */
 package net.gleamynode.conversion.support;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.lang.ref.ReferenceQueue;
 
 import net.gleamynode.conversion.ConversionPath;
+import net.gleamynode.conversion.NoConversionPathException;
 
 /**
  * A cache which stores precalculated {@link ConversionPath}s.
+ * <p>
+ * Paths are compiled into {@link ConversionPlan}s and kept in a two-level
+ * table of {@link WeakClassMap}s (source type, and then target type) which
+ * is replaced as a whole on every update.  Therefore a lookup acquires no
+ * lock and allocates nothing.  The table refers to the types weakly, so
+ * caching the paths of a class doesn't keep it and its class loader from
+ * being garbage-collected; the entries of a collected class are purged on
+ * the next update.
+ * <p>
+ * Up to the specified number of paths are cached.  When the limit is
+ * reached, about one eighth of them are evicted at once.  Every lookup
+ * marks the path it finds as recently used, and the eviction sweeps the
+ * paths like a clock, giving a marked path a second chance, so the paths
+ * which are not used recently are evicted first.
+ * <p>
+ * The conversions which turned out to have no path are also remembered up
+ * to the specified limit, so that a search which is known to fail is not
+ * repeated.  When the limit is reached, all of them are discarded at once.
+ * <p>
+ * Both kinds of entries record the types they depend on, so
+ * {@link #invalidate(Class[])} evicts only the entries which can be affected
+ * by a change of the converters of the specified types.
+ * <p>
+ * An entry which was found while this cache was being invalidated must not
+ * be added; pass the value of {@link #getGeneration()} that was taken before
+ * the search to make sure of it.
+ * <p>
+ * If {@link #setFusing(boolean) fusing} is turned on, plans of
+ * {@link FusedConversionPlan#MIN_LENGTH} to
+ * {@link FusedConversionPlan#MAX_LENGTH} hops are replaced with
+ * {@link FusedConversionPlan}s when added.  It is off by default.
  *
  * @author Trustin Lee
  * @version $Rev: 129 $, $Date: 2005-11-14 18:35:57 +0900 (Mon, 14 Nov 2005) $
  */
 public class ConversionPathCache {
-    private final Map<ConversionKey, ConversionPath> map =
-        Collections.synchronizedMap(new HashMap<ConversionKey, ConversionPath>());
+    private static final int DEFAULT_MAX_PATHS = 4096;
+    private static final int DEFAULT_MAX_FAILURES = 1024;
+    // The hit and miss counters are striped by thread and padded so that
+    // the threads don't write to the same cache line on every lookup.
+    private static final int STRIPES = 16;
+    private static final int STRIPE_WIDTH = 8;
+    
+    private volatile WeakClassMap<WeakClassMap<Entry>> plans = WeakClassMap.empty();
+    private volatile WeakClassMap<WeakClassMap<Failure>> failures = WeakClassMap.empty();
+    private final ReferenceQueue<Class> queue = new ReferenceQueue<Class>();
+    private final int maxPaths;
+    private final int maxFailures;
+    private int pathCount;
+    private int failureCount;
+    private int clockHand;
+    private long evictionCount;
+    private final long[] counters = new long[STRIPES * STRIPE_WIDTH];
+    private volatile int generation;
+    private volatile boolean fusing;
     
     public ConversionPathCache() {
+        this(DEFAULT_MAX_PATHS, DEFAULT_MAX_FAILURES);
+    }
+    
+    /**
+     * @param maxFailures the maximum number of failed conversions to remember
+     */
+    public ConversionPathCache(int maxFailures) {
+        this(DEFAULT_MAX_PATHS, maxFailures);
+    }
+    
+    /**
+     * @param maxPaths the maximum number of paths to cache
+     * @param maxFailures the maximum number of failed conversions to remember
+     */
+    public ConversionPathCache(int maxPaths, int maxFailures) {
+        if (maxPaths < 0)
+            throw new IllegalArgumentException("maxPaths: " + maxPaths);
+        if (maxFailures < 0)
+            throw new IllegalArgumentException("maxFailures: " + maxFailures);
+        this.maxPaths = maxPaths;
+        this.maxFailures = maxFailures;
+    }
+    
+    /**
+     * Returns the number which increases whenever this cache is invalidated.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+    
+    /**
+     * Returns <tt>true</tt> if the plans added to this cache are fused.
+     * The default is <tt>false</tt>.
+     */
+    public boolean isFusing() {
+        return fusing;
+    }
+    
+    /**
+     * Sets whether the plans added to this cache are fused.  The plans
+     * which are in this cache already are not affected.
+     */
+    public void setFusing(boolean fusing) {
+        this.fusing = fusing;
+    }
+    
+    public int getMaxPaths() {
+        return maxPaths;
+    }
+    
+    /**
+     * Returns the number of the cached paths.
+     */
+    public synchronized int size() {
+        return pathCount;
+    }
+    
+    /**
+     * Returns the number of the lookups which found a path.  The count is
+     * approximate while lookups are being performed concurrently.
+     */
+    public long getHitCount() {
+        return sumCounters(0);
+    }
+    
+    /**
+     * Returns the number of the lookups which found no path.  The count is
+     * approximate while lookups are being performed concurrently.
+     */
+    public long getMissCount() {
+        return sumCounters(1);
+    }
+    
+    /**
+     * Returns the number of the paths evicted to keep the size of this cache
+     * under the limit.
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+    
+    private long sumCounters(int offset) {
+        long sum = 0;
+        for (int i = offset; i < counters.length; i += STRIPE_WIDTH) {
+            sum += counters[i];
+        }
+        return sum;
     }
     
     public void add(ConversionKey key, ConversionPath path) {
-        map.put(key, path.clone());
+        add(key.getSourceType(), key.getTargetType(), path);
+    }
+    
+    public synchronized void add(Class sourceType, Class targetType, ConversionPath path) {
+        ConversionPlan plan;
+        if (path instanceof ConversionPlan) {
+            plan = (ConversionPlan) path;
+        } else {
+            plan = new ConversionPlan(path);
+        }
+        if (fusing) {
+            plan = FusedConversionPlan.fuse(plan);
+        }
+        if (maxPaths == 0) {
+            return;
+        }
+        
+        purge();
+        if (find(sourceType, targetType) == null) {
+            if (pathCount >= maxPaths) {
+                evict();
+            }
+            pathCount ++;
+        }
+        plans = put(plans, sourceType, targetType, new Entry(plan));
+    }
+    
+    /**
+     * Replaces the path between the specified types with the specified
+     * replacement, such as a compiled version of it, only if the current
+     * path is <tt>expected</tt>.
+     * 
+     * @return <tt>true</tt> if replaced
+     */
+    public synchronized boolean replace(Class sourceType, Class targetType, ConversionPath expected, ConversionPath replacement) {
+        Entry e = find(sourceType, targetType);
+        if (e == null || e.plan != expected) {
+            return false;
+        }
+        ConversionPlan plan;
+        if (replacement instanceof ConversionPlan) {
+            plan = (ConversionPlan) replacement;
+        } else {
+            plan = new ConversionPlan(replacement);
+        }
+        plans = put(plans, sourceType, targetType, new Entry(plan));
+        return true;
+    }
+    
+    /**
+     * Adds the specified path unless this cache has been invalidated since
+     * the specified generation.
+     */
+    public synchronized void add(Class sourceType, Class targetType, ConversionPath path, int generation) {
+        if (this.generation == generation) {
+            add(sourceType, targetType, path);
+        }
+    }
+    
+    /**
+     * Adds the specified path unless this cache has been invalidated since
+     * the specified generation.
+     * 
+     * @param dependencies the types the path depends on
+     */
+    public synchronized void add(Class sourceType, Class targetType, ConversionPath path, Class[] dependencies, int generation) {
+        if (this.generation == generation) {
+            add(sourceType, targetType, new ConversionPlan(path, dependencies));
+        }
     }
     
     public ConversionPath get(ConversionKey key) {
-        return map.get(key);
+        return get(key.getSourceType(), key.getTargetType());
+    }
+    
+    public ConversionPath get(Class sourceType, Class targetType) {
+        Entry e = find(sourceType, targetType);
+        int stripe = (System.identityHashCode(Thread.currentThread()) & (STRIPES - 1)) * STRIPE_WIDTH;
+        if (e == null) {
+            counters[stripe + 1] ++;
+            return null;
+        }
+        
+        counters[stripe] ++;
+        if (!e.used) {
+            e.used = true;
+        }
+        return e.plan;
+    }
+    
+    private Entry find(Class sourceType, Class targetType) {
+        WeakClassMap<Entry> t2e = plans.get(sourceType);
+        if (t2e == null) {
+            return null;
+        }
+        return t2e.get(targetType);
+    }
+    
+    /**
+     * Remembers that there's no path between the specified types unless this
+     * cache has been invalidated since the specified generation.
+     * 
+     * @param cause the exception to throw for the subsequent conversions
+     */
+    public void addFailure(Class sourceType, Class targetType, NoConversionPathException cause, int generation) {
+        addFailure(sourceType, targetType, cause, null, generation);
+    }
+    
+    /**
+     * Remembers that there's no path between the specified types unless this
+     * cache has been invalidated since the specified generation.
+     * 
+     * @param cause the exception to throw for the subsequent conversions
+     * @param dependencies the types the failure depends on
+     */
+    public synchronized void addFailure(Class sourceType, Class targetType, NoConversionPathException cause, Class[] dependencies, int generation) {
+        if (this.generation != generation || maxFailures == 0) {
+            return;
+        }
+        
+        purge();
+        if (failureCount >= maxFailures) {
+            failures = WeakClassMap.empty();
+            failureCount = 0;
+        }
+        failures = put(failures, sourceType, targetType, new Failure(cause, dependencies));
+        failureCount ++;
+    }
+    
+    /**
+     * Returns the exception which was thrown when the conversion between the
+     * specified types failed.
+     * 
+     * @return <tt>null</tt> if the conversion didn't fail
+     */
+    public NoConversionPathException getFailure(Class sourceType, Class targetType) {
+        WeakClassMap<Failure> t2e = failures.get(sourceType);
+        if (t2e == null) {
+            return null;
+        }
+        Failure failure = t2e.get(targetType);
+        return failure == null? null : failure.cause;
+    }
+    
+    public synchronized void invalidate() {
+        plans = WeakClassMap.empty();
+        failures = WeakClassMap.empty();
+        pathCount = 0;
+        failureCount = 0;
+        generation ++;
+    }
+    
+    /**
+     * Evicts the entries which depend on any of the specified types.
+     */
+    public synchronized void invalidate(Class[] types) {
+        plans = evict(plans, types);
+        failures = evict(failures, types);
+        pathCount = count(plans);
+        failureCount = count(failures);
+        generation ++;
+    }
+    
+    /**
+     * Evicts about one eighth of the paths, the ones which have not been
+     * used since the last eviction first.
+     */
+    private void evict() {
+        int goal = Math.max(1, maxPaths / 8);
+        int evicted = 0;
+        WeakClassMap<WeakClassMap<Entry>> plans = this.plans;
+        Class[] sourceTypes = plans.keys();
+        
+        // The first round clears the marks, so the second round never fails
+        // to meet the goal.
+        for (int round = 0; round < 2 && evicted < goal; round++) {
+            for (int n = 0; n < sourceTypes.length && evicted < goal; n++) {
+                clockHand = (clockHand + 1) % sourceTypes.length;
+                Class sourceType = sourceTypes[clockHand];
+                WeakClassMap<Entry> t2e = plans.get(sourceType);
+                if (t2e == null) {
+                    continue;
+                }
+                
+                WeakClassMap<Entry> newT2e = t2e;
+                Class[] targetTypes = t2e.keys();
+                for (int j = 0; j < targetTypes.length && evicted < goal; j++) {
+                    Entry e = t2e.get(targetTypes[j]);
+                    if (e.used) {
+                        e.used = false;
+                    } else {
+                        newT2e = newT2e.remove(targetTypes[j]);
+                        evicted ++;
+                    }
+                }
+                
+                if (newT2e.isEmpty()) {
+                    plans = plans.remove(sourceType);
+                } else if (newT2e != t2e) {
+                    plans = plans.put(sourceType, newT2e, queue);
+                }
+            }
+        }
+        
+        this.plans = plans;
+        pathCount -= evicted;
+        evictionCount += evicted;
+    }
+    
+    private <V> WeakClassMap<WeakClassMap<V>> evict(WeakClassMap<WeakClassMap<V>> map, Class[] types) {
+        Class[] sourceTypes = map.keys();
+        for (int i = 0; i < sourceTypes.length; i++) {
+            WeakClassMap<V> t2v = map.get(sourceTypes[i]);
+            WeakClassMap<V> newT2v = t2v;
+            Class[] targetTypes = t2v.keys();
+            for (int j = 0; j < targetTypes.length; j++) {
+                Object v = t2v.get(targetTypes[j]);
+                boolean dependent = v instanceof Failure?
+                        ((Failure) v).dependsOn(types) :
+                        ((Entry) v).plan.dependsOn(types);
+                if (dependent) {
+                    newT2v = newT2v.remove(targetTypes[j]);
+                }
+            }
+            
+            if (newT2v.isEmpty()) {
+                map = map.remove(sourceTypes[i]);
+            } else if (newT2v != t2v) {
+                map = map.put(sourceTypes[i], newT2v, queue);
+            }
+        }
+        return map;
+    }
+    
+    /**
+     * Removes the entries of the garbage-collected types if there are any.
+     */
+    private void purge() {
+        if (queue.poll() == null) {
+            return;
+        }
+        while (queue.poll() != null) {
+            continue;
+        }
+        
+        plans = purge(plans);
+        failures = purge(failures);
+        pathCount = count(plans);
+        failureCount = count(failures);
+    }
+    
+    private <V> WeakClassMap<WeakClassMap<V>> purge(WeakClassMap<WeakClassMap<V>> map) {
+        map = map.purge();
+        Class[] sourceTypes = map.keys();
+        for (int i = 0; i < sourceTypes.length; i++) {
+            WeakClassMap<V> t2v = map.get(sourceTypes[i]);
+            WeakClassMap<V> newT2v = t2v.purge();
+            if (newT2v.isEmpty()) {
+                map = map.remove(sourceTypes[i]);
+            } else if (newT2v != t2v) {
+                map = map.put(sourceTypes[i], newT2v, queue);
+            }
+        }
+        return map;
+    }
+    
+    private static int count(WeakClassMap<? extends WeakClassMap<?>> map) {
+        int count = 0;
+        Class[] sourceTypes = map.keys();
+        for (int i = 0; i < sourceTypes.length; i++) {
+            count += map.get(sourceTypes[i]).size();
+        }
+        return count;
+    }
+    
+    private <V> WeakClassMap<WeakClassMap<V>> put(WeakClassMap<WeakClassMap<V>> map, Class sourceType, Class targetType, V value) {
+        WeakClassMap<V> t2v = map.get(sourceType);
+        if (t2v == null) {
+            t2v = WeakClassMap.empty();
+        }
+        return map.put(sourceType, t2v.put(targetType, value, queue), queue);
+    }
+    
+    private static class Entry {
+        private final ConversionPlan plan;
+        // Set when this entry is looked up, and cleared by evict().  It is
+        // not volatile because a lost update only affects what is evicted.
+        private boolean used;
+        
+        private Entry(ConversionPlan plan) {
+            this.plan = plan;
+        }
     }
     
-    public void invalidate() {
-        map.clear();
+    private static class Failure {
+        private final NoConversionPathException cause;
+        // The identity hash codes of the types; null means the failure
+        // depends on all types.
+        private final int[] dependencies;
+        
+        private Failure(NoConversionPathException cause, Class[] dependencies) {
+            this.cause = cause;
+            this.dependencies = ConversionPlan.hash(dependencies);
+        }
+        
+        private boolean dependsOn(Class[] types) {
+            return ConversionPlan.dependsOn(dependencies, types);
+        }
     }
 }
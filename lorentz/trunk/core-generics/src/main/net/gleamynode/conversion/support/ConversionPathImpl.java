@@ -55,6 +55,13 @@ public class ConversionPathImpl implements ConversionPath {
         this.path.addAll(path.toList());
     }
     
+    public void setAll(Converter[] converters) {
+        clear();
+        for (int i = 0; i < converters.length; i++) {
+            this.path.add(converters[i]);
+        }
+    }
+    
     public void clear() {
         this.path.clear();
     }
@@ -67,7 +74,9 @@ public class ConversionPathImpl implements ConversionPath {
         if (path.size() == 0)
             throw new IllegalStateException();
 
-        ((ConversionPathImpl) ctx.getPath()).setAll(this);
+        if (ctx.isPathTracking()) {
+            ((ConversionPathImpl) ctx.getPath()).setAll(this);
+        }
         
         Object result = source;
         try {
@@ -84,9 +93,10 @@ public class ConversionPathImpl implements ConversionPath {
         if (path.size() == 0)
             throw new IllegalStateException();
 
-        ((ConversionPathImpl) ctx.getPath()).setAll(this);
+        if (ctx.isPathTracking()) {
+            ((ConversionPathImpl) ctx.getPath()).setAll(this);
+        }
         
-        System.out.println(this);
         Object result = source;
         Iterator<Converter> i = path.iterator();
         try {
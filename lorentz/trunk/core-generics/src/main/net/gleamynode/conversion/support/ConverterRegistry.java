@@ -18,173 +18,310 @@
  */
 package net.gleamynode.conversion.support;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
 import net.gleamynode.conversion.Converter;
 
+/**
+ * Keeps the registered {@link Converter}s.
+ * <p>
+ * The registered converters and what is known about them are kept in an
+ * immutable snapshot.  An update builds a new snapshot off to the side and
+ * publishes it at once, so readers never acquire a lock.  Register many
+ * converters with {@link #register(Converter[])} rather than one by one;
+ * the snapshot is then published and the caches are invalidated only once.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
 public class ConverterRegistry {
-    // Map<sourceType, Map<targetType, Converter>>
-    private final Map<Class, Map<Class, Converter>> converters =
-        new HashMap<Class, Map<Class, Converter>>();
-    private final Set<Converter> convertersWithCopy = new HashSet<Converter>();
-    private final Set<Converter> convertersWithConversion = new HashSet<Converter>();
-    private final Set<Class> immutableTypes = new HashSet<Class>();
-    private final Set<Class> mutableTypes = new HashSet<Class>();
+    private static final Converter[] EMPTY_CONVERTERS = new Converter[0];
+
+    private volatile Snapshot snapshot = new Snapshot();
     private final ConversionPathCache conversionCache;
     private final ConversionPathCache copyCache;
+    private final ConverterGraph graph;
 
     public ConverterRegistry( ConversionPathCache conversionCache, ConversionPathCache copyCache ) {
         this.conversionCache = conversionCache;
         this.copyCache = copyCache;
+        this.graph = new ConverterGraph(this);
+    }
+
+    /**
+     * Returns the graph of the registered converters.
+     */
+    public ConverterGraph getGraph() {
+        return graph;
     }
 
     /**
      * Registers the specified converter.
      */
     public void register(Converter converter) {
-        Class sourceType = converter.getSourceType();
-        Class targetType = converter.getTargetType();
-        Class primitiveSourceType = PrimitiveTypeUtil.toPrimitiveType(sourceType);
-        Class primitiveTargetType = PrimitiveTypeUtil.toPrimitiveType(targetType);
-        
-        synchronized (converters) {
-            register0(sourceType, targetType, converter);
+        register(new Converter[] { converter });
+    }
+
+    /**
+     * Registers the specified converters at once.  If more than one
+     * converter has the same source and target type, the last one wins.
+     */
+    public synchronized void register(Converter[] converters) {
+        Snapshot snapshot = new Snapshot(this.snapshot);
+        Set<Class> conversionTypes = new HashSet<Class>();
+        Set<Class> copyTypes = new HashSet<Class>();
+
+        for (int i = 0; i < converters.length; i++) {
+            Converter converter = converters[i];
+            Class sourceType = converter.getSourceType();
+            Class targetType = converter.getTargetType();
+            Class primitiveSourceType = PrimitiveTypeUtil.toPrimitiveType(sourceType);
+            Class primitiveTargetType = PrimitiveTypeUtil.toPrimitiveType(targetType);
+            
+            boolean supportsConversion = converter.supportsConversion();
+            boolean supportsCopy = converter.supportsCopy();
+            if (supportsConversion) {
+                snapshot.convertersWithConversion.add(converter);
+            }
+            if (supportsCopy) {
+                snapshot.convertersWithCopy.add(converter);
+            }
+            
+            snapshot.put(sourceType, targetType, converter, supportsCopy);
             if (primitiveSourceType != null) {
-                register0(primitiveSourceType, targetType, converter);
+                snapshot.put(primitiveSourceType, targetType, converter, supportsCopy);
             }
             if (primitiveTargetType != null) {
-                register0(sourceType, primitiveTargetType, converter);
+                snapshot.put(sourceType, primitiveTargetType, converter, supportsCopy);
             }
             if (primitiveSourceType != null && primitiveTargetType != null) {
-                register0(primitiveSourceType, primitiveTargetType, converter);
+                snapshot.put(primitiveSourceType, primitiveTargetType, converter, supportsCopy);
             }
-        }
-    }
-
-    private void register0(Class sourceType, Class targetType, Converter converter) {
-        // Test if doConversion method throws UnsupportedOperationException.
-        // If it doesn't throw an UnsupportedOperationException, we can believe
-        // the converter provides conversion operation.
-        boolean supportsConversion = false;
-        try {
-            converter.doConversion(null, null);
-            supportsConversion = true;
-        } catch (UnsupportedOperationException e) {
-        } catch (Throwable t) {
-            supportsConversion = true;
-        }
-        
-        if (supportsConversion) {
-            convertersWithConversion.add(converter);
+            
+            addAffectedTypes(
+                    supportsConversion, supportsCopy, sourceType, primitiveSourceType,
+                    conversionTypes, copyTypes);
         }
 
-        // Test if doCopy method throws UnsupportedOperationException.
-        // If it doesn't throw an UnsupportedOperationException, we can believe
-        // the target type is mutable and the converter provides copy operation.
-        boolean supportsCopy = false;
-        try {
-            converter.doCopy(null, null, null);
-            supportsCopy = true;
-        } catch (UnsupportedOperationException e) {
-        } catch (Throwable t) {
-            supportsCopy = true;
-        }
-        
-        if (supportsCopy) {
-            mutableTypes.add(targetType);
-            immutableTypes.remove(targetType); // Revoke the belief
-            convertersWithCopy.add(converter);
-        } else {
-            if (!mutableTypes.contains(targetType)) {
-                immutableTypes.add(targetType);
-            }
-        }
-        
-        // Register converter
-        getConverters(sourceType).put(targetType, converter);
-        
-        if (supportsConversion)
-        {
-            conversionCache.invalidate();
-            copyCache.invalidate();
-        }
-        
-        if (supportsCopy) {
-            copyCache.invalidate();
-        }
+        snapshot.updateDirectConverters();
+        this.snapshot = snapshot;
+        invalidate(conversionTypes, copyTypes);
     }
-    
+
     public void deregister(Converter converter) {
-        deregister(converter.getSourceType(), converter.getTargetType(), converter);
+        deregister(new Converter[] { converter });
     }
     
-    private void deregister(Class sourceType, Class targetType, Converter converter) {
-        Class primitiveSourceType = PrimitiveTypeUtil.toPrimitiveType(sourceType);
-        Class primitiveTargetType = PrimitiveTypeUtil.toPrimitiveType(targetType);
+    /**
+     * Deregisters the converters whose source and target type are same with
+     * the specified converters' at once.
+     */
+    public synchronized void deregister(Converter[] converters) {
+        Snapshot snapshot = new Snapshot(this.snapshot);
+        Set<Class> conversionTypes = new HashSet<Class>();
+        Set<Class> copyTypes = new HashSet<Class>();
 
-        synchronized (converters) {
-            deregister0(sourceType, targetType, converter);
+        for (int i = 0; i < converters.length; i++) {
+            Class sourceType = converters[i].getSourceType();
+            Class targetType = converters[i].getTargetType();
+            Class primitiveSourceType = PrimitiveTypeUtil.toPrimitiveType(sourceType);
+            Class primitiveTargetType = PrimitiveTypeUtil.toPrimitiveType(targetType);
+
+            // The specified converter can be a different instance from the
+            // registered one, so find out what is actually removed.
+            Converter removed = snapshot.remove(sourceType, targetType);
             if (primitiveSourceType != null) {
-                deregister0(primitiveSourceType, targetType, converter);
+                snapshot.remove(primitiveSourceType, targetType);
             }
             if (primitiveTargetType != null) {
-                deregister0(sourceType, primitiveTargetType, converter);
+                snapshot.remove(sourceType, primitiveTargetType);
             }
             if (primitiveSourceType != null && primitiveTargetType != null) {
-                deregister0(primitiveSourceType, primitiveTargetType, converter);
+                snapshot.remove(primitiveSourceType, primitiveTargetType);
+            }
+            
+            if (removed != null) {
+                addAffectedTypes(
+                        snapshot.convertersWithConversion.remove(removed),
+                        snapshot.convertersWithCopy.remove(removed),
+                        sourceType, primitiveSourceType,
+                        conversionTypes, copyTypes);
             }
         }
+
+        snapshot.updateDirectConverters();
+        this.snapshot = snapshot;
+        invalidate(conversionTypes, copyTypes);
     }
     
-    private void deregister0(Class sourceType, Class targetType, Converter converter) {
-        Map<Class, Converter> t2c = getConverters(sourceType);
-        
-        if ( t2c != null ) {
-            t2c.remove(targetType);
-        
-            if ( t2c.isEmpty() ) {
-                converters.remove(t2c);
+    /**
+     * Adds the types whose cached paths could have involved the specified
+     * converter; a path can involve it only if one of its intermediary types
+     * is the source type of the converter or a subtype of it.
+     */
+    private static void addAffectedTypes(
+            boolean supportsConversion, boolean supportsCopy,
+            Class sourceType, Class primitiveSourceType,
+            Set<Class> conversionTypes, Set<Class> copyTypes) {
+        if (supportsConversion) {
+            conversionTypes.add(sourceType);
+            if (primitiveSourceType != null) {
+                conversionTypes.add(primitiveSourceType);
+            }
+        } else if (supportsCopy) {
+            copyTypes.add(sourceType);
+            if (primitiveSourceType != null) {
+                copyTypes.add(primitiveSourceType);
             }
         }
-        
-        if (convertersWithConversion.remove(converter)) {
-            conversionCache.invalidate();
-            copyCache.invalidate();
+    }
+    
+    private void invalidate(Set<Class> conversionTypes, Set<Class> copyTypes) {
+        copyTypes.addAll(conversionTypes);
+        if (copyTypes.isEmpty()) {
+            return;
         }
-        
-        if (convertersWithCopy.remove(converter)) {
-            copyCache.invalidate();
+
+        Class[] types = copyTypes.toArray(new Class[copyTypes.size()]);
+        graph.invalidate(types);
+        copyCache.invalidate(types);
+        if (!conversionTypes.isEmpty()) {
+            conversionCache.invalidate(
+                    conversionTypes.toArray(new Class[conversionTypes.size()]));
         }
     }
     
+    /**
+     * Returns the converters registered with the specified source type.
+     * The returned map is an unmodifiable snapshot.
+     */
     public Map<Class, Converter> getConverters(Class sourceType) {
-        Map<Class, Converter> t2c;
-        synchronized (converters) {
-            t2c = converters.get(sourceType);
-            if (t2c == null) {
-                t2c = new HashMap<Class, Converter>();
-                converters.put(sourceType, t2c);
-            }
+        ClassMap<Converter> t2c = snapshot.converters.get(sourceType);
+        if (t2c == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<Class, Converter> result = new HashMap<Class, Converter>();
+        Class[] targetTypes = t2c.keys();
+        for (int i = 0; i < targetTypes.length; i++) {
+            result.put(targetTypes[i], t2c.get(targetTypes[i]));
         }
-        return t2c;
+        return Collections.unmodifiableMap(result);
+    }
+    
+    /**
+     * Returns the converters registered with the specified source type.
+     * The returned array must not be modified.
+     */
+    public Converter[] getDirectConverters(Class sourceType) {
+        Converter[] converters = snapshot.directConverters.get(sourceType);
+        return converters == null? EMPTY_CONVERTERS : converters;
     }
     
     public boolean isImmutable(Class targetType) {
-        return immutableTypes.contains(targetType);
+        return snapshot.immutableTypes.contains(targetType);
     }
     
     public boolean isMutable(Class targetType) {
-        return mutableTypes.contains(targetType);
+        return snapshot.mutableTypes.contains(targetType);
     }
     
     public boolean supportsConversion(Converter converter) {
-        return convertersWithConversion.contains(converter);
+        return snapshot.convertersWithConversion.contains(converter);
     }
 
     public boolean supportsCopy(Converter converter) {
-        return convertersWithCopy.contains(converter);
+        return snapshot.convertersWithCopy.contains(converter);
+    }
+    
+    /**
+     * The registered converters at a certain moment.  It is modified only
+     * before it is published.
+     */
+    private static class Snapshot {
+        private ClassMap<ClassMap<Converter>> converters;
+        private ClassMap<Converter[]> directConverters;
+        private final Set<Converter> convertersWithCopy;
+        private final Set<Converter> convertersWithConversion;
+        private final Set<Class> immutableTypes;
+        private final Set<Class> mutableTypes;
+        private final Set<Class> updatedSourceTypes = new HashSet<Class>();
+        
+        private Snapshot() {
+            converters = ClassMap.empty();
+            directConverters = ClassMap.empty();
+            convertersWithCopy = new HashSet<Converter>();
+            convertersWithConversion = new HashSet<Converter>();
+            immutableTypes = new HashSet<Class>();
+            mutableTypes = new HashSet<Class>();
+        }
+        
+        private Snapshot(Snapshot s) {
+            converters = s.converters;
+            directConverters = s.directConverters;
+            convertersWithCopy = new HashSet<Converter>(s.convertersWithCopy);
+            convertersWithConversion = new HashSet<Converter>(s.convertersWithConversion);
+            immutableTypes = new HashSet<Class>(s.immutableTypes);
+            mutableTypes = new HashSet<Class>(s.mutableTypes);
+        }
+        
+        private void put(Class sourceType, Class targetType, Converter converter, boolean supportsCopy) {
+            if (supportsCopy) {
+                mutableTypes.add(targetType);
+                immutableTypes.remove(targetType); // Revoke the belief
+            } else {
+                if (!mutableTypes.contains(targetType)) {
+                    immutableTypes.add(targetType);
+                }
+            }
+            
+            ClassMap<Converter> t2c = converters.get(sourceType);
+            if (t2c == null) {
+                t2c = ClassMap.empty();
+            }
+            converters = converters.put(sourceType, t2c.put(targetType, converter));
+            updatedSourceTypes.add(sourceType);
+        }
+        
+        private Converter remove(Class sourceType, Class targetType) {
+            ClassMap<Converter> t2c = converters.get(sourceType);
+            if (t2c == null) {
+                return null;
+            }
+            
+            Converter removed = t2c.get(targetType);
+            t2c = t2c.remove(targetType);
+            if (t2c.isEmpty()) {
+                converters = converters.remove(sourceType);
+            } else {
+                converters = converters.put(sourceType, t2c);
+            }
+            updatedSourceTypes.add(sourceType);
+            return removed;
+        }
+        
+        private void updateDirectConverters() {
+            for (Iterator<Class> i = updatedSourceTypes.iterator(); i.hasNext();) {
+                Class sourceType = i.next();
+                ClassMap<Converter> t2c = converters.get(sourceType);
+                if (t2c == null) {
+                    directConverters = directConverters.remove(sourceType);
+                    continue;
+                }
+                
+                Class[] targetTypes = t2c.keys();
+                Converter[] array = new Converter[targetTypes.length];
+                for (int j = 0; j < targetTypes.length; j++) {
+                    array[j] = t2c.get(targetTypes[j]);
+                }
+                directConverters = directConverters.put(sourceType, array);
+            }
+            updatedSourceTypes.clear();
+        }
     }
 }
@@ -0,0 +1,159 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.support;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+import net.gleamynode.conversion.Copier;
+
+/**
+ * Keeps the {@link Copier}s which copy the source object of a conversion
+ * that is already an instance of the target type.
+ * <p>
+ * The copier of a type which has no registered copier is looked up once
+ * and cached: a public <tt>clone()</tt> method first, and then a public
+ * copy constructor.  The copiers are kept in a {@link ClassMap} which is
+ * replaced as a whole on every update, so a lookup acquires no lock.
+ * A found copier refers to its type, so it is cached only if the type was
+ * loaded by the class loader of this class or its ancestor, which outlives
+ * this registry anyway.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class CopierRegistry {
+    private static final Copier NO_COPIER = new Copier() {
+        public Object copy(Object source) {
+            return null;
+        }
+    };
+
+    private volatile ClassMap<Copier> registeredCopiers = ClassMap.empty();
+    // NO_COPIER if the type has none.
+    private volatile ClassMap<Copier> foundCopiers = ClassMap.empty();
+
+    /**
+     * Registers the copier of the specified type.  It is used only for the
+     * objects whose class is exactly the specified type.
+     */
+    public synchronized void register(Class type, Copier copier) {
+        if (type == null)
+            throw new NullPointerException("type");
+        if (copier == null)
+            throw new NullPointerException("copier");
+        registeredCopiers = registeredCopiers.put(type, copier);
+    }
+
+    public synchronized void deregister(Class type) {
+        registeredCopiers = registeredCopiers.remove(type);
+    }
+
+    /**
+     * Returns <tt>true</tt> if a copier is registered with the specified
+     * type.
+     */
+    public boolean isRegistered(Class type) {
+        return registeredCopiers.containsKey(type);
+    }
+
+    /**
+     * Returns the copier of the specified type.
+     *
+     * @return <tt>null</tt> if the type has no copier
+     */
+    public Copier get(Class type) {
+        Copier copier = registeredCopiers.get(type);
+        if (copier != null) {
+            return copier;
+        }
+
+        copier = foundCopiers.get(type);
+        if (copier == null) {
+            copier = find(type);
+            if (isCacheable(type)) {
+                synchronized (this) {
+                    foundCopiers = foundCopiers.put(type, copier);
+                }
+            }
+        }
+        return copier == NO_COPIER? null : copier;
+    }
+
+    private static boolean isCacheable(Class type) {
+        ClassLoader loader = type.getClassLoader();
+        if (loader == null) {
+            return true;
+        }
+        for (ClassLoader l = CopierRegistry.class.getClassLoader(); l != null; l = l.getParent()) {
+            if (l == loader) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Copier find(Class type) {
+        try {
+            return new CloneCopier(type.getMethod("clone", (Class[]) null));
+        } catch (Exception e) {
+            // No public clone()
+        }
+        try {
+            return new ConstructorCopier(type.getConstructor(new Class[] { type }));
+        } catch (Exception e) {
+            // No public copy constructor
+        }
+        return NO_COPIER;
+    }
+
+    private static class CloneCopier implements Copier {
+        private final Method cloneMethod;
+
+        private CloneCopier(Method cloneMethod) {
+            this.cloneMethod = cloneMethod;
+        }
+
+        public Object copy(Object source) {
+            try {
+                return cloneMethod.invoke(source, (Object[]) null);
+            } catch (Exception e) {
+                // Abandon cloning
+                return null;
+            }
+        }
+    }
+
+    private static class ConstructorCopier implements Copier {
+        private final Constructor<?> constructor;
+
+        private ConstructorCopier(Constructor<?> constructor) {
+            this.constructor = constructor;
+        }
+
+        public Object copy(Object source) {
+            try {
+                return constructor.newInstance(new Object[] { source });
+            } catch (Exception e) {
+                // Abandon copying
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.support;
+
+import java.lang.ref.WeakReference;
+import java.text.DateFormat;
+import java.text.Format;
+import java.text.NumberFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Hands out {@link Format} instances which the current thread can use
+ * exclusively.  {@link Format}s are not thread-safe, and creating a new one
+ * for each conversion is expensive, so each thread keeps its own instances:
+ * the default formats of each locale, and the clones of the formats which
+ * users specified.
+ * <p>
+ * A clone is looked up by the identity of the specified format, not by
+ * {@link Format#equals(Object)}, because two formats can be equal even if
+ * they parse differently; {@link SimpleDateFormat#equals(Object)} ignores
+ * {@link SimpleDateFormat#set2DigitYearStart(java.util.Date)} for example.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class FormatCache {
+    // Clear the clones when there are too many of them, which happens only
+    // when users keep modifying their formats.
+    private static final int MAX_CLONES = 16;
+
+    private static final ThreadLocal<FormatCache> localCache =
+        new ThreadLocal<FormatCache>() {
+            protected FormatCache initialValue() {
+                return new FormatCache();
+            }
+        };
+
+    /**
+     * Returns the cache of the current thread.
+     */
+    public static FormatCache getInstance() {
+        return localCache.get();
+    }
+
+    private final Map<Locale, DateFormat> dateFormats = new HashMap<Locale, DateFormat>();
+    private final Map<Locale, NumberFormat> numberFormats = new HashMap<Locale, NumberFormat>();
+    private final List<Clone> clones = new ArrayList<Clone>();
+
+    private FormatCache() {
+    }
+
+    /**
+     * Returns the default date-time format of the specified locale in the
+     * current default time zone.
+     */
+    public DateFormat getDateFormat(Locale locale) {
+        DateFormat format = dateFormats.get(locale);
+        if (format == null) {
+            format = DateFormat.getDateTimeInstance(
+                    DateFormat.MEDIUM, DateFormat.MEDIUM, locale);
+            dateFormats.put(locale, format);
+        } else {
+            // The default time zone might have been changed.
+            format.setTimeZone(TimeZone.getDefault());
+        }
+        return format;
+    }
+
+    /**
+     * Returns the default number format of the specified locale.
+     */
+    public NumberFormat getNumberFormat(Locale locale) {
+        NumberFormat format = numberFormats.get(locale);
+        if (format == null) {
+            format = NumberFormat.getNumberInstance(locale);
+            numberFormats.put(locale, format);
+        }
+        return format;
+    }
+
+    /**
+     * Returns the clone of the specified format.  The same clone is returned
+     * until the specified format is modified.
+     */
+    public Format getClone(Format format) {
+        for (int i = clones.size() - 1; i >= 0; i--) {
+            Clone c = clones.get(i);
+            if (c.format.get() == format) {
+                if (!c.isUpToDate(format)) {
+                    c = new Clone(format);
+                    clones.set(i, c);
+                }
+                return c.clone;
+            }
+        }
+
+        if (clones.size() >= MAX_CLONES) {
+            for (Iterator<Clone> i = clones.iterator(); i.hasNext();) {
+                if (i.next().format.get() == null) {
+                    i.remove();
+                }
+            }
+            if (clones.size() >= MAX_CLONES) {
+                clones.clear();
+            }
+        }
+        Clone c = new Clone(format);
+        clones.add(c);
+        return c.clone;
+    }
+
+    /**
+     * The clone of a format, and the snapshot of the format which tells if
+     * the format has been modified since the clone was made.
+     */
+    private static class Clone {
+        // Weak so that the formats of discarded contexts are not retained
+        // by the threads which used them.
+        private final WeakReference<Format> format;
+        private final Format snapshot;
+        private final Format clone;
+
+        private Clone(Format format) {
+            this.format = new WeakReference<Format>(format);
+            this.snapshot = (Format) format.clone();
+            this.clone = (Format) format.clone();
+        }
+
+        private boolean isUpToDate(Format format) {
+            if (!snapshot.equals(format)) {
+                return false;
+            }
+            // Not compared by SimpleDateFormat.equals()
+            if (format instanceof SimpleDateFormat) {
+                return ((SimpleDateFormat) snapshot).get2DigitYearStart().equals(
+                        ((SimpleDateFormat) format).get2DigitYearStart());
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.support;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * A {@link ClassMap} which refers to its keys weakly, so that a class and
+ * its class loader can be garbage-collected while they are in the map.  The
+ * values must not refer to their keys, or the keys will never be collected.
+ * <p>
+ * The mapping of a collected key is removed by {@link #purge()}.  Pass the
+ * same {@link ReferenceQueue} to all updates of a map and poll it to find
+ * out when to purge.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public final class WeakClassMap<V> {
+    private static final WeakClassMap<Object> EMPTY =
+        new WeakClassMap<Object>(new WeakReference[2], new int[2], new Object[2], 0);
+
+    /**
+     * Returns an empty map.
+     */
+    public static <V> WeakClassMap<V> empty() {
+        return (WeakClassMap<V>) EMPTY;
+    }
+
+    private final WeakReference[] keys;
+    private final int[] hashes;
+    private final Object[] values;
+    private final int size;
+
+    private WeakClassMap(WeakReference[] keys, int[] hashes, Object[] values, int size) {
+        this.keys = keys;
+        this.hashes = hashes;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Returns the number of the mappings including the ones whose key has
+     * been collected but not purged yet.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(Class key) {
+        return keys[indexOf(key, hash(key))] != null;
+    }
+
+    public V get(Class key) {
+        return (V) values[indexOf(key, hash(key))];
+    }
+
+    /**
+     * Returns a copy of this map with the specified mapping added.
+     *
+     * @param queue the queue the reference to a new key is registered with
+     */
+    public WeakClassMap<V> put(Class key, V value, ReferenceQueue<Class> queue) {
+        if (key == null)
+            throw new NullPointerException("key");
+
+        int hash = hash(key);
+        int index = indexOf(key, hash);
+        WeakReference ref = keys[index];
+        if (ref == null) {
+            ref = new WeakReference<Class>(key, queue);
+        }
+
+        WeakClassMap<V> ret = newInstance(ref == keys[index]? size : size + 1);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null && i != index) {
+                ret.insert(keys[i], hashes[i], values[i]);
+            }
+        }
+        ret.insert(ref, hash, value);
+        return ret;
+    }
+
+    /**
+     * Returns a copy of this map without the mapping of the specified key.
+     */
+    public WeakClassMap<V> remove(Class key) {
+        int index = indexOf(key, hash(key));
+        if (keys[index] == null)
+            return this;
+        if (size == 1)
+            return empty();
+
+        WeakClassMap<V> ret = newInstance(size - 1);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null && i != index) {
+                ret.insert(keys[i], hashes[i], values[i]);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns a copy of this map without the mappings whose key has been
+     * collected, or this map if there's no such mapping.
+     */
+    public WeakClassMap<V> purge() {
+        int newSize = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null && keys[i].get() != null) {
+                newSize ++;
+            }
+        }
+        if (newSize == size)
+            return this;
+        if (newSize == 0)
+            return empty();
+
+        WeakClassMap<V> ret = newInstance(newSize);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null && keys[i].get() != null) {
+                ret.insert(keys[i], hashes[i], values[i]);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns a newly-created array of all keys in this map which have not
+     * been collected.
+     */
+    public Class[] keys() {
+        Class[] ret = new Class[size];
+        int j = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                Class key = (Class) keys[i].get();
+                if (key != null) {
+                    ret[j++] = key;
+                }
+            }
+        }
+        if (j < ret.length) {
+            Class[] trimmed = new Class[j];
+            System.arraycopy(ret, 0, trimmed, 0, j);
+            ret = trimmed;
+        }
+        return ret;
+    }
+
+    private int indexOf(Class key, int hash) {
+        WeakReference[] keys = this.keys;
+        int mask = keys.length - 1;
+        int i = hash & mask;
+        for (;;) {
+            WeakReference k = keys[i];
+            if (k == null || hashes[i] == hash && k.get() == key)
+                return i;
+            i = (i + 1) & mask;
+        }
+    }
+
+    private void insert(WeakReference key, int hash, Object value) {
+        int mask = keys.length - 1;
+        int i = hash & mask;
+        while (keys[i] != null) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        hashes[i] = hash;
+        values[i] = value;
+    }
+
+    private static <V> WeakClassMap<V> newInstance(int size) {
+        // Keep the load factor under 0.5 so that probing stays short.
+        int capacity = 2;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        return new WeakClassMap<V>(
+                new WeakReference[capacity], new int[capacity],
+                new Object[capacity], size);
+    }
+
+    private static int hash(Class key) {
+        int h = System.identityHashCode(key);
+        return h ^ (h >>> 16);
+    }
+}
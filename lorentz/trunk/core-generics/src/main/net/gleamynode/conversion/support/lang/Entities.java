@@ -15,6 +15,9 @@
  */
 package net.gleamynode.conversion.support.lang;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeMap;
@@ -463,6 +466,109 @@ class Entities {
         }
     }
 
+    /**
+     * An {@link EntityMap} which looks up the name of a character from an
+     * array indexed by the character, and the value of a name from an open
+     * addressing hash table which can be probed with a part of a string.
+     */
+    static class IndexedEntityMap implements EntityMap {
+        private static final String[] EMPTY_NAMES = new String[0];
+
+        // The names indexed by their values up to 0xFFFF
+        private String[] names = EMPTY_NAMES;
+        // The names of the values which are not characters
+        private IntHashMap otherNames;
+        // The hash table of the names; its size is a power of two.
+        private String[] keys = new String[16];
+        private int[] keyValues = new int[16];
+        private int size;
+
+        public void add(String name, int value) {
+            if (value >= 0 && value <= 0xFFFF) {
+                if (value >= names.length) {
+                    String[] newNames = new String[Math.min(0x10000, Math.max(value + 1, names.length * 2))];
+                    System.arraycopy(names, 0, newNames, 0, names.length);
+                    names = newNames;
+                }
+                names[value] = name;
+            } else {
+                if (otherNames == null) {
+                    otherNames = new IntHashMap();
+                }
+                otherNames.put(value, name);
+            }
+
+            int i = indexOf(keys, name, 0, name.length());
+            if (keys[i] == null) {
+                if ((size + 1) * 2 > keys.length) {
+                    rehash();
+                    i = indexOf(keys, name, 0, name.length());
+                }
+                keys[i] = name;
+                size++;
+            }
+            keyValues[i] = value;
+        }
+
+        private void rehash() {
+            String[] oldKeys = keys;
+            int[] oldValues = keyValues;
+            keys = new String[oldKeys.length * 2];
+            keyValues = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int j = indexOf(keys, oldKeys[i], 0, oldKeys[i].length());
+                    keys[j] = oldKeys[i];
+                    keyValues[j] = oldValues[i];
+                }
+            }
+        }
+
+        public String name(int value) {
+            if (value >= 0 && value < names.length) {
+                return names[value];
+            }
+            return otherNames == null? null : (String) otherNames.get(value);
+        }
+
+        public int value(String name) {
+            return value(name, 0, name.length());
+        }
+
+        /**
+         * Returns the value of the name between <code>begin</code> and
+         * <code>end</code> of the specified string without creating a
+         * substring, or <code>-1</code> if there's no such name.
+         */
+        public int value(String str, int begin, int end) {
+            int i = indexOf(keys, str, begin, end);
+            return keys[i] == null? -1 : keyValues[i];
+        }
+
+        /**
+         * Returns the index of the slot which has the specified name, or
+         * the empty slot to put it in.
+         */
+        private static int indexOf(String[] keys, String str, int begin, int end) {
+            // The same hash as String.hashCode()
+            int hash = 0;
+            for (int i = begin; i < end; i++) {
+                hash = 31 * hash + str.charAt(i);
+            }
+            int len = end - begin;
+            int mask = keys.length - 1;
+            int i = (hash ^ (hash >>> 16)) & mask;
+            for (;;) {
+                String key = keys[i];
+                if (key == null ||
+                        key.length() == len && key.regionMatches(0, str, begin, len)) {
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+        }
+    }
+
     static class ArrayEntityMap implements EntityMap {
         protected int growBy = 100;
         protected int size = 0;
@@ -570,8 +676,14 @@ class Entities {
         }
     }
 
+    // The size of the buffer to read a Reader with
+    private static final int BUFFER_SIZE = 4096;
+    // The maximum length of an entity reference between '&' and ';' which
+    // is recognized by unescape(Writer, Reader)
+    static final int MAX_REFERENCE_LENGTH = 32;
+
     // package scoped for testing
-    EntityMap map = new Entities.LookupEntityMap();
+    EntityMap map = new Entities.IndexedEntityMap();
 
     public void addEntities(String[][] entityArray) {
         for (int i = 0; i < entityArray.length; ++i) {
@@ -599,31 +711,111 @@ class Entities {
      * escape(&quot;\u00A1&quot;) will return &quot;&amp;foo;&quot;</p>
      *
      * @param str The <code>String</code> to escape.
-     * @return A new escaped <code>String</code>.
+     * @return A new escaped <code>String</code>, or <code>str</code> itself
+     *         if it has nothing to escape.
      */
     public String escape(String str) {
-        //todo: rewrite to use a Writer
-        StringBuffer buf = new StringBuffer(str.length() * 2);
-        int i;
-        for (i = 0; i < str.length(); ++i) {
+        int first = indexOfEscaped(str);
+        if (first < 0) {
+            return str;
+        }
+
+        CharArrayWriter writer = new CharArrayWriter(str.length() * 2);
+        writer.write(str, 0, first);
+        try {
+            escape(writer, str, first);
+        } catch (IOException e) {
+            // Never happens while writing to a CharArrayWriter
+            throw new UnhandledException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * <p>Escapes the characters in a <code>String</code> to a
+     * <code>Writer</code>.</p>
+     *
+     * @param out The <code>Writer</code> to write the result to.
+     * @param str The <code>String</code> to escape.
+     * @throws IOException if failed to write
+     * @see #escape(String)
+     */
+    public void escape(Writer out, String str) throws IOException {
+        escape(out, str, 0);
+    }
+
+    /**
+     * <p>Escapes the characters read from a <code>Reader</code> to a
+     * <code>Writer</code>, reading and writing a block at a time.</p>
+     *
+     * @param out The <code>Writer</code> to write the result to.
+     * @param in The <code>Reader</code> to read the characters to escape.
+     * @throws IOException if failed to read or write
+     * @see #escape(String)
+     */
+    public void escape(Writer out, Reader in) throws IOException {
+        char[] buf = new char[BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buf)) >= 0) {
+            escape(out, new String(buf, 0, n), 0);
+        }
+    }
+
+    /**
+     * Returns the index of the first character which has to be escaped, or
+     * <code>-1</code> if there's none.
+     */
+    private int indexOfEscaped(String str) {
+        int len = str.length();
+        for (int i = 0; i < len; i++) {
+            char ch = str.charAt(i);
+            if (ch > 0x7F || this.entityName(ch) != null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void escape(Writer out, String str, int begin) throws IOException {
+        // Write the runs of the characters which don't need to be escaped
+        // at once.
+        int run = begin;
+        int len = str.length();
+        for (int i = begin; i < len; ++i) {
             char ch = str.charAt(i);
             String entityName = this.entityName(ch);
+            if (entityName == null && ch <= 0x7F) {
+                continue;
+            }
+
+            if (i > run) {
+                out.write(str, run, i - run);
+            }
+            run = i + 1;
             if (entityName == null) {
-                if (ch > 0x7F) {
-                    int intValue = ch;
-                    buf.append("&#");
-                    buf.append(intValue);
-                    buf.append(';');
-                } else {
-                    buf.append(ch);
-                }
+                out.write("&#");
+                writeDecimal(out, ch);
+                out.write(';');
             } else {
-                buf.append('&');
-                buf.append(entityName);
-                buf.append(';');
+                out.write('&');
+                out.write(entityName);
+                out.write(';');
             }
         }
-        return buf.toString();
+        if (len > run) {
+            out.write(str, run, len - run);
+        }
+    }
+
+    private static void writeDecimal(Writer out, int value) throws IOException {
+        // A char has 5 digits at most.
+        int divisor = 10000;
+        while (divisor > 1 && value < divisor) {
+            divisor /= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.write('0' + value / divisor % 10);
+        }
     }
 
     /**
@@ -633,54 +825,185 @@ class Entities {
      * unescape(&quot;&amp;foo;&quot;) will return &quot;\u00A1&quot;</p>
      *
      * @param str The <code>String</code> to escape.
-     * @return A new escaped <code>String</code>.
+     * @return A new escaped <code>String</code>, or <code>str</code> itself
+     *         if it has no entity.
      */
     public String unescape(String str) {
-        StringBuffer buf = new StringBuffer(str.length());
+        int first = str.indexOf('&');
+        if (first < 0) {
+            return str;
+        }
+
+        CharArrayWriter writer = new CharArrayWriter(str.length());
+        writer.write(str, 0, first);
+        try {
+            unescape(writer, str, first, str.length(), Integer.MAX_VALUE);
+        } catch (IOException e) {
+            // Never happens while writing to a CharArrayWriter
+            throw new UnhandledException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * <p>Unescapes the entities in a <code>String</code> to a
+     * <code>Writer</code>.</p>
+     *
+     * @param out The <code>Writer</code> to write the result to.
+     * @param str The <code>String</code> to unescape.
+     * @throws IOException if failed to write
+     * @see #unescape(String)
+     */
+    public void unescape(Writer out, String str) throws IOException {
+        unescape(out, str, 0, str.length(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * <p>Unescapes the entities in the characters read from a
+     * <code>Reader</code> to a <code>Writer</code>, reading and writing a
+     * block at a time.</p>
+     *
+     * <p>Unlike {@link #unescape(String)}, an '<code>&amp;</code>' which is
+     * not followed by a '<code>;</code>' within 32 characters is not
+     * regarded as the beginning of an entity, so that only a bounded number
+     * of characters are held.</p>
+     *
+     * @param out The <code>Writer</code> to write the result to.
+     * @param in The <code>Reader</code> to read the characters to unescape.
+     * @throws IOException if failed to read or write
+     */
+    public void unescape(Writer out, Reader in) throws IOException {
+        char[] buf = new char[BUFFER_SIZE];
+        String pending = "";
+        int n;
+        while ((n = in.read(buf)) >= 0) {
+            String str = pending + new String(buf, 0, n);
+            // Leave the tail for the next block so that an entity which
+            // spans the blocks is recognized.
+            int end = str.length() - MAX_REFERENCE_LENGTH - 1;
+            if (end <= 0) {
+                pending = str;
+                continue;
+            }
+            int next = unescape(out, str, 0, end, MAX_REFERENCE_LENGTH);
+            pending = str.substring(next);
+        }
+        unescape(out, pending, 0, pending.length(), MAX_REFERENCE_LENGTH);
+    }
+
+    /**
+     * Unescapes the entities which begin between <code>begin</code> and
+     * <code>end</code> of the specified string.
+     *
+     * @param maxLength the maximum length of an entity reference
+     * @return the index of the first character which was not written, which
+     *         is <code>end</code> or the index after an entity which ends
+     *         after <code>end</code>
+     */
+    private int unescape(Writer out, String str, int begin, int end, int maxLength) throws IOException {
+        // Write the runs of the characters which are not entities at once.
+        int run = begin;
         int i;
-        for (i = 0; i < str.length(); ++i) {
-            char ch = str.charAt(i);
-            if (ch == '&') {
-                int semi = str.indexOf(';', i + 1);
-                if (semi == -1) {
-                    buf.append(ch);
-                    continue;
-                }
-                String entityName = str.substring(i + 1, semi);
-                int entityValue;
-                if (entityName.length() == 0) {
-                    entityValue = -1;
-                } else if (entityName.charAt(0) == '#') {
-                    if (entityName.length() == 1) {
-                        entityValue = -1;
-                    } else {
-                        char charAt1 = entityName.charAt(1);
-                        try {
-                            if (charAt1 == 'x' || charAt1=='X') {
-                                entityValue = Integer.valueOf(entityName.substring(2), 16).intValue();
-                            } else {
-                                entityValue = Integer.parseInt(entityName.substring(1));
-                            }
-                        } catch (NumberFormatException ex) {
-                            entityValue = -1;
-                        }
-                    }
-                } else {
-                    entityValue = this.entityValue(entityName);
+        for (i = begin; i < end; ++i) {
+            if (str.charAt(i) != '&') {
+                continue;
+            }
+            int semi = str.indexOf(';', i + 1);
+            if (semi == -1 || semi - i - 1 > maxLength) {
+                continue;
+            }
+            int entityValue = this.entityValue(str, i + 1, semi);
+            if (entityValue != -1) {
+                if (i > run) {
+                    out.write(str, run, i - run);
                 }
-                if (entityValue == -1) {
-                    buf.append('&');
-                    buf.append(entityName);
-                    buf.append(';');
+                out.write((char) entityValue);
+                run = semi + 1;
+            }
+            // An unknown entity is written as it is.
+            i = semi;
+        }
+        if (i > run) {
+            out.write(str, run, i - run);
+        }
+        return i;
+    }
+
+    /**
+     * An unsynchronized {@link Writer} which builds a string, unlike
+     * {@link java.io.StringWriter} and {@link java.io.CharArrayWriter}.
+     */
+    private static final class CharArrayWriter extends Writer {
+        private char[] buf;
+        private int count;
+
+        CharArrayWriter(int capacity) {
+            buf = new char[Math.max(16, capacity)];
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > buf.length) {
+                char[] newBuf = new char[Math.max(capacity, buf.length * 2)];
+                System.arraycopy(buf, 0, newBuf, 0, count);
+                buf = newBuf;
+            }
+        }
+
+        public void write(int c) {
+            ensureCapacity(count + 1);
+            buf[count++] = (char) c;
+        }
+
+        public void write(char[] cbuf, int off, int len) {
+            ensureCapacity(count + len);
+            System.arraycopy(cbuf, off, buf, count, len);
+            count += len;
+        }
+
+        public void write(String str) {
+            write(str, 0, str.length());
+        }
+
+        public void write(String str, int off, int len) {
+            ensureCapacity(count + len);
+            str.getChars(off, off + len, buf, count);
+            count += len;
+        }
+
+        public void flush() {
+        }
+
+        public void close() {
+        }
+
+        public String toString() {
+            return new String(buf, 0, count);
+        }
+    }
+
+    private int entityValue(String str, int begin, int end) {
+        if (begin == end) {
+            return -1;
+        }
+        if (str.charAt(begin) == '#') {
+            if (end - begin == 1) {
+                return -1;
+            }
+            char charAt1 = str.charAt(begin + 1);
+            try {
+                if (charAt1 == 'x' || charAt1=='X') {
+                    return Integer.valueOf(str.substring(begin + 2, end), 16).intValue();
                 } else {
-                    buf.append((char) (entityValue));
+                    return Integer.parseInt(str.substring(begin + 1, end));
                 }
-                i = semi;
-            } else {
-                buf.append(ch);
+            } catch (NumberFormatException ex) {
+                return -1;
             }
         }
-        return buf.toString();
+        if (map instanceof IndexedEntityMap) {
+            return ((IndexedEntityMap) map).value(str, begin, end);
+        }
+        return this.entityValue(str.substring(begin, end));
     }
 
 }
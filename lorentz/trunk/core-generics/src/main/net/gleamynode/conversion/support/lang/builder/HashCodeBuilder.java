@@ -15,9 +15,7 @@
  */
 package net.gleamynode.conversion.support.lang.builder;
 
-import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
 
 /**
  * <p>Assists in implementing {@link Object#hashCode()} methods.</p>
@@ -61,7 +59,8 @@ import java.lang.reflect.Modifier;
  * <code>reflectionHashCode</code>, uses <code>AccessibleObject.setAccessible</code> to
  * change the visibility of the fields. This will fail under a security manager,
  * unless the appropriate permissions are set up correctly. It is also slower
- * than testing explicitly.</p>
+ * than testing explicitly, although the fields of a class are looked up and
+ * made accessible only once if there's no security manager.</p>
  *
  * <p>A typical invocation for this method would look like:</p>
  * <pre>
@@ -298,20 +297,15 @@ public class HashCodeBuilder {
      * @param useTransients  whether to use transient fields
      */
     private static void reflectionAppend(Object object, Class clazz, HashCodeBuilder builder, boolean useTransients) {
-        Field[] fields = clazz.getDeclaredFields();
-        AccessibleObject.setAccessible(fields, true);
+        Field[] fields = ReflectionFields.getInstanceFields(clazz, useTransients);
         for (int i = 0; i < fields.length; i++) {
             Field f = fields[i];
-            if ((f.getName().indexOf('$') == -1)
-                && (useTransients || !Modifier.isTransient(f.getModifiers()))
-                && (!Modifier.isStatic(f.getModifiers()))) {
-                try {
-                    builder.append(f.get(object));
-                } catch (IllegalAccessException e) {
-                    //this can't happen. Would get a Security exception instead
-                    //throw a runtime exception in case the impossible happens.
-                    throw new InternalError("Unexpected IllegalAccessException");
-                }
+            try {
+                builder.append(f.get(object));
+            } catch (IllegalAccessException e) {
+                //this can't happen. Would get a Security exception instead
+                //throw a runtime exception in case the impossible happens.
+                throw new InternalError("Unexpected IllegalAccessException");
             }
         }
     }
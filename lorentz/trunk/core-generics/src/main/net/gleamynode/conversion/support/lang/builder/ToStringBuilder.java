@@ -1031,12 +1031,32 @@ public class ToStringBuilder {
      * @return the String <code>toString</code>
      */
     public String toString() {
+        return this.toStringBuffer().toString();
+    }
+
+    /**
+     * <p>Completes the <code>toString</code> in the <code>StringBuffer</code>
+     * being populated and returns the buffer instead of a copy of its
+     * content.</p>
+     * 
+     * <p>Use this method instead of {@link #toString()} when the buffer
+     * passed to the constructor is written elsewhere, such as a log message
+     * being built, to avoid copying the buffer into a <code>String</code>.
+     * This method appends the end of data indicator, and can only be called
+     * once.</p>
+     * 
+     * <p>If the object is <code>null</code>, the style's
+     * <code>nullText</code> is appended.</p>
+     * 
+     * @return the <code>StringBuffer</code> being populated
+     */
+    public StringBuffer toStringBuffer() {
         if (this.getObject() == null) {
             this.getStringBuffer().append(this.getStyle().getNullText());
         } else {
             style.appendEnd(this.getStringBuffer(), this.getObject());
         }
-        return this.getStringBuffer().toString();
+        return this.getStringBuffer();
     }
 
 }
@@ -15,6 +15,8 @@
  */
 package net.gleamynode.conversion.support.lang.time;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.text.DateFormat;
 import java.text.DateFormatSymbols;
 import java.text.FieldPosition;
@@ -26,6 +28,7 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -42,8 +45,13 @@ import java.util.TimeZone;
  * nor will it be as Sun have closed the bug/RFE.
  * </p>
  *
- * <p>Only formatting is supported, but all patterns are compatible with
- * SimpleDateFormat (except time zones - see below).</p>
+ * <p>All patterns are compatible with SimpleDateFormat (except time
+ * zones - see below).  Parsing is performed by {@link FastDateParser},
+ * which is also thread-safe.</p>
+ *
+ * <p>The text of the most recently formatted second is cached, so
+ * formatting the current time into a <code>char</code> array or a
+ * <code>Writer</code> creates no object most of the time.</p>
  *
  * <p>Java 1.4 introduced a new pattern letter, <code>'Z'</code>, to represent
  * time zones in RFC822 format (eg. <code>+0800</code> or <code>-1100</code>).
@@ -96,13 +104,18 @@ public class FastDateFormat extends Format {
     // package scoped as used by inner class
     static final double LOG_10 = Math.log(10);
 
-    private static String cDefaultPattern;
+    /**
+     * The maximum number of entries in each cache.
+     */
+    private static final int MAX_CACHE_SIZE = 256;
+
+    private static volatile String cDefaultPattern;
 
-    private static Map cInstanceCache = new HashMap(7);
-    private static Map cDateInstanceCache = new HashMap(7);
-    private static Map cTimeInstanceCache = new HashMap(7);
-    private static Map cDateTimeInstanceCache = new HashMap(7);
-    private static Map cTimeZoneDisplayCache = new HashMap(7);
+    private static final Cache cInstanceCache = new Cache(MAX_CACHE_SIZE);
+    private static final Cache cDateInstanceCache = new Cache(MAX_CACHE_SIZE);
+    private static final Cache cTimeInstanceCache = new Cache(MAX_CACHE_SIZE);
+    private static final Cache cDateTimeInstanceCache = new Cache(MAX_CACHE_SIZE);
+    private static final Cache cTimeZoneDisplayCache = new Cache(MAX_CACHE_SIZE);
 
     /**
      * The pattern.
@@ -132,6 +145,20 @@ public class FastDateFormat extends Format {
      * The estimated maximum length.
      */
     private int mMaxLengthEstimate;
+    /**
+     * The indices of the millisecond rules, or <code>null</code> if the
+     * text of a second can't be cached because one of them is not
+     * fixed-width.
+     */
+    private int[] mMillisecondRules;
+    /**
+     * The text of the most recently formatted second.
+     */
+    private transient volatile Second mSecond;
+    /**
+     * The parser of this pattern, created on demand.
+     */
+    private transient volatile FastDateParser mParser;
 
     //-----------------------------------------------------------------------
     /**
@@ -199,17 +226,47 @@ public class FastDateFormat extends Format {
      * @throws IllegalArgumentException if pattern is invalid
      *  or <code>null</code>
      */
-    public static synchronized FastDateFormat getInstance(String pattern, TimeZone timeZone, Locale locale) {
+    public static FastDateFormat getInstance(String pattern, TimeZone timeZone, Locale locale) {
         FastDateFormat emptyFormat = new FastDateFormat(pattern, timeZone, locale);
         FastDateFormat format = (FastDateFormat) cInstanceCache.get(emptyFormat);
         if (format == null) {
             format = emptyFormat;
             format.init();  // convert shell format into usable one
-            cInstanceCache.put(format, format);  // this is OK!
+            format = (FastDateFormat) cInstanceCache.putIfAbsent(format, format);  // this is OK!
         }
         return format;
     }
 
+    /**
+     * <p>Gets the number of the formatters cached by the
+     * <code>getInstance</code> methods.</p>
+     * 
+     * @return the number of the cached formatters
+     */
+    public static int getCacheSize() {
+        return cInstanceCache.size();
+    }
+
+    /**
+     * <p>Gets the number of the formatters which the <code>getInstance</code>
+     * methods could not find in the cache and had to create.</p>
+     * 
+     * @return the number of the cache misses
+     */
+    public static long getCacheMissCount() {
+        return cInstanceCache.getMissCount();
+    }
+
+    /**
+     * <p>Gets the number of the formatters evicted from the cache of the
+     * <code>getInstance</code> methods to keep its size under the limit.</p>
+     * 
+     * @return the number of the evicted formatters
+     */
+    public static long getCacheEvictionCount() {
+        return cInstanceCache.getEvictionCount();
+    }
+
     //-----------------------------------------------------------------------
     /**
      * <p>Gets a date formatter instance using the specified style in the
@@ -267,7 +324,7 @@ public class FastDateFormat extends Format {
      * @throws IllegalArgumentException if the Locale has no date
      *  pattern defined
      */
-    public static synchronized FastDateFormat getDateInstance(int style, TimeZone timeZone, Locale locale) {
+    public static FastDateFormat getDateInstance(int style, TimeZone timeZone, Locale locale) {
         Object key = new Integer(style);
         if (timeZone != null) {
             key = new Pair(key, timeZone);
@@ -286,7 +343,7 @@ public class FastDateFormat extends Format {
                 SimpleDateFormat formatter = (SimpleDateFormat) DateFormat.getDateInstance(style, locale);
                 String pattern = formatter.toPattern();
                 format = getInstance(pattern, timeZone, locale);
-                cDateInstanceCache.put(key, format);
+                format = (FastDateFormat) cDateInstanceCache.putIfAbsent(key, format);
                 
             } catch (ClassCastException ex) {
                 throw new IllegalArgumentException("No date pattern for locale: " + locale);
@@ -353,7 +410,7 @@ public class FastDateFormat extends Format {
      * @throws IllegalArgumentException if the Locale has no time
      *  pattern defined
      */
-    public static synchronized FastDateFormat getTimeInstance(int style, TimeZone timeZone, Locale locale) {
+    public static FastDateFormat getTimeInstance(int style, TimeZone timeZone, Locale locale) {
         Object key = new Integer(style);
         if (timeZone != null) {
             key = new Pair(key, timeZone);
@@ -372,7 +429,7 @@ public class FastDateFormat extends Format {
                 SimpleDateFormat formatter = (SimpleDateFormat) DateFormat.getTimeInstance(style, locale);
                 String pattern = formatter.toPattern();
                 format = getInstance(pattern, timeZone, locale);
-                cTimeInstanceCache.put(key, format);
+                format = (FastDateFormat) cTimeInstanceCache.putIfAbsent(key, format);
             
             } catch (ClassCastException ex) {
                 throw new IllegalArgumentException("No date pattern for locale: " + locale);
@@ -445,7 +502,7 @@ public class FastDateFormat extends Format {
      * @throws IllegalArgumentException if the Locale has no date/time
      *  pattern defined
      */
-    public static synchronized FastDateFormat getDateTimeInstance(int dateStyle, int timeStyle, TimeZone timeZone,
+    public static FastDateFormat getDateTimeInstance(int dateStyle, int timeStyle, TimeZone timeZone,
             Locale locale) {
 
         Object key = new Pair(new Integer(dateStyle), new Integer(timeStyle));
@@ -467,7 +524,7 @@ public class FastDateFormat extends Format {
                         locale);
                 String pattern = formatter.toPattern();
                 format = getInstance(pattern, timeZone, locale);
-                cDateTimeInstanceCache.put(key, format);
+                format = (FastDateFormat) cDateTimeInstanceCache.putIfAbsent(key, format);
 
             } catch (ClassCastException ex) {
                 throw new IllegalArgumentException("No date time pattern for locale: " + locale);
@@ -487,13 +544,13 @@ public class FastDateFormat extends Format {
      * @param locale  the locale to use
      * @return the textual name of the time zone
      */
-    static synchronized String getTimeZoneDisplay(TimeZone tz, boolean daylight, int style, Locale locale) {
+    static String getTimeZoneDisplay(TimeZone tz, boolean daylight, int style, Locale locale) {
         Object key = new TimeZoneDisplayKey(tz, daylight, style, locale);
         String value = (String) cTimeZoneDisplayCache.get(key);
         if (value == null) {
             // This is a very slow call, so cache the results.
             value = tz.getDisplayName(daylight, style, locale);
-            cTimeZoneDisplayCache.put(key, value);
+            value = (String) cTimeZoneDisplayCache.putIfAbsent(key, value);
         }
         return value;
     }
@@ -503,11 +560,14 @@ public class FastDateFormat extends Format {
      * 
      * @return the default pattern
      */
-    private static synchronized String getDefaultPattern() {
-        if (cDefaultPattern == null) {
-            cDefaultPattern = new SimpleDateFormat().toPattern();
+    private static String getDefaultPattern() {
+        String pattern = cDefaultPattern;
+        if (pattern == null) {
+            // Racy but harmless; every thread gets the same pattern.
+            pattern = new SimpleDateFormat().toPattern();
+            cDefaultPattern = pattern;
         }
-        return cDefaultPattern;
+        return pattern;
     }
 
     // Constructor
@@ -558,6 +618,45 @@ public class FastDateFormat extends Format {
         }
 
         mMaxLengthEstimate = len;
+
+        // The text of a second can be cached if all millisecond fields are
+        // fixed-width, because only their digits change within a second.
+        int count = 0;
+        for (int i = 0; i < mRules.length; i++) {
+            if (isMillisecondRule(mRules[i])) {
+                if (!(mRules[i] instanceof PaddedNumberField)) {
+                    return;
+                }
+                count++;
+            }
+        }
+        mMillisecondRules = new int[count];
+        count = 0;
+        for (int i = 0; i < mRules.length; i++) {
+            if (isMillisecondRule(mRules[i])) {
+                mMillisecondRules[count++] = i;
+            }
+        }
+    }
+
+    /**
+     * <p>Returns <code>true</code> if the specified rule outputs the
+     * millisecond field.</p>
+     * 
+     * @param rule  the rule to check
+     * @return <code>true</code> if a millisecond rule
+     */
+    private static boolean isMillisecondRule(Rule rule) {
+        if (rule instanceof PaddedNumberField) {
+            return ((PaddedNumberField) rule).mField == Calendar.MILLISECOND;
+        }
+        if (rule instanceof TwoDigitNumberField) {
+            return ((TwoDigitNumberField) rule).mField == Calendar.MILLISECOND;
+        }
+        if (rule instanceof UnpaddedNumberField) {
+            return ((UnpaddedNumberField) rule).mField == Calendar.MILLISECOND;
+        }
+        return false;
     }
 
     // Parse the pattern
@@ -800,7 +899,13 @@ public class FastDateFormat extends Format {
      * @since 2.1
      */
     public String format(long millis) {
-        return format(new Date(millis));
+        if (mMillisecondRules == null) {
+            return format(millis, new StringBuffer(mMaxLengthEstimate)).toString();
+        }
+        Second second = getSecond(millis);
+        char[] text = new char[second.mText.length];
+        format(millis, text, 0);
+        return new String(text);
     }
 
     /**
@@ -810,9 +915,7 @@ public class FastDateFormat extends Format {
      * @return the formatted string
      */
     public String format(Date date) {
-        Calendar c = new GregorianCalendar(mTimeZone);
-        c.setTime(date);
-        return applyRules(c, new StringBuffer(mMaxLengthEstimate)).toString();
+        return format(date.getTime());
     }
 
     /**
@@ -835,7 +938,90 @@ public class FastDateFormat extends Format {
      * @since 2.1
      */
     public StringBuffer format(long millis, StringBuffer buf) {
-        return format(new Date(millis), buf);
+        if (mMillisecondRules == null) {
+            return applyRules(newCalendar(millis), buf);
+        }
+
+        Second second = getSecond(millis);
+        int start = buf.length();
+        int millisecond = (int) (millis - second.mTime);
+        buf.append(second.mText);
+        for (int i = 0; i < second.mEnds.length; i++) {
+            // The text has zeros where the milliseconds go.
+            int end = start + second.mEnds[i];
+            buf.setCharAt(end - 1, (char) (millisecond % 10 + '0'));
+            buf.setCharAt(end - 2, (char) (millisecond / 10 % 10 + '0'));
+            buf.setCharAt(end - 3, (char) (millisecond / 100 + '0'));
+        }
+        return buf;
+    }
+
+    /**
+     * <p>Formats a millisecond <code>long</code> value into the
+     * supplied <code>char</code> array.</p>
+     * 
+     * <p>No object is created unless the value is in a different second
+     * from the previously formatted one, or the pattern has a millisecond
+     * field which is not fixed-width (<code>S</code> or <code>SS</code>).</p>
+     * 
+     * @param millis  the millisecond value to format
+     * @param buf  the array to format into
+     * @param offset  the index of <code>buf</code> to start at
+     * @return the index of <code>buf</code> after the last formatted
+     *  character
+     * @throws IndexOutOfBoundsException if <code>buf</code> is too small
+     */
+    public int format(long millis, char[] buf, int offset) {
+        if (mMillisecondRules == null) {
+            StringBuffer text = format(millis, new StringBuffer(mMaxLengthEstimate));
+            int length = text.length();
+            text.getChars(0, length, buf, offset);
+            return offset + length;
+        }
+
+        Second second = getSecond(millis);
+        int millisecond = (int) (millis - second.mTime);
+        System.arraycopy(second.mText, 0, buf, offset, second.mText.length);
+        for (int i = 0; i < second.mEnds.length; i++) {
+            // The text has zeros where the milliseconds go.
+            int end = offset + second.mEnds[i];
+            buf[end - 1] = (char) (millisecond % 10 + '0');
+            buf[end - 2] = (char) (millisecond / 10 % 10 + '0');
+            buf[end - 3] = (char) (millisecond / 100 + '0');
+        }
+        return offset + second.mText.length;
+    }
+
+    /**
+     * <p>Formats a millisecond <code>long</code> value into the
+     * supplied <code>Writer</code>.</p>
+     * 
+     * <p>No object is created unless the value is in a different second
+     * from the previously formatted one, or the pattern has a millisecond
+     * field which is not fixed-width (<code>S</code> or <code>SS</code>).</p>
+     * 
+     * @param millis  the millisecond value to format
+     * @param out  the writer to format into
+     * @throws IOException if <code>out</code> throws it
+     */
+    public void format(long millis, Writer out) throws IOException {
+        if (mMillisecondRules == null) {
+            out.write(format(millis));
+            return;
+        }
+
+        Second second = getSecond(millis);
+        int millisecond = (int) (millis - second.mTime);
+        int start = 0;
+        for (int i = 0; i < second.mEnds.length; i++) {
+            int end = second.mEnds[i];
+            out.write(second.mText, start, end - 3 - start);
+            out.write(millisecond / 100 + '0');
+            out.write(millisecond / 10 % 10 + '0');
+            out.write(millisecond % 10 + '0');
+            start = end;
+        }
+        out.write(second.mText, start, second.mText.length - start);
     }
 
     /**
@@ -847,9 +1033,7 @@ public class FastDateFormat extends Format {
      * @return the specified string buffer
      */
     public StringBuffer format(Date date, StringBuffer buf) {
-        Calendar c = new GregorianCalendar(mTimeZone);
-        c.setTime(date);
-        return applyRules(c, buf);
+        return format(date.getTime(), buf);
     }
 
     /**
@@ -868,6 +1052,54 @@ public class FastDateFormat extends Format {
         return applyRules(calendar, buf);
     }
 
+    /**
+     * <p>Creates a calendar of the time zone of this formatter, which is
+     * set to the specified millisecond value.</p>
+     * 
+     * @param millis  the millisecond value
+     * @return a new calendar
+     */
+    private Calendar newCalendar(long millis) {
+        Calendar c = new GregorianCalendar(mTimeZone);
+        c.setTime(new Date(millis));
+        return c;
+    }
+
+    /**
+     * <p>Gets the text of the second which the specified millisecond value
+     * is in, formatting it if it is not the most recently formatted one.</p>
+     * 
+     * @param millis  the millisecond value
+     * @return the text of the second
+     */
+    private Second getSecond(long millis) {
+        long time = millis - millis % 1000;
+        if (time > millis) {
+            time -= 1000;
+        }
+
+        Second second = mSecond;
+        if (second != null && second.mTime == time) {
+            return second;
+        }
+
+        Calendar calendar = newCalendar(time);
+        StringBuffer buf = new StringBuffer(mMaxLengthEstimate);
+        int[] ends = new int[mMillisecondRules.length];
+        for (int i = 0, j = 0; i < mRules.length; i++) {
+            mRules[i].appendTo(buf, calendar);
+            if (j < ends.length && mMillisecondRules[j] == i) {
+                ends[j++] = buf.length();
+            }
+        }
+        char[] text = new char[buf.length()];
+        buf.getChars(0, text.length, text, 0);
+
+        second = new Second(time, text, ends);
+        mSecond = second;
+        return second;
+    }
+
     /**
      * <p>Performs the formatting by applying the rules to the
      * specified calendar.</p>
@@ -888,16 +1120,31 @@ public class FastDateFormat extends Format {
     // Parsing
     //-----------------------------------------------------------------------
     /**
-     * <p>Parsing not supported.</p>
+     * <p>Parses a <code>Date</code> using the parser of this pattern.</p>
      * 
      * @param source  the string to parse
      * @param pos  the parsing position
-     * @return <code>null</code> as not supported
+     * @return the parsed <code>Date</code>, or <code>null</code> on error
+     * @see #getParser()
      */
     public Object parseObject(String source, ParsePosition pos) {
-        pos.setIndex(0);
-        pos.setErrorIndex(0);
-        return null;
+        return getParser().parse(source, pos);
+    }
+
+    /**
+     * <p>Gets the parser of the pattern, time zone and locale of this
+     * formatter.</p>
+     * 
+     * @return the parser, which is thread-safe
+     */
+    public FastDateParser getParser() {
+        FastDateParser parser = mParser;
+        if (parser == null) {
+            // Racy but harmless; the parsers are equivalent.
+            parser = new FastDateParser(this);
+            mParser = parser;
+        }
+        return parser;
     }
     
     // Accessors
@@ -1419,6 +1666,31 @@ public class FastDateFormat extends Format {
         }            
     }
 
+    // ----------------------------------------------------------------------
+    /**
+     * <p>Inner class that holds the text of a second.</p>
+     */
+    private static class Second {
+        /**
+         * The first millisecond of the second.
+         */
+        private final long mTime;
+        /**
+         * The text, in which the millisecond fields are zeros.
+         */
+        private final char[] mText;
+        /**
+         * The indices of the text after each millisecond field.
+         */
+        private final int[] mEnds;
+
+        Second(long time, char[] text, int[] ends) {
+            mTime = time;
+            mText = text;
+            mEnds = ends;
+        }
+    }
+
     // ----------------------------------------------------------------------
     /**
      * <p>Inner class that acts as a compound key for time zone names.</p>
@@ -1457,6 +1729,109 @@ public class FastDateFormat extends Format {
         }
     }
 
+    // ----------------------------------------------------------------------
+    /**
+     * <p>Inner class that caches up to the specified number of values.</p>
+     *
+     * <p>Looking up a value never locks, because the entries are kept in a
+     * map which is never modified once published; adding an entry copies
+     * the map under the lock.  When the cache is full, about one eighth of
+     * the entries are evicted at once, the ones which have not been looked
+     * up since the last eviction first.</p>
+     */
+    private static class Cache {
+        private final int mMaxSize;
+        // Map<key, Entry>
+        private volatile Map mEntries = new HashMap();
+        private long mMissCount;
+        private long mEvictionCount;
+
+        Cache(int maxSize) {
+            mMaxSize = maxSize;
+        }
+
+        Object get(Object key) {
+            Entry e = (Entry) mEntries.get(key);
+            if (e == null) {
+                return null;
+            }
+            // Don't write if already marked, so that the threads looking up
+            // the same entry don't contend for its cache line.
+            if (!e.mUsed) {
+                e.mUsed = true;
+            }
+            return e.mValue;
+        }
+
+        /**
+         * Adds the specified value unless another thread has added one
+         * for the key meanwhile, and returns the value in the cache.
+         */
+        synchronized Object putIfAbsent(Object key, Object value) {
+            mMissCount++;
+            Entry e = (Entry) mEntries.get(key);
+            if (e != null) {
+                return e.mValue;
+            }
+
+            Map entries = new HashMap(mEntries);
+            if (entries.size() >= mMaxSize) {
+                evict(entries);
+            }
+            entries.put(key, new Entry(value));
+            mEntries = entries;
+            return value;
+        }
+
+        private void evict(Map entries) {
+            int goal = Math.max(1, mMaxSize / 8);
+            int evicted = 0;
+
+            // The first round clears the marks, so the second round never
+            // fails to meet the goal.
+            for (int round = 0; round < 2 && evicted < goal; round++) {
+                for (Iterator it = entries.values().iterator(); it.hasNext() && evicted < goal;) {
+                    Entry e = (Entry) it.next();
+                    if (e.mUsed) {
+                        e.mUsed = false;
+                    } else {
+                        it.remove();
+                        evicted++;
+                    }
+                }
+            }
+
+            mEvictionCount += evicted;
+        }
+
+        int size() {
+            return mEntries.size();
+        }
+
+        synchronized long getMissCount() {
+            return mMissCount;
+        }
+
+        synchronized long getEvictionCount() {
+            return mEvictionCount;
+        }
+    }
+
+    /**
+     * <p>An entry of {@link Cache}.</p>
+     */
+    private static class Entry {
+        private final Object mValue;
+        // Set when this entry is looked up, and cleared by Cache.evict().
+        // It is not volatile because a lost update only affects what is
+        // evicted.
+        private boolean mUsed;
+
+        Entry(Object value) {
+            mValue = value;
+        }
+    }
+
     // ----------------------------------------------------------------------
     /**
      * <p>Helper class for creating compound objects.</p>
@@ -0,0 +1,882 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.support.lang.time;
+
+import java.text.DateFormatSymbols;
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.SimpleTimeZone;
+import java.util.TimeZone;
+
+/**
+ * <p>FastDateParser is a thread-safe counterpart of the parsing methods of
+ * {@link java.text.SimpleDateFormat}, which parses the dates that
+ * {@link FastDateFormat} formats.  Get one with
+ * {@link FastDateFormat#getParser()}.</p>
+ *
+ * <p>The pattern is compiled into a list of strategies, one for each
+ * pattern component, when the parser is created.  Parsing keeps its state
+ * in a small array instead of a <code>Calendar</code>, so a parser can be
+ * shared by all threads.  A <code>Calendar</code> is used only for a date
+ * before the Gregorian calendar, or one specified by the day of the year
+ * or by the week.</p>
+ *
+ * <p>Parsing is lenient as <code>SimpleDateFormat</code> is by default;
+ * a value out of range rolls over into the next field.  As with
+ * <code>SimpleDateFormat</code>, spaces and tabs before a field are
+ * skipped, a number may have a minus sign, and a local time skipped by a
+ * daylight saving time transition is moved forward by the length of the
+ * gap.  These are the differences:</p>
+ * <ul>
+ * <li>Adjacent numeric fields such as <code>yyyyMMdd</code> are read with
+ *     the widths of their pattern letters, except the last one.</li>
+ * <li>A two-digit year is placed in the century which starts 80 years
+ *     before the parser was created.</li>
+ * <li>The day of the week is matched but ignored if the day of the month
+ *     is known.</li>
+ * <li>A time zone name which several zones share means the time zone of
+ *     the parser if it is one of them.</li>
+ * <li>The offset of a local time is the one
+ *     {@link TimeZone#getOffset(int, int, int, int, int, int)} returns.
+ *     It may differ from the one of a <code>Calendar</code> in a time
+ *     zone whose standard offset has changed, around the change and the
+ *     daylight saving time transitions of that year.</li>
+ * </ul>
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class FastDateParser {
+
+    /**
+     * The index of the bit mask of the fields which have been parsed.
+     */
+    private static final int SET = Calendar.FIELD_COUNT;
+    /**
+     * The index of the parsed time zone name; one plus its index in
+     * {@link #mTimeZoneNames}, or 0 if none.
+     */
+    private static final int TIME_ZONE_NAME = SET + 1;
+    /**
+     * The bit which is set in the mask if a two-digit year is in the first
+     * year of the century, where the date decides the century.
+     */
+    private static final int CENTURY_START_YEAR = 1 << 31;
+    /**
+     * The fields which can't be resolved without a <code>Calendar</code>.
+     */
+    private static final int CALENDAR_FIELDS =
+        1 << Calendar.DAY_OF_YEAR | 1 << Calendar.DAY_OF_WEEK_IN_MONTH |
+        1 << Calendar.WEEK_OF_YEAR | 1 << Calendar.WEEK_OF_MONTH;
+    /**
+     * The first year of the Gregorian calendar.
+     */
+    private static final int GREGORIAN_YEAR = 1583;
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    /**
+     * The local time within which after a time zone transition a
+     * <code>Calendar</code> resolves the offset.  It is longer than any
+     * daylight saving time gap.
+     */
+    private static final long TRANSITION_WINDOW = 3 * 60 * 60 * 1000L;
+
+    private final String mPattern;
+    private final TimeZone mTimeZone;
+    private final Locale mLocale;
+    private final Strategy[] mStrategies;
+    /**
+     * The start of the century which a two-digit year is in.
+     */
+    private final long mCenturyStart;
+    private final int mCenturyStartYear;
+    /**
+     * The time zone names of the locale, longest first, or
+     * <code>null</code> if the pattern doesn't have one.  Set while the
+     * pattern is parsed.
+     */
+    private TimeZoneName[] mTimeZoneNames;
+
+    /**
+     * <p>Constructs a new parser of the pattern, time zone and locale of
+     * the specified formatter.</p>
+     *
+     * @param format  the formatter
+     * @throws IllegalArgumentException if pattern is invalid
+     */
+    FastDateParser(FastDateFormat format) {
+        mPattern = format.getPattern();
+        mTimeZone = format.getTimeZone();
+        mLocale = format.getLocale();
+        Calendar calendar = new GregorianCalendar(mTimeZone, mLocale);
+        calendar.add(Calendar.YEAR, -80);
+        mCenturyStart = calendar.getTime().getTime();
+        mCenturyStartYear = calendar.get(Calendar.YEAR);
+
+        List strategies = parsePattern(format);
+        mStrategies = (Strategy[]) strategies.toArray(new Strategy[strategies.size()]);
+    }
+
+    /**
+     * <p>Returns a list of strategies given the pattern of a formatter.</p>
+     *
+     * @param format  the formatter whose pattern is parsed
+     * @return a <code>List</code> of Strategy objects
+     * @throws IllegalArgumentException if pattern is invalid
+     */
+    private List parsePattern(FastDateFormat format) {
+        DateFormatSymbols symbols = new DateFormatSymbols(mLocale);
+        List strategies = new ArrayList();
+
+        int length = mPattern.length();
+        int[] indexRef = new int[1];
+        int[][] timeZoneNames = null;
+        // The length of the previous token if it is a number, or 0.
+        int lastNumberLen = 0;
+
+        for (int i = 0; i < length; i++) {
+            indexRef[0] = i;
+            String token = format.parseToken(mPattern, indexRef);
+            i = indexRef[0];
+
+            int tokenLen = token.length();
+            if (tokenLen == 0) {
+                break;
+            }
+
+            Strategy strategy;
+            char c = token.charAt(0);
+
+            switch (c) {
+            case 'G': // era designator (text)
+                strategy = new TextStrategy(Calendar.ERA, symbols.getEras(), null);
+                break;
+            case 'y': // year (number)
+                strategy = new NumberStrategy(Calendar.YEAR,
+                        tokenLen <= 2 ? NumberStrategy.TWO_DIGIT_YEAR : NumberStrategy.PLAIN);
+                break;
+            case 'M': // month in year (text and number)
+                if (tokenLen >= 3) {
+                    strategy = new TextStrategy(Calendar.MONTH, symbols.getMonths(), symbols.getShortMonths());
+                } else {
+                    strategy = new NumberStrategy(Calendar.MONTH, NumberStrategy.MONTH);
+                }
+                break;
+            case 'd': // day in month (number)
+                strategy = new NumberStrategy(Calendar.DAY_OF_MONTH, NumberStrategy.PLAIN);
+                break;
+            case 'h': // hour in am/pm (number, 1..12)
+                strategy = new NumberStrategy(Calendar.HOUR, NumberStrategy.TWELVE_HOUR);
+                break;
+            case 'H': // hour in day (number, 0..23)
+                strategy = new NumberStrategy(Calendar.HOUR_OF_DAY, NumberStrategy.PLAIN);
+                break;
+            case 'm': // minute in hour (number)
+                strategy = new NumberStrategy(Calendar.MINUTE, NumberStrategy.PLAIN);
+                break;
+            case 's': // second in minute (number)
+                strategy = new NumberStrategy(Calendar.SECOND, NumberStrategy.PLAIN);
+                break;
+            case 'S': // millisecond (number)
+                strategy = new NumberStrategy(Calendar.MILLISECOND, NumberStrategy.PLAIN);
+                break;
+            case 'E': // day in week (text)
+                strategy = new TextStrategy(Calendar.DAY_OF_WEEK, symbols.getWeekdays(), symbols.getShortWeekdays());
+                break;
+            case 'D': // day in year (number)
+                strategy = new NumberStrategy(Calendar.DAY_OF_YEAR, NumberStrategy.PLAIN);
+                break;
+            case 'F': // day of week in month (number)
+                strategy = new NumberStrategy(Calendar.DAY_OF_WEEK_IN_MONTH, NumberStrategy.PLAIN);
+                break;
+            case 'w': // week in year (number)
+                strategy = new NumberStrategy(Calendar.WEEK_OF_YEAR, NumberStrategy.PLAIN);
+                break;
+            case 'W': // week in month (number)
+                strategy = new NumberStrategy(Calendar.WEEK_OF_MONTH, NumberStrategy.PLAIN);
+                break;
+            case 'a': // am/pm marker (text)
+                strategy = new TextStrategy(Calendar.AM_PM, symbols.getAmPmStrings(), null);
+                break;
+            case 'k': // hour in day (1..24)
+                strategy = new NumberStrategy(Calendar.HOUR_OF_DAY, NumberStrategy.TWENTY_FOUR_HOUR);
+                break;
+            case 'K': // hour in am/pm (0..11)
+                strategy = new NumberStrategy(Calendar.HOUR, NumberStrategy.PLAIN);
+                break;
+            case 'z': // time zone (text)
+                if (timeZoneNames == null) {
+                    timeZoneNames = newTimeZoneNames(symbols);
+                }
+                strategy = new TimeZoneStrategy(timeZoneNames);
+                break;
+            case 'Z': // time zone (value)
+                strategy = new TimeZoneStrategy(null);
+                break;
+            case '\'': // literal text
+                strategy = new LiteralStrategy(token.substring(1));
+                break;
+            default:
+                throw new IllegalArgumentException("Illegal pattern component: " + token);
+            }
+
+            // Read the previous number with the width of its pattern letters
+            // if another number follows it.
+            if (lastNumberLen > 0 && strategy instanceof NumberStrategy) {
+                ((NumberStrategy) strategies.get(strategies.size() - 1)).mWidth = lastNumberLen;
+            }
+            lastNumberLen = strategy instanceof NumberStrategy ? tokenLen : 0;
+
+            strategies.add(strategy);
+        }
+
+        return strategies;
+    }
+
+    /**
+     * <p>Creates the time zone names of the locale.  The names of the time
+     * zone of this parser come first, so that they win when a name is
+     * ambiguous.</p>
+     *
+     * @param symbols  the symbols of the locale
+     * @return the indices of the time zone names, grouped by their first
+     *  characters
+     */
+    private int[][] newTimeZoneNames(DateFormatSymbols symbols) {
+        List names = new ArrayList();
+        addTimeZoneNames(names, mTimeZone, new String[] {
+                mTimeZone.getID(),
+                FastDateFormat.getTimeZoneDisplay(mTimeZone, false, TimeZone.LONG, mLocale),
+                FastDateFormat.getTimeZoneDisplay(mTimeZone, false, TimeZone.SHORT, mLocale),
+                FastDateFormat.getTimeZoneDisplay(mTimeZone, true, TimeZone.LONG, mLocale),
+                FastDateFormat.getTimeZoneDisplay(mTimeZone, true, TimeZone.SHORT, mLocale) });
+        String[][] zones = symbols.getZoneStrings();
+        for (int i = 0; i < zones.length; i++) {
+            addTimeZoneNames(names, TimeZone.getTimeZone(zones[i][0]), zones[i]);
+        }
+
+        // Longest first, so that a name is not matched partially.  The sort
+        // is stable, which keeps the names of this time zone first.
+        Collections.sort(names, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                return ((TimeZoneName) o2).mName.length() - ((TimeZoneName) o1).mName.length();
+            }
+        });
+
+        mTimeZoneNames = (TimeZoneName[]) names.toArray(new TimeZoneName[names.size()]);
+
+        int[] counts = new int[128];
+        for (int i = 0; i < mTimeZoneNames.length; i++) {
+            counts[Character.toLowerCase(mTimeZoneNames[i].mName.charAt(0)) & 127]++;
+        }
+        int[][] table = new int[counts.length][];
+        for (int i = 0; i < counts.length; i++) {
+            table[i] = new int[counts[i]];
+            counts[i] = 0;
+        }
+        for (int i = 0; i < mTimeZoneNames.length; i++) {
+            int bucket = Character.toLowerCase(mTimeZoneNames[i].mName.charAt(0)) & 127;
+            table[bucket][counts[bucket]++] = i;
+        }
+        return table;
+    }
+
+    /**
+     * <p>Adds the names of a time zone to the specified list.</p>
+     *
+     * @param names  the list to add to
+     * @param timeZone  the time zone
+     * @param strings  the ID, the long and short standard names, and the
+     *  long and short daylight saving names of the time zone
+     */
+    private static void addTimeZoneNames(List names, TimeZone timeZone, String[] strings) {
+        for (int i = 1; i < strings.length && i < 5; i++) {
+            if (strings[i] != null && strings[i].length() > 0) {
+                names.add(new TimeZoneName(strings[i], timeZone, i >= 3));
+            }
+        }
+    }
+
+    // Parse methods
+    //-----------------------------------------------------------------------
+    /**
+     * <p>Parses a <code>Date</code> from the beginning of the specified
+     * string, as {@link java.text.DateFormat#parse(String)} does.</p>
+     *
+     * @param source  the string to parse
+     * @return the parsed <code>Date</code>
+     * @throws ParseException if the beginning of the string can't be parsed
+     */
+    public Date parse(String source) throws ParseException {
+        ParsePosition pos = new ParsePosition(0);
+        Date date = parse(source, pos);
+        if (date == null) {
+            throw new ParseException("Unparseable date: \"" + source + '"', pos.getErrorIndex());
+        }
+        return date;
+    }
+
+    /**
+     * <p>Parses a <code>Date</code> from the specified position of the
+     * string.</p>
+     *
+     * @param source  the string to parse
+     * @param pos  the parsing position, which is updated to the index
+     *  after the parsed text on success, or whose error index is set to
+     *  where the error occurred on failure
+     * @return the parsed <code>Date</code>, or <code>null</code> on error
+     */
+    public Date parse(String source, ParsePosition pos) {
+        int[] fields = new int[TIME_ZONE_NAME + 1];
+        int index = pos.getIndex();
+        for (int i = 0; i < mStrategies.length; i++) {
+            int next = mStrategies[i].parse(this, source, index, fields);
+            if (next < 0) {
+                pos.setErrorIndex(~next);
+                return null;
+            }
+            index = next;
+        }
+        long millis = toMillis(fields);
+        if ((fields[SET] & CENTURY_START_YEAR) != 0 && millis < mCenturyStart) {
+            fields[Calendar.YEAR] += 100;
+            millis = toMillis(fields);
+        }
+        pos.setIndex(index);
+        return new Date(millis);
+    }
+
+    /**
+     * <p>Computes the millisecond value of the parsed fields.</p>
+     *
+     * @param fields  the parsed fields
+     * @return the millisecond value
+     */
+    private long toMillis(int[] fields) {
+        int year = isSet(fields, Calendar.YEAR) ? fields[Calendar.YEAR] : 1970;
+        if (isSet(fields, Calendar.ERA) && fields[Calendar.ERA] == GregorianCalendar.BC) {
+            year = 1 - year;
+        }
+        int month = isSet(fields, Calendar.MONTH) ? fields[Calendar.MONTH] : Calendar.JANUARY;
+        int day = isSet(fields, Calendar.DAY_OF_MONTH) ? fields[Calendar.DAY_OF_MONTH] : 1;
+        int hour;
+        if (isSet(fields, Calendar.HOUR_OF_DAY)) {
+            hour = fields[Calendar.HOUR_OF_DAY];
+        } else {
+            hour = fields[Calendar.HOUR];
+            if (isSet(fields, Calendar.AM_PM) && fields[Calendar.AM_PM] == Calendar.PM) {
+                hour += 12;
+            }
+        }
+
+        // Let a month out of range roll over into the year.
+        year += floorDiv(month, 12);
+        month = floorMod(month, 12);
+
+        long days = toDays(year, month + 1, 1) + day - 1;
+        long millis = days * DAY +
+            hour * 60 * 60 * 1000L +
+            fields[Calendar.MINUTE] * 60 * 1000L +
+            fields[Calendar.SECOND] * 1000L +
+            fields[Calendar.MILLISECOND];
+
+        // Compute the local year again; the day may have rolled over.
+        long localYear = toLocalDate(millis, null);
+        if ((fields[SET] & CALENDAR_FIELDS) != 0 || localYear < GREGORIAN_YEAR || localYear > Integer.MAX_VALUE ||
+                isSet(fields, Calendar.DAY_OF_WEEK) && !isSet(fields, Calendar.DAY_OF_MONTH)) {
+            return toMillisWithCalendar(fields);
+        }
+
+        if (isSet(fields, Calendar.ZONE_OFFSET)) {
+            return millis - fields[Calendar.ZONE_OFFSET];
+        }
+
+        TimeZone timeZone = mTimeZone;
+        TimeZoneName name = null;
+        if (fields[TIME_ZONE_NAME] != 0) {
+            name = mTimeZoneNames[fields[TIME_ZONE_NAME] - 1];
+            timeZone = name.mTimeZone;
+        }
+
+        // Pass the wall time as GregorianCalendar does.
+        int[] date = new int[4];
+        int offset = getOffset(timeZone, millis, date);
+        if (name == null && getOffset(timeZone, millis - TRANSITION_WINDOW, date) != offset) {
+            // The local time may have been skipped or repeated by a
+            // transition; let a Calendar decide the offset.
+            return toMillisWithCalendar(fields);
+        }
+        if (name != null && timeZone.useDaylightTime() &&
+                timeZone.inDaylightTime(new Date(millis - offset)) != name.mDaylight) {
+            // The name tells whether it is the daylight saving time.
+            int savings = timeZone.getDSTSavings();
+            offset += name.mDaylight ? savings : -savings;
+        }
+        return millis - offset;
+    }
+
+    /**
+     * <p>Gets the offset of the time zone at the specified local time, as
+     * <code>GregorianCalendar</code> does.</p>
+     *
+     * @param timeZone  the time zone
+     * @param localMillis  the local time in milliseconds from 1970-01-01
+     * @param date  the array to compute the local date in
+     * @return the offset in milliseconds
+     */
+    private static int getOffset(TimeZone timeZone, long localMillis, int[] date) {
+        int year = (int) toLocalDate(localMillis, date);
+        return timeZone.getOffset(GregorianCalendar.AD, year, date[0], date[1], date[2], date[3]);
+    }
+
+    /**
+     * <p>Computes the date of the proleptic Gregorian calendar at the
+     * specified local time.</p>
+     *
+     * @param localMillis  the local time in milliseconds from 1970-01-01
+     * @param date  the array to store the month, the day of the month, the
+     *  day of the week and the milliseconds in the day in, or
+     *  <code>null</code> to compute only the year
+     * @return the year
+     */
+    private static long toLocalDate(long localMillis, int[] date) {
+        long days = floorDiv(localMillis, DAY);
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = (int) (z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int month = mp < 10 ? mp + 2 : mp - 10;
+        if (date != null) {
+            date[0] = month;
+            date[1] = dayOfYear - (153 * mp + 2) / 5 + 1;
+            date[2] = (int) floorMod(days + 4, 7) + Calendar.SUNDAY;
+            date[3] = (int) (localMillis - days * DAY);
+        }
+        return yearOfEra + era * 400 + (month <= Calendar.FEBRUARY ? 1 : 0);
+    }
+
+    /**
+     * <p>Computes the millisecond value of the parsed fields with a
+     * <code>Calendar</code>, for the dates which the fast path doesn't
+     * handle.</p>
+     *
+     * @param fields  the parsed fields
+     * @return the millisecond value
+     */
+    private long toMillisWithCalendar(int[] fields) {
+        TimeZone timeZone = mTimeZone;
+        if (isSet(fields, Calendar.ZONE_OFFSET)) {
+            timeZone = new SimpleTimeZone(fields[Calendar.ZONE_OFFSET], "");
+        } else if (fields[TIME_ZONE_NAME] != 0) {
+            timeZone = mTimeZoneNames[fields[TIME_ZONE_NAME] - 1].mTimeZone;
+        }
+        Calendar calendar = new GregorianCalendar(timeZone, mLocale);
+        calendar.clear();
+        for (int i = 0; i < Calendar.FIELD_COUNT; i++) {
+            if (i != Calendar.ZONE_OFFSET && isSet(fields, i)) {
+                calendar.set(i, fields[i]);
+            }
+        }
+        return calendar.getTime().getTime();
+    }
+
+    /**
+     * <p>Returns the number of days from 1970-01-01 to the specified date
+     * of the proleptic Gregorian calendar.</p>
+     *
+     * @param year  the year
+     * @param month  the month, from 1 to 12
+     * @param day  the day of the month
+     * @return the number of days
+     */
+    private static long toDays(long year, int month, int day) {
+        if (month <= 2) {
+            year--;
+        }
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static long floorDiv(long a, long b) {
+        long q = a / b;
+        return q * b > a ? q - 1 : q;
+    }
+
+    private static long floorMod(long a, long b) {
+        return a - floorDiv(a, b) * b;
+    }
+
+    private static int floorDiv(int a, int b) {
+        return (int) floorDiv((long) a, b);
+    }
+
+    private static int floorMod(int a, int b) {
+        return (int) floorMod((long) a, b);
+    }
+
+    private static boolean isSet(int[] fields, int field) {
+        return (fields[SET] & 1 << field) != 0;
+    }
+
+    private static void set(int[] fields, int field, int value) {
+        fields[field] = value;
+        fields[SET] |= 1 << field;
+    }
+
+    /**
+     * <p>Skips the spaces and tabs before a field, as
+     * <code>SimpleDateFormat</code> does.</p>
+     *
+     * @param source  the string to parse
+     * @param index  the index to skip from
+     * @return the index of the first character which is not skipped
+     */
+    private static int skipWhitespace(String source, int index) {
+        int length = source.length();
+        while (index < length && (source.charAt(index) == ' ' || source.charAt(index) == '\t')) {
+            index++;
+        }
+        return index;
+    }
+
+    // Accessors
+    //-----------------------------------------------------------------------
+    /**
+     * <p>Gets the pattern used by this parser.</p>
+     *
+     * @return the pattern, {@link java.text.SimpleDateFormat} compatible
+     */
+    public String getPattern() {
+        return mPattern;
+    }
+
+    /**
+     * <p>Gets the time zone of the parsed dates, unless they contain one.</p>
+     *
+     * @return the time zone
+     */
+    public TimeZone getTimeZone() {
+        return mTimeZone;
+    }
+
+    /**
+     * <p>Gets the locale used by this parser.</p>
+     *
+     * @return the locale
+     */
+    public Locale getLocale() {
+        return mLocale;
+    }
+
+    /**
+     * <p>Gets a debugging string version of this parser.</p>
+     *
+     * @return a debugging string
+     */
+    public String toString() {
+        return "FastDateParser[" + mPattern + "]";
+    }
+
+    // Strategies
+    //-----------------------------------------------------------------------
+    /**
+     * <p>Inner class defining a strategy to parse a pattern component.</p>
+     */
+    private interface Strategy {
+        /**
+         * Parses the component at the specified index of the source.
+         *
+         * @return the index after the component, or the bitwise complement
+         *  of the index where the error occurred
+         */
+        int parse(FastDateParser parser, String source, int index, int[] fields);
+    }
+
+    /**
+     * <p>Inner class to match a constant string.</p>
+     */
+    private static class LiteralStrategy implements Strategy {
+        private final String mValue;
+
+        LiteralStrategy(String value) {
+            mValue = value;
+        }
+
+        public int parse(FastDateParser parser, String source, int index, int[] fields) {
+            if (source.startsWith(mValue, index)) {
+                return index + mValue.length();
+            }
+            return ~index;
+        }
+    }
+
+    /**
+     * <p>Inner class to parse a number.</p>
+     */
+    private static class NumberStrategy implements Strategy {
+        static final int PLAIN = 0;
+        static final int MONTH = 1;
+        static final int TWO_DIGIT_YEAR = 2;
+        static final int TWELVE_HOUR = 3;
+        static final int TWENTY_FOUR_HOUR = 4;
+
+        private final int mField;
+        private final int mType;
+        /**
+         * The number of digits to read, or 0 to read all digits.  Set while
+         * the pattern is parsed.
+         */
+        private int mWidth;
+
+        NumberStrategy(int field, int type) {
+            mField = field;
+            mType = type;
+        }
+
+        public int parse(FastDateParser parser, String source, int index, int[] fields) {
+            // The width includes the whitespaces as SimpleDateFormat does.
+            int end = source.length();
+            if (mWidth > 0 && index + mWidth < end) {
+                end = index + mWidth;
+            }
+
+            index = skipWhitespace(source, index);
+            boolean negative = index < end && source.charAt(index) == '-';
+            int begin = negative ? index + 1 : index;
+            int value = 0;
+            int i = begin;
+            for (; i < end; i++) {
+                char c = source.charAt(i);
+                if (c < '0' || c > '9' || i - begin >= 9) {
+                    break;
+                }
+                value = value * 10 + (c - '0');
+            }
+            if (i == begin) {
+                return ~index;
+            }
+            if (negative) {
+                value = -value;
+            }
+
+            switch (mType) {
+            case MONTH:
+                value--;
+                break;
+            case TWO_DIGIT_YEAR:
+                if (!negative && i - begin == 2) {
+                    int start = parser.mCenturyStartYear;
+                    value += start / 100 * 100;
+                    if (value < start) {
+                        value += 100;
+                    } else if (value == start) {
+                        fields[SET] |= CENTURY_START_YEAR;
+                    }
+                }
+                break;
+            case TWELVE_HOUR:
+                if (value == 12) {
+                    value = 0;
+                }
+                break;
+            case TWENTY_FOUR_HOUR:
+                if (value == 24) {
+                    value = 0;
+                }
+                break;
+            }
+
+            set(fields, mField, value);
+            return i;
+        }
+    }
+
+    /**
+     * <p>Inner class to match one of a set of values.</p>
+     */
+    private static class TextStrategy implements Strategy {
+        private final int mField;
+        private final String[] mValues;
+        private final int[] mIndices;
+
+        TextStrategy(int field, String[] values, String[] shortValues) {
+            mField = field;
+
+            List list = new ArrayList();
+            addValues(list, values);
+            addValues(list, shortValues);
+            // Longest first, so that a value is not matched partially.
+            Collections.sort(list, new Comparator() {
+                public int compare(Object o1, Object o2) {
+                    return ((String) ((Object[]) o2)[0]).length() - ((String) ((Object[]) o1)[0]).length();
+                }
+            });
+
+            mValues = new String[list.size()];
+            mIndices = new int[list.size()];
+            for (int i = 0; i < mValues.length; i++) {
+                Object[] value = (Object[]) list.get(i);
+                mValues[i] = (String) value[0];
+                mIndices[i] = ((Integer) value[1]).intValue();
+            }
+        }
+
+        private static void addValues(List list, String[] values) {
+            if (values == null) {
+                return;
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null && values[i].length() > 0) {
+                    list.add(new Object[] { values[i], new Integer(i) });
+                }
+            }
+        }
+
+        public int parse(FastDateParser parser, String source, int index, int[] fields) {
+            index = skipWhitespace(source, index);
+            for (int i = 0; i < mValues.length; i++) {
+                String value = mValues[i];
+                if (source.regionMatches(true, index, value, 0, value.length())) {
+                    set(fields, mField, mIndices[i]);
+                    return index + value.length();
+                }
+            }
+            return ~index;
+        }
+    }
+
+    /**
+     * <p>Inner class to parse a time zone, as a number
+     * <code>+/-HHMM</code> or <code>+/-HH:MM</code>, as
+     * <code>GMT+/-H:MM</code>, or as a name if any.</p>
+     */
+    private static class TimeZoneStrategy implements Strategy {
+        private final int[][] mNames;
+
+        TimeZoneStrategy(int[][] names) {
+            mNames = names;
+        }
+
+        public int parse(FastDateParser parser, String source, int index, int[] fields) {
+            index = skipWhitespace(source, index);
+            int length = source.length();
+            int i = index;
+            boolean gmt = source.regionMatches(true, i, "GMT", 0, 3);
+            if (gmt) {
+                i += 3;
+            }
+
+            if (i < length && (source.charAt(i) == '+' || source.charAt(i) == '-')) {
+                boolean negative = source.charAt(i++) == '-';
+                int hourDigits = 2;
+                int hours = digits(source, i, 2);
+                if (hours < 0 && gmt) {
+                    hourDigits = 1;
+                    hours = digits(source, i, 1);
+                }
+                if (hours < 0) {
+                    return ~i;
+                }
+                i += hourDigits;
+
+                int minutes = 0;
+                if (i < length && source.charAt(i) == ':') {
+                    minutes = digits(source, ++i, 2);
+                    if (minutes < 0) {
+                        return ~i;
+                    }
+                    i += 2;
+                } else if (!gmt || digits(source, i, 2) >= 0) {
+                    minutes = digits(source, i, 2);
+                    if (minutes < 0) {
+                        return ~i;
+                    }
+                    i += 2;
+                }
+
+                int offset = (hours * 60 + minutes) * 60 * 1000;
+                set(fields, Calendar.ZONE_OFFSET, negative ? -offset : offset);
+                return i;
+            }
+
+            if (gmt) {
+                set(fields, Calendar.ZONE_OFFSET, 0);
+                return i;
+            }
+
+            if (mNames != null && index < length) {
+                int[] names = mNames[Character.toLowerCase(source.charAt(index)) & 127];
+                for (int j = 0; j < names.length; j++) {
+                    String name = parser.mTimeZoneNames[names[j]].mName;
+                    if (source.regionMatches(true, index, name, 0, name.length())) {
+                        fields[TIME_ZONE_NAME] = names[j] + 1;
+                        return index + name.length();
+                    }
+                }
+            }
+            return ~index;
+        }
+
+        /**
+         * Returns the value of the specified number of digits, or -1 if
+         * there are not enough digits.
+         */
+        private static int digits(String source, int index, int count) {
+            if (index + count > source.length()) {
+                return -1;
+            }
+            int value = 0;
+            for (int i = index; i < index + count; i++) {
+                char c = source.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                value = value * 10 + (c - '0');
+            }
+            return value;
+        }
+    }
+
+    /**
+     * <p>Inner class that holds a time zone name.</p>
+     */
+    private static class TimeZoneName {
+        private final String mName;
+        private final TimeZone mTimeZone;
+        private final boolean mDaylight;
+
+        TimeZoneName(String name, TimeZone timeZone, boolean daylight) {
+            mName = name;
+            mTimeZone = timeZone;
+            mDaylight = daylight;
+        }
+    }
+}
@@ -21,9 +21,11 @@ package net.gleamynode.conversion;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 
 import junit.framework.Assert;
 import junit.framework.TestCase;
+import net.gleamynode.conversion.support.ConversionMetrics;
 import net.gleamynode.conversion.support.ObjectToStringConverter;
 import net.gleamynode.conversion.support.StringToDateConverter;
 import net.gleamynode.conversion.support.StringToLongConverter;
@@ -55,6 +57,36 @@ public class ConversionTest extends TestCase {
         Assert.assertEquals(source2, Converter.convert(source2, List.class));
     }
     
+    public void testSourceSharing() {
+        ConverterContext ctx = new ConverterContext();
+        ctx.setSourceSharingAllowed(true);
+        List source = new ArrayList();
+        Assert.assertSame(source, Converter.convert(source, List.class, ctx));
+    }
+    
+    public void testCopier() {
+        // Copied by the copy constructor
+        Mutable source = new Mutable(1);
+        Mutable copy = (Mutable) Converter.convert(source, Mutable.class);
+        Assert.assertNotSame(source, copy);
+        Assert.assertEquals(1, copy.value);
+        
+        // Copied by the registered copier
+        Converter.registerCopier(Mutable.class, new Copier() {
+            public Object copy(Object source) {
+                return new Mutable(((Mutable) source).value + 1);
+            }
+        });
+        try {
+            copy = (Mutable) Converter.convert(source, Mutable.class);
+            Assert.assertEquals(2, copy.value);
+        } finally {
+            Converter.deregisterCopier(Mutable.class);
+        }
+        copy = (Mutable) Converter.convert(source, Mutable.class);
+        Assert.assertEquals(1, copy.value);
+    }
+    
     public void testDirectConversion() {
         Assert.assertEquals(
                 new Long(1234),
@@ -85,7 +117,202 @@ public class ConversionTest extends TestCase {
         }
     }
     
+    public void testNoConversionPath() {
+        ConverterContext ctx = new ConverterContext();
+        NoConversionPathException[] failures = new NoConversionPathException[3];
+        for (int i = 0; i < failures.length; i++) {
+            if (i == 1) {
+                ctx.setPreallocatedExceptionEnabled(true);
+            }
+            try {
+                Converter.convert(new Long(1234), Locale.class, ctx);
+                Assert.fail();
+            } catch(NoConversionPathException e) {
+                failures[i] = e;
+            }
+        }
+        
+        Assert.assertNotSame(failures[0], failures[1]);
+        Assert.assertSame(failures[1], failures[2]);
+    }
+    
+    public void testConversionPath() {
+        ConversionPath path = Converter.getConversionPath(Date.class, Long.class);
+        Assert.assertEquals(2, path.toList().size());
+        Assert.assertEquals(
+                path.toList(), Converter.getConversionPath(Date.class, Long.class).toList());
+        Assert.assertEquals(
+                new Long(1234), path.convert(new Date(1234), new ConverterContext()));
+        
+        try {
+            Converter.getConversionPath(Long.class, Locale.class);
+            Assert.fail();
+        } catch (NoConversionPathException e) {
+        }
+    }
+    
+    public void testPrimitiveConversion() {
+        Assert.assertEquals(1234L, Converter.convertToLong("1234"));
+        Assert.assertEquals(1234L, Converter.convertToLong(new Date(1234)));
+        Assert.assertEquals(1234L, Converter.convertToLong(new Long(1234)));
+        try {
+            Converter.convertToLong(null);
+            Assert.fail();
+        } catch (NullPointerException e) {
+        }
+    }
+    
+    public void testConvertAll() {
+        Object[] sources = new Object[] { "1", new Date(2), new Long(3), "4" };
+        
+        long[] longs = (long[]) Converter.convertAll(sources, long.class);
+        Assert.assertEquals(4, longs.length);
+        for (int i = 0; i < longs.length; i ++) {
+            Assert.assertEquals(i + 1, longs[i]);
+        }
+        
+        Long[] wrappers = new Long[5];
+        Converter.convertAll(sources, wrappers);
+        Assert.assertEquals(new Long(1), wrappers[0]);
+        Assert.assertEquals(new Long(2), wrappers[1]);
+        Assert.assertSame(sources[2], wrappers[2]);
+        Assert.assertEquals(new Long(4), wrappers[3]);
+        Assert.assertNull(wrappers[4]);
+        
+        List list = new ArrayList();
+        list.add(new Long(5));
+        list.add(null);
+        list.add(new Date(6));
+        String[] strings = (String[]) Converter.convertAll(list, String.class);
+        Assert.assertEquals("5", strings[0]);
+        Assert.assertNull(strings[1]);
+        Assert.assertEquals(Converter.convert(new Date(6), String.class), strings[2]);
+        
+        strings = (String[]) Converter.convertAll(list.iterator(), String.class);
+        Assert.assertEquals(3, strings.length);
+        Assert.assertEquals("5", strings[0]);
+        
+        try {
+            Converter.convertAll(list, long.class);
+            Assert.fail();
+        } catch (NullPointerException e) {
+        }
+        
+        try {
+            Converter.convertAll(sources, new long[3]);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+    
+    public void testListener() {
+        ConversionMetrics metrics = new ConversionMetrics();
+        Converter.setListener(metrics);
+        try {
+            Converter.convert("1234", Long.class);
+            Converter.convert("5678", Long.class);
+            try {
+                Converter.convert("1234", Locale.class);
+                Assert.fail();
+            } catch (NoConversionPathException e) {
+            }
+        } finally {
+            Converter.setListener(null);
+        }
+        
+        Assert.assertEquals(2, metrics.getConversionCount());
+        Assert.assertEquals(1, metrics.getFailureCount());
+        Assert.assertEquals(3, metrics.getLookupCount());
+        Assert.assertTrue(metrics.getCacheHitCount() >= 1);
+        Assert.assertEquals(2, metrics.getPathLengthHistogram()[1]);
+        Assert.assertEquals(1, metrics.getPathLengthHistogram()[0]);
+        
+        ConversionMetrics.Pair[] pairs = metrics.getPairs();
+        Assert.assertEquals(2, pairs.length);
+        Assert.assertSame(String.class, pairs[0].getSourceType());
+        Assert.assertSame(Long.class, pairs[0].getTargetType());
+        Assert.assertEquals(2, pairs[0].getConversionCount());
+        Assert.assertEquals(1, pairs[1].getFailureCount());
+        
+        // No more events after removing the listener
+        Converter.convert("1234", Long.class);
+        Assert.assertEquals(2, metrics.getConversionCount());
+    }
+    
+    public void testListenerPrimitives() {
+        ConversionMetrics metrics = new ConversionMetrics();
+        Converter.setListener(metrics);
+        try {
+            Assert.assertEquals(1234L, Converter.convertToLong("1234"));
+            Assert.assertEquals(1234L, Converter.convertToLong(new Date(1234)));
+            try {
+                Converter.convertToLong(Locale.US);
+                Assert.fail();
+            } catch (ConversionException e) {
+            }
+            Converter.convertAll(new Object[] { "1", "2" }, new long[2]);
+        } finally {
+            Converter.setListener(null);
+        }
+        
+        // The elements of convertAll() are not reported.
+        Assert.assertEquals(2, metrics.getConversionCount());
+        Assert.assertEquals(1, metrics.getFailureCount());
+        Assert.assertEquals(4, metrics.getLookupCount());
+        
+        ConversionMetrics.Pair[] pairs = metrics.getPairs();
+        Assert.assertEquals(3, pairs.length);
+        Assert.assertSame(Long.class, pairs[0].getTargetType());
+        Assert.assertEquals(1, pairs[0].getConversionCount());
+        Assert.assertSame(Locale.class, pairs[2].getSourceType());
+        Assert.assertEquals(1, pairs[2].getFailureCount());
+        
+        metrics.reset();
+        Assert.assertEquals(0, metrics.getLookupCount());
+        Assert.assertEquals(0, metrics.getPairs().length);
+    }
+    
+    public void testContextClone() {
+        ConverterContext ctx = new ConverterContext();
+        ctx.setAttribute("a", "1");
+        ConverterContext clone = (ConverterContext) ctx.clone();
+        
+        // Modifying one shouldn't affect the other.
+        clone.setAttribute("a", "2");
+        ctx.setAttribute("b", "3");
+        clone.getExclusions().add(String.class);
+        Assert.assertEquals("1", ctx.getAttribute("a"));
+        Assert.assertEquals("3", ctx.getAttribute("b"));
+        Assert.assertFalse(ctx.hasExclusions());
+        Assert.assertEquals("2", clone.getAttribute("a"));
+        Assert.assertNull(clone.getAttribute("b"));
+        Assert.assertTrue(clone.hasExclusions());
+    }
+    
+    public void testPathTracking() {
+        ConverterContext ctx = new ConverterContext();
+        Converter.convert(new Date(1234), Long.class, ctx);
+        Assert.assertEquals(2, ctx.getPath().toList().size());
+        
+        ctx = new ConverterContext();
+        ctx.setPathTracking(false);
+        Converter.convert(new Date(1234), Long.class, ctx);
+        Assert.assertTrue(ctx.getPath().toList().isEmpty());
+    }
+    
     public static void main(String[] args) {
         junit.textui.TestRunner.run(ConversionTest.class);
     }
+    
+    public static class Mutable {
+        private final int value;
+        
+        public Mutable(int value) {
+            this.value = value;
+        }
+        
+        public Mutable(Mutable other) {
+            this(other.value);
+        }
+    }
 }
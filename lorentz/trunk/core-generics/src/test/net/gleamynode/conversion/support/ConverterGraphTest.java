@@ -0,0 +1,83 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.support;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.gleamynode.conversion.Converter;
+import net.gleamynode.conversion.ConverterContext;
+
+public class ConverterGraphTest extends TestCase {
+    private static final Class[] SUBTYPES = new Class[] {
+        List.class, Set.class, ArrayList.class, HashSet.class, LinkedList.class,
+    };
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ConverterGraphTest.class);
+    }
+
+    public void testExactTargetTypeWins() {
+        // Register the exact one before and after the ones of the subtypes
+        // so that the result doesn't depend on the order of the converters.
+        for (int i = 0; i <= SUBTYPES.length; i++) {
+            List converters = new ArrayList();
+            for (int j = 0; j < SUBTYPES.length; j++) {
+                converters.add(new TestConverter(StringBuffer.class, SUBTYPES[j]));
+            }
+            converters.add(i, new TestConverter(StringBuffer.class, Collection.class));
+
+            ConverterRegistry registry = new ConverterRegistry(
+                    new ConversionPathCache(), new ConversionPathCache());
+            registry.register((Converter[]) converters.toArray(new Converter[converters.size()]));
+
+            ConversionPlan plan = registry.getGraph().findConversionPath(
+                    StringBuffer.class, Collection.class, null, null);
+            Assert.assertEquals(1, plan.length());
+            Assert.assertEquals(Collection.class, plan.get(0).getTargetType());
+        }
+    }
+
+    public void testSubtypeTargetType() {
+        ConverterRegistry registry = new ConverterRegistry(
+                new ConversionPathCache(), new ConversionPathCache());
+        registry.register(new TestConverter(StringBuffer.class, ArrayList.class));
+
+        ConversionPlan plan = registry.getGraph().findConversionPath(
+                StringBuffer.class, Collection.class, null, null);
+        Assert.assertEquals(1, plan.length());
+        Assert.assertEquals(ArrayList.class, plan.get(0).getTargetType());
+    }
+
+    private static class TestConverter extends Converter {
+        private TestConverter(Class sourceType, Class targetType) {
+            super(sourceType, targetType);
+        }
+
+        public Object doConversion(Object o, ConverterContext ctx) {
+            return null;
+        }
+    }
+}
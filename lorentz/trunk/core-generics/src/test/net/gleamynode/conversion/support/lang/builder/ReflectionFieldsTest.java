@@ -0,0 +1,144 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.support.lang.builder;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.ReflectPermission;
+import java.security.Permission;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link ReflectionFields}.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class ReflectionFieldsTest extends TestCase {
+
+    public void testCachedFields() throws Exception {
+        Field[] declared = ReflectionFields.getDeclaredFields(Sample.class);
+        Assert.assertSame(declared, ReflectionFields.getDeclaredFields(Sample.class));
+        Assert.assertEquals(names(Sample.class.getDeclaredFields()), names(declared));
+        for (int i = 0; i < declared.length; i++) {
+            Assert.assertTrue(declared[i].getName(), declared[i].isAccessible());
+        }
+
+        Field[] instance = ReflectionFields.getInstanceFields(Sample.class, true);
+        Assert.assertSame(instance, ReflectionFields.getInstanceFields(Sample.class, true));
+        Assert.assertEquals(names(new String[] { "a", "b" }), names(instance));
+
+        Field[] nonTransient = ReflectionFields.getInstanceFields(Sample.class, false);
+        Assert.assertSame(nonTransient, ReflectionFields.getInstanceFields(Sample.class, false));
+        Assert.assertEquals(names(new String[] { "a" }), names(nonTransient));
+
+        // The private fields can be read.
+        Assert.assertEquals(new Integer(1), nonTransient[0].get(new Sample()));
+    }
+
+    public void testSecurityManager() throws Exception {
+        Field[] cached = ReflectionFields.getDeclaredFields(Sample.class);
+
+        // A security manager which doesn't let the fields be made accessible
+        SecurityManager restrictive = new SecurityManager() {
+            public void checkPermission(Permission perm) {
+                if (perm instanceof ReflectPermission &&
+                        "suppressAccessChecks".equals(perm.getName())) {
+                    throw new SecurityException(perm.toString());
+                }
+            }
+
+            public void checkPermission(Permission perm, Object context) {
+                checkPermission(perm);
+            }
+        };
+        if (!install(restrictive)) {
+            return;
+        }
+        try {
+            ReflectionFields.getDeclaredFields(Sample.class);
+            Assert.fail("The cached fields were handed out.");
+        } catch (SecurityException e) {
+            // OK
+        } finally {
+            System.setSecurityManager(null);
+        }
+
+        // A security manager which permits everything
+        SecurityManager permissive = new SecurityManager() {
+            public void checkPermission(Permission perm) {
+            }
+
+            public void checkPermission(Permission perm, Object context) {
+            }
+        };
+        install(permissive);
+        try {
+            Field[] fields = ReflectionFields.getDeclaredFields(Sample.class);
+            Assert.assertNotSame(cached, fields);
+            Assert.assertNotSame(fields, ReflectionFields.getDeclaredFields(Sample.class));
+            Assert.assertEquals(names(cached), names(fields));
+        } finally {
+            System.setSecurityManager(null);
+        }
+
+        // The cache is used again.
+        Assert.assertSame(cached, ReflectionFields.getDeclaredFields(Sample.class));
+    }
+
+    /**
+     * Installs the specified security manager, and returns <tt>false</tt>
+     * if the JVM doesn't allow it.
+     */
+    private static boolean install(SecurityManager sm) {
+        try {
+            System.setSecurityManager(sm);
+            return true;
+        } catch (UnsupportedOperationException e) {
+            // Java 18 and later without -Djava.security.manager=allow
+            return false;
+        }
+    }
+
+    private static Set names(Field[] fields) {
+        Set names = new HashSet();
+        for (int i = 0; i < fields.length; i++) {
+            names.add(fields[i].getName());
+        }
+        return names;
+    }
+
+    private static Set names(String[] names) {
+        return new HashSet(Arrays.asList(names));
+    }
+
+    private static class Sample {
+        static int s;
+        private int a = 1;
+        private transient int b;
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ReflectionFieldsTest.class);
+    }
+}
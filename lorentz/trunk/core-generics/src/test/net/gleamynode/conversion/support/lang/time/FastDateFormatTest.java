@@ -0,0 +1,68 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.support.lang.time;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+/**
+ * Tests the bounded formatter cache of {@link FastDateFormat}.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class FastDateFormatTest extends TestCase {
+
+    // The same as FastDateFormat.MAX_CACHE_SIZE
+    private static final int MAX_CACHE_SIZE = 256;
+
+    public void testCacheEviction() {
+        FastDateFormat hot = FastDateFormat.getInstance("'hot' yyyy-MM-dd");
+        long misses = FastDateFormat.getCacheMissCount();
+        long evictions = FastDateFormat.getCacheEvictionCount();
+
+        int count = MAX_CACHE_SIZE * 2;
+        for (int i = 0; i < count; i++) {
+            FastDateFormat.getInstance("'cold " + i + "' yyyy-MM-dd");
+            Assert.assertTrue(FastDateFormat.getCacheSize() <= MAX_CACHE_SIZE);
+
+            // The formatter which is looked up all the time is not evicted.
+            Assert.assertSame(hot, FastDateFormat.getInstance("'hot' yyyy-MM-dd"));
+        }
+
+        Assert.assertEquals(count, FastDateFormat.getCacheMissCount() - misses);
+        Assert.assertTrue(FastDateFormat.getCacheEvictionCount() - evictions >= count - MAX_CACHE_SIZE);
+        Assert.assertTrue(FastDateFormat.getCacheSize() > MAX_CACHE_SIZE / 2);
+
+        // An evicted formatter is created again.
+        FastDateFormat first = FastDateFormat.getInstance("'cold 0' yyyy-MM-dd");
+        Assert.assertEquals("'cold 0' yyyy-MM-dd", first.getPattern());
+    }
+
+    public void testCacheHit() {
+        FastDateFormat format = FastDateFormat.getInstance("yyyy/MM/dd HH:mm");
+        long misses = FastDateFormat.getCacheMissCount();
+        Assert.assertSame(format, FastDateFormat.getInstance("yyyy/MM/dd HH:mm"));
+        Assert.assertEquals(misses, FastDateFormat.getCacheMissCount());
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(FastDateFormatTest.class);
+    }
+}
@@ -21,6 +21,7 @@ package net.gleamynode.conversion;
 import java.text.DateFormat;
 import java.text.Format;
 import java.text.NumberFormat;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Locale;
@@ -28,10 +29,15 @@ import java.util.Map;
 import java.util.Set;
 
 import net.gleamynode.conversion.support.ConversionPathImpl;
+import net.gleamynode.conversion.support.FormatCache;
 
 /**
  * Context information such as locale and text format that is provided to
  * {@link Converter}s.
+ * <p>
+ * Cloning a context is cheap; formats and attributes are shared with the
+ * clone until either of them modifies them, and the exclusions and the path
+ * are created only when they are accessed.
  *
  * @author Trustin Lee
  * @version $Rev: 129 $, $Date: 2005-11-14 18:35:57 +0900 (Mon, 14 Nov 2005) $
@@ -39,10 +45,23 @@ import net.gleamynode.conversion.support.ConversionPathImpl;
 public class ConverterContext {
     
     private Locale locale;
-    private final ConversionPath path = new ConversionPathImpl();
-    private final IntermediaryTypes exclusions = new IntermediaryTypes();
-    private final Map formats = new HashMap();
-    private final Map attributes = new HashMap();
+    private ConversionPath path;
+    private IntermediaryTypes exclusions;
+    // The maps below are shared with clones until they are modified.
+    private Map formats = Collections.EMPTY_MAP;
+    private Map attributes = Collections.EMPTY_MAP;
+    private boolean formatsShared = true;
+    private boolean attributesShared = true;
+    private boolean pathTracking = true;
+    private boolean preallocatedExceptionEnabled;
+    private boolean sourceSharingAllowed;
+    
+    // The fields below are used by Converter to reuse a context for the
+    // conversions without a user-specified context.
+    private ConverterContext origin;
+    private int exclusionsModCount;
+    private boolean modified;
+    boolean inUse;
     
     public ConverterContext() {
         this(null); // use system default locale
@@ -54,16 +73,51 @@ public class ConverterContext {
     
     public IntermediaryTypes getExclusions()
     {
+        if (exclusions == null) {
+            exclusions = new IntermediaryTypes();
+        }
         return exclusions;
     }
     
     /**
-     * Returns the path of the recent conversion.
+     * Returns <tt>true</tt> if any intermediary type is excluded.  Unlike
+     * {@link #getExclusions()}, this method never creates a new
+     * {@link IntermediaryTypes}.
+     */
+    public boolean hasExclusions() {
+        return exclusions != null && !exclusions.isEmpty();
+    }
+    
+    /**
+     * Returns the path of the recent conversion.  The path is always empty
+     * if path tracking is disabled.
      */
     public ConversionPath getPath() {
+        if (path == null) {
+            path = new ConversionPathImpl();
+        }
         return path;
     }
     
+    /**
+     * Returns <tt>true</tt> if the path of the recent conversion is recorded
+     * so that it is returned by {@link #getPath()}.  The default is
+     * <tt>true</tt>.
+     */
+    public boolean isPathTracking() {
+        return pathTracking;
+    }
+    
+    /**
+     * Sets whether the path of the recent conversion is recorded.  Disable
+     * this if you don't need {@link #getPath()} to save a little time for
+     * each conversion.
+     */
+    public void setPathTracking(boolean pathTracking) {
+        this.pathTracking = pathTracking;
+        modified = true;
+    }
+    
     public Locale getLocale()
     {
         return locale;
@@ -75,6 +129,48 @@ public class ConverterContext {
         }
             
         this.locale = locale;
+        modified = true;
+    }
+    
+    /**
+     * Returns <tt>true</tt> if a preallocated {@link NoConversionPathException}
+     * without a stack trace is thrown for a conversion which is already known
+     * to have no conversion path.  The default is <tt>false</tt>.
+     */
+    public boolean isPreallocatedExceptionEnabled() {
+        return preallocatedExceptionEnabled;
+    }
+    
+    /**
+     * Sets whether a preallocated {@link NoConversionPathException} without
+     * a stack trace is thrown for a conversion which is already known to have
+     * no conversion path.  Enable this if you expect many failures and don't
+     * need their stack traces, as {@link Converter#safeConvert(Object, Class)}
+     * callers usually do.
+     */
+    public void setPreallocatedExceptionEnabled(boolean preallocatedExceptionEnabled) {
+        this.preallocatedExceptionEnabled = preallocatedExceptionEnabled;
+        modified = true;
+    }
+    
+    /**
+     * Returns <tt>true</tt> if the source object itself can be returned when
+     * it is already an instance of the target type.  The default is
+     * <tt>false</tt>, which means a mutable source object is copied.
+     */
+    public boolean isSourceSharingAllowed() {
+        return sourceSharingAllowed;
+    }
+    
+    /**
+     * Sets whether the source object itself can be returned when it is
+     * already an instance of the target type.  Enable this only if neither
+     * the caller nor anyone else modifies the source or the result, because
+     * they will be the same object.
+     */
+    public void setSourceSharingAllowed(boolean sourceSharingAllowed) {
+        this.sourceSharingAllowed = sourceSharingAllowed;
+        modified = true;
     }
     
     public NumberFormat getNumberFormat() {
@@ -85,6 +181,20 @@ public class ConverterContext {
         setFormat(Number.class, format);
     }
     
+    /**
+     * Returns the {@link NumberFormat} which only the current thread uses;
+     * the clone of {@link #getNumberFormat()}, or the default number format
+     * of the locale of this context if it is not set.  Converters should use
+     * this method because {@link Format}s are not thread-safe.
+     */
+    public NumberFormat getThreadLocalNumberFormat() {
+        NumberFormat format = getNumberFormat();
+        if (format == null) {
+            return FormatCache.getInstance().getNumberFormat(locale);
+        }
+        return (NumberFormat) FormatCache.getInstance().getClone(format);
+    }
+    
     public DateFormat getDateFormat() {
         return (DateFormat) getFormat(Date.class);
     }
@@ -93,12 +203,31 @@ public class ConverterContext {
         setFormat(Date.class, format);
     }
     
+    /**
+     * Returns the {@link DateFormat} which only the current thread uses;
+     * the clone of {@link #getDateFormat()}, or the default date-time format
+     * of the locale of this context if it is not set.  Converters should use
+     * this method because {@link Format}s are not thread-safe.
+     */
+    public DateFormat getThreadLocalDateFormat() {
+        DateFormat format = getDateFormat();
+        if (format == null) {
+            return FormatCache.getInstance().getDateFormat(locale);
+        }
+        return (DateFormat) FormatCache.getInstance().getClone(format);
+    }
+    
     public Format getFormat(Class targetType) {
         return (Format) formats.get(targetType);
     }
     
     public void setFormat(Class targetType, Format format) {
+        if (formatsShared) {
+            formats = new HashMap(formats);
+            formatsShared = false;
+        }
         formats.put(targetType, format);
+        modified = true;
     }
     
     public Object getAttribute(String key) {
@@ -106,24 +235,80 @@ public class ConverterContext {
     }
     
     public void setAttribute(String key, Object value) {
+        if (attributesShared) {
+            attributes = new HashMap(attributes);
+            attributesShared = false;
+        }
         attributes.put(key, value);
+        modified = true;
     }
     
     public Object removeAttribute(String key) {
+        if (!attributes.containsKey(key)) {
+            return null;
+        }
+        if (attributesShared) {
+            attributes = new HashMap(attributes);
+            attributesShared = false;
+        }
+        modified = true;
         return attributes.remove(key);
     }
     
+    /**
+     * Returns the unmodifiable set of the attribute names.  Removing a name
+     * from the set throws an {@link UnsupportedOperationException}; use
+     * {@link #removeAttribute(String)} instead.  (Before the attributes
+     * were shared with the clones of a context, the set was the live key
+     * set.)  The set may not reflect the attributes modified after it was
+     * returned, because the attributes are copied when they are modified
+     * while shared.
+     */
     public Set getAttributeNames() {
-        return attributes.keySet();
+        return Collections.unmodifiableSet(attributes.keySet());
     }
 
     public Object clone() {
-        ConverterContext ret = new ConverterContext();
-        ret.locale = this.locale;
-        ((ConversionPathImpl) ret.path).setAll(this.path);
-        ret.exclusions.addAll(this.exclusions);
-        ret.formats.putAll(this.formats);
-        ret.attributes.putAll(this.attributes);
+        ConverterContext ret = new ConverterContext(this.locale);
+        if (this.path != null) {
+            ((ConversionPathImpl) ret.getPath()).setAll(this.path);
+        }
+        if (this.exclusions != null && !this.exclusions.isEmpty()) {
+            ret.getExclusions().addAll(this.exclusions);
+        }
+        ret.formats = this.formats;
+        ret.attributes = this.attributes;
+        this.formatsShared = true;
+        this.attributesShared = true;
+        ret.pathTracking = this.pathTracking;
+        ret.preallocatedExceptionEnabled = this.preallocatedExceptionEnabled;
+        ret.sourceSharingAllowed = this.sourceSharingAllowed;
+        return ret;
+    }
+    
+    /**
+     * Creates a clone which doesn't track the path, and which
+     * {@link #isUnmodifiedCopyOf(ConverterContext)} this context until it
+     * is modified.
+     */
+    ConverterContext newReusableCopy() {
+        ConverterContext ret = (ConverterContext) clone();
+        ret.pathTracking = false;
+        ret.origin = this;
+        ret.exclusionsModCount = ret.exclusions == null? 0 : ret.exclusions.modCount;
+        ret.modified = false;
         return ret;
     }
+    
+    /**
+     * Returns <tt>true</tt> if this context was created by
+     * {@link #newReusableCopy()} of the specified context and it has not
+     * been modified since then.
+     */
+    boolean isUnmodifiedCopyOf(ConverterContext origin) {
+        return this.origin == origin && !modified &&
+               (exclusions == null?
+                       exclusionsModCount == 0 :
+                       exclusions.modCount == exclusionsModCount);
+    }
 }
@@ -0,0 +1,352 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.support;
+
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import net.gleamynode.conversion.ConversionListener;
+
+/**
+ * A {@link ConversionListener} which collects the statistics of the
+ * conversions: the counts per pair of source and target type, the cache hit
+ * ratio of the path lookups, and the histograms of the path lengths, the
+ * path search times and the conversion times.
+ * <p>
+ * A time histogram has {@link #TIME_BUCKETS} buckets.  The bucket
+ * <tt>0</tt> counts zero times, and the bucket <tt>i</tt> counts the times
+ * <tt>t</tt> where <tt>2<sup>i-1</sup> &lt;= t &lt; 2<sup>i</sup></tt>
+ * nanoseconds.  The bucket <tt>i</tt> of the path length histogram counts
+ * the paths of length <tt>i</tt>, except that the last bucket also counts
+ * the longer ones.
+ * <p>
+ * The statistics are kept per pair of types and summed up when they are
+ * read, so that the converting threads only lock the pair they update.
+ * The types are referred to weakly; the statistics of a pair are dropped
+ * when either of its types is garbage-collected.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class ConversionMetrics implements ConversionListener {
+    public static final int TIME_BUCKETS = 64;
+    public static final int PATH_LENGTH_BUCKETS = 16;
+
+    private static final Comparator BY_CONVERSION_COUNT = new Comparator() {
+        public int compare(Object o1, Object o2) {
+            long c1 = ((Pair) o1).conversionCount;
+            long c2 = ((Pair) o2).conversionCount;
+            return c1 > c2? -1 : c1 < c2? 1 : 0;
+        }
+    };
+
+    // WeakClassMap<Class, WeakClassMap<Class, Counts>> by source and target
+    // type; replaced on update, so it is read without locking.
+    private volatile WeakClassMap pairs = WeakClassMap.EMPTY;
+    private final ReferenceQueue queue = new ReferenceQueue();
+
+    public void pathLookedUp(Class sourceType, Class targetType, int pathLength, boolean cached, long searchTime) {
+        Counts counts = getCounts(sourceType, targetType);
+        synchronized (counts) {
+            counts.lookupCount ++;
+            if (cached) {
+                counts.cacheHitCount ++;
+            } else {
+                counts.totalSearchTime += searchTime;
+                counts.searchTimes[bucket(searchTime)] ++;
+            }
+            counts.pathLengths[Math.min(pathLength, PATH_LENGTH_BUCKETS - 1)] ++;
+        }
+    }
+
+    public void converted(Class sourceType, Class targetType, long time) {
+        Counts counts = getCounts(sourceType, targetType);
+        synchronized (counts) {
+            counts.conversionCount ++;
+            counts.totalConversionTime += time;
+            counts.conversionTimes[bucket(time)] ++;
+        }
+    }
+
+    public void conversionFailed(Class sourceType, Class targetType, RuntimeException cause, long time) {
+        Counts counts = getCounts(sourceType, targetType);
+        synchronized (counts) {
+            counts.failureCount ++;
+        }
+    }
+
+    private Counts getCounts(Class sourceType, Class targetType) {
+        WeakClassMap targets = (WeakClassMap) pairs.get(sourceType);
+        if (targets != null) {
+            Counts counts = (Counts) targets.get(targetType);
+            if (counts != null) {
+                return counts;
+            }
+        }
+        return addCounts(sourceType, targetType);
+    }
+
+    private synchronized Counts addCounts(Class sourceType, Class targetType) {
+        if (queue.poll() != null) {
+            while (queue.poll() != null) {
+                continue;
+            }
+            purge();
+        }
+
+        WeakClassMap targets = (WeakClassMap) pairs.get(sourceType);
+        if (targets == null) {
+            targets = WeakClassMap.EMPTY;
+        }
+        Counts counts = (Counts) targets.get(targetType);
+        if (counts == null) {
+            counts = new Counts();
+            pairs = pairs.put(sourceType, targets.put(targetType, counts, queue), queue);
+        }
+        return counts;
+    }
+
+    private void purge() {
+        WeakClassMap pairs = this.pairs.purge();
+        Class[] sourceTypes = pairs.keys();
+        for (int i = 0; i < sourceTypes.length; i++) {
+            WeakClassMap targets = (WeakClassMap) pairs.get(sourceTypes[i]);
+            WeakClassMap purged = targets.purge();
+            if (purged.isEmpty()) {
+                pairs = pairs.remove(sourceTypes[i]);
+            } else if (purged != targets) {
+                pairs = pairs.put(sourceTypes[i], purged, queue);
+            }
+        }
+        this.pairs = pairs;
+    }
+
+    private static int bucket(long time) {
+        int bucket = 0;
+        while (time > 0) {
+            time >>>= 1;
+            bucket ++;
+        }
+        return bucket;
+    }
+
+    public long getLookupCount() {
+        return getTotal().lookupCount;
+    }
+
+    public long getCacheHitCount() {
+        return getTotal().cacheHitCount;
+    }
+
+    /**
+     * Returns the ratio of the path lookups which hit the cache, or
+     * <tt>0</tt> if there was no lookup.
+     */
+    public double getCacheHitRatio() {
+        Counts total = getTotal();
+        return total.lookupCount == 0? 0 : (double) total.cacheHitCount / total.lookupCount;
+    }
+
+    /**
+     * Returns the number of the successful conversions and copies.
+     */
+    public long getConversionCount() {
+        return getTotal().conversionCount;
+    }
+
+    public long getFailureCount() {
+        return getTotal().failureCount;
+    }
+
+    /**
+     * Returns the total time spent searching the paths in nanoseconds.
+     */
+    public long getTotalSearchTime() {
+        return getTotal().totalSearchTime;
+    }
+
+    /**
+     * Returns the total time spent by the successful conversions in
+     * nanoseconds.
+     */
+    public long getTotalConversionTime() {
+        return getTotal().totalConversionTime;
+    }
+
+    public long[] getPathLengthHistogram() {
+        return getTotal().pathLengths;
+    }
+
+    public long[] getSearchTimeHistogram() {
+        return getTotal().searchTimes;
+    }
+
+    public long[] getConversionTimeHistogram() {
+        return getTotal().conversionTimes;
+    }
+
+    /**
+     * Returns the snapshots of the statistics per pair of source and target
+     * type, in descending order of the number of conversions.
+     */
+    public Pair[] getPairs() {
+        List result = new ArrayList();
+        WeakClassMap pairs = this.pairs;
+        Class[] sourceTypes = pairs.keys();
+        for (int i = 0; i < sourceTypes.length; i++) {
+            WeakClassMap targets = (WeakClassMap) pairs.get(sourceTypes[i]);
+            Class[] targetTypes = targets.keys();
+            for (int j = 0; j < targetTypes.length; j++) {
+                Counts counts = (Counts) targets.get(targetTypes[j]);
+                synchronized (counts) {
+                    result.add(new Pair(sourceTypes[i], targetTypes[j], counts));
+                }
+            }
+        }
+        Collections.sort(result, BY_CONVERSION_COUNT);
+        return (Pair[]) result.toArray(new Pair[result.size()]);
+    }
+
+    /**
+     * Clears all the statistics.
+     */
+    public synchronized void reset() {
+        pairs = WeakClassMap.EMPTY;
+    }
+
+    /**
+     * Returns the sum of the statistics of all pairs.
+     */
+    private Counts getTotal() {
+        Counts total = new Counts();
+        WeakClassMap pairs = this.pairs;
+        Class[] sourceTypes = pairs.keys();
+        for (int i = 0; i < sourceTypes.length; i++) {
+            WeakClassMap targets = (WeakClassMap) pairs.get(sourceTypes[i]);
+            Class[] targetTypes = targets.keys();
+            for (int j = 0; j < targetTypes.length; j++) {
+                Counts counts = (Counts) targets.get(targetTypes[j]);
+                synchronized (counts) {
+                    total.add(counts);
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * The mutable statistics of a pair of types.  It doesn't refer to the
+     * types so that they can be collected.
+     */
+    private static class Counts {
+        private long lookupCount;
+        private long cacheHitCount;
+        private long conversionCount;
+        private long failureCount;
+        private long totalSearchTime;
+        private long totalConversionTime;
+        private final long[] pathLengths = new long[PATH_LENGTH_BUCKETS];
+        private final long[] searchTimes = new long[TIME_BUCKETS];
+        private final long[] conversionTimes = new long[TIME_BUCKETS];
+
+        private void add(Counts c) {
+            lookupCount += c.lookupCount;
+            cacheHitCount += c.cacheHitCount;
+            conversionCount += c.conversionCount;
+            failureCount += c.failureCount;
+            totalSearchTime += c.totalSearchTime;
+            totalConversionTime += c.totalConversionTime;
+            add(pathLengths, c.pathLengths);
+            add(searchTimes, c.searchTimes);
+            add(conversionTimes, c.conversionTimes);
+        }
+
+        private static void add(long[] sum, long[] values) {
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] += values[i];
+            }
+        }
+    }
+
+    /**
+     * The statistics of the conversions between a pair of types.
+     */
+    public static class Pair {
+        private final Class sourceType;
+        private final Class targetType;
+        private final long lookupCount;
+        private final long cacheHitCount;
+        private final long conversionCount;
+        private final long failureCount;
+        private final long totalConversionTime;
+
+        private Pair(Class sourceType, Class targetType, Counts counts) {
+            this.sourceType = sourceType;
+            this.targetType = targetType;
+            lookupCount = counts.lookupCount;
+            cacheHitCount = counts.cacheHitCount;
+            conversionCount = counts.conversionCount;
+            failureCount = counts.failureCount;
+            totalConversionTime = counts.totalConversionTime;
+        }
+
+        public Class getSourceType() {
+            return sourceType;
+        }
+
+        public Class getTargetType() {
+            return targetType;
+        }
+
+        public long getLookupCount() {
+            return lookupCount;
+        }
+
+        public long getCacheHitCount() {
+            return cacheHitCount;
+        }
+
+        public long getConversionCount() {
+            return conversionCount;
+        }
+
+        public long getFailureCount() {
+            return failureCount;
+        }
+
+        /**
+         * Returns the total time spent by the successful conversions in
+         * nanoseconds.
+         */
+        public long getTotalConversionTime() {
+            return totalConversionTime;
+        }
+
+        public String toString() {
+            return sourceType.getName() + " -> " + targetType.getName() +
+                   ": " + conversionCount + " conversion(s), " +
+                   failureCount + " failure(s), " +
+                   cacheHitCount + '/' + lookupCount + " cache hit(s), " +
+                   totalConversionTime + " ns";
+        }
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.support;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.gleamynode.conversion.BooleanConverter;
+import net.gleamynode.conversion.ConversionException;
+import net.gleamynode.conversion.ConversionPath;
+import net.gleamynode.conversion.Converter;
+import net.gleamynode.conversion.ConverterContext;
+import net.gleamynode.conversion.DoubleConverter;
+import net.gleamynode.conversion.IntConverter;
+import net.gleamynode.conversion.LongConverter;
+
+/**
+ * An immutable {@link ConversionPath} compiled from the path which
+ * {@link ConversionEngine} has found.  {@link ConversionPathCache} stores
+ * this instead of the mutable {@link ConversionPathImpl} so that a cached
+ * path can be shared by all threads without cloning it.
+ * <p>
+ * A plan also knows the types whose converters were considered when it was
+ * found, so that {@link ConversionPathCache} can keep it when a converter of
+ * an unrelated type is registered or deregistered.  The types are
+ * remembered by their identity hash codes so that a cached plan doesn't
+ * keep them from being unloaded; a collision only makes a plan evicted
+ * needlessly.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class ConversionPlan implements ConversionPath {
+
+    private static final long serialVersionUID = -2183626465296340157L;
+
+    private final Converter[] converters;
+    // The identity hash codes of the types; null means this plan depends
+    // on all types.
+    private final int[] dependencies;
+
+    public ConversionPlan(ConversionPath path) {
+        this(path, null);
+    }
+
+    public ConversionPlan(Converter[] converters) {
+        this(converters, null);
+    }
+
+    /**
+     * @param dependencies the types whose converters were considered when the
+     *                     path was found, or <tt>null</tt> if unknown
+     */
+    public ConversionPlan(ConversionPath path, Class[] dependencies) {
+        List list = path.toList();
+        if (list.isEmpty())
+            throw new IllegalArgumentException("empty path");
+        this.converters = (Converter[]) list.toArray(new Converter[list.size()]);
+        this.dependencies = hash(dependencies);
+    }
+
+    /**
+     * @param dependencies the types whose converters were considered when the
+     *                     path was found, or <tt>null</tt> if unknown
+     */
+    public ConversionPlan(Converter[] converters, Class[] dependencies) {
+        if (converters.length == 0)
+            throw new IllegalArgumentException("empty path");
+        this.converters = (Converter[]) converters.clone();
+        this.dependencies = hash(dependencies);
+    }
+
+    /**
+     * Creates a plan which has the same converters and dependencies with the
+     * specified plan.
+     */
+    protected ConversionPlan(ConversionPlan plan) {
+        this.converters = plan.converters;
+        this.dependencies = plan.dependencies;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this plan might change when a converter whose
+     * source type is one of the specified types is registered or deregistered.
+     */
+    public boolean dependsOn(Class[] types) {
+        return ConversionPlan.dependsOn(dependencies, types);
+    }
+
+    static boolean dependsOn(int[] dependencies, Class[] types) {
+        if (dependencies == null) {
+            return true;
+        }
+        for (int j = 0; j < types.length; j++) {
+            int hash = System.identityHashCode(types[j]);
+            for (int i = 0; i < dependencies.length; i++) {
+                if (dependencies[i] == hash) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the identity hash codes of the specified types, or
+     * <tt>null</tt> if <tt>types</tt> is <tt>null</tt>.
+     */
+    static int[] hash(Class[] types) {
+        if (types == null) {
+            return null;
+        }
+        int[] hashes = new int[types.length];
+        for (int i = 0; i < types.length; i++) {
+            hashes[i] = System.identityHashCode(types[i]);
+        }
+        return hashes;
+    }
+
+    /**
+     * Returns the number of {@link Converter}s in this plan.
+     */
+    public int length() {
+        return converters.length;
+    }
+
+    /**
+     * Returns the {@link Converter} at the specified position.
+     */
+    public Converter get(int index) {
+        return converters[index];
+    }
+
+    public List toList() {
+        List ret = new ArrayList(converters.length);
+        for (int i = 0; i < converters.length; i++) {
+            ret.add(converters[i]);
+        }
+        return ret;
+    }
+
+    /**
+     * Makes the path of the specified context this plan.
+     */
+    protected final void updatePath(ConverterContext ctx) {
+        ((ConversionPathImpl) ctx.getPath()).setAll(converters);
+    }
+
+    public Object convert(Object source, ConverterContext ctx) {
+        if (ctx.isPathTracking()) {
+            updatePath(ctx);
+        }
+
+        Object result = source;
+        try {
+            for (int i = 0; i < converters.length; i++) {
+                result = converters[i].doConversion(result, ctx);
+            }
+        } catch (Exception e) {
+            throw new ConversionException(e);
+        }
+        return result;
+    }
+
+    /**
+     * Converts the specified object into an <tt>int</tt>.  The last
+     * converter doesn't box the result if it implements {@link IntConverter}.
+     */
+    public int convertToInt(Object source, ConverterContext ctx) {
+        if (ctx.isPathTracking()) {
+            updatePath(ctx);
+        }
+
+        Object result = source;
+        int last = converters.length - 1;
+        try {
+            for (int i = 0; i < last; i++) {
+                result = converters[i].doConversion(result, ctx);
+            }
+            Converter c = converters[last];
+            if (c instanceof IntConverter) {
+                return ((IntConverter) c).doIntConversion(result, ctx);
+            }
+            return ((Number) c.doConversion(result, ctx)).intValue();
+        } catch (Exception e) {
+            throw new ConversionException(e);
+        }
+    }
+
+    /**
+     * Converts the specified object into a <tt>long</tt>.  The last
+     * converter doesn't box the result if it implements {@link LongConverter}.
+     */
+    public long convertToLong(Object source, ConverterContext ctx) {
+        if (ctx.isPathTracking()) {
+            updatePath(ctx);
+        }
+
+        Object result = source;
+        int last = converters.length - 1;
+        try {
+            for (int i = 0; i < last; i++) {
+                result = converters[i].doConversion(result, ctx);
+            }
+            Converter c = converters[last];
+            if (c instanceof LongConverter) {
+                return ((LongConverter) c).doLongConversion(result, ctx);
+            }
+            return ((Number) c.doConversion(result, ctx)).longValue();
+        } catch (Exception e) {
+            throw new ConversionException(e);
+        }
+    }
+
+    /**
+     * Converts the specified object into a <tt>double</tt>.  The last
+     * converter doesn't box the result if it implements {@link DoubleConverter}.
+     */
+    public double convertToDouble(Object source, ConverterContext ctx) {
+        if (ctx.isPathTracking()) {
+            updatePath(ctx);
+        }
+
+        Object result = source;
+        int last = converters.length - 1;
+        try {
+            for (int i = 0; i < last; i++) {
+                result = converters[i].doConversion(result, ctx);
+            }
+            Converter c = converters[last];
+            if (c instanceof DoubleConverter) {
+                return ((DoubleConverter) c).doDoubleConversion(result, ctx);
+            }
+            return ((Number) c.doConversion(result, ctx)).doubleValue();
+        } catch (Exception e) {
+            throw new ConversionException(e);
+        }
+    }
+
+    /**
+     * Converts the specified object into a <tt>boolean</tt>.  The last
+     * converter doesn't box the result if it implements {@link BooleanConverter}.
+     */
+    public boolean convertToBoolean(Object source, ConverterContext ctx) {
+        if (ctx.isPathTracking()) {
+            updatePath(ctx);
+        }
+
+        Object result = source;
+        int last = converters.length - 1;
+        try {
+            for (int i = 0; i < last; i++) {
+                result = converters[i].doConversion(result, ctx);
+            }
+            Converter c = converters[last];
+            if (c instanceof BooleanConverter) {
+                return ((BooleanConverter) c).doBooleanConversion(result, ctx);
+            }
+            return ((Boolean) c.doConversion(result, ctx)).booleanValue();
+        } catch (Exception e) {
+            throw new ConversionException(e);
+        }
+    }
+
+    public void copy(Object source, Object target, ConverterContext ctx) {
+        if (ctx.isPathTracking()) {
+            updatePath(ctx);
+        }
+
+        Object result = source;
+        int last = converters.length - 1;
+        try {
+            for (int i = 0; i < last; i++) {
+                result = converters[i].doConversion(result, ctx);
+            }
+            converters[last].doCopy(result, target, ctx);
+        } catch (Exception e) {
+            throw new ConversionException(e);
+        }
+    }
+
+    public String toString() {
+        StringBuffer buf = new StringBuffer();
+        for (int i = 0; i < converters.length; i++) {
+            Converter c = converters[i];
+            if (i > 0) {
+                buf.append(", ");
+            }
+            buf.append(c.getSourceType());
+            buf.append(" -> ");
+            buf.append(c.getTargetType());
+        }
+        return buf.toString();
+    }
+
+    public Object clone() {
+        // Immutable
+        return this;
+    }
+}
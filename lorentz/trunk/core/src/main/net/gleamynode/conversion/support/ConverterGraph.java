@@ -0,0 +1,298 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.support;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import net.gleamynode.conversion.Converter;
+import net.gleamynode.conversion.IntermediaryTypes;
+
+/**
+ * A directed graph whose vertices are types and whose edges are the
+ * {@link Converter}s in a {@link ConverterRegistry}.  It finds the shortest
+ * chain of converters between two types with a breadth-first search over
+ * the type signatures of the converters, so no conversion is performed
+ * while searching.
+ * <p>
+ * The vertices are cached in a {@link WeakClassMap}, so searching the path
+ * of a class doesn't keep it from being garbage-collected.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class ConverterGraph {
+    private static final Converter[] EMPTY_CONVERTERS = new Converter[0];
+
+    private final ConverterRegistry registry;
+
+    // WeakClassMap<type, Vertex>
+    private volatile WeakClassMap vertices = WeakClassMap.EMPTY;
+    private final ReferenceQueue queue = new ReferenceQueue();
+    private int generation;
+
+    public ConverterGraph(ConverterRegistry registry) {
+        if (registry == null)
+            throw new NullPointerException("registry");
+        this.registry = registry;
+    }
+
+    /**
+     * Returns the shortest path which converts an object of
+     * <tt>sourceType</tt> into an object of <tt>targetType</tt>.
+     *
+     * @param exclusions the types which must not be used as intermediary types
+     * @param dependencies if not <tt>null</tt>, the types whose converters
+     *                     affected the result are added to this set
+     * @return <tt>null</tt> if there's no such path
+     */
+    public ConversionPlan findConversionPath(Class sourceType, Class targetType, IntermediaryTypes exclusions, Set dependencies) {
+        return findPath(sourceType, targetType, false, exclusions, dependencies);
+    }
+
+    /**
+     * Returns the shortest path which copies an object of <tt>sourceType</tt>
+     * into an object of <tt>targetType</tt>.  All converters but the last one
+     * perform conversion, and the last one performs copy.
+     *
+     * @param exclusions the types which must not be used as intermediary types
+     * @param dependencies if not <tt>null</tt>, the types whose converters
+     *                     affected the result are added to this set
+     * @return <tt>null</tt> if there's no such path
+     */
+    public ConversionPlan findCopyPath(Class sourceType, Class targetType, IntermediaryTypes exclusions, Set dependencies) {
+        return findPath(sourceType, targetType, true, exclusions, dependencies);
+    }
+
+    private ConversionPlan findPath(Class sourceType, Class targetType, boolean copy, IntermediaryTypes exclusions, Set dependencies) {
+        // Don't convert into a supertype of the source type on the way
+        // unless the target type is a supertype of the source type, too.
+        boolean sourceIsTarget = targetType.isAssignableFrom(sourceType);
+
+        Set visited = new HashSet();
+        LinkedList queue = new LinkedList();
+        visited.add(sourceType);
+        queue.add(new Step(getVertex(sourceType), null, null));
+
+        while (!queue.isEmpty()) {
+            Step step = (Step) queue.removeFirst();
+            Vertex v = step.vertex;
+            if (dependencies != null) {
+                for (int i = 0; i < v.types.length; i++) {
+                    dependencies.add((Class) v.types[i].get());
+                }
+            }
+
+            // Look for the terminal converter first so that the shortest
+            // path is chosen.  The one whose target type is exactly the
+            // requested type wins over the ones of its subtypes, whose order
+            // is not defined.
+            Converter terminal = null;
+            for (int i = 0; i < v.converters.length; i++) {
+                Converter c = v.converters[i];
+                if (!targetType.isAssignableFrom(c.getTargetType()) ||
+                        !(copy? registry.supportsCopy(c) : registry.supportsConversion(c))) {
+                    continue;
+                }
+                if (c.getTargetType() == targetType) {
+                    terminal = c;
+                    break;
+                }
+                if (terminal == null) {
+                    terminal = c;
+                }
+            }
+            if (terminal != null) {
+                return new Step(null, terminal, step).toPlan();
+            }
+
+            for (int i = 0; i < v.converters.length; i++) {
+                Converter c = v.converters[i];
+                Class t = c.getTargetType();
+                if (targetType.isAssignableFrom(t) ||
+                        !registry.supportsConversion(c) ||
+                        visited.contains(t) ||
+                        (!sourceIsTarget && t.isAssignableFrom(sourceType)) ||
+                        (exclusions != null && exclusions.contains(t))) {
+                    continue;
+                }
+
+                visited.add(t);
+                queue.add(new Step(getVertex(t), c, step));
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns all converters which can convert an object of the specified
+     * type; the converters of the type itself come first, and then the ones
+     * of its superclasses, its interfaces, and {@link Object}.
+     */
+    public Converter[] getConverters(Class type) {
+        return getVertex(type).converters;
+    }
+
+    /**
+     * Discards the cached edges which involve any of the specified types.
+     * {@link ConverterRegistry} calls this method when the converters of the
+     * types have been changed.
+     */
+    public synchronized void invalidate(Class[] types) {
+        WeakClassMap vertices = this.vertices;
+        Class[] keys = vertices.keys();
+        for (int i = 0; i < keys.length; i++) {
+            if (((Vertex) vertices.get(keys[i])).dependsOn(types)) {
+                vertices = vertices.remove(keys[i]);
+            }
+        }
+        this.vertices = vertices;
+        generation ++;
+    }
+
+    private Vertex getVertex(Class type) {
+        Vertex v = (Vertex) vertices.get(type);
+        if (v != null) {
+            return v;
+        }
+
+        int generation;
+        synchronized (this) {
+            generation = this.generation;
+        }
+        v = newVertex(type);
+        synchronized (this) {
+            // Don't cache what was found while the registry was changing.
+            if (this.generation == generation) {
+                if (queue.poll() != null) {
+                    while (queue.poll() != null) {
+                        continue;
+                    }
+                    vertices = vertices.purge();
+                }
+                vertices = vertices.put(type, v, queue);
+            }
+        }
+        return v;
+    }
+
+    private Vertex newVertex(Class type) {
+        List types = new ArrayList();
+        types.add(type);
+        if (!type.isPrimitive()) {
+            // Superclasses first (except Object)
+            for (Class c = type.getSuperclass();
+                 c != null && c != Object.class;
+                 c = c.getSuperclass()) {
+                types.add(c);
+            }
+
+            // And then interfaces
+            for (int i = 0; i < types.size(); i++) {
+                Class[] interfaces = ((Class) types.get(i)).getInterfaces();
+                for (int j = 0; j < interfaces.length; j++) {
+                    if (!types.contains(interfaces[j])) {
+                        types.add(interfaces[j]);
+                    }
+                }
+            }
+
+            // Object lastly
+            if (type != Object.class) {
+                types.add(Object.class);
+            }
+        }
+
+        List converters = new ArrayList();
+        for (int i = 0; i < types.size(); i++) {
+            Converter[] direct = registry.getDirectConverters((Class) types.get(i));
+            for (int j = 0; j < direct.length; j++) {
+                if (!converters.contains(direct[j])) {
+                    converters.add(direct[j]);
+                }
+            }
+        }
+
+        return new Vertex(
+                (Class[]) types.toArray(new Class[types.size()]),
+                converters.isEmpty()? EMPTY_CONVERTERS :
+                    (Converter[]) converters.toArray(new Converter[converters.size()]));
+    }
+
+    /**
+     * A type and the converters which can convert an object of the type.
+     */
+    private static class Vertex {
+        // The type and all its supertypes.  They are referred to weakly so
+        // that a cached vertex doesn't keep its type from being collected;
+        // the supertypes are alive as long as the type is.
+        private final WeakReference[] types;
+        private final Converter[] converters;
+
+        private Vertex(Class[] types, Converter[] converters) {
+            this.types = new WeakReference[types.length];
+            for (int i = 0; i < types.length; i++) {
+                this.types[i] = new WeakReference(types[i]);
+            }
+            this.converters = converters;
+        }
+
+        private boolean dependsOn(Class[] types) {
+            for (int i = 0; i < this.types.length; i++) {
+                for (int j = 0; j < types.length; j++) {
+                    if (this.types[i].get() == types[j]) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A step of a path being searched.
+     */
+    private static class Step {
+        private final Vertex vertex;
+        private final Converter converter;
+        private final Step parent;
+        private final int depth;
+
+        private Step(Vertex vertex, Converter converter, Step parent) {
+            this.vertex = vertex;
+            this.converter = converter;
+            this.parent = parent;
+            this.depth = parent == null? 0 : parent.depth + 1;
+        }
+
+        private ConversionPlan toPlan() {
+            Converter[] converters = new Converter[depth];
+            for (Step s = this; s.parent != null; s = s.parent) {
+                converters[s.depth - 1] = s.converter;
+            }
+            return new ConversionPlan(converters);
+        }
+    }
+}
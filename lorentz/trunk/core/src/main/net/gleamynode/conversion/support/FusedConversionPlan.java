@@ -0,0 +1,128 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.support;
+
+import net.gleamynode.conversion.ConversionException;
+import net.gleamynode.conversion.Converter;
+import net.gleamynode.conversion.ConverterContext;
+
+/**
+ * A {@link ConversionPlan} of two or three hops which calls its converters
+ * in straight-line code instead of a loop over an array.  A plan of one hop
+ * is not fused because there's no loop to save.
+ * <p>
+ * Use {@link #fuse(ConversionPlan)} to get one.  A fused plan behaves
+ * exactly the same as the original plan, so it can replace the original in
+ * {@link ConversionPathCache}.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public abstract class FusedConversionPlan extends ConversionPlan {
+
+    private static final long serialVersionUID = 6105380453364843290L;
+
+    /**
+     * The minimum length of the plans that can be fused.
+     */
+    public static final int MIN_LENGTH = 2;
+
+    /**
+     * The maximum length of the plans that can be fused.
+     */
+    public static final int MAX_LENGTH = 3;
+
+    /**
+     * Returns the fused version of the specified plan, or the specified plan
+     * itself if it is already fused, shorter than {@link #MIN_LENGTH} or
+     * longer than {@link #MAX_LENGTH}.
+     */
+    public static ConversionPlan fuse(ConversionPlan plan) {
+        if (plan instanceof FusedConversionPlan) {
+            return plan;
+        }
+        switch (plan.length()) {
+        case 2:
+            return new TwoHops(plan);
+        case 3:
+            return new ThreeHops(plan);
+        default:
+            return plan;
+        }
+    }
+
+    private FusedConversionPlan(ConversionPlan plan) {
+        super(plan);
+    }
+
+    private static class TwoHops extends FusedConversionPlan {
+        private static final long serialVersionUID = 2813040562316047728L;
+
+        private final Converter first;
+        private final Converter second;
+
+        private TwoHops(ConversionPlan plan) {
+            super(plan);
+            first = plan.get(0);
+            second = plan.get(1);
+        }
+
+        public Object convert(Object source, ConverterContext ctx) {
+            if (ctx.isPathTracking()) {
+                updatePath(ctx);
+            }
+
+            try {
+                return second.doConversion(
+                        first.doConversion(source, ctx), ctx);
+            } catch (Exception e) {
+                throw new ConversionException(e);
+            }
+        }
+    }
+
+    private static class ThreeHops extends FusedConversionPlan {
+        private static final long serialVersionUID = -5640470712936307641L;
+
+        private final Converter first;
+        private final Converter second;
+        private final Converter third;
+
+        private ThreeHops(ConversionPlan plan) {
+            super(plan);
+            first = plan.get(0);
+            second = plan.get(1);
+            third = plan.get(2);
+        }
+
+        public Object convert(Object source, ConverterContext ctx) {
+            if (ctx.isPathTracking()) {
+                updatePath(ctx);
+            }
+
+            try {
+                return third.doConversion(
+                        second.doConversion(
+                                first.doConversion(source, ctx), ctx), ctx);
+            } catch (Exception e) {
+                throw new ConversionException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.support;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import net.gleamynode.conversion.Converter;
+import net.gleamynode.conversion.ConverterContext;
+
+/**
+ * A {@link Converter} which remembers the results of another converter, so
+ * that an expensive lookup such as a DNS query or {@link Class#forName(String)}
+ * is not repeated for the same source object.  Wrap only a converter whose
+ * result depends on nothing but the source object, and whose source objects
+ * are immutable and implement {@link Object#equals(Object)}.  A result is
+ * shared by all callers, so override {@link #copyValue(Object)} if it is
+ * mutable.
+ * <p>
+ * Up to the specified number of results are remembered, for the specified
+ * time if any.  When the limit is reached, the expired results and about
+ * one eighth of the others are evicted at once, the ones which have not been
+ * used since the last eviction first.  Failed conversions are never
+ * remembered.
+ * <p>
+ * Setting the {@link #BYPASS} attribute of a {@link ConverterContext} to
+ * {@link Boolean#TRUE} makes the conversions with the context skip the cache.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class MemoizingConverter extends Converter {
+    /**
+     * The name of the {@link ConverterContext} attribute which makes the
+     * conversion performed by the wrapped converter directly, neither
+     * reading nor updating the cache, if set to {@link Boolean#TRUE}.
+     */
+    public static final String BYPASS = MemoizingConverter.class.getName() + ".bypass";
+
+    private final Converter converter;
+    private final int maxSize;
+    private final long timeToLive;
+    // Map<source, Entry>
+    private final Map entries = new HashMap();
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Creates a new instance which remembers up to <tt>maxSize</tt> results
+     * of the specified converter forever.
+     */
+    public MemoizingConverter(Converter converter, int maxSize) {
+        this(converter, maxSize, 0);
+    }
+
+    /**
+     * Creates a new instance which remembers up to <tt>maxSize</tt> results
+     * of the specified converter.
+     *
+     * @param timeToLive the number of milliseconds to remember a result for,
+     *                   or <tt>0</tt> to remember it until it is evicted
+     */
+    public MemoizingConverter(Converter converter, int maxSize, long timeToLive) {
+        super(converter.getSourceType(), converter.getTargetType());
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("maxSize: " + maxSize);
+        if (timeToLive < 0)
+            throw new IllegalArgumentException("timeToLive: " + timeToLive);
+        this.converter = converter;
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Returns the converter whose results are remembered.
+     */
+    public Converter getConverter() {
+        return converter;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of milliseconds to remember a result for, or
+     * <tt>0</tt> if a result is remembered until it is evicted.
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Returns the number of the remembered results, including the expired
+     * ones which are not evicted yet.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of the conversions which found a remembered result.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of the conversions which had to be performed by the
+     * wrapped converter, except the bypassed ones.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of the results evicted to keep the size of the
+     * cache under the limit, including the expired ones.
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Forgets all remembered results.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public boolean supportsConversion() {
+        return converter.supportsConversion();
+    }
+
+    public boolean supportsCopy() {
+        return false;
+    }
+
+    public Object doConversion(Object o, ConverterContext ctx) throws Exception {
+        if (Boolean.TRUE.equals(ctx.getAttribute(BYPASS))) {
+            return converter.doConversion(o, ctx);
+        }
+
+        synchronized (this) {
+            Entry e = (Entry) entries.get(o);
+            if (e != null && !e.isExpired(System.currentTimeMillis())) {
+                hitCount ++;
+                e.used = true;
+                return copyValue(e.value);
+            }
+            missCount ++;
+        }
+
+        // Don't hold the lock while converting; two threads may convert the
+        // same object at the same time, but the results are equal anyway.
+        Object value = converter.doConversion(o, ctx);
+        synchronized (this) {
+            if (!entries.containsKey(o) && entries.size() >= maxSize) {
+                evict();
+            }
+            long expiration = timeToLive == 0? Long.MAX_VALUE :
+                System.currentTimeMillis() + timeToLive;
+            entries.put(o, new Entry(value, expiration));
+        }
+        return copyValue(value);
+    }
+
+    /**
+     * Returns the object to return for the specified result of the wrapped
+     * converter.  Override this method to return a copy of the result if it
+     * is mutable; the default implementation returns the result itself.
+     */
+    protected Object copyValue(Object value) {
+        return value;
+    }
+
+    /**
+     * Evicts the expired results and about one eighth of the others, the
+     * ones which have not been used since the last eviction first.
+     */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        int goal = Math.max(1, maxSize / 8);
+        int evicted = 0;
+
+        // The first round clears the marks, so the second round never fails
+        // to meet the goal.
+        for (int round = 0; round < 2 && evicted < goal; round++) {
+            for (Iterator it = entries.values().iterator(); it.hasNext();) {
+                Entry e = (Entry) it.next();
+                if (e.isExpired(now)) {
+                    it.remove();
+                    evicted ++;
+                } else if (evicted >= goal) {
+                    continue;
+                } else if (e.used) {
+                    e.used = false;
+                } else {
+                    it.remove();
+                    evicted ++;
+                }
+            }
+        }
+
+        evictionCount += evicted;
+    }
+
+    private static class Entry {
+        private final Object value;
+        private final long expiration;
+        private boolean used;
+
+        private Entry(Object value, long expiration) {
+            this.value = value;
+            this.expiration = expiration;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiration;
+        }
+    }
+}
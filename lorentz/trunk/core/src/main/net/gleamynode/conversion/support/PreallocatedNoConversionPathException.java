@@ -0,0 +1,42 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.support;
+
+import net.gleamynode.conversion.NoConversionPathException;
+
+/**
+ * A {@link NoConversionPathException} which doesn't fill in its stack trace.
+ * {@link ConversionPathCache} keeps one per failed conversion so that it can
+ * be thrown again without the cost of creating a new exception.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+class PreallocatedNoConversionPathException extends NoConversionPathException {
+
+    private static final long serialVersionUID = 3563458214290693512L;
+
+    PreallocatedNoConversionPathException(String message) {
+        super(message);
+    }
+
+    public Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -43,6 +43,27 @@ public class PrimitiveTypeUtil
         return null;
     }
     
+    public static Class toWrapperType(Class type)
+    {
+        if (type == boolean.class)
+            return Boolean.class;
+        if (type == byte.class)
+            return Byte.class;
+        if (type == char.class)
+            return Character.class;
+        if (type == double.class)
+            return Double.class;
+        if (type == float.class)
+            return Float.class;
+        if (type == int.class)
+            return Integer.class;
+        if (type == long.class)
+            return Long.class;
+        if (type == short.class)
+            return Short.class;
+        return null;
+    }
+    
     private PrimitiveTypeUtil()
     {
     }
@@ -141,6 +141,9 @@ public class StringEscapeUtils {
         if (str == null) {
             return null;
         }
+        if (!needsJavaStyleEscape(str, escapeSingleQuotes)) {
+            return str;
+        }
         try {
             StringPrintWriter writer = new StringPrintWriter(str.length() * 2);
             escapeJavaStyleString(writer, str, escapeSingleQuotes);
@@ -225,6 +228,23 @@ public class StringEscapeUtils {
         }
     }
 
+    /**
+     * <p>Returns <code>true</code> if the specified <code>String</code> has
+     * a character which is escaped by
+     * {@link #escapeJavaStyleString(Writer, String, boolean)}.</p>
+     */
+    private static boolean needsJavaStyleEscape(String str, boolean escapeSingleQuote) {
+        int sz = str.length();
+        for (int i = 0; i < sz; i++) {
+            char ch = str.charAt(i);
+            if (ch > 0x7f || ch < 32 || ch == '"' || ch == '\\' ||
+                    (escapeSingleQuote && ch == '\'')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * <p>Returns an upper case hexadecimal <code>String</code> for the given
      * character.</p>
@@ -249,6 +269,9 @@ public class StringEscapeUtils {
         if (str == null) {
             return null;
         }
+        if (str.indexOf('\\') < 0) {
+            return str;
+        }
         try {
             StringPrintWriter writer = new StringPrintWriter(str.length());
             unescapeJava(writer, str);
@@ -424,11 +447,31 @@ public class StringEscapeUtils {
         if (str == null) {
             return null;
         }
-        //todo: add a version that takes a Writer
-        //todo: rewrite underlying method to use a Writer instead of a StringBuffer
         return Entities.HTML40.escape(str);
     }
 
+    /**
+     * <p>Escapes the characters in a <code>String</code> using HTML entities
+     * and writes them to a <code>Writer</code>.</p>
+     *
+     * <p>A <code>null</code> string input has no effect.</p>
+     *
+     * @param out  the <code>Writer</code> used to output escaped characters
+     * @param str  the <code>String</code> to escape, may be null
+     * @throws IllegalArgumentException if the Writer is <code>null</code>
+     * @throws IOException if error occurs on underlying Writer
+     * @see #escapeHtml(String)
+     */
+    public static void escapeHtml(Writer out, String str) throws IOException {
+        if (out == null) {
+            throw new IllegalArgumentException("The Writer must not be null");
+        }
+        if (str == null) {
+            return;
+        }
+        Entities.HTML40.escape(out, str);
+    }
+
     /**
      * <p>Unescapes a string containing entity escapes to a string
      * containing the actual Unicode characters corresponding to the
@@ -452,6 +495,28 @@ public class StringEscapeUtils {
         return Entities.HTML40.unescape(str);
     }
 
+    /**
+     * <p>Unescapes a string containing entity escapes to a
+     * <code>Writer</code>.  Supports HTML 4.0 entities.</p>
+     *
+     * <p>A <code>null</code> string input has no effect.</p>
+     *
+     * @param out  the <code>Writer</code> used to output unescaped characters
+     * @param str  the <code>String</code> to unescape, may be null
+     * @throws IllegalArgumentException if the Writer is <code>null</code>
+     * @throws IOException if error occurs on underlying Writer
+     * @see #unescapeHtml(String)
+     */
+    public static void unescapeHtml(Writer out, String str) throws IOException {
+        if (out == null) {
+            throw new IllegalArgumentException("The Writer must not be null");
+        }
+        if (str == null) {
+            return;
+        }
+        Entities.HTML40.unescape(out, str);
+    }
+
     /**
      * <p>Escapes the characters in a <code>String</code> using XML entities.</p>
      *
@@ -473,6 +538,28 @@ public class StringEscapeUtils {
         return Entities.XML.escape(str);
     }
 
+    /**
+     * <p>Escapes the characters in a <code>String</code> using XML entities
+     * and writes them to a <code>Writer</code>.</p>
+     *
+     * <p>A <code>null</code> string input has no effect.</p>
+     *
+     * @param out  the <code>Writer</code> used to output escaped characters
+     * @param str  the <code>String</code> to escape, may be null
+     * @throws IllegalArgumentException if the Writer is <code>null</code>
+     * @throws IOException if error occurs on underlying Writer
+     * @see #escapeXml(String)
+     */
+    public static void escapeXml(Writer out, String str) throws IOException {
+        if (out == null) {
+            throw new IllegalArgumentException("The Writer must not be null");
+        }
+        if (str == null) {
+            return;
+        }
+        Entities.XML.escape(out, str);
+    }
+
     /**
      * <p>Unescapes a string containing XML entity escapes to a string
      * containing the actual Unicode characters corresponding to the
@@ -492,6 +579,28 @@ public class StringEscapeUtils {
         return Entities.XML.unescape(str);
     }
 
+    /**
+     * <p>Unescapes a string containing XML entity escapes to a
+     * <code>Writer</code>.</p>
+     *
+     * <p>A <code>null</code> string input has no effect.</p>
+     *
+     * @param out  the <code>Writer</code> used to output unescaped characters
+     * @param str  the <code>String</code> to unescape, may be null
+     * @throws IllegalArgumentException if the Writer is <code>null</code>
+     * @throws IOException if error occurs on underlying Writer
+     * @see #unescapeXml(String)
+     */
+    public static void unescapeXml(Writer out, String str) throws IOException {
+        if (out == null) {
+            throw new IllegalArgumentException("The Writer must not be null");
+        }
+        if (str == null) {
+            return;
+        }
+        Entities.XML.unescape(out, str);
+    }
+
     /**
      * <p>Escapes the characters in a <code>String</code> to be suitable to pass to
      * an SQL query.</p>
@@ -15,9 +15,7 @@
  */
 package net.gleamynode.conversion.support.lang.builder;
 
-import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
 import java.util.Comparator;
 
 import net.gleamynode.conversion.support.lang.math.NumberUtils;
@@ -64,7 +62,9 @@ import net.gleamynode.conversion.support.lang.math.NumberUtils;
  * <code>reflectionCompare</code> uses {@link java.lang.reflect.AccessibleObject#setAccessible(boolean)} to
  * bypass normal access control checks. This will fail under a security manager,
  * unless the appropriate permissions are set up correctly. It is also
- * slower than appending explicitly.</p>
+ * slower than appending explicitly, although the fields of a class are
+ * looked up and made accessible only once if there's no security
+ * manager.</p>
  *
  * <p>A typical implementation of <code>compareTo(Object)</code> using
  * <code>reflectionCompare</code> looks like:</p>
@@ -237,20 +237,15 @@ public class CompareToBuilder {
         CompareToBuilder builder,
         boolean useTransients) {
         
-        Field[] fields = clazz.getDeclaredFields();
-        AccessibleObject.setAccessible(fields, true);
+        Field[] fields = ReflectionFields.getInstanceFields(clazz, useTransients);
         for (int i = 0; i < fields.length && builder.comparison == 0; i++) {
             Field f = fields[i];
-            if ((f.getName().indexOf('$') == -1)
-                && (useTransients || !Modifier.isTransient(f.getModifiers()))
-                && (!Modifier.isStatic(f.getModifiers()))) {
-                try {
-                    builder.append(f.get(lhs), f.get(rhs));
-                } catch (IllegalAccessException e) {
-                    // This can't happen. Would get a Security exception instead.
-                    // Throw a runtime exception in case the impossible happens.
-                    throw new InternalError("Unexpected IllegalAccessException");
-                }
+            try {
+                builder.append(f.get(lhs), f.get(rhs));
+            } catch (IllegalAccessException e) {
+                // This can't happen. Would get a Security exception instead.
+                // Throw a runtime exception in case the impossible happens.
+                throw new InternalError("Unexpected IllegalAccessException");
             }
         }
     }
@@ -0,0 +1,162 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.support.lang.builder;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import net.gleamynode.conversion.support.WeakClassMap;
+
+/**
+ * <p>A cache of the fields which the reflection builders read from a
+ * class.  {@link Class#getDeclaredFields()} copies the fields and
+ * {@link AccessibleObject#setAccessible(AccessibleObject[], boolean)}
+ * checks the permission on every call, so the fields of a class are looked
+ * up, made accessible and filtered only once.</p>
+ *
+ * <p>The classes are referred to weakly.  A {@link Field} refers to its
+ * declaring class, so the fields of a class are held by a
+ * {@link SoftReference}; the class and its class loader can be
+ * garbage-collected once the fields have been cleared under memory
+ * pressure, and the fields are looked up again if the class is still
+ * used.</p>
+ *
+ * <p>The fields are not cached while a security manager is installed.
+ * Otherwise a caller without the permission to make them accessible could
+ * read the fields which another caller has made accessible.  They are
+ * looked up for each call instead, so that the permission is checked for
+ * every caller.</p>
+ *
+ * <p>The returned arrays are shared and must not be modified.</p>
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+final class ReflectionFields {
+
+    // WeakClassMap<Class, SoftReference<Fields>>
+    private static volatile WeakClassMap cCache = WeakClassMap.EMPTY;
+    private static final ReferenceQueue cQueue = new ReferenceQueue();
+
+    private ReflectionFields() {
+    }
+
+    /**
+     * <p>Returns all fields declared by the class, made accessible.</p>
+     *
+     * @param clazz  the class
+     * @return the fields
+     * @throws SecurityException if the fields cannot be made accessible
+     */
+    static Field[] getDeclaredFields(Class clazz) {
+        return getFields(clazz).mDeclared;
+    }
+
+    /**
+     * <p>Returns the instance fields declared by the class, made accessible,
+     * except the ones with a '$' in their names which the compiler
+     * generates.</p>
+     *
+     * @param clazz  the class
+     * @param useTransients  whether to include transient fields
+     * @return the fields
+     * @throws SecurityException if the fields cannot be made accessible
+     */
+    static Field[] getInstanceFields(Class clazz, boolean useTransients) {
+        Fields fields = getFields(clazz);
+        return useTransients ? fields.mInstance : fields.mNonTransient;
+    }
+
+    private static Fields getFields(Class clazz) {
+        if (System.getSecurityManager() != null) {
+            return new Fields(clazz);
+        }
+
+        SoftReference ref = (SoftReference) cCache.get(clazz);
+        if (ref != null) {
+            Fields fields = (Fields) ref.get();
+            if (fields != null) {
+                return fields;
+            }
+        }
+
+        Fields fields = new Fields(clazz);
+        synchronized (ReflectionFields.class) {
+            if (cQueue.poll() != null) {
+                while (cQueue.poll() != null) {
+                    continue;
+                }
+                cCache = cCache.purge();
+            }
+            cCache = cCache.put(clazz, new SoftReference(fields), cQueue);
+        }
+        return fields;
+    }
+
+    /**
+     * <p>Inner class to hold the fields of a class.</p>
+     */
+    private static class Fields {
+        private final Field[] mDeclared;
+        private final Field[] mInstance;
+        private final Field[] mNonTransient;
+
+        Fields(Class clazz) {
+            Field[] declared = clazz.getDeclaredFields();
+            AccessibleObject.setAccessible(declared, true);
+
+            int instanceCount = 0;
+            int nonTransientCount = 0;
+            for (int i = 0; i < declared.length; i++) {
+                if (isInstanceField(declared[i])) {
+                    instanceCount++;
+                    if (!Modifier.isTransient(declared[i].getModifiers())) {
+                        nonTransientCount++;
+                    }
+                }
+            }
+
+            Field[] instance = new Field[instanceCount];
+            Field[] nonTransient = new Field[nonTransientCount];
+            instanceCount = 0;
+            nonTransientCount = 0;
+            for (int i = 0; i < declared.length; i++) {
+                if (isInstanceField(declared[i])) {
+                    instance[instanceCount++] = declared[i];
+                    if (!Modifier.isTransient(declared[i].getModifiers())) {
+                        nonTransient[nonTransientCount++] = declared[i];
+                    }
+                }
+            }
+
+            mDeclared = declared;
+            mInstance = instance;
+            mNonTransient = nonTransient;
+        }
+
+        private static boolean isInstanceField(Field f) {
+            return f.getName().indexOf('$') == -1
+                && !Modifier.isStatic(f.getModifiers());
+        }
+    }
+
+}
@@ -15,11 +15,8 @@
  */
 package net.gleamynode.conversion.support.lang.builder;
 
-import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
-import java.util.HashSet;
-import java.util.Set;
 
 import net.gleamynode.conversion.support.lang.ClassUtils;
 
@@ -33,7 +30,10 @@ import net.gleamynode.conversion.support.lang.ClassUtils;
  * fields are usually private, the class uses
  * {@link java.lang.reflect.AccessibleObject#setAccessible(java.lang.reflect.AccessibleObject[], boolean)}
  * to change the visibility of the fields. This will fail under a security
- * manager, unless the appropriate permissions are set up correctly.
+ * manager, unless the appropriate permissions are set up correctly. The
+ * fields of a class are looked up and made accessible only once, and then
+ * reused until the class is garbage-collected, if there's no security
+ * manager.
  * </p>
  * 
  * <p>
@@ -100,9 +100,7 @@ public class ReflectionToStringBuilder extends ToStringBuilder {
      */
     private static ThreadLocal registry = new ThreadLocal() {
         protected synchronized Object initialValue() {
-            // The HashSet implementation is not synchronized,
-            // which is just what we need here.
-            return new HashSet();
+            return new Registry();
         }
     };
 
@@ -112,10 +110,10 @@ public class ReflectionToStringBuilder extends ToStringBuilder {
      * methods in the current thread.
      * </p>
      * 
-     * @return Set the registry of objects being traversed
+     * @return Registry the registry of objects being traversed
      */
-    static Set getRegistry() {
-        return (Set) registry.get();
+    static Registry getRegistry() {
+        return (Registry) registry.get();
     }
 
     /**
@@ -124,6 +122,11 @@ public class ReflectionToStringBuilder extends ToStringBuilder {
      * Used by the reflection methods to avoid infinite loops.
      * </p>
      * 
+     * <p>
+     * The objects are compared by identity, so an object which merely
+     * equals one being traversed is not mistaken for a cycle.
+     * </p>
+     * 
      * @param value
      *                  The object to lookup in the registry.
      * @return boolean <code>true</code> if the registry contains the given
@@ -143,7 +146,7 @@ public class ReflectionToStringBuilder extends ToStringBuilder {
      *                  The object to register.
      */
     static void register(Object value) {
-        getRegistry().add(value);
+        getRegistry().push(value);
     }
 
     /**
@@ -422,6 +425,55 @@ public class ReflectionToStringBuilder extends ToStringBuilder {
         getRegistry().remove(value);
     }
 
+    /**
+     * <p>
+     * Inner class to hold the objects being traversed in a thread.
+     * </p>
+     * 
+     * <p>
+     * The objects are kept in a stack, as they are registered and
+     * unregistered in nested calls, and compared by identity.  The stack is
+     * as deep as the object graph being traversed, which is usually so
+     * shallow that searching it is cheaper than hashing the objects, and it
+     * doesn't call <code>hashCode</code> or <code>equals</code> of the
+     * objects.
+     * </p>
+     */
+    static final class Registry {
+        private Object[] objects = new Object[8];
+        private int size;
+
+        boolean contains(Object value) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (objects[i] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void push(Object value) {
+            if (size == objects.length) {
+                Object[] newObjects = new Object[size * 2];
+                System.arraycopy(objects, 0, newObjects, 0, size);
+                objects = newObjects;
+            }
+            objects[size++] = value;
+        }
+
+        void remove(Object value) {
+            // The topmost one, which is the last one pushed
+            for (int i = size - 1; i >= 0; i--) {
+                if (objects[i] == value) {
+                    size--;
+                    System.arraycopy(objects, i + 1, objects, i, size - i);
+                    objects[size] = null;
+                    return;
+                }
+            }
+        }
+    }
+
     /**
      * Whether or not to append static fields.
      */
@@ -602,7 +654,8 @@ public class ReflectionToStringBuilder extends ToStringBuilder {
      *                  The class of object parameter
      */
     protected void appendFieldsIn(Class clazz) {
-        if (isRegistered(this.getObject())) {
+        Registry registry = getRegistry();
+        if (registry.contains(this.getObject())) {
             // The object has already been appended, therefore we have an
             // object cycle.
             // Append a simple Object.toString style string. The field name is
@@ -611,13 +664,12 @@ public class ReflectionToStringBuilder extends ToStringBuilder {
             return;
         }
         try {
-            this.registerObject();
+            registry.push(this.getObject());
             if (clazz.isArray()) {
                 this.reflectionAppendArray(this.getObject());
                 return;
             }
-            Field[] fields = clazz.getDeclaredFields();
-            AccessibleObject.setAccessible(fields, true);
+            Field[] fields = ReflectionFields.getDeclaredFields(clazz);
             for (int i = 0; i < fields.length; i++) {
                 Field field = fields[i];
                 String fieldName = field.getName();
@@ -626,7 +678,7 @@ public class ReflectionToStringBuilder extends ToStringBuilder {
                         // Warning: Field.get(Object) creates wrappers objects
                         // for primitive types.
                         Object fieldValue = this.getValue(field);
-                        if (isRegistered(fieldValue) && !field.getType().isPrimitive()) {
+                        if (!field.getType().isPrimitive() && registry.contains(fieldValue)) {
                             // A known field value has already been appended,
                             // therefore we have an object cycle,
                             // append a simple Object.toString style string.
@@ -638,12 +690,7 @@ public class ReflectionToStringBuilder extends ToStringBuilder {
                             // below will append the field
                             // end marker.
                         } else {
-                            try {
-                                this.registerObject();
-                                this.append(fieldName, fieldValue);
-                            } finally {
-                                this.unregisterObject();
-                            }
+                            this.append(fieldName, fieldValue);
                         }
                     } catch (IllegalAccessException ex) {
                         //this can't happen. Would get a Security exception
@@ -655,7 +702,7 @@ public class ReflectionToStringBuilder extends ToStringBuilder {
                 }
             }
         } finally {
-            this.unregisterObject();
+            registry.remove(this.getObject());
         }
     }
 
@@ -785,13 +832,29 @@ public class ReflectionToStringBuilder extends ToStringBuilder {
         if (this.getObject() == null) {
             return this.getStyle().getNullText();
         }
-        Class clazz = this.getObject().getClass();
-        this.appendFieldsIn(clazz);
-        while (clazz.getSuperclass() != null && clazz != this.getUpToClass()) {
-            clazz = clazz.getSuperclass();
+        return this.toStringBuffer().toString();
+    }
+
+    /**
+     * <p>
+     * Appends the fields and completes the <code>toString</code> in the
+     * <code>StringBuffer</code> being populated, without copying it into a
+     * <code>String</code>.
+     * </p>
+     * 
+     * @return the <code>StringBuffer</code> being populated
+     * @see ToStringBuilder#toStringBuffer()
+     */
+    public StringBuffer toStringBuffer() {
+        if (this.getObject() != null) {
+            Class clazz = this.getObject().getClass();
             this.appendFieldsIn(clazz);
+            while (clazz.getSuperclass() != null && clazz != this.getUpToClass()) {
+                clazz = clazz.getSuperclass();
+                this.appendFieldsIn(clazz);
+            }
         }
-        return super.toString();
+        return super.toStringBuffer();
     }
 
     /**
@@ -92,6 +92,11 @@ public abstract class ToStringStyle implements Serializable {
      * The simple toString style.
      */
     public static final ToStringStyle SIMPLE_STYLE = new SimpleToStringStyle();
+
+    /**
+     * The digits of the identity hashcode.
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
     
     /**
      * Whether to use the field names, the default is <code>true</code>.
@@ -1317,7 +1322,15 @@ public abstract class ToStringStyle implements Serializable {
     protected void appendIdentityHashCode(StringBuffer buffer, Object object) {
         if (this.isUseIdentityHashCode() && object!=null) {
             buffer.append('@');
-            buffer.append(Integer.toHexString(System.identityHashCode(object)));
+            // Same as Integer.toHexString() without creating a String
+            int hashCode = System.identityHashCode(object);
+            int shift = 28;
+            while (shift > 0 && (hashCode >>> shift) == 0) {
+                shift -= 4;
+            }
+            for (; shift >= 0; shift -= 4) {
+                buffer.append(HEX_DIGITS[(hashCode >>> shift) & 0xf]);
+            }
         }
     }
 
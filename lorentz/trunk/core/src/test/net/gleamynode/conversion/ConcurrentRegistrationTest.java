@@ -0,0 +1,139 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.gleamynode.conversion.support.ObjectToStringConverter;
+import net.gleamynode.conversion.support.StringToDateConverter;
+import net.gleamynode.conversion.support.StringToLongConverter;
+import net.gleamynode.conversion.support.StringToStringBufferConverter;
+
+/**
+ * Registers and deregisters a {@link ConverterPack} repeatedly while other
+ * threads are converting objects.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class ConcurrentRegistrationTest extends TestCase {
+
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 100;
+
+    private final ConverterPack pack = new ConverterPack() {
+        public Iterator newConverters() {
+            List converters = new ArrayList();
+            converters.add(new StringToStringBufferConverter());
+            return converters.iterator();
+        }
+    };
+
+    private final List errors = Collections.synchronizedList(new ArrayList());
+    private volatile boolean running;
+
+    public void setUp() {
+        Converter.register(new ObjectToStringConverter());
+        Converter.register(new StringToLongConverter());
+        Converter.register(new StringToDateConverter());
+    }
+
+    public void testConcurrentRegistration() throws Exception {
+        running = true;
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    while (running) {
+                        try {
+                            convert();
+                        } catch (Throwable t) {
+                            errors.add(t);
+                            return;
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        try {
+            for (int i = 0; i < ROUNDS && errors.isEmpty(); i++) {
+                Converter.register(pack);
+                Thread.yield();
+                Converter.deregister(pack);
+                Thread.yield();
+            }
+        } finally {
+            running = false;
+            for (int i = 0; i < threads.length; i++) {
+                threads[i].join();
+            }
+        }
+
+        if (!errors.isEmpty()) {
+            Throwable t = (Throwable) errors.get(0);
+            t.printStackTrace();
+            Assert.fail("Conversion failed: " + t);
+        }
+
+        // The pack is deregistered at last.
+        try {
+            Converter.convert("1234", StringBuffer.class);
+            Assert.fail();
+        } catch (NoConversionPathException e) {
+        }
+
+        Converter.register(pack);
+        try {
+            Assert.assertEquals(
+                    "1234",
+                    Converter.convert("1234", StringBuffer.class).toString());
+        } finally {
+            Converter.deregister(pack);
+        }
+    }
+
+    private void convert() {
+        Assert.assertEquals(
+                new Long(1234),
+                Converter.convert("1234", Long.class));
+        Assert.assertEquals(
+                new Date(1234),
+                Converter.convert(new Long(1234), Date.class));
+
+        // The pack can be either registered or not.
+        try {
+            Assert.assertEquals(
+                    "1234",
+                    Converter.convert("1234", StringBuffer.class).toString());
+        } catch (NoConversionPathException e) {
+        }
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ConcurrentRegistrationTest.class);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.support;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.gleamynode.conversion.ConverterContext;
+
+public class ConversionPathCacheTest extends TestCase {
+    private static final Class[] TYPES = new Class[] {
+        Integer.class, Long.class, Short.class, Byte.class,
+        Double.class, Float.class, Boolean.class, Character.class,
+        String.class, StringBuffer.class, Object.class, Number.class,
+        Comparable.class, Runnable.class, Thread.class, Class.class,
+        ClassLoader.class,
+    };
+
+    private final ConversionPlan plan =
+        new ConversionPlan(new ObjectToStringConverter[] { new ObjectToStringConverter() });
+
+    public void testEviction() {
+        ConversionPathCache cache = new ConversionPathCache(16, 0);
+        for (int i = 0; i < 16; i++) {
+            cache.add(TYPES[i], String.class, plan);
+        }
+        Assert.assertEquals(16, cache.size());
+        for (int i = 0; i < 8; i++) {
+            Assert.assertNotNull(cache.get(TYPES[i], String.class));
+        }
+
+        // Adding one more evicts the paths which were not used.
+        cache.add(TYPES[16], String.class, plan);
+        Assert.assertEquals(15, cache.size());
+        Assert.assertEquals(2, cache.getEvictionCount());
+        for (int i = 0; i < 8; i++) {
+            Assert.assertNotNull(cache.get(TYPES[i], String.class));
+        }
+        Assert.assertNotNull(cache.get(TYPES[16], String.class));
+    }
+
+    public void testCounters() {
+        ConversionPathCache cache = new ConversionPathCache();
+        Assert.assertNull(cache.get(Integer.class, String.class));
+        cache.add(Integer.class, String.class, plan);
+        Assert.assertNotNull(cache.get(Integer.class, String.class));
+        Assert.assertNotNull(cache.get(Integer.class, String.class));
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+    }
+
+    public void testFusing() {
+        ConversionPlan twoHops = new ConversionPlan(new ObjectToStringConverter[] {
+                new ObjectToStringConverter(), new ObjectToStringConverter() });
+
+        ConversionPathCache cache = new ConversionPathCache();
+        Assert.assertFalse(cache.isFusing());
+        cache.add(Integer.class, String.class, twoHops);
+        Assert.assertSame(twoHops, cache.get(Integer.class, String.class));
+
+        cache.setFusing(true);
+        cache.add(Long.class, String.class, twoHops);
+        Assert.assertTrue(cache.get(Long.class, String.class) instanceof FusedConversionPlan);
+        Assert.assertEquals("1", cache.get(Long.class, String.class).convert(
+                new Long(1), new ConverterContext()));
+
+        // A plan of one hop gains nothing from fusing.
+        cache.add(Short.class, String.class, plan);
+        Assert.assertSame(plan, cache.get(Short.class, String.class));
+    }
+
+    public void testCollectedTypes() throws Exception {
+        ConversionPathCache cache = new ConversionPathCache();
+        WeakReference ref = addTemporaryType(cache);
+        Assert.assertEquals(1, cache.size());
+
+        for (int i = 0; i < 100 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertNull("not collected", ref.get());
+
+        // The next update purges the entry of the collected type.
+        cache.add(Integer.class, String.class, plan);
+        Assert.assertEquals(1, cache.size());
+    }
+
+    private WeakReference addTemporaryType(ConversionPathCache cache) throws Exception {
+        // Load a class with a class loader of its own so that it can be
+        // unloaded.
+        URL location = Temporary.class.getProtectionDomain().getCodeSource().getLocation();
+        ClassLoader loader = new URLClassLoader(new URL[] { location }, null);
+        Class type = loader.loadClass(Temporary.class.getName());
+        Assert.assertNotSame(Temporary.class, type);
+
+        cache.add(type, String.class, plan, new Class[] { type }, cache.getGeneration());
+        return new WeakReference(type);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ConversionPathCacheTest.class);
+    }
+
+    public static class Temporary {
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.support;
+
+import java.util.Locale;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.gleamynode.conversion.ConverterContext;
+
+public class MemoizingConverterTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(MemoizingConverterTest.class);
+    }
+
+    private final ConverterContext ctx = new ConverterContext(Locale.US);
+
+    public void testHit() throws Exception {
+        CountingConverter c = new CountingConverter();
+        MemoizingConverter m = new MemoizingConverter(c, 16);
+        Object value = m.doConversion("1", ctx);
+        Assert.assertEquals(new Long(1), value);
+        Assert.assertSame(value, m.doConversion("1", ctx));
+        Assert.assertEquals(new Long(2), m.doConversion("2", ctx));
+        Assert.assertEquals(2, c.count);
+        Assert.assertEquals(1, m.getHitCount());
+        Assert.assertEquals(2, m.getMissCount());
+        Assert.assertEquals(2, m.size());
+
+        m.clear();
+        m.doConversion("1", ctx);
+        Assert.assertEquals(3, c.count);
+    }
+
+    public void testFailure() throws Exception {
+        CountingConverter c = new CountingConverter();
+        MemoizingConverter m = new MemoizingConverter(c, 16);
+        for (int i = 0; i < 2; i++) {
+            try {
+                m.doConversion("a", ctx);
+                Assert.fail();
+            } catch (NumberFormatException e) {
+                // OK
+            }
+        }
+        Assert.assertEquals(2, c.count);
+        Assert.assertEquals(0, m.size());
+    }
+
+    public void testEviction() throws Exception {
+        MemoizingConverter m = new MemoizingConverter(new CountingConverter(), 16);
+        for (int i = 0; i < 16; i++) {
+            m.doConversion(String.valueOf(i), ctx);
+        }
+        for (int i = 0; i < 8; i++) {
+            m.doConversion(String.valueOf(i), ctx);
+        }
+
+        // Adding one more evicts the results which were not used.
+        m.doConversion("16", ctx);
+        Assert.assertEquals(15, m.size());
+        Assert.assertEquals(2, m.getEvictionCount());
+        long hitCount = m.getHitCount();
+        for (int i = 0; i < 8; i++) {
+            m.doConversion(String.valueOf(i), ctx);
+        }
+        Assert.assertEquals(hitCount + 8, m.getHitCount());
+    }
+
+    public void testTimeToLive() throws Exception {
+        CountingConverter c = new CountingConverter();
+        MemoizingConverter m = new MemoizingConverter(c, 16, 50);
+        m.doConversion("1", ctx);
+        m.doConversion("1", ctx);
+        Assert.assertEquals(1, c.count);
+        Thread.sleep(100);
+        m.doConversion("1", ctx);
+        Assert.assertEquals(2, c.count);
+    }
+
+    public void testBypass() throws Exception {
+        CountingConverter c = new CountingConverter();
+        MemoizingConverter m = new MemoizingConverter(c, 16);
+        m.doConversion("1", ctx);
+        ctx.setAttribute(MemoizingConverter.BYPASS, Boolean.TRUE);
+        m.doConversion("1", ctx);
+        m.doConversion("2", ctx);
+        Assert.assertEquals(3, c.count);
+        Assert.assertEquals(0, m.getHitCount());
+        Assert.assertEquals(1, m.size());
+    }
+
+    private static class CountingConverter extends StringToLongConverter {
+        private int count;
+
+        public Object doConversion(Object o, ConverterContext ctx) {
+            count ++;
+            return super.doConversion(o, ctx);
+        }
+    }
+}
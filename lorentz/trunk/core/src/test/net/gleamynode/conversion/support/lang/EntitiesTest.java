@@ -0,0 +1,272 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.support.lang;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link Entities} and the entity escaping of
+ * {@link StringEscapeUtils}.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class EntitiesTest extends TestCase {
+
+    // The size of the blocks Entities reads a Reader with
+    private static final int BLOCK = 4096;
+
+    // { input, escapeHtml, unescapeHtml, escapeXml, unescapeXml }, as the
+    // implementation before the streaming rewrite returned them
+    private static final String[][] BASELINE = {
+        { "plain text",
+            "plain text",
+            "plain text",
+            "plain text",
+            "plain text" },
+        { "<a href=\"x?a=1&b=2\">Tom's</a>",
+            "&lt;a href=&quot;x?a=1&amp;b=2&quot;&gt;Tom's&lt;/a&gt;",
+            "<a href=\"x?a=1&b=2\">Tom's</a>",
+            "&lt;a href=&quot;x?a=1&amp;b=2&quot;&gt;Tom&apos;s&lt;/a&gt;",
+            "<a href=\"x?a=1&b=2\">Tom's</a>" },
+        { "caf\u00E9 \u00A9 2005 \u20AC5 \u0100",
+            "caf&eacute; &copy; 2005 &euro;5 &#256;",
+            "caf\u00E9 \u00A9 2005 \u20AC5 \u0100",
+            "caf&#233; &#169; 2005 &#8364;5 &#256;",
+            "caf\u00E9 \u00A9 2005 \u20AC5 \u0100" },
+        { "&lt;p&gt;caf&eacute; &amp; cr&egrave;me&lt;/p&gt;",
+            "&amp;lt;p&amp;gt;caf&amp;eacute; &amp;amp; cr&amp;egrave;me&amp;lt;/p&amp;gt;",
+            "<p>caf\u00E9 & cr\u00E8me</p>",
+            "&amp;lt;p&amp;gt;caf&amp;eacute; &amp;amp; cr&amp;egrave;me&amp;lt;/p&amp;gt;",
+            "<p>caf&eacute; & cr&egrave;me</p>" },
+        { "&#65;&#x42;&#X43;&#0068;&#x;&#;&#abc;&#x1G;",
+            "&amp;#65;&amp;#x42;&amp;#X43;&amp;#0068;&amp;#x;&amp;#;&amp;#abc;&amp;#x1G;",
+            "ABCD&#x;&#;&#abc;&#x1G;",
+            "&amp;#65;&amp;#x42;&amp;#X43;&amp;#0068;&amp;#x;&amp;#;&amp;#abc;&amp;#x1G;",
+            "ABCD&#x;&#;&#abc;&#x1G;" },
+        { "&foo; &; &amp &bogus;x &quot;",
+            "&amp;foo; &amp;; &amp;amp &amp;bogus;x &amp;quot;",
+            "&foo; &; &amp &bogus;x \"",
+            "&amp;foo; &amp;; &amp;amp &amp;bogus;x &amp;quot;",
+            "&foo; &; &amp &bogus;x \"" },
+        { "&apos;&quot;&nbsp;&euro;",
+            "&amp;apos;&amp;quot;&amp;nbsp;&amp;euro;",
+            "&apos;\"\u00A0\u20AC",
+            "&amp;apos;&amp;quot;&amp;nbsp;&amp;euro;",
+            "'\"&nbsp;&euro;" },
+        { "&&lt;;&amp&gt;",
+            "&amp;&amp;lt;;&amp;amp&amp;gt;",
+            "&&lt;;&amp&gt;",
+            "&amp;&amp;lt;;&amp;amp&amp;gt;",
+            "&&lt;;&amp&gt;" },
+    };
+
+    public void testBaseline() throws Exception {
+        for (int i = 0; i < BASELINE.length; i++) {
+            String[] c = BASELINE[i];
+            Assert.assertEquals(c[1], StringEscapeUtils.escapeHtml(c[0]));
+            Assert.assertEquals(c[2], StringEscapeUtils.unescapeHtml(c[0]));
+            Assert.assertEquals(c[3], StringEscapeUtils.escapeXml(c[0]));
+            Assert.assertEquals(c[4], StringEscapeUtils.unescapeXml(c[0]));
+
+            StringWriter out = new StringWriter();
+            StringEscapeUtils.escapeHtml(out, c[0]);
+            Assert.assertEquals(c[1], out.toString());
+            out = new StringWriter();
+            StringEscapeUtils.unescapeHtml(out, c[0]);
+            Assert.assertEquals(c[2], out.toString());
+            out = new StringWriter();
+            StringEscapeUtils.escapeXml(out, c[0]);
+            Assert.assertEquals(c[3], out.toString());
+            out = new StringWriter();
+            StringEscapeUtils.unescapeXml(out, c[0]);
+            Assert.assertEquals(c[4], out.toString());
+
+            Assert.assertEquals(c[1], escape(Entities.HTML40, new StringReader(c[0])));
+            Assert.assertEquals(c[2], unescape(Entities.HTML40, new StringReader(c[0])));
+            Assert.assertEquals(c[3], escape(Entities.XML, new StringReader(c[0])));
+            Assert.assertEquals(c[4], unescape(Entities.XML, new StringReader(c[0])));
+        }
+    }
+
+    public void testNothingToEscape() {
+        String s = "plain text";
+        Assert.assertSame(s, StringEscapeUtils.escapeHtml(s));
+        Assert.assertSame(s, StringEscapeUtils.unescapeHtml(s));
+        Assert.assertSame(s, Entities.XML.escape(s));
+        Assert.assertSame(s, Entities.XML.unescape(s));
+    }
+
+    public void testNumericReferences() throws Exception {
+        Assert.assertEquals("A", Entities.XML.unescape("&#65;"));
+        Assert.assertEquals("A", Entities.XML.unescape("&#065;"));
+        Assert.assertEquals("J", Entities.XML.unescape("&#x4a;"));
+        Assert.assertEquals("J", Entities.XML.unescape("&#X4A;"));
+        Assert.assertEquals("\u20AC", Entities.HTML40.unescape("&#8364;"));
+        Assert.assertEquals("\u20AC", Entities.HTML40.unescape("&#x20ac;"));
+        // Not numbers
+        Assert.assertEquals("&#; &#x; &#-; &#1a; &#xg;",
+                Entities.XML.unescape("&#; &#x; &#-; &#1a; &#xg;"));
+
+        // A character which has no name is escaped as a decimal reference.
+        Assert.assertEquals("&#256;&#8364;", Entities.XML.escape("\u0100\u20AC"));
+        Assert.assertEquals("&#65535;", Entities.XML.escape("\uFFFF"));
+    }
+
+    public void testUnknownEntities() throws Exception {
+        String[] unknowns = { "&foo;", "&;", "&AMP;", "&amp", "&lt &gt", "& lt;" };
+        for (int i = 0; i < unknowns.length; i++) {
+            Assert.assertEquals(unknowns[i], Entities.HTML40.unescape(unknowns[i]));
+            Assert.assertEquals(unknowns[i], unescape(Entities.HTML40, new StringReader(unknowns[i])));
+        }
+        // The reference in the name of an unknown entity is not unescaped.
+        Assert.assertEquals("&foo&lt;", Entities.HTML40.unescape("&foo&lt;"));
+        Assert.assertEquals("&foo&lt;x<", Entities.HTML40.unescape("&foo&lt;x&lt;"));
+    }
+
+    public void testRoundTrip() throws Exception {
+        StringBuffer buf = new StringBuffer();
+        for (char c = 0; c < 0x400; c++) {
+            buf.append(c);
+        }
+        buf.append("\u20AC\u2122\uFFFF&amp;&#65;");
+        String s = buf.toString();
+
+        Entities[] entities = { Entities.XML, Entities.HTML32, Entities.HTML40 };
+        for (int i = 0; i < entities.length; i++) {
+            String escaped = entities[i].escape(s);
+            Assert.assertEquals(escaped, escape(entities[i], new StringReader(s)));
+            Assert.assertEquals(s, entities[i].unescape(escaped));
+            Assert.assertEquals(s, unescape(entities[i], new StringReader(escaped)));
+        }
+    }
+
+    public void testReferencesAcrossBlocks() throws Exception {
+        String[] references = { "&eacute;", "&#233;", "&#xE9;", "&#0000233;" };
+        for (int i = 0; i < references.length; i++) {
+            for (int offset = BLOCK - 40; offset <= BLOCK + 40; offset++) {
+                String s = fill(offset) + references[i] + fill(100) + references[i];
+                String expected = fill(offset) + "\u00E9" + fill(100) + "\u00E9";
+                Assert.assertEquals(s, expected, Entities.HTML40.unescape(s));
+                Assert.assertEquals(s, expected, unescape(Entities.HTML40, new StringReader(s)));
+                Assert.assertEquals(s, expected, unescape(Entities.HTML40, new ChunkedReader(s, 7)));
+            }
+        }
+    }
+
+    public void testLongReferences() throws Exception {
+        int max = Entities.MAX_REFERENCE_LENGTH;
+        // A reference of the maximum length between '&' and ';' ...
+        String longest = "&#" + zeros(max - 3) + "65;";
+        // ... and one which is too long to be recognized from a Reader
+        String tooLong = "&#" + zeros(max - 2) + "65;";
+        for (int offset = BLOCK - 40; offset <= BLOCK + 40; offset++) {
+            String s = fill(offset) + longest;
+            Assert.assertEquals(fill(offset) + "A", unescape(Entities.XML, new StringReader(s)));
+            Assert.assertEquals(fill(offset) + "A", unescape(Entities.XML, new ChunkedReader(s, 5)));
+
+            s = fill(offset) + tooLong;
+            Assert.assertEquals(fill(offset) + "A", Entities.XML.unescape(s));
+            Assert.assertEquals(s, unescape(Entities.XML, new StringReader(s)));
+            Assert.assertEquals(s, unescape(Entities.XML, new ChunkedReader(s, 5)));
+
+            // A too long reference doesn't hide the reference after it.
+            s = fill(offset) + "&" + fill(max + 10) + "&lt;";
+            Assert.assertEquals(fill(offset) + "&" + fill(max + 10) + "<",
+                    unescape(Entities.XML, new StringReader(s)));
+        }
+    }
+
+    public void testUnterminatedReferences() throws Exception {
+        for (int offset = BLOCK - 40; offset <= BLOCK + 40; offset++) {
+            String[] tails = { "&", "&amp", "&#65", "&#x", "&" + fill(100) };
+            for (int i = 0; i < tails.length; i++) {
+                String s = fill(offset) + tails[i];
+                Assert.assertEquals(s, Entities.XML.unescape(s));
+                Assert.assertEquals(s, unescape(Entities.XML, new StringReader(s)));
+                Assert.assertEquals(s, unescape(Entities.XML, new ChunkedReader(s, 3)));
+            }
+        }
+    }
+
+    private static String escape(Entities entities, Reader in) throws IOException {
+        StringWriter out = new StringWriter();
+        entities.escape(out, in);
+        return out.toString();
+    }
+
+    private static String unescape(Entities entities, Reader in) throws IOException {
+        StringWriter out = new StringWriter();
+        entities.unescape(out, in);
+        return out.toString();
+    }
+
+    private static String fill(int length) {
+        StringBuffer buf = new StringBuffer(length);
+        for (int i = 0; i < length; i++) {
+            buf.append((char) ('a' + i % 26));
+        }
+        return buf.toString();
+    }
+
+    private static String zeros(int length) {
+        StringBuffer buf = new StringBuffer(length);
+        for (int i = 0; i < length; i++) {
+            buf.append('0');
+        }
+        return buf.toString();
+    }
+
+    /**
+     * A {@link Reader} which returns a few characters at a time.
+     */
+    private static class ChunkedReader extends Reader {
+        private final String str;
+        private final int chunk;
+        private int pos;
+
+        ChunkedReader(String str, int chunk) {
+            this.str = str;
+            this.chunk = chunk;
+        }
+
+        public int read(char[] cbuf, int off, int len) {
+            if (pos == str.length()) {
+                return -1;
+            }
+            int n = Math.min(Math.min(len, chunk), str.length() - pos);
+            str.getChars(pos, pos + n, cbuf, off);
+            pos += n;
+            return n;
+        }
+
+        public void close() {
+        }
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(EntitiesTest.class);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.support.lang.builder;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.gleamynode.conversion.support.lang.ObjectUtils;
+
+/**
+ * Tests how {@link ReflectionToStringBuilder} detects the cycles of an
+ * object graph.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class ReflectionToStringBuilderTest extends TestCase {
+
+    public void testSelfReference() {
+        Node a = new Node("a");
+        a.next = a;
+        Assert.assertEquals(
+                ObjectUtils.identityToString(a) + "[name=a,next=" + ObjectUtils.identityToString(a) + "]",
+                a.toString());
+        assertNothingRegistered(a);
+    }
+
+    public void testMutualReference() {
+        Node a = new Node("a");
+        Node b = new Node("b");
+        a.next = b;
+        b.next = a;
+        Assert.assertEquals(
+                ObjectUtils.identityToString(a) + "[name=a,next=" +
+                ObjectUtils.identityToString(b) + "[name=b,next=" +
+                ObjectUtils.identityToString(a) + "]]",
+                a.toString());
+        assertNothingRegistered(a);
+        assertNothingRegistered(b);
+    }
+
+    public void testEqualObjects() {
+        // Distinct objects which are equal to each other are not a cycle.
+        EqualNode a = new EqualNode("a");
+        EqualNode b = new EqualNode("b");
+        Assert.assertEquals(a, b);
+        a.next = b;
+        Assert.assertEquals(
+                ObjectUtils.identityToString(a) + "[name=a,next=" +
+                ObjectUtils.identityToString(b) + "[name=b,next=<null>]]",
+                a.toString());
+
+        // Only the same object is.
+        b.next = a;
+        Assert.assertEquals(
+                ObjectUtils.identityToString(a) + "[name=a,next=" +
+                ObjectUtils.identityToString(b) + "[name=b,next=" +
+                ObjectUtils.identityToString(a) + "]]",
+                a.toString());
+        assertNothingRegistered(a);
+        assertNothingRegistered(b);
+    }
+
+    public void testNestedCall() {
+        // The builder of the first field returns before the builder of the
+        // holder finishes, and the holder must stay registered for the
+        // fields after it.
+        Holder h = new Holder();
+        Probe probe = new Probe(h);
+        h.first = probe;
+        h.self = h;
+        Assert.assertEquals(
+                ObjectUtils.identityToString(h) + "[first=" +
+                ObjectUtils.identityToString(probe.node) + "[name=probe,next=<null>],self=" +
+                ObjectUtils.identityToString(h) + "]",
+                h.toString());
+        Assert.assertTrue(probe.ownerRegistered);
+        assertNothingRegistered(h);
+        assertNothingRegistered(probe.node);
+    }
+
+    private static void assertNothingRegistered(Object value) {
+        Assert.assertFalse(ReflectionToStringBuilder.isRegistered(value));
+    }
+
+    private static class Node {
+        private final String name;
+        Object next;
+
+        Node(String name) {
+            this.name = name;
+        }
+
+        public String toString() {
+            return ReflectionToStringBuilder.toString(this);
+        }
+    }
+
+    private static class EqualNode extends Node {
+        EqualNode(String name) {
+            super(name);
+        }
+
+        public boolean equals(Object o) {
+            return o instanceof EqualNode;
+        }
+
+        public int hashCode() {
+            return 0;
+        }
+    }
+
+    private static class Holder {
+        Object first;
+        Holder self;
+
+        public String toString() {
+            return ReflectionToStringBuilder.toString(this);
+        }
+    }
+
+    private static class Probe {
+        private final Object owner;
+        private final Node node = new Node("probe");
+        boolean ownerRegistered;
+
+        Probe(Object owner) {
+            this.owner = owner;
+        }
+
+        public String toString() {
+            String s = node.toString();
+            ownerRegistered = ReflectionToStringBuilder.isRegistered(owner);
+            return s;
+        }
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ReflectionToStringBuilderTest.class);
+    }
+}
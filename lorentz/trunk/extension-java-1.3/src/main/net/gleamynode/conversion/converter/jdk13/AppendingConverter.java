@@ -0,0 +1,55 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.converter.jdk13;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import net.gleamynode.conversion.ConversionException;
+import net.gleamynode.conversion.ConverterContext;
+
+/**
+ * A converter into a {@link String} which can also write the string
+ * directly into a {@link Writer} or a {@link StringBuffer} supplied by the
+ * caller, so that a large string is neither built twice nor copied.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public interface AppendingConverter {
+
+    /**
+     * Writes the string representation of the specified object into the
+     * specified {@link Writer}.
+     *
+     * @throws IOException if failed to write
+     * @throws ConversionException if failed to convert
+     */
+    void convertTo(Object o, Writer out, ConverterContext ctx)
+            throws IOException, ConversionException;
+
+    /**
+     * Appends the string representation of the specified object to the
+     * specified {@link StringBuffer}.
+     *
+     * @throws ConversionException if failed to convert
+     */
+    void convertTo(Object o, StringBuffer buf, ConverterContext ctx)
+            throws ConversionException;
+}
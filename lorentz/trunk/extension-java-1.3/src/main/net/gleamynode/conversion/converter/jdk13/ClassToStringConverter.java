@@ -32,6 +32,14 @@ public class ClassToStringConverter extends Converter {
         super(Class.class, String.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) throws ConversionException {
 	    return ((Class)o).getName();
 	}
@@ -18,37 +18,63 @@
  */
 package net.gleamynode.conversion.converter.jdk13;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Collection;
 import java.util.Iterator;
 
 import net.gleamynode.conversion.ConversionException;
 import net.gleamynode.conversion.Converter;
 import net.gleamynode.conversion.ConverterContext;
-import net.gleamynode.conversion.converter.jdk13.support.CollectionUtil;
+import net.gleamynode.conversion.converter.jdk13.support.ElementFormatter;
+import net.gleamynode.conversion.converter.jdk13.support.StringBufferWriter;
 
 /**
+ * Converts a {@link Collection} into a string of comma-separated values
+ * which {@link StringToCollectionConverter} can parse.
+ *
  * @author Trustin Lee (http://gleamynode.net/)
  * @version $Rev: 112 $, $Date: 2005-10-01 22:05:13 +0900 (Sat, 01 Oct 2005) $
  */
-public class CollectionToStringConverter extends Converter {
+public class CollectionToStringConverter extends Converter implements AppendingConverter {
 
 	public CollectionToStringConverter() {
         super(Collection.class, String.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) throws ConversionException {
-		Collection c = (Collection) o;
 		StringBuffer buf = new StringBuffer();
-		Iterator it = c.iterator();
+		convertTo(o, buf, ctx);
+		return buf.toString();
+	}
+
+	public void convertTo(Object o, StringBuffer buf, ConverterContext ctx) throws ConversionException {
+		try {
+			convertTo(o, new StringBufferWriter(buf), ctx);
+		} catch (IOException e) {
+			// Never happens
+			throw new ConversionException(e);
+		}
+	}
+
+	public void convertTo(Object o, Writer out, ConverterContext ctx) throws IOException, ConversionException {
+		ElementFormatter formatter = new ElementFormatter(ctx);
+		Iterator it = ((Collection) o).iterator();
 		if (it.hasNext()) {
-			buf.append(CollectionUtil.escape((String) Converter.convert(it.next(), String.class)));
+			formatter.write(it.next(), out);
 
 			while (it.hasNext()) {
-				buf.append(',');
-				buf.append(CollectionUtil.escape((String) Converter.convert(it.next(), String.class)));
+				out.write(',');
+				formatter.write(it.next(), out);
 			}
 		}
-
-		return buf.toString();
 	}
 }
\ No newline at end of file
@@ -34,6 +34,14 @@ public class InetAddressToStringConverter extends Converter {
         super(InetAddress.class, String.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) throws ConversionException {
 	    return ((InetAddress)o).getHostAddress();
 	}
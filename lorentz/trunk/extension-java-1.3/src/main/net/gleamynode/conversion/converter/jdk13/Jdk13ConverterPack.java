@@ -21,12 +21,37 @@ package net.gleamynode.conversion.converter.jdk13;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.TimeZone;
 
+import net.gleamynode.conversion.Converter;
 import net.gleamynode.conversion.ConverterPack;
+import net.gleamynode.conversion.support.MemoizingConverter;
 
 public class Jdk13ConverterPack extends ConverterPack {
 
+    // The number of the results of each lookup converter to remember
+    private static final int CACHE_SIZE = 256;
+    // The default positive DNS cache TTL of the JVM
+    private static final long ADDRESS_TIME_TO_LIVE = 30000;
+
+    private final boolean memoizing;
+
     public Jdk13ConverterPack() {
+        this(false);
+    }
+
+    /**
+     * @param memoizing <tt>true</tt> to make the converters which look up a
+     *                  {@link Class}, an {@link java.net.InetAddress}, a
+     *                  {@link java.util.Locale} or a {@link TimeZone}
+     *                  remember their results with a
+     *                  {@link MemoizingConverter}.  Resolved addresses are
+     *                  remembered for 30 seconds.  Register a
+     *                  {@link MemoizingConverter} by yourself to use
+     *                  different limits.
+     */
+    public Jdk13ConverterPack(boolean memoizing) {
+        this.memoizing = memoizing;
     }
 
     public Iterator newConverters() {
@@ -42,26 +67,39 @@ public class Jdk13ConverterPack extends ConverterPack {
         converters.add(new StringToBooleanConverter());
         converters.add(new StringToByteConverter());
         converters.add(new StringToCharacterConverter());
-        converters.add(new StringToClassConverter());
+        converters.add(memoize(new StringToClassConverter(), 0));
         converters.add(new StringToCollectionConverter());
         converters.add(new StringToDoubleConverter());
         converters.add(new StringToFileConverter());
         converters.add(new StringToFloatConverter());
-        converters.add(new StringToInetAddressConverter());
+        converters.add(memoize(new StringToInetAddressConverter(), ADDRESS_TIME_TO_LIVE));
         converters.add(new StringToIntegerConverter());
         converters.add(new StringToListConverter());
-        converters.add(new StringToLocaleConverter());
+        converters.add(memoize(new StringToLocaleConverter(), 0));
         converters.add(new StringToLongConverter());
         converters.add(new StringToMapConverter());
         converters.add(new StringToNumberConverter());
         converters.add(new StringToPropertiesConverter());
         converters.add(new StringToSetConverter());
         converters.add(new StringToShortConverter());
-        converters.add(new StringToTimeZoneConverter());
+        converters.add(memoizing?
+                new MemoizingConverter(new StringToTimeZoneConverter(), CACHE_SIZE) {
+                    protected Object copyValue(Object value) {
+                        // TimeZone is mutable.
+                        return ((TimeZone) value).clone();
+                    }
+                } : (Converter) new StringToTimeZoneConverter());
         converters.add(new StringToUrlConverter());
         converters.add(new TimeZoneToStringConverter());
         converters.add(new StringToDateConverter());
         
         return converters.iterator();
     }
+
+    private Converter memoize(Converter converter, long timeToLive) {
+        if (!memoizing) {
+            return converter;
+        }
+        return new MemoizingConverter(converter, CACHE_SIZE, timeToLive);
+    }
 }
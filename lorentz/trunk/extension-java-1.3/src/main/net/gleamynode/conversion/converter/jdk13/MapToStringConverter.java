@@ -18,6 +18,8 @@
  */
 package net.gleamynode.conversion.converter.jdk13;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -25,37 +27,64 @@ import java.util.Map.Entry;
 import net.gleamynode.conversion.ConversionException;
 import net.gleamynode.conversion.Converter;
 import net.gleamynode.conversion.ConverterContext;
-import net.gleamynode.conversion.converter.jdk13.support.CollectionUtil;
+import net.gleamynode.conversion.converter.jdk13.support.ElementFormatter;
+import net.gleamynode.conversion.converter.jdk13.support.StringBufferWriter;
 
 /**
+ * Converts a {@link Map} into a string of comma-separated
+ * <tt>key=value</tt> pairs which {@link StringToMapConverter} can parse.
+ *
  * @author Trustin Lee (http://gleamynode.net/)
  * @version $Rev: 112 $, $Date: 2005-10-01 22:05:13 +0900 (Sat, 01 Oct 2005) $
  */
-public class MapToStringConverter extends Converter {
+public class MapToStringConverter extends Converter implements AppendingConverter {
 
 	public MapToStringConverter() {
         super(Map.class, String.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) throws ConversionException {
-		Map m = (Map) o;
 		StringBuffer buf = new StringBuffer();
-		Iterator it = m.entrySet().iterator();
+		convertTo(o, buf, ctx);
+		return buf.toString();
+	}
+
+	public void convertTo(Object o, StringBuffer buf, ConverterContext ctx) throws ConversionException {
+		try {
+			convertTo(o, new StringBufferWriter(buf), ctx);
+		} catch (IOException e) {
+			// Never happens
+			throw new ConversionException(e);
+		}
+	}
+
+	public void convertTo(Object o, Writer out, ConverterContext ctx) throws IOException, ConversionException {
+		// Keys and values are usually of different types, so each of them
+		// has its own formatter to keep its path.
+		ElementFormatter keys = new ElementFormatter(ctx);
+		ElementFormatter values = new ElementFormatter(ctx);
+		Iterator it = ((Map) o).entrySet().iterator();
 		if (it.hasNext()) {
 			Entry e = (Entry) it.next();
-			buf.append(CollectionUtil.escape((String) Converter.convert(e.getKey(), String.class)));
-			buf.append('=');
-			buf.append(CollectionUtil.escape((String) Converter.convert(e.getValue(), String.class)));
+			keys.write(e.getKey(), out);
+			out.write('=');
+			values.write(e.getValue(), out);
 
 			while (it.hasNext()) {
 				e = (Entry) it.next();
-				buf.append(',');
-				buf.append(CollectionUtil.escape((String) Converter.convert(e.getKey(), String.class)));
-				buf.append('=');
-				buf.append(CollectionUtil.escape((String) Converter.convert(e.getValue(), String.class)));
+				out.write(',');
+				keys.write(e.getKey(), out);
+				out.write('=');
+				values.write(e.getValue(), out);
 			}
 		}
-
-		return buf.toString();
 	}
 }
\ No newline at end of file
@@ -33,6 +33,14 @@ public class StringToBigDecimalConverter extends Converter {
         super(String.class, BigDecimal.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) {
 	    return new BigDecimal((String)o);
 	}
@@ -33,6 +33,14 @@ public class StringToBigIntegerConverter extends Converter {
         super(String.class, BigInteger.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) {
 		return new BigInteger((String)o);
 	}
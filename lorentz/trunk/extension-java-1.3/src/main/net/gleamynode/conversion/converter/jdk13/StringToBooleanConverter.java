@@ -18,6 +18,7 @@
  */
 package net.gleamynode.conversion.converter.jdk13;
 
+import net.gleamynode.conversion.BooleanConverter;
 import net.gleamynode.conversion.ConversionException;
 import net.gleamynode.conversion.Converter;
 import net.gleamynode.conversion.ConverterContext;
@@ -26,22 +27,34 @@ import net.gleamynode.conversion.ConverterContext;
  * @author Trustin Lee (http://gleamynode.net/)
  * @version $Rev: 112 $, $Date: 2005-10-01 22:05:13 +0900 (Sat, 01 Oct 2005) $
  */
-public class StringToBooleanConverter extends Converter {
+public class StringToBooleanConverter extends Converter implements BooleanConverter {
 
 	public StringToBooleanConverter() {
         super(String.class, Boolean.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) throws ConversionException {
+		return doBooleanConversion(o, ctx)? Boolean.TRUE : Boolean.FALSE;
+	}
+
+	public boolean doBooleanConversion(Object o, ConverterContext ctx) throws ConversionException {
         String s = (String)o;
 		if ("true".equalsIgnoreCase(s) || "yes".equalsIgnoreCase(s)
 				|| "on".equalsIgnoreCase(s) || "t".equalsIgnoreCase(s)
 				|| "y".equalsIgnoreCase(s) || "1".equals(s))
-			return Boolean.TRUE;
+			return true;
 		else if ("false".equalsIgnoreCase(s) || "no".equalsIgnoreCase(s)
 				|| "off".equalsIgnoreCase(s) || "f".equalsIgnoreCase(s)
 				|| "n".equalsIgnoreCase(s) || "0".equals(s))
-			return Boolean.FALSE;
+			return false;
 		else
 			throw new ConversionException(s);
 	}
@@ -32,6 +32,14 @@ public class StringToByteConverter extends Converter {
         super(String.class, Byte.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) {
         // We don't use NumberFormat to convert a String into a byte because
         // it is not so common; users usually use '0x1234' notation or just plain
@@ -32,6 +32,14 @@ public class StringToCharacterConverter extends Converter {
         super(String.class, Character.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) {
         String s = (String)o;
 		if (s.length() != 1)
@@ -31,6 +31,14 @@ public class StringToClassConverter extends Converter {
         super(String.class, Class.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) throws ClassNotFoundException {
 		return Class.forName((String)o);
 	}
@@ -18,20 +18,46 @@
  */
 package net.gleamynode.conversion.converter.jdk13;
 
+import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import net.gleamynode.conversion.ConversionException;
 import net.gleamynode.conversion.Converter;
 import net.gleamynode.conversion.ConverterContext;
+import net.gleamynode.conversion.converter.jdk13.support.CollectionTokenizer;
 import net.gleamynode.conversion.converter.jdk13.support.CollectionUtil;
+import net.gleamynode.conversion.converter.jdk13.support.ElementConversion;
 
 /**
+ * Converts a string of comma-separated values into a {@link Collection}.
+ * See {@link CollectionTokenizer} for the syntax.
+ *
  * @author Trustin Lee (http://gleamynode.net/)
  * @version $Rev: 112 $, $Date: 2005-10-01 22:05:13 +0900 (Sat, 01 Oct 2005) $
  */
 public class StringToCollectionConverter extends Converter {
 
+	/**
+	 * The name of the {@link ConverterContext} attribute which makes the
+	 * conversion into a {@link Collection} return a read-only view if set to
+	 * {@link Boolean#TRUE}.  The view parses the string whenever it is
+	 * iterated, so the elements which are never read are never created.
+	 * The conversions into a {@link java.util.List} or a
+	 * {@link java.util.Set} are not affected.
+	 */
+	public static final String LAZY = StringToCollectionConverter.class.getName() + ".lazy";
+
+	/**
+	 * The name of the {@link ConverterContext} attribute whose value is the
+	 * {@link Class} to convert the elements into.  The elements are
+	 * converted while being parsed, via the conversion path looked up only
+	 * once per conversion.  The elements are left as strings if not set.
+	 */
+	public static final String ELEMENT_TYPE = StringToCollectionConverter.class.getName() + ".elementType";
+
 	public StringToCollectionConverter() {
         super(String.class, Collection.class);
 	}
@@ -40,45 +66,83 @@ public class StringToCollectionConverter extends Converter {
         super(String.class, targetType);
     }
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) throws ConversionException {
         String s = (String)o;
-		Collection c = newCollection();
-		s = s.trim();
-		if (s.length() == 0)
-			return c;
-
-		final int len = s.length();
-		boolean inQuote = false;
-		int beginIdx = 0;
-		for (int i = 0; i < len; i++) {
-			char ch = s.charAt(i);
-			switch (ch) {
-				case '"' :
-					if (inQuote) {
-						if (i != len - 1) {
-							if (s.charAt(i + 1) != '"')
-								inQuote = false;
-							else
-								i++;
-						} else
-							inQuote = false;
-					} else
-						inQuote = true;
-					break;
-				case ',' :
-					if (!inQuote) {
-						c.add(CollectionUtil.unescape(s, beginIdx, i));
-						beginIdx = i + 1;
-					}
-					break;
-			}
-		}
+        ElementConversion elements = ElementConversion.newInstance(ctx, ELEMENT_TYPE);
+        if (getTargetType() == Collection.class && Boolean.TRUE.equals(ctx.getAttribute(LAZY)))
+            return new LazyCollection(s, elements);
 
-		c.add(CollectionUtil.unescape(s, beginIdx, len));
+		Collection c = newCollection(CollectionTokenizer.countElements(s));
+		CollectionTokenizer t = new CollectionTokenizer(s, false);
+		while (t.hasNext()) {
+			t.next();
+			c.add(elements == null? t.getToken() : elements.convert(t.getToken()));
+		}
 		return c;
 	}
 
+	/**
+	 * Creates an empty collection to add the parsed elements to.  The
+	 * default implementation calls {@link #newCollection()} and makes room
+	 * for the elements with {@link CollectionUtil#presize(Collection, int)},
+	 * so a subclass usually overrides {@link #newCollection()} only.
+	 *
+	 * @param expectedSize the number of the elements to be added
+	 */
+	protected Collection newCollection(int expectedSize) {
+		return CollectionUtil.presize(newCollection(), expectedSize);
+	}
+
 	protected Collection newCollection() {
 		return new ArrayList();
 	}
+
+	/**
+	 * A read-only collection which parses the string whenever it is
+	 * iterated.  A malformed element is reported by the iterator.
+	 */
+	private static class LazyCollection extends AbstractCollection {
+		private final String s;
+		private final ElementConversion elements;
+		private int size = -1;
+
+		private LazyCollection(String s, ElementConversion elements) {
+			this.s = s;
+			this.elements = elements;
+		}
+
+		public Iterator iterator() {
+			final CollectionTokenizer t = new CollectionTokenizer(s, false);
+			return new Iterator() {
+				public boolean hasNext() {
+					return t.hasNext();
+				}
+
+				public Object next() {
+					if (!t.hasNext())
+						throw new NoSuchElementException();
+					t.next();
+					return elements == null? t.getToken() : elements.convert(t.getToken());
+				}
+
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		public int size() {
+			if (size < 0)
+				size = CollectionTokenizer.countElements(s);
+			return size;
+		}
+	}
 }
\ No newline at end of file
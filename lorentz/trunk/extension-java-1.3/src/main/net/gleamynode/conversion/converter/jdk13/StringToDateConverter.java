@@ -19,40 +19,80 @@
 package net.gleamynode.conversion.converter.jdk13;
 
 import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.Date;
 
 import net.gleamynode.conversion.Converter;
 import net.gleamynode.conversion.ConverterContext;
+import net.gleamynode.conversion.support.lang.time.FastDateFormat;
+import net.gleamynode.conversion.support.lang.time.FastDateParser;
 
 public class StringToDateConverter extends Converter {
+
+	/**
+	 * The name of the {@link ConverterContext} attribute which makes the
+	 * conversion parse with a {@link FastDateParser} if set to
+	 * {@link Boolean#TRUE}.  The parser is thread-safe, so the date format
+	 * of the context is not cloned for each thread.  It is used only if the
+	 * date format is not set or is a lenient {@link SimpleDateFormat};
+	 * the pattern and the time zone of the format and the locale of the
+	 * context are used.  See {@link FastDateParser} for how it differs from
+	 * {@link SimpleDateFormat}.
+	 */
+	public static final String FAST = StringToDateConverter.class.getName() + ".fast";
 	
 	public StringToDateConverter() {
 		super(String.class, Date.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return true;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) throws Exception {
-		DateFormat df;
-		df = ctx.getDateFormat();
-		
-		if ( df == null ) {
-            df = DateFormat.getDateTimeInstance(
-                    DateFormat.MEDIUM, DateFormat.MEDIUM,
-                    ctx.getLocale());
-		}
-		
-		return df.parse( (String)o );
+		return parse( (String)o, ctx );
 	}
 
     public void doCopy(Object source, Object target, ConverterContext ctx) throws Exception {
-        DateFormat df;
-        df = ctx.getDateFormat();
-        
-        if ( df == null ) {
-            df = DateFormat.getDateTimeInstance(
-                    DateFormat.MEDIUM, DateFormat.MEDIUM,
-                    ctx.getLocale());
+        Date date = parse( (String) source, ctx );
+        ((Date) target).setTime(date.getTime());
+    }
+
+    private static Date parse(String s, ConverterContext ctx) throws ParseException {
+        if (Boolean.TRUE.equals(ctx.getAttribute(FAST))) {
+            FastDateParser parser = getParser(ctx);
+            if (parser != null) {
+                return parser.parse(s);
+            }
+        }
+        return ctx.getThreadLocalDateFormat().parse(s);
+    }
+
+    /**
+     * Returns the parser equivalent to the date format of the specified
+     * context, or <tt>null</tt> if there's no such parser.
+     */
+    private static FastDateParser getParser(ConverterContext ctx) {
+        DateFormat format = ctx.getDateFormat();
+        try {
+            if (format == null) {
+                // The same as the default of FormatCache
+                return FastDateFormat.getDateTimeInstance(
+                        FastDateFormat.MEDIUM, FastDateFormat.MEDIUM, ctx.getLocale()).getParser();
+            }
+            if (format instanceof SimpleDateFormat && format.isLenient()) {
+                return FastDateFormat.getInstance(
+                        ((SimpleDateFormat) format).toPattern(),
+                        format.getTimeZone(), ctx.getLocale()).getParser();
+            }
+        } catch (IllegalArgumentException e) {
+            // A pattern which FastDateFormat doesn't support
         }
-        
-        ((Date) target).setTime(df.parse( (String) source ).getTime());
+        return null;
     }
 }
\ No newline at end of file
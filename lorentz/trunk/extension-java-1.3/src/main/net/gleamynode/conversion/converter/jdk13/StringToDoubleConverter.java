@@ -21,18 +21,23 @@ package net.gleamynode.conversion.converter.jdk13;
 import java.text.ParseException;
 
 import net.gleamynode.conversion.ConverterContext;
+import net.gleamynode.conversion.DoubleConverter;
 
 /**
  * @author Trustin Lee (http://gleamynode.net/)
  * @version $Rev: 112 $, $Date: 2005-10-01 22:05:13 +0900 (Sat, 01 Oct 2005) $
  */
-public class StringToDoubleConverter extends StringToNumberConverter {
+public class StringToDoubleConverter extends StringToNumberConverter implements DoubleConverter {
 
 	public StringToDoubleConverter() {
         super(Double.class);
 	}
 
 	public Object doConversion(Object o, ConverterContext ctx) throws ParseException {
-        return new Double(((Number) super.doConversion(o, ctx)).doubleValue());
+        return new Double(doDoubleConversion(o, ctx));
 	}
+
+    public double doDoubleConversion(Object o, ConverterContext ctx) throws ParseException {
+        return parseDouble((String) o, ctx);
+    }
 }
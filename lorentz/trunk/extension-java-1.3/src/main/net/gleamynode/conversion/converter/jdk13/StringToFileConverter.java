@@ -33,6 +33,14 @@ public class StringToFileConverter extends Converter {
         super(String.class, File.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) {
 		return new File((String)o);
 	}
@@ -33,6 +33,6 @@ public class StringToFloatConverter extends StringToNumberConverter {
 	}
 
 	public Object doConversion(Object o, ConverterContext ctx) throws ParseException {
-        return new Float(((Number) super.doConversion(o, ctx)).floatValue());
+        return new Float((float) parseDouble((String) o, ctx));
 	}
 }
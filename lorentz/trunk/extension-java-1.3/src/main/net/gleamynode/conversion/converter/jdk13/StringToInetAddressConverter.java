@@ -34,6 +34,14 @@ public class StringToInetAddressConverter extends Converter {
         super(String.class, InetAddress.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) throws UnknownHostException {
 		return InetAddress.getByName((String)o);
 	}
@@ -21,18 +21,23 @@ package net.gleamynode.conversion.converter.jdk13;
 import java.text.ParseException;
 
 import net.gleamynode.conversion.ConverterContext;
+import net.gleamynode.conversion.IntConverter;
 
 /**
  * @author Trustin Lee (http://gleamynode.net/)
  * @version $Rev: 112 $, $Date: 2005-10-01 22:05:13 +0900 (Sat, 01 Oct 2005) $
  */
-public class StringToIntegerConverter extends StringToNumberConverter {
+public class StringToIntegerConverter extends StringToNumberConverter implements IntConverter {
 
 	public StringToIntegerConverter() {
         super(Integer.class);
 	}
 
 	public Object doConversion(Object o, ConverterContext ctx) throws ParseException {
-        return new Integer(((Number) super.doConversion(o, ctx)).intValue());
+        return new Integer(doIntConversion(o, ctx));
 	}
+
+    public int doIntConversion(Object o, ConverterContext ctx) throws ParseException {
+        return parseInt((String) o, ctx);
+    }
 }
@@ -34,6 +34,14 @@ public class StringToLocaleConverter extends Converter {
         super(String.class, Locale.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) {
         String s = (String)o;
 
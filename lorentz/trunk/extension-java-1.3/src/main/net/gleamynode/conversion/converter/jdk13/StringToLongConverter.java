@@ -21,18 +21,23 @@ package net.gleamynode.conversion.converter.jdk13;
 import java.text.ParseException;
 
 import net.gleamynode.conversion.ConverterContext;
+import net.gleamynode.conversion.LongConverter;
 
 /**
  * @author Trustin Lee (http://gleamynode.net/)
  * @version $Rev: 112 $, $Date: 2005-10-01 22:05:13 +0900 (Sat, 01 Oct 2005) $
  */
-public class StringToLongConverter extends StringToNumberConverter {
+public class StringToLongConverter extends StringToNumberConverter implements LongConverter {
 
 	public StringToLongConverter() {
         super(Long.class);
 	}
 
 	public Object doConversion(Object o, ConverterContext ctx) throws ParseException {
-        return new Long(((Number) super.doConversion(o, ctx)).longValue());
+        return new Long(doLongConversion(o, ctx));
 	}
+
+    public long doLongConversion(Object o, ConverterContext ctx) throws ParseException {
+        return parseLong((String) o, ctx);
+    }
 }
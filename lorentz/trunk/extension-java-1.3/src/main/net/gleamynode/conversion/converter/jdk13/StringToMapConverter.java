@@ -24,14 +24,38 @@ import java.util.Map;
 import net.gleamynode.conversion.ConversionException;
 import net.gleamynode.conversion.Converter;
 import net.gleamynode.conversion.ConverterContext;
+import net.gleamynode.conversion.converter.jdk13.support.CollectionTokenizer;
 import net.gleamynode.conversion.converter.jdk13.support.CollectionUtil;
+import net.gleamynode.conversion.converter.jdk13.support.ElementConversion;
 
 /**
+ * Converts a string of comma-separated key-value pairs, such as
+ * <tt>a = b, c = d</tt>, into a {@link Map}.  See
+ * {@link CollectionTokenizer} for the syntax.
+ *
  * @author Trustin Lee (http://gleamynode.net/)
  * @version $Rev: 112 $, $Date: 2005-10-01 22:05:13 +0900 (Sat, 01 Oct 2005) $
  */
 public class StringToMapConverter extends Converter {
 
+	/**
+	 * The name of the {@link ConverterContext} attribute whose value is the
+	 * {@link Class} to convert the keys into.  The keys are left as strings
+	 * if not set.
+	 *
+	 * @see StringToCollectionConverter#ELEMENT_TYPE
+	 */
+	public static final String KEY_TYPE = StringToMapConverter.class.getName() + ".keyType";
+
+	/**
+	 * The name of the {@link ConverterContext} attribute whose value is the
+	 * {@link Class} to convert the values into.  The values are left as
+	 * strings if not set.
+	 *
+	 * @see StringToCollectionConverter#ELEMENT_TYPE
+	 */
+	public static final String VALUE_TYPE = StringToMapConverter.class.getName() + ".valueType";
+
 	public StringToMapConverter() {
         super(String.class, Map.class);
 	}
@@ -40,59 +64,47 @@ public class StringToMapConverter extends Converter {
         super(String.class, targetClass);
     }
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) throws ConversionException {
         String s = (String)o;
-		Map m = newMap();
-		s = s.trim();
-		if (s.length() == 0)
-			return m;
+        ElementConversion keys = ElementConversion.newInstance(ctx, KEY_TYPE);
+        ElementConversion values = ElementConversion.newInstance(ctx, VALUE_TYPE);
+		Map m = newMap(CollectionTokenizer.countElements(s));
+		CollectionTokenizer t = new CollectionTokenizer(s, true);
+		while (t.hasNext()) {
+			int delimiter = t.next();
+			if (delimiter == CollectionTokenizer.END)
+				throw new ConversionException("Unexpected end of string");
+			if (delimiter != '=')
+				throw new ConversionException("No value is specified.");
+			Object key = keys == null? t.getToken() : keys.convert(t.getToken());
 
-		final int len = s.length();
-		boolean inQuote = false;
-		String key = null;
-		int beginIdx = 0;
-		for (int i = 0; i < len; i++) {
-			char ch = s.charAt(i);
-			switch (ch) {
-				case '"' :
-					if (inQuote) {
-						if (i != len - 1) {
-							if (s.charAt(i + 1) != ch)
-								inQuote = false;
-							else
-								i++;
-						} else
-							inQuote = false;
-					} else
-						inQuote = true;
-					break;
-				case '=' :
-					if (!inQuote) {
-						if (key != null)
-							throw new ConversionException("No value is specified.");
-						key = CollectionUtil.unescape(s, beginIdx, i);
-						beginIdx = i + 1;
-					}
-					break;
-				case ',' :
-					if (!inQuote) {
-						if (key == null)
-							throw new ConversionException("No value is specified.");
-						m.put(key, CollectionUtil.unescape(s, beginIdx, i));
-						key = null;
-						beginIdx = i + 1;
-					}
-					break;
-			}
+			if (t.next() == '=')
+				throw new ConversionException("No value is specified.");
+			m.put(key, values == null? t.getToken() : values.convert(t.getToken()));
 		}
-
-		if (key == null)
-			throw new ConversionException("Unexpected end of string");
-		else
-			m.put(key, CollectionUtil.unescape(s, beginIdx, len));
 		return m;
 	}
 
+	/**
+	 * Creates an empty map to put the parsed entries into.  The default
+	 * implementation calls {@link #newMap()} and makes room for the entries
+	 * with {@link CollectionUtil#presize(Map, int)}, so a subclass usually
+	 * overrides {@link #newMap()} only.
+	 *
+	 * @param expectedSize the number of the entries to be put
+	 */
+	protected Map newMap(int expectedSize) {
+		return CollectionUtil.presize(newMap(), expectedSize);
+	}
+
 	protected Map newMap() {
 		return new HashMap();
 	}
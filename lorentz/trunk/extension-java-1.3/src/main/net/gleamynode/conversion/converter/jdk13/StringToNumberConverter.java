@@ -18,18 +18,55 @@
  */
 package net.gleamynode.conversion.converter.jdk13;
 
-import java.text.NumberFormat;
 import java.text.ParseException;
 
 import net.gleamynode.conversion.Converter;
 import net.gleamynode.conversion.ConverterContext;
+import net.gleamynode.conversion.converter.jdk13.support.NumberParser;
 
 /**
+ * Converts a string into a {@link Number} with the thread-local
+ * {@link java.text.NumberFormat} of the {@link ConverterContext}.
+ *
  * @author Trustin Lee (http://gleamynode.net/)
  * @version $Rev: 112 $, $Date: 2005-10-01 22:05:13 +0900 (Sat, 01 Oct 2005) $
  */
 public class StringToNumberConverter extends Converter {
 
+	/**
+	 * The name of the {@link ConverterContext} attribute which makes the
+	 * conversion parse the plain numbers that {@link NumberParser}
+	 * understands without {@link java.text.NumberFormat} if set to
+	 * {@link Boolean#TRUE}.  The other strings are still parsed by
+	 * {@link java.text.NumberFormat}.  Note that the fast path differs from
+	 * {@link java.text.NumberFormat} in that:
+	 * <ul>
+	 *   <li>the decimal point is always '<tt>.</tt>' regardless of the
+	 *       locale,</li>
+	 *   <li>an exponent such as <tt>1.5e3</tt> is accepted,</li>
+	 *   <li>hexadecimal notations such as <tt>0x1F</tt> are accepted,
+	 *       and</li>
+	 *   <li>the leading and trailing whitespaces are ignored.</li>
+	 * </ul>
+	 * A zero-padded integer such as <tt>0100</tt> is decimal as
+	 * {@link java.text.NumberFormat} parses it, unless {@link #OCTAL} is
+	 * also set.
+	 */
+	public static final String FAST = StringToNumberConverter.class.getName() + ".fast";
+
+	/**
+	 * The name of the {@link ConverterContext} attribute which makes the
+	 * fast path parse an integer with a leading zero, such as <tt>017</tt>,
+	 * as an octal integer if set to {@link Boolean#TRUE}.  Such an integer
+	 * with the digit <tt>8</tt> or <tt>9</tt> fails to convert rather than
+	 * being parsed as a decimal integer.  This attribute has no effect
+	 * unless {@link #FAST} is set.
+	 */
+	public static final String OCTAL = StringToNumberConverter.class.getName() + ".octal";
+
+	// The range of long in double; -MIN_LONG is 2^63.
+	private static final double MIN_LONG = Long.MIN_VALUE;
+
 	public StringToNumberConverter() {
         this(Number.class);
 	}
@@ -38,13 +75,104 @@ public class StringToNumberConverter extends Converter {
         super(String.class, targetClass);
     }
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) throws ParseException {
-		NumberFormat nf;
-		nf = ctx.getNumberFormat();
-		if ( nf == null ) {
-			nf = NumberFormat.getNumberInstance( ctx.getLocale() );
+		String s = (String) o;
+		boolean octal = isOctal(ctx);
+		switch (getFastType(s, octal, ctx)) {
+		case NumberParser.INTEGER:
+			try {
+				return new Long(NumberParser.parseLong(s, octal));
+			} catch (NumberFormatException e) {
+				// Out of the range of long
+				break;
+			}
+		case NumberParser.DECIMAL:
+			// Return a Long for an integral value as NumberFormat does.
+			double d = NumberParser.parseDouble(s, octal);
+			if (d >= MIN_LONG && d < -MIN_LONG && d == (long) d &&
+					(d != 0 || 1 / d > 0)) {
+				return new Long((long) d);
+			}
+			return new Double(d);
+		}
+		return ctx.getThreadLocalNumberFormat().parse(s);
+	}
+
+	/**
+	 * Parses the specified string into an <tt>int</tt>, in the fast path if
+	 * {@link #FAST} is set.
+	 */
+	protected final int parseInt(String s, ConverterContext ctx) throws ParseException {
+		boolean octal = isOctal(ctx);
+		switch (getFastType(s, octal, ctx)) {
+		case NumberParser.INTEGER:
+			try {
+				return (int) NumberParser.parseLong(s, octal);
+			} catch (NumberFormatException e) {
+				break;
+			}
+		case NumberParser.DECIMAL:
+			return (int) NumberParser.parseDouble(s, octal);
 		}
-		
-		return nf.parse((String)o);
+		return ctx.getThreadLocalNumberFormat().parse(s).intValue();
+	}
+
+	/**
+	 * Parses the specified string into a <tt>long</tt>, in the fast path if
+	 * {@link #FAST} is set.
+	 */
+	protected final long parseLong(String s, ConverterContext ctx) throws ParseException {
+		boolean octal = isOctal(ctx);
+		switch (getFastType(s, octal, ctx)) {
+		case NumberParser.INTEGER:
+			try {
+				return NumberParser.parseLong(s, octal);
+			} catch (NumberFormatException e) {
+				break;
+			}
+		case NumberParser.DECIMAL:
+			return (long) NumberParser.parseDouble(s, octal);
+		}
+		return ctx.getThreadLocalNumberFormat().parse(s).longValue();
+	}
+
+	/**
+	 * Parses the specified string into a <tt>double</tt>, in the fast path
+	 * if {@link #FAST} is set.
+	 */
+	protected final double parseDouble(String s, ConverterContext ctx) throws ParseException {
+		boolean octal = isOctal(ctx);
+		if (getFastType(s, octal, ctx) != NumberParser.NONE) {
+			try {
+				return NumberParser.parseDouble(s, octal);
+			} catch (NumberFormatException e) {
+				// A hexadecimal or octal integer out of the range of long
+			}
+		}
+		return ctx.getThreadLocalNumberFormat().parse(s).doubleValue();
+	}
+
+	private static int getFastType(String s, boolean octal, ConverterContext ctx) throws ParseException {
+		if (!Boolean.TRUE.equals(ctx.getAttribute(FAST))) {
+			return NumberParser.NONE;
+		}
+		try {
+			return NumberParser.getType(s, octal);
+		} catch (NumberFormatException e) {
+			// An octal integer with the digit 8 or 9
+			throw new ParseException(s, 0);
+		}
+	}
+
+	private static boolean isOctal(ConverterContext ctx) {
+		return Boolean.TRUE.equals(ctx.getAttribute(OCTAL));
 	}
 }
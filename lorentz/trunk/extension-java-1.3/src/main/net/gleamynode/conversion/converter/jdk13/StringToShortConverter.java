@@ -33,6 +33,6 @@ public class StringToShortConverter extends StringToNumberConverter {
 	}
 
 	public Object doConversion(Object o, ConverterContext ctx) throws ParseException {
-        return new Short(((Number) super.doConversion(o, ctx)).shortValue());
+        return new Short((short) parseInt((String) o, ctx));
 	}
 }
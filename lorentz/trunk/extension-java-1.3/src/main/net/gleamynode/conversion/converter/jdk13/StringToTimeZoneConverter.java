@@ -34,6 +34,14 @@ public class StringToTimeZoneConverter extends Converter {
         super(String.class, TimeZone.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) throws ConversionException {
 		return TimeZone.getTimeZone((String)o);
 	}
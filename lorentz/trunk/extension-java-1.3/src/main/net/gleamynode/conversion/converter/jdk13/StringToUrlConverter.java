@@ -34,6 +34,14 @@ public class StringToUrlConverter extends Converter {
         super(String.class, URL.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) throws MalformedURLException {
 		return new URL((String)o);
 	}
@@ -34,6 +34,14 @@ public class TimeZoneToStringConverter extends Converter {
         super(TimeZone.class, String.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) throws ConversionException {
 	    return ((TimeZone)o).getID();
 	}
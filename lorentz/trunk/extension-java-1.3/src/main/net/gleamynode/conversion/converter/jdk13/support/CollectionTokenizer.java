@@ -0,0 +1,246 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.converter.jdk13.support;
+
+import net.gleamynode.conversion.ConversionException;
+
+/**
+ * Splits a string of comma-separated values, such as <tt>a, "b,c", d</tt>
+ * or <tt>a = b, "c=" = d</tt>, into tokens in a single pass.  A token is
+ * trimmed, and may be quoted by <tt>"</tt> to contain whitespace, a comma
+ * or an equals sign; a quote in a token is escaped by another quote.
+ * <p>
+ * The tokenizer doesn't create a string until {@link #getToken()} is
+ * called, and the caller can instead read the token directly from the
+ * source string between {@link #getBegin()} and {@link #getEnd()} unless
+ * it {@link #isEscaped() is escaped}:
+ * <pre>
+ * CollectionTokenizer t = new CollectionTokenizer(s, false);
+ * while (t.hasNext()) {
+ *     t.next();
+ *     list.add(t.getToken());
+ * }
+ * </pre>
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class CollectionTokenizer {
+    /**
+     * The delimiter {@link #next()} returns at the end of the string.
+     */
+    public static final int END = -1;
+
+    private final String s;
+    private final int end;
+    private final boolean keyValue;
+    private int position;
+    private boolean hasNext;
+    private int begin;
+    private int tokenEnd;
+    private boolean escaped;
+
+    /**
+     * Creates a new tokenizer.
+     *
+     * @param keyValue <tt>true</tt> if an equals sign also delimits the
+     *                 tokens, as in a string of key-value pairs
+     */
+    public CollectionTokenizer(String s, boolean keyValue) {
+        if (s == null)
+            throw new NullPointerException("s");
+        this.s = s;
+        this.end = s.length();
+        this.keyValue = keyValue;
+
+        position = skipWhitespaces(0);
+        hasNext = position < end;
+    }
+
+    /**
+     * Returns the string being tokenized.
+     */
+    public String getSource() {
+        return s;
+    }
+
+    /**
+     * Returns <tt>true</tt> if there's a token to read.  A blank string has
+     * no token, and a delimiter is always followed by a token.
+     */
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    /**
+     * Reads the next token.
+     *
+     * @return the delimiter which follows the token (<tt>','</tt> or
+     *         <tt>'='</tt>), or {@link #END} if the token is the last one
+     * @throws ConversionException if the token is empty or its quotes
+     *                             mismatch
+     */
+    public int next() throws ConversionException {
+        if (!hasNext)
+            throw new IllegalStateException("no more tokens");
+
+        int i = skipWhitespaces(position);
+        int begin = i;
+        int closingQuote = -1;
+        int quotes = 0;
+        boolean inQuote = false;
+        boolean escaped = false;
+        int delimiter = END;
+        for (; i < end; i++) {
+            char ch = s.charAt(i);
+            if (ch == '"') {
+                if (!inQuote) {
+                    inQuote = true;
+                    quotes++;
+                } else if (i + 1 < end && s.charAt(i + 1) == '"') {
+                    escaped = true;
+                    i++;
+                } else {
+                    inQuote = false;
+                    closingQuote = i;
+                    quotes++;
+                }
+            } else if (!inQuote && (ch == ',' || (ch == '=' && keyValue))) {
+                delimiter = ch;
+                break;
+            }
+        }
+        if (inQuote)
+            throw new ConversionException("Mismatching '\"'");
+
+        // Trim right
+        int tokenEnd = i;
+        while (tokenEnd > begin && Character.isWhitespace(s.charAt(tokenEnd - 1))) {
+            tokenEnd--;
+        }
+        if (tokenEnd == begin)
+            throw new ConversionException("Empty string must be quoted by '\"'");
+
+        // Remove wrapping quotes
+        if (s.charAt(begin) == '"') {
+            if (closingQuote != tokenEnd - 1 || quotes != 2)
+                throw new ConversionException("Mismatching '\"'");
+            begin++;
+            tokenEnd--;
+        } else if (quotes > 0) {
+            // Quotes in an unquoted token, such as a""b
+            escaped = true;
+        }
+
+        this.begin = begin;
+        this.tokenEnd = tokenEnd;
+        this.escaped = escaped;
+        if (delimiter == END) {
+            position = end;
+            hasNext = false;
+        } else {
+            position = i + 1;
+        }
+        return delimiter;
+    }
+
+    /**
+     * Returns the index of the first character of the current token in the
+     * source string, excluding the wrapping quote.
+     */
+    public int getBegin() {
+        return begin;
+    }
+
+    /**
+     * Returns the index after the last character of the current token in
+     * the source string, excluding the wrapping quote.
+     */
+    public int getEnd() {
+        return tokenEnd;
+    }
+
+    /**
+     * Returns <tt>true</tt> if the current token contains an escaped quote,
+     * which means that the characters between {@link #getBegin()} and
+     * {@link #getEnd()} are not the token as it is.
+     */
+    public boolean isEscaped() {
+        return escaped;
+    }
+
+    /**
+     * Returns the current token.
+     *
+     * @throws ConversionException if the token contains an unescaped quote
+     */
+    public String getToken() throws ConversionException {
+        if (!escaped) {
+            return s.substring(begin, tokenEnd);
+        }
+
+        StringBuffer buf = new StringBuffer(tokenEnd - begin);
+        for (int i = begin; i < tokenEnd; i++) {
+            char c = s.charAt(i);
+            if (c == '"') {
+                if (i + 1 == tokenEnd || s.charAt(i + 1) != '"')
+                    throw new ConversionException("Mismatching '\"'");
+                i++;
+            }
+            buf.append(c);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Returns the number of the tokens delimited by commas in the specified
+     * string without validating them.  It is useful to size a collection
+     * before tokenizing.
+     */
+    public static int countElements(String s) {
+        int end = s.length();
+        int i = 0;
+        while (i < end && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        if (i == end) {
+            return 0;
+        }
+
+        int count = 1;
+        boolean inQuote = false;
+        for (; i < end; i++) {
+            char ch = s.charAt(i);
+            if (ch == '"') {
+                // An escaped quote flips the state twice.
+                inQuote = !inQuote;
+            } else if (ch == ',' && !inQuote) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int skipWhitespaces(int i) {
+        while (i < end && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -18,6 +18,14 @@
  */
 package net.gleamynode.conversion.converter.jdk13.support;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
 import net.gleamynode.conversion.ConversionException;
 
 /**
@@ -30,44 +38,112 @@ public class CollectionUtil
     {
     }
 
+    /**
+     * Returns the initial capacity of a hash table which holds the
+     * specified number of entries without rehashing.
+     */
+    public static int getHashCapacity(int expectedSize) {
+        // 0.75 is the default load factor.
+        return expectedSize * 4 / 3 + 1;
+    }
+
+    /**
+     * Returns the specified empty collection with room for the specified
+     * number of elements if it is an {@link ArrayList}, or a new
+     * {@link HashSet} with room for them if it is a {@link HashSet}.  The
+     * other collections, including the subclasses of {@link HashSet}, are
+     * returned as they are.
+     */
+    public static Collection presize(Collection c, int expectedSize) {
+        if (c instanceof ArrayList) {
+            ((ArrayList) c).ensureCapacity(expectedSize);
+        } else if (c.getClass() == HashSet.class && c.isEmpty()) {
+            // A HashSet can't grow in advance.
+            return new HashSet(getHashCapacity(expectedSize));
+        }
+        return c;
+    }
+
+    /**
+     * Returns a new {@link HashMap} with room for the specified number of
+     * entries if the specified map is an empty {@link HashMap}, or the map
+     * itself otherwise.
+     */
+    public static Map presize(Map m, int expectedSize) {
+        if (m.getClass() == HashMap.class && m.isEmpty()) {
+            // A HashMap can't grow in advance.
+            return new HashMap(getHashCapacity(expectedSize));
+        }
+        return m;
+    }
+
+    /**
+     * Returns the specified value quoted if it is empty, it has a leading or
+     * trailing whitespace, or it contains '<tt>,</tt>', '<tt>=</tt>' or
+     * '<tt>"</tt>'.  A quote in the value is escaped by another quote.  The
+     * value itself is returned if it doesn't need to be quoted.
+     */
     public static String escape(String value) {
-        boolean wrapWithQuote = false;
+        if (!needsQuote(value)) {
+            return value;
+        }
+
         // +8 is a spare padding for quote expansion
-        int len = value.length();
-        StringBuffer buf = new StringBuffer(len + 8);
-        int i;
-        char c;
+        StringBuffer buf = new StringBuffer(value.length() + 8);
+        try {
+            writeQuoted(value, new StringBufferWriter(buf));
+        } catch (IOException e) {
+            // Never happens
+            throw new IllegalStateException(e.toString());
+        }
+        return buf.toString();
+    }
 
-        if (len == 0)
-            return "\"\"";
-        if (Character.isWhitespace(value.charAt(0)))
-            wrapWithQuote = true;
-        else if (Character.isWhitespace(value.charAt(len - 1)))
-            wrapWithQuote = true;
+    /**
+     * Writes the specified value escaped as {@link #escape(String)} does,
+     * without creating an intermediary string.
+     */
+    public static void escape(String value, Writer out) throws IOException {
+        if (needsQuote(value)) {
+            writeQuoted(value, out);
+        } else {
+            out.write(value);
+        }
+    }
 
-        for (i = 0; i < len; i++) {
-            c = value.charAt(i);
+    private static boolean needsQuote(String value) {
+        int len = value.length();
+        if (len == 0 ||
+                Character.isWhitespace(value.charAt(0)) ||
+                Character.isWhitespace(value.charAt(len - 1))) {
+            return true;
+        }
 
-            switch (c) {
+        for (int i = 0; i < len; i++) {
+            switch (value.charAt(i)) {
                 case ',' :
                 case '=' :
-                    wrapWithQuote = true;
-                    buf.append(c);
-                    break;
                 case '"' :
-                    wrapWithQuote = true;
-                    buf.append("\"\"");
-                    break;
-                default :
-                    buf.append(c);
+                    return true;
             }
         }
+        return false;
+    }
 
-        if (wrapWithQuote) {
-            return "\"" + buf.toString() + '"';
-        } else {
-            return buf.toString();
+    private static void writeQuoted(String value, Writer out) throws IOException {
+        out.write('"');
+        // Write the runs between quotes at once.
+        int begin = 0;
+        int len = value.length();
+        for (int i = 0; i < len; i++) {
+            if (value.charAt(i) == '"') {
+                out.write(value, begin, i + 1 - begin);
+                out.write('"');
+                begin = i + 1;
+            }
         }
+        out.write(value, begin, len - begin);
+        out.write('"');
     }
 
     public static String unescape(String value, int begin, int end)
@@ -0,0 +1,84 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.converter.jdk13.support;
+
+import net.gleamynode.conversion.ConversionException;
+import net.gleamynode.conversion.ConversionPath;
+import net.gleamynode.conversion.Converter;
+import net.gleamynode.conversion.ConverterContext;
+
+/**
+ * Converts the parsed elements of a collection or a map into their type
+ * with the conversion path looked up only once, instead of calling
+ * {@link Converter#convert(Object, Class)} for each element.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class ElementConversion {
+
+    /**
+     * Returns a new conversion into the element type specified by the
+     * attribute of the context of the current conversion.
+     *
+     * @param attribute the name of the attribute whose value is the
+     *                  {@link Class} of the elements
+     * @return <tt>null</tt> if the elements are to be left as strings
+     * @throws ConversionException if the attribute is not a {@link Class},
+     *                             or there's no conversion path into it
+     */
+    public static ElementConversion newInstance(ConverterContext ctx, String attribute)
+            throws ConversionException {
+        Object elementType = ctx.getAttribute(attribute);
+        if (elementType == null) {
+            return null;
+        }
+        if (!(elementType instanceof Class))
+            throw new ConversionException(
+                    "element type is not a Class: " + elementType.getClass().getName());
+
+        Class type = (Class) elementType;
+        if (type.isPrimitive())
+            throw new ConversionException("element type is primitive: " + type);
+        if (type.isAssignableFrom(String.class)) {
+            return null;
+        }
+
+        // Use a copy of the context so that the element conversions don't
+        // overwrite the path of the current conversion, a lazy view doesn't
+        // hold the context of the caller which may be reused, and an element
+        // which is a collection again doesn't get the same element type.
+        ctx = (ConverterContext) ctx.clone();
+        ctx.setPathTracking(false);
+        ctx.removeAttribute(attribute);
+        return new ElementConversion(Converter.getConversionPath(String.class, type, ctx), ctx);
+    }
+
+    private final ConversionPath path;
+    private final ConverterContext ctx;
+
+    private ElementConversion(ConversionPath path, ConverterContext ctx) {
+        this.path = path;
+        this.ctx = ctx;
+    }
+
+    public Object convert(String element) throws ConversionException {
+        return path.convert(element, ctx);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.converter.jdk13.support;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import net.gleamynode.conversion.ConversionException;
+import net.gleamynode.conversion.ConversionPath;
+import net.gleamynode.conversion.Converter;
+import net.gleamynode.conversion.ConverterContext;
+
+/**
+ * Converts the elements of a collection or a map into escaped strings,
+ * looking up the conversion path only when the type of an element differs
+ * from the previous one, instead of calling
+ * {@link Converter#convert(Object, Class)} for each element.  An instance
+ * is meant to be used for one conversion.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class ElementFormatter {
+
+    private final ConverterContext parent;
+    private ConverterContext ctx;
+    private Class lastType;
+    private ConversionPath lastPath;
+
+    /**
+     * @param ctx the context of the current conversion
+     */
+    public ElementFormatter(ConverterContext ctx) {
+        if (ctx == null)
+            throw new NullPointerException("ctx");
+        this.parent = ctx;
+    }
+
+    /**
+     * Returns the string representation of the specified element.
+     *
+     * @throws ConversionException if the element is <tt>null</tt> or failed
+     *                             to convert
+     */
+    public String format(Object element) throws ConversionException {
+        if (element instanceof String) {
+            return (String) element;
+        }
+        if (element == null)
+            throw new ConversionException("null element");
+
+        Class type = element.getClass();
+        if (type != lastType) {
+            if (ctx == null) {
+                // Don't let the element conversions overwrite the path of
+                // the current conversion.
+                ctx = (ConverterContext) parent.clone();
+                ctx.setPathTracking(false);
+            }
+            lastPath = Converter.getConversionPath(type, String.class, ctx);
+            lastType = type;
+        }
+        return (String) lastPath.convert(element, ctx);
+    }
+
+    /**
+     * Writes the escaped string representation of the specified element.
+     *
+     * @throws ConversionException if the element is <tt>null</tt> or failed
+     *                             to convert
+     */
+    public void write(Object element, Writer out) throws IOException, ConversionException {
+        CollectionUtil.escape(format(element), out);
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.converter.jdk13.support;
+
+/**
+ * Parses ASCII numbers directly from a string without
+ * {@link java.text.NumberFormat} and without creating an object.  It
+ * understands the following notations, surrounded by optional whitespaces:
+ * <ul>
+ *   <li>Decimal integers: <tt>-1234</tt></li>
+ *   <li>Hexadecimal integers: <tt>0x1F</tt>, <tt>#1F</tt> and
+ *       <tt>$1F</tt></li>
+ *   <li>Decimal fractions: <tt>-12.5</tt>, <tt>.5</tt> and
+ *       <tt>1.25e-3</tt></li>
+ * </ul>
+ * A leading zero doesn't change the radix, so <tt>0100</tt> is one
+ * hundred as {@link java.text.NumberFormat} parses it.  Octal integers
+ * such as <tt>017</tt> are understood only by the methods with the
+ * <tt>octal</tt> parameter.
+ * Call {@link #getType(String)} first, and parse the string only if it
+ * is not {@link #NONE}; anything else, such as a grouping separator, is
+ * left for a {@link java.text.NumberFormat}.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class NumberParser {
+    /**
+     * The type of a string which is not understood by this parser.
+     */
+    public static final int NONE = 0;
+    /**
+     * The type of a string which is a decimal or hexadecimal integer, or an
+     * octal integer if requested.
+     */
+    public static final int INTEGER = 1;
+    /**
+     * The type of a string which is a decimal fraction.
+     */
+    public static final int DECIMAL = 2;
+
+    // The powers of ten which a double represents exactly
+    private static final double[] POWERS_OF_TEN = new double[23];
+    // The maximum number of digits a double represents exactly
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private NumberParser() {
+    }
+
+    /**
+     * Returns the type of the specified string; {@link #INTEGER},
+     * {@link #DECIMAL} or {@link #NONE}.
+     */
+    public static int getType(String s) {
+        return getType(s, false);
+    }
+
+    /**
+     * Returns the type of the specified string; {@link #INTEGER},
+     * {@link #DECIMAL} or {@link #NONE}.  If <tt>octal</tt> is
+     * <tt>true</tt>, an integer with a leading zero is an octal integer.
+     *
+     * @throws NumberFormatException if <tt>octal</tt> is <tt>true</tt> and
+     *                               the string is an octal integer with
+     *                               the digit <tt>8</tt> or <tt>9</tt>
+     */
+    public static int getType(String s, boolean octal) throws NumberFormatException {
+        int end = trimEnd(s);
+        int i = skipSign(s, trimBegin(s), end);
+        if (i == end) {
+            return NONE;
+        }
+
+        int radix = getRadix(s, i, end, octal);
+        if (radix == 8) {
+            if (!isDigits(s, i, end, 10)) {
+                return NONE;
+            }
+            if (!isDigits(s, i, end, 8)) {
+                throw new NumberFormatException(s);
+            }
+            return INTEGER;
+        }
+        if (radix != 10) {
+            int begin = i + getPrefixLength(s, i, radix);
+            return begin < end && isDigits(s, begin, end, radix)? INTEGER : NONE;
+        }
+
+        int digits = 0;
+        boolean decimal = false;
+        for (; i < end && isDigit(s.charAt(i)); i++) {
+            digits++;
+        }
+        if (i < end && s.charAt(i) == '.') {
+            decimal = true;
+            for (i++; i < end && isDigit(s.charAt(i)); i++) {
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return NONE;
+        }
+        if (i < end && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            decimal = true;
+            i = skipSign(s, i + 1, end);
+            if (i == end || !isDigits(s, i, end, 10)) {
+                return NONE;
+            }
+            i = end;
+        }
+        if (i != end) {
+            return NONE;
+        }
+        return decimal? DECIMAL : INTEGER;
+    }
+
+    /**
+     * Parses the specified {@link #INTEGER} string.
+     *
+     * @throws NumberFormatException if the integer is out of the range of
+     *                               <tt>long</tt>, or not an integer
+     */
+    public static long parseLong(String s) throws NumberFormatException {
+        return parseLong(s, false);
+    }
+
+    /**
+     * Parses the specified {@link #INTEGER} string, which is an octal
+     * integer if it has a leading zero and <tt>octal</tt> is <tt>true</tt>.
+     *
+     * @throws NumberFormatException if the integer is out of the range of
+     *                               <tt>long</tt>, or not an integer
+     */
+    public static long parseLong(String s, boolean octal) throws NumberFormatException {
+        int end = trimEnd(s);
+        int begin = trimBegin(s);
+        int i = skipSign(s, begin, end);
+        if (i == end)
+            throw new NumberFormatException(s);
+        boolean negative = s.charAt(begin) == '-';
+        int radix = getRadix(s, i, end, octal);
+        i += getPrefixLength(s, i, radix);
+        if (i == end)
+            throw new NumberFormatException(s);
+
+        // Accumulate negatively to reach Long.MIN_VALUE.
+        long limit = negative? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplicationLimit = limit / radix;
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = digit(s.charAt(i), radix);
+            if (digit < 0 || result < multiplicationLimit)
+                throw new NumberFormatException(s);
+            result *= radix;
+            if (result < limit + digit)
+                throw new NumberFormatException(s);
+            result -= digit;
+        }
+        return negative? result : -result;
+    }
+
+    /**
+     * Parses the specified {@link #INTEGER} or {@link #DECIMAL} string.
+     * The result is the same as {@link Double#parseDouble(String)}, which
+     * this method resorts to when the result can't be computed exactly.
+     *
+     * @throws NumberFormatException if the string is not a number
+     */
+    public static double parseDouble(String s) throws NumberFormatException {
+        return parseDouble(s, false);
+    }
+
+    /**
+     * Parses the specified {@link #INTEGER} or {@link #DECIMAL} string,
+     * which is an octal integer if it has a leading zero and <tt>octal</tt>
+     * is <tt>true</tt>.
+     *
+     * @throws NumberFormatException if the string is not a number
+     */
+    public static double parseDouble(String s, boolean octal) throws NumberFormatException {
+        int end = trimEnd(s);
+        int begin = trimBegin(s);
+        int i = skipSign(s, begin, end);
+        if (i < end && getRadix(s, i, end, octal) != 10) {
+            return parseLong(s, octal);
+        }
+        boolean negative = i > begin && s.charAt(begin) == '-';
+
+        // Collect up to 15 significant digits and the position of the
+        // decimal point.
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean exact = true;
+        boolean point = false;
+        for (; i < end; i++) {
+            char c = s.charAt(i);
+            if (c == '.') {
+                point = true;
+                continue;
+            }
+            if (!isDigit(c)) {
+                break;
+            }
+            if (mantissa == 0 && c == '0') {
+                // A leading zero is not significant.
+                if (point) {
+                    exponent--;
+                }
+                continue;
+            }
+            if (digits == MAX_EXACT_DIGITS) {
+                exact = false;
+                break;
+            }
+            mantissa = mantissa * 10 + (c - '0');
+            digits++;
+            if (point) {
+                exponent--;
+            }
+        }
+
+        if (exact && i < end) {
+            // Exponent
+            int j = skipSign(s, i + 1, end);
+            boolean negativeExponent = s.charAt(i + 1) == '-';
+            int e = 0;
+            for (; j < end && e < 1000; j++) {
+                e = e * 10 + (s.charAt(j) - '0');
+            }
+            exponent += negativeExponent? -e : e;
+        }
+
+        double result;
+        if (mantissa == 0) {
+            result = 0;
+        } else if (exact && exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            // Both operands are exact, so the product is rounded only once.
+            result = mantissa * POWERS_OF_TEN[exponent];
+        } else if (exact && exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            result = mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return Double.parseDouble(s.substring(begin, end));
+        }
+        return negative? -result : result;
+    }
+
+    private static int getRadix(String s, int i, int end, boolean octal) {
+        char c = s.charAt(i);
+        if (c == '#' || c == '$') {
+            return 16;
+        }
+        if (c == '0' && i + 1 < end) {
+            c = s.charAt(i + 1);
+            if (c == 'x' || c == 'X') {
+                return 16;
+            }
+            if (octal && isDigit(c)) {
+                return 8;
+            }
+        }
+        return 10;
+    }
+
+    private static int getPrefixLength(String s, int i, int radix) {
+        switch (radix) {
+        case 16:
+            return s.charAt(i) == '0'? 2 : 1;
+        case 8:
+            return 1;
+        default:
+            return 0;
+        }
+    }
+
+    private static boolean isDigits(String s, int begin, int end, int radix) {
+        for (int i = begin; i < end; i++) {
+            if (digit(s.charAt(i), radix) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int digit(char c, int radix) {
+        int digit;
+        if (c >= '0' && c <= '9') {
+            digit = c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            digit = c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            digit = c - 'A' + 10;
+        } else {
+            return -1;
+        }
+        return digit < radix? digit : -1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int skipSign(String s, int i, int end) {
+        if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int trimBegin(String s) {
+        int i = 0;
+        int end = s.length();
+        while (i < end && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int trimEnd(String s) {
+        int end = s.length();
+        while (end > 0 && Character.isWhitespace(s.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.converter.jdk13.support;
+
+import java.io.Writer;
+
+/**
+ * A {@link Writer} which appends to a {@link StringBuffer} supplied by the
+ * caller, unlike {@link java.io.StringWriter}.  Strings are appended
+ * without being copied into a temporary array first, and a part of a string
+ * is copied into an array which is reused, so that every write takes the
+ * lock of the buffer only once.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class StringBufferWriter extends Writer {
+    private final StringBuffer buf;
+    private char[] chars;
+
+    public StringBufferWriter(StringBuffer buf) {
+        if (buf == null)
+            throw new NullPointerException("buf");
+        this.buf = buf;
+    }
+
+    /**
+     * Returns the {@link StringBuffer} this writer appends to.
+     */
+    public StringBuffer getBuffer() {
+        return buf;
+    }
+
+    public void write(int c) {
+        buf.append((char) c);
+    }
+
+    public void write(char[] cbuf, int off, int len) {
+        buf.append(cbuf, off, len);
+    }
+
+    public void write(String str) {
+        buf.append(str);
+    }
+
+    public void write(String str, int off, int len) {
+        if (off == 0 && len == str.length()) {
+            buf.append(str);
+            return;
+        }
+        if (chars == null || chars.length < len) {
+            chars = new char[Math.max(len, 64)];
+        }
+        str.getChars(off, off + len, chars, 0);
+        buf.append(chars, 0, len);
+    }
+
+    public void flush() {
+    }
+
+    public void close() {
+    }
+
+    public String toString() {
+        return buf.toString();
+    }
+}
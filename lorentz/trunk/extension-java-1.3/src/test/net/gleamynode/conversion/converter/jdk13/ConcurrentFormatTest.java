@@ -0,0 +1,93 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.converter.jdk13;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.gleamynode.conversion.Converter;
+import net.gleamynode.conversion.ConverterContext;
+
+/**
+ * Tests if many threads can convert objects with the same
+ * {@link ConverterContext} which has a non-thread-safe format.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class ConcurrentFormatTest extends TestCase {
+
+    private static final int THREADS = 8;
+    private static final int CONVERSIONS = 2000;
+
+    public void testConcurrentConversion() throws Exception {
+        Converter.register(new Jdk13ConverterPack());
+
+        final DateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        final ConverterContext ctx = new ConverterContext(Locale.US);
+        ctx.setDateFormat(df);
+
+        final List errors = Collections.synchronizedList(new ArrayList());
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < threads.length; i++) {
+            final int id = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    DateFormat myDf = (DateFormat) df.clone();
+                    try {
+                        for (int j = 0; j < CONVERSIONS; j++) {
+                            Date expected = new Date(
+                                    (id * CONVERSIONS + j) * 86400000L / 7 * 1000);
+                            Assert.assertEquals(
+                                    myDf.parse(myDf.format(expected)),
+                                    Converter.convert(myDf.format(expected), Date.class, ctx));
+                            Assert.assertEquals(
+                                    new Long(id * CONVERSIONS + j),
+                                    Converter.convert(String.valueOf(id * CONVERSIONS + j), Long.class, ctx));
+                        }
+                    } catch (Throwable t) {
+                        errors.add(t);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+
+        if (!errors.isEmpty()) {
+            Throwable t = (Throwable) errors.get(0);
+            t.printStackTrace();
+            Assert.fail("Conversion failed: " + t);
+        }
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ConcurrentFormatTest.class);
+    }
+}
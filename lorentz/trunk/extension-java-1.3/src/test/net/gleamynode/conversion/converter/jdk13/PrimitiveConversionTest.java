@@ -0,0 +1,66 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.converter.jdk13;
+
+import java.util.Locale;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.gleamynode.conversion.ConversionException;
+import net.gleamynode.conversion.Converter;
+import net.gleamynode.conversion.ConverterContext;
+
+/**
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class PrimitiveConversionTest extends TestCase {
+
+    public void setUp() {
+        Converter.register(new Jdk13ConverterPack());
+    }
+
+    public void testInt() {
+        Assert.assertEquals(1234, Converter.convertToInt("1234"));
+        Assert.assertEquals(-1, Converter.convertToInt(new Integer(-1)));
+    }
+
+    public void testLong() {
+        Assert.assertEquals(12345678901L, Converter.convertToLong("12345678901"));
+    }
+
+    public void testDouble() {
+        ConverterContext ctx = new ConverterContext(Locale.US);
+        Assert.assertEquals(2048.5, Converter.convertToDouble("2048.5", ctx), 0.0);
+    }
+
+    public void testBoolean() {
+        Assert.assertTrue(Converter.convertToBoolean("yes"));
+        Assert.assertFalse(Converter.convertToBoolean("off"));
+        try {
+            Converter.convertToBoolean("maybe");
+            Assert.fail();
+        } catch (ConversionException e) {
+        }
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(PrimitiveConversionTest.class);
+    }
+}
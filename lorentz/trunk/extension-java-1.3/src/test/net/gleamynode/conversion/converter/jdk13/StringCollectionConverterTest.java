@@ -18,16 +18,28 @@
  */
 package net.gleamynode.conversion.converter.jdk13;
 
+import java.io.StringWriter;
 import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import junit.framework.Assert;
 import junit.framework.TestCase;
 import net.gleamynode.conversion.ConversionException;
 import net.gleamynode.conversion.Converter;
+import net.gleamynode.conversion.ConverterContext;
+import net.gleamynode.conversion.converter.jdk13.support.CollectionTokenizer;
+import net.gleamynode.conversion.converter.jdk13.support.CollectionUtil;
 
 /**
  * @author Trustin Lee (http://gleamynode.net/)
@@ -134,4 +146,171 @@ public class StringCollectionConverterTest extends TestCase {
 		} catch (ConversionException e) {
 		}
 	}
-}
\ No newline at end of file
+
+	public void testLargeCollection() throws Throwable {
+		StringBuffer buf = new StringBuffer();
+		for (int i = 0; i < 1000; i++) {
+			if (i > 0)
+				buf.append(", ");
+			buf.append(i);
+			buf.append('=');
+			buf.append("\"v\"\"").append(i).append('"');
+		}
+
+		Map m = (Map) Converter.convert(buf.toString(), Map.class);
+		Assert.assertEquals(1000, m.size());
+		Assert.assertEquals("v\"999", m.get("999"));
+
+		Set s = (Set) Converter.convert(Converter.convert(m.keySet(), String.class), Set.class);
+		Assert.assertEquals(m.keySet(), s);
+	}
+
+	public void testPresize() throws Throwable {
+		// Subclasses which override only newCollection() or newMap() keep
+		// their result type.
+		ConverterContext ctx = Converter.getDefaultContext();
+		Collection c = (Collection) new StringToSetConverter() {
+			protected Collection newCollection() {
+				return new TreeSet();
+			}
+		}.doConversion("b, a, b", ctx);
+		Assert.assertTrue(c instanceof TreeSet);
+		Assert.assertEquals(Arrays.asList(new String[] { "a", "b" }), new ArrayList(c));
+
+		Map m = (Map) new StringToMapConverter() {
+			protected Map newMap() {
+				return new TreeMap();
+			}
+		}.doConversion("b = 2, a = 1", ctx);
+		Assert.assertTrue(m instanceof TreeMap);
+		Assert.assertEquals("a", ((TreeMap) m).firstKey());
+
+		// Only the exact hash tables are replaced.
+		Set s = new HashSet();
+		Assert.assertNotSame(s, CollectionUtil.presize(s, 100));
+		s.add("a");
+		Assert.assertSame(s, CollectionUtil.presize(s, 100));
+		s = new TreeSet();
+		Assert.assertSame(s, CollectionUtil.presize(s, 100));
+		List l = new ArrayList();
+		Assert.assertSame(l, CollectionUtil.presize(l, 100));
+		m = new HashMap();
+		Assert.assertNotSame(m, CollectionUtil.presize(m, 100));
+		m = new TreeMap();
+		Assert.assertSame(m, CollectionUtil.presize(m, 100));
+	}
+
+	public void testLazyCollection() throws Throwable {
+		ConverterContext ctx = Converter.getDefaultContext();
+		ctx.setAttribute(StringToCollectionConverter.LAZY, Boolean.TRUE);
+
+		Collection c = (Collection) Converter.convert("a, \"b,c\", d", Collection.class, ctx);
+		Assert.assertEquals(3, c.size());
+		Assert.assertEquals(Arrays.asList(new String[] { "a", "b,c", "d" }), new ArrayList(c));
+		// Iterated again
+		Assert.assertEquals(Arrays.asList(new String[] { "a", "b,c", "d" }), new ArrayList(c));
+		Assert.assertTrue(Converter.convert("a, b", List.class, ctx) instanceof ArrayList);
+
+		// Parsed on iteration
+		c = (Collection) Converter.convert("a, \"b", Collection.class, ctx);
+		Iterator i = c.iterator();
+		Assert.assertEquals("a", i.next());
+		try {
+			i.next();
+			Assert.fail("no conversion exception is thrown.");
+		} catch (ConversionException e) {
+		}
+	}
+
+	public void testElementType() throws Throwable {
+		ConverterContext ctx = Converter.getDefaultContext();
+		ctx.setAttribute(StringToCollectionConverter.ELEMENT_TYPE, Integer.class);
+		List l = (List) Converter.convert("1, 2, 3", List.class, ctx);
+		Assert.assertEquals(Arrays.asList(new Integer[] {
+				new Integer(1), new Integer(2), new Integer(3) }), l);
+		// The path of the list conversion is not overwritten.
+		Assert.assertEquals(1, ctx.getPath().toList().size());
+
+		ctx.setAttribute(StringToCollectionConverter.LAZY, Boolean.TRUE);
+		Collection c = (Collection) Converter.convert("4, 5", Collection.class, ctx);
+		Assert.assertEquals(new Integer(5), new ArrayList(c).get(1));
+
+		ctx = Converter.getDefaultContext();
+		ctx.setAttribute(StringToMapConverter.KEY_TYPE, Integer.class);
+		ctx.setAttribute(StringToMapConverter.VALUE_TYPE, Locale.class);
+		Map m = (Map) Converter.convert("1 = ko_KR, 2 = en", Map.class, ctx);
+		Assert.assertEquals(Locale.KOREA, m.get(new Integer(1)));
+		Assert.assertEquals(Locale.ENGLISH, m.get(new Integer(2)));
+
+		try {
+			Converter.convert("1, a", List.class, ctx);
+			ctx.setAttribute(StringToCollectionConverter.ELEMENT_TYPE, Integer.class);
+			Converter.convert("1, a", List.class, ctx);
+			Assert.fail("no conversion exception is thrown.");
+		} catch (ConversionException e) {
+		}
+	}
+
+	public void testTokenizer() throws Throwable {
+		String s = " a ,\"b\"\"\" = c,  \" d \" ";
+		CollectionTokenizer t = new CollectionTokenizer(s, true);
+		Assert.assertEquals(3, CollectionTokenizer.countElements(s));
+
+		Assert.assertEquals(',', t.next());
+		Assert.assertEquals("a", s.substring(t.getBegin(), t.getEnd()));
+		Assert.assertFalse(t.isEscaped());
+
+		Assert.assertEquals('=', t.next());
+		Assert.assertTrue(t.isEscaped());
+		Assert.assertEquals("b\"", t.getToken());
+
+		Assert.assertEquals(',', t.next());
+		Assert.assertEquals("c", t.getToken());
+
+		Assert.assertTrue(t.hasNext());
+		Assert.assertEquals(CollectionTokenizer.END, t.next());
+		Assert.assertEquals(" d ", t.getToken());
+		Assert.assertFalse(t.hasNext());
+
+		Assert.assertFalse(new CollectionTokenizer(" ", false).hasNext());
+		Assert.assertEquals(0, CollectionTokenizer.countElements(" "));
+
+		String[] malformed = new String[] { "a,", "\"a\"b", "\"a\"b\"c\"", "\"a\"\"" };
+		for (int i = 0; i < malformed.length; i++) {
+			try {
+				t = new CollectionTokenizer(malformed[i], false);
+				while (t.hasNext()) {
+					t.next();
+					t.getToken();
+				}
+				Assert.fail("no conversion exception is thrown: " + malformed[i]);
+			} catch (ConversionException e) {
+			}
+		}
+	}
+
+	public void testAppending() throws Throwable {
+		ConverterContext ctx = Converter.getDefaultContext();
+		List l = Arrays.asList(new Object[] {
+				"a", new Integer(1), new Integer(2), " b", "c,\"d\"", "", Locale.KOREA });
+		StringBuffer buf = new StringBuffer("list: ");
+		new CollectionToStringConverter().convertTo(l, buf, ctx);
+		Assert.assertEquals("list: a,1,2,\" b\",\"c,\"\"d\"\"\",\"\",ko_KR", buf.toString());
+		Assert.assertEquals(buf.substring(6), Converter.convert(l, String.class, ctx));
+		// The path of the list conversion is not overwritten.
+		Assert.assertEquals(1, ctx.getPath().toList().size());
+
+		Map m = new TreeMap();
+		m.put("x", new Integer(1));
+		m.put("y=z", Locale.US);
+		StringWriter out = new StringWriter();
+		new MapToStringConverter().convertTo(m, out, ctx);
+		Assert.assertEquals("x=1,\"y=z\"=en_US", out.toString());
+
+		try {
+			Converter.convert(Arrays.asList(new Object[] { "a", null }), String.class, ctx);
+			Assert.fail("no conversion exception is thrown.");
+		} catch (ConversionException e) {
+		}
+	}
+}
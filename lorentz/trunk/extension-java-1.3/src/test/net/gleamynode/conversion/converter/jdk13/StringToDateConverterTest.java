@@ -0,0 +1,230 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.converter.jdk13;
+
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.gleamynode.conversion.ConversionException;
+import net.gleamynode.conversion.Converter;
+import net.gleamynode.conversion.ConverterContext;
+import net.gleamynode.conversion.support.lang.time.FastDateFormat;
+
+public class StringToDateConverterTest extends TestCase {
+
+    public static void main( String[] args ) {
+        junit.textui.TestRunner.run( StringToDateConverterTest.class );
+    }
+
+    private static final long[] TIMES = {
+            0L, 1L, -1L, 999L, 1000L, 1700000000123L, -2208988800000L,
+            951782400000L, 1111111111111L, 4102444799999L,
+    };
+
+    private ConverterContext ctx;
+
+    protected void setUp() throws Exception {
+        Converter.register( new Jdk13ConverterPack() );
+
+        // It takes too long to resolve the host name which is not actually.
+        Converter.getDefaultContext().getExclusions().add(InetAddress.class);
+
+        ctx = new ConverterContext(Locale.US);
+        ctx.setAttribute(StringToDateConverter.FAST, Boolean.TRUE);
+    }
+
+    public void testDefaultFormat() throws Exception {
+        ConverterContext slow = new ConverterContext(Locale.US);
+        DateFormat df = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.MEDIUM, Locale.US);
+        for (int i = 0; i < TIMES.length; i++) {
+            String s = df.format(new Date(TIMES[i]));
+            Assert.assertEquals(s,
+                    Converter.convert(s, Date.class, slow),
+                    Converter.convert(s, Date.class, ctx));
+        }
+    }
+
+    public void testSameAsSimpleDateFormat() throws Exception {
+        String[] patterns = {
+                "yyyy-MM-dd HH:mm:ss.SSS Z", "yyyyMMddHHmmssSSS",
+                "EEE, d MMM yyyy HH:mm:ss zzz", "dd/MM/yy h:mm a",
+                "yyyy.MM.dd G 'at' HH:mm:ss zzzz", "MMMM d, yyyy kk:mm",
+        };
+        TimeZone tz = TimeZone.getTimeZone("America/New_York");
+        for (int i = 0; i < patterns.length; i++) {
+            SimpleDateFormat df = new SimpleDateFormat(patterns[i], Locale.US);
+            df.setTimeZone(tz);
+            ConverterContext slow = new ConverterContext(Locale.US);
+            slow.setDateFormat(df);
+            ctx.setDateFormat(df);
+            for (int j = 0; j < TIMES.length; j++) {
+                String s = df.format(new Date(TIMES[j]));
+                Assert.assertEquals(s,
+                        Converter.convert(s, Date.class, slow),
+                        Converter.convert(s, Date.class, ctx));
+            }
+        }
+    }
+
+    public void testLenient() {
+        ctx.setDateFormat(new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.US));
+        Assert.assertEquals(
+                Converter.convert("2005-03-01 01:00", Date.class, ctx),
+                Converter.convert("2005-02-28 25:00", Date.class, ctx));
+        Assert.assertEquals(
+                Converter.convert("2006-01-31 00:00", Date.class, ctx),
+                Converter.convert("2005-13-31 00:00", Date.class, ctx));
+    }
+
+    public void testLikeSimpleDateFormat() throws Exception {
+        TimeZone tz = TimeZone.getTimeZone("America/New_York");
+        String[][] cases = {
+                // Leading whitespaces
+                { "yyyy-MM-dd HH:mm", " 2005-08-20 10:00" },
+                { "yyyy-MM-dd HH:mm", "2005- 08-\t20  10:00" },
+                { "EEE, d MMM yyyy", "Sat,  20 Aug 2005" },
+                // Signed numbers
+                { "yyyy-MM-dd HH:mm", "-2005-08-20 10:00" },
+                { "yyyy-MM-dd HH:mm", "2005-08-20 10:-5" },
+                { "yy-MM-dd", "-05-08-20" },
+                // In the gap and the overlap of the daylight saving time
+                { "MM/dd/yy h:mm a", "03/10/41 2:29 AM" },
+                { "yyyy-MM-dd HH:mm", "2005-04-03 02:30" },
+                { "yyyy-MM-dd HH:mm", "2005-04-03 04:59" },
+                { "yyyy-MM-dd HH:mm", "2005-10-30 01:30" },
+                { "yyyy-MM-dd HH:mm", "2005-10-30 03:59" },
+        };
+        for (int i = 0; i < cases.length; i++) {
+            SimpleDateFormat df = new SimpleDateFormat(cases[i][0], Locale.US);
+            df.setTimeZone(tz);
+            ConverterContext slow = new ConverterContext(Locale.US);
+            slow.setDateFormat(df);
+            ctx.setDateFormat(df);
+            String s = cases[i][1];
+            Assert.assertEquals(s, df.parse(s), Converter.convert(s, Date.class, slow));
+            Assert.assertEquals(s, df.parse(s), Converter.convert(s, Date.class, ctx));
+        }
+    }
+
+    public void testHalfHourDaylightSaving() throws Exception {
+        // Lord Howe Island moves its clocks by 30 minutes.
+        TimeZone tz = TimeZone.getTimeZone("Australia/Lord_Howe");
+        SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm z", Locale.US);
+        df.setTimeZone(tz);
+        ctx.setDateFormat(df);
+        String[] names = {
+                tz.getDisplayName(false, TimeZone.SHORT, Locale.US),
+                tz.getDisplayName(true, TimeZone.SHORT, Locale.US),
+        };
+        String[] dates = { "2005-01-15 12:00 ", "2005-07-15 12:00 " };
+        for (int i = 0; i < dates.length; i++) {
+            for (int j = 0; j < names.length; j++) {
+                // Including the names which contradict the date
+                String s = dates[i] + names[j];
+                Assert.assertEquals(s, df.parse(s), Converter.convert(s, Date.class, ctx));
+            }
+        }
+    }
+
+    public void testFormatsWhichAreEqual() throws Exception {
+        SimpleDateFormat df1 = new SimpleDateFormat("MM/dd/yy", Locale.US);
+        df1.set2DigitYearStart(df1.parse("01/01/2000"));
+        SimpleDateFormat df2 = new SimpleDateFormat("MM/dd/yy", Locale.US);
+        df2.set2DigitYearStart(df2.parse("01/01/1900"));
+        // SimpleDateFormat.equals() ignores the 2-digit year start.
+        Assert.assertEquals(df1, df2);
+
+        ConverterContext ctx1 = new ConverterContext(Locale.US);
+        ctx1.setDateFormat(df1);
+        ConverterContext ctx2 = new ConverterContext(Locale.US);
+        ctx2.setDateFormat(df2);
+        Assert.assertEquals(df1.parse("01/01/50"), Converter.convert("01/01/50", Date.class, ctx1));
+        Assert.assertEquals(df2.parse("01/01/50"), Converter.convert("01/01/50", Date.class, ctx2));
+
+        // A modified format is cloned again.
+        df1.set2DigitYearStart(df1.parse("01/01/1900"));
+        Assert.assertEquals(df2.parse("01/01/50"), Converter.convert("01/01/50", Date.class, ctx1));
+    }
+
+    public void testDefaultTimeZoneChange() throws Exception {
+        ConverterContext slow = new ConverterContext(Locale.US);
+        DateFormat df = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.MEDIUM, Locale.US);
+        String s = df.format(new Date(TIMES[5]));
+        String[] zones = { "Asia/Seoul", "America/New_York" };
+        TimeZone tz = TimeZone.getDefault();
+        try {
+            for (int i = 0; i < zones.length; i++) {
+                TimeZone.setDefault(TimeZone.getTimeZone(zones[i]));
+                df.setTimeZone(TimeZone.getDefault());
+                Assert.assertEquals(zones[i], df.parse(s), Converter.convert(s, Date.class, slow));
+            }
+        } finally {
+            TimeZone.setDefault(tz);
+        }
+    }
+
+    public void testCopy() {
+        ctx.setDateFormat(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss Z", Locale.US));
+        Date date = new Date();
+        Converter.copy("2005-08-20 16:09:13 +0900", date, ctx);
+        Assert.assertEquals(1124521753000L, date.getTime());
+    }
+
+    public void testUnparseable() {
+        ctx.setDateFormat(new SimpleDateFormat("yyyy-MM-dd", Locale.US));
+        try {
+            Converter.convert("2005/08/20", Date.class, ctx);
+            Assert.fail();
+        } catch (ConversionException e) {
+            // OK
+        }
+    }
+
+    public void testFormat() throws Exception {
+        String pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSZ";
+        TimeZone tz = TimeZone.getTimeZone("Asia/Seoul");
+        SimpleDateFormat df = new SimpleDateFormat(pattern, Locale.US);
+        df.setTimeZone(tz);
+        FastDateFormat fdf = FastDateFormat.getInstance(pattern, tz, Locale.US);
+        char[] buf = new char[64];
+        for (int i = 0; i < TIMES.length; i++) {
+            String expected = df.format(new Date(TIMES[i]));
+            Assert.assertEquals(expected, fdf.format(TIMES[i]));
+
+            int end = fdf.format(TIMES[i], buf, 1);
+            Assert.assertEquals(expected, new String(buf, 1, end - 1));
+
+            StringWriter out = new StringWriter();
+            fdf.format(TIMES[i], out);
+            Assert.assertEquals(expected, out.toString());
+
+            // The same second again
+            Assert.assertEquals(
+                    df.format(new Date(TIMES[i] + 1)),
+                    fdf.format(TIMES[i] + 1, new StringBuffer()).toString());
+        }
+    }
+}
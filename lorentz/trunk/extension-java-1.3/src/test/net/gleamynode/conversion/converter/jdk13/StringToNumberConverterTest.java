@@ -0,0 +1,152 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.converter.jdk13;
+
+import java.net.InetAddress;
+import java.text.ParseException;
+import java.util.Locale;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.gleamynode.conversion.Converter;
+import net.gleamynode.conversion.ConverterContext;
+import net.gleamynode.conversion.converter.jdk13.support.NumberParser;
+
+public class StringToNumberConverterTest extends TestCase {
+
+    public static void main( String[] args ) {
+        junit.textui.TestRunner.run( StringToNumberConverterTest.class );
+    }
+
+    private ConverterContext ctx;
+
+    protected void setUp() throws Exception {
+        Converter.register( new Jdk13ConverterPack() );
+
+        // It takes too long to resolve the host name which is not actually.
+        Converter.getDefaultContext().getExclusions().add(InetAddress.class);
+
+        ctx = new ConverterContext(Locale.US);
+        ctx.setAttribute(StringToNumberConverter.FAST, Boolean.TRUE);
+    }
+
+    public void testType() {
+        Assert.assertEquals(NumberParser.INTEGER, NumberParser.getType("-123"));
+        Assert.assertEquals(NumberParser.INTEGER, NumberParser.getType(" +0x7f "));
+        Assert.assertEquals(NumberParser.INTEGER, NumberParser.getType("017"));
+        Assert.assertEquals(NumberParser.INTEGER, NumberParser.getType("08"));
+        Assert.assertEquals(NumberParser.INTEGER, NumberParser.getType("017", true));
+        Assert.assertEquals(NumberParser.DECIMAL, NumberParser.getType("1.5"));
+        Assert.assertEquals(NumberParser.DECIMAL, NumberParser.getType(".5"));
+        Assert.assertEquals(NumberParser.DECIMAL, NumberParser.getType("1e-3"));
+        Assert.assertEquals(NumberParser.NONE, NumberParser.getType(""));
+        Assert.assertEquals(NumberParser.NONE, NumberParser.getType("-"));
+        Assert.assertEquals(NumberParser.NONE, NumberParser.getType("."));
+        Assert.assertEquals(NumberParser.NONE, NumberParser.getType("1,234"));
+        Assert.assertEquals(NumberParser.NONE, NumberParser.getType("1e"));
+        Assert.assertEquals(NumberParser.NONE, NumberParser.getType("x1F"));
+        Assert.assertEquals(NumberParser.NONE, NumberParser.getType("01.5", true));
+        try {
+            NumberParser.getType("08", true);
+            Assert.fail();
+        } catch (NumberFormatException e) {
+            // OK
+        }
+        Assert.assertEquals(NumberParser.NONE, NumberParser.getType("0x"));
+        Assert.assertEquals(NumberParser.NONE, NumberParser.getType("12abc"));
+    }
+
+    public void testIntegerConversion() {
+        Assert.assertEquals(new Integer(-123), Converter.convert("-123", Integer.class, ctx));
+        Assert.assertEquals(new Integer(127), Converter.convert("0x7f", Integer.class, ctx));
+        Assert.assertEquals(new Integer(17), Converter.convert("017", Integer.class, ctx));
+        Assert.assertEquals(new Short((short) 1), Converter.convert(" 1 ", Short.class, ctx));
+        Assert.assertEquals(new Long(Long.MIN_VALUE), Converter.convert("-9223372036854775808", Long.class, ctx));
+        Assert.assertEquals(new Long(Long.MAX_VALUE), Converter.convert("9223372036854775807", Long.class, ctx));
+        Assert.assertEquals(new Long(1500), Converter.convert("1.5e3", Long.class, ctx));
+    }
+
+    public void testDecimalConversion() {
+        Assert.assertEquals(new Double(0.1), Converter.convert("0.1", Double.class, ctx));
+        Assert.assertEquals(new Double(-12.5), Converter.convert("-12.5", Double.class, ctx));
+        Assert.assertEquals(new Double(0.001), Converter.convert("1e-3", Double.class, ctx));
+        Assert.assertEquals(new Double(-0.0), Converter.convert("-0.0", Double.class, ctx));
+        Assert.assertEquals(new Float(3.25f), Converter.convert("3.25", Float.class, ctx));
+
+        // Too many digits to be exact
+        String s = "3.14159265358979323846";
+        Assert.assertEquals(new Double(s), Converter.convert(s, Double.class, ctx));
+        s = "1.7976931348623157e308";
+        Assert.assertEquals(new Double(s), Converter.convert(s, Double.class, ctx));
+    }
+
+    public void testNumberConversion() throws Exception {
+        StringToNumberConverter c = new StringToNumberConverter();
+        // The same types with NumberFormat
+        Assert.assertEquals(new Long(2), c.doConversion("2", ctx));
+        Assert.assertEquals(new Long(2), c.doConversion("2.0", ctx));
+        Assert.assertEquals(new Double(2.5), c.doConversion("2.5", ctx));
+        Assert.assertEquals(new Double(-0.0), c.doConversion("-0.0", ctx));
+
+        // Out of the range of long
+        Assert.assertEquals(new Double(1e19), c.doConversion("10000000000000000000", ctx));
+    }
+
+    public void testFallback() {
+        Assert.assertEquals(new Integer(1234), Converter.convert("1,234", Integer.class, ctx));
+        Assert.assertEquals(new Long(8), Converter.convert("08", Long.class, ctx));
+        Assert.assertEquals(new Double(1.5), Converter.convert("01.5", Double.class, ctx));
+    }
+
+    public void testOctal() throws Exception {
+        ctx.setAttribute(StringToNumberConverter.OCTAL, Boolean.TRUE);
+        Assert.assertEquals(new Integer(15), Converter.convert("017", Integer.class, ctx));
+        Assert.assertEquals(new Long(-64), Converter.convert("-0100", Long.class, ctx));
+        Assert.assertEquals(new Integer(0), Converter.convert("0", Integer.class, ctx));
+        Assert.assertEquals(new Double(0.5), Converter.convert("0.5", Double.class, ctx));
+        try {
+            new StringToNumberConverter().doConversion("0800", ctx);
+            Assert.fail();
+        } catch (ParseException e) {
+            // OK
+        }
+        Assert.assertEquals(new Double(1234.5), Converter.convert("1,234.5", Double.class, ctx));
+    }
+
+    public void testSameAsNumberFormat() throws Exception {
+        StringToNumberConverter c = new StringToNumberConverter();
+        ConverterContext slow = new ConverterContext(Locale.US);
+        String[] values = {
+                "0", "-1", "42", "2147483648", "-2147483649", "0.5", "-0.25",
+                "123.456", "99999.99999", "0.000001", "1234567890.12345",
+                "0100", "0700", "-0100", "0800", "007.5",
+        };
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals(values[i],
+                    c.doConversion(values[i], slow),
+                    c.doConversion(values[i], ctx));
+            Assert.assertEquals(values[i],
+                    Converter.convert(values[i], Double.class, slow),
+                    Converter.convert(values[i], Double.class, ctx));
+            Assert.assertEquals(values[i],
+                    Converter.convert(values[i], Integer.class, slow),
+                    Converter.convert(values[i], Integer.class, ctx));
+        }
+    }
+}
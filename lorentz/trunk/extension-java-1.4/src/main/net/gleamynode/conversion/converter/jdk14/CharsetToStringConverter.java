@@ -34,6 +34,14 @@ public class CharsetToStringConverter extends Converter {
         super(Charset.class, String.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) throws ConversionException {
 		return ((Charset) o).name();
 	}
@@ -34,6 +34,14 @@ public class InetSocketAddressToStringConverter extends Converter {
         super(InetSocketAddress.class, String.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) throws ConversionException {
 		InetSocketAddress addr = (InetSocketAddress) o;
 		return addr.getAddress().getHostAddress() + ':' + addr.getPort();
@@ -22,11 +22,28 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import net.gleamynode.conversion.Converter;
 import net.gleamynode.conversion.ConverterPack;
+import net.gleamynode.conversion.support.MemoizingConverter;
 
 public class Jdk14ConverterPack extends ConverterPack {
 
+    // The number of the results of each lookup converter to remember
+    private static final int CACHE_SIZE = 256;
+
+    private final boolean memoizing;
+
     public Jdk14ConverterPack() {
+        this(false);
+    }
+
+    /**
+     * @param memoizing <tt>true</tt> to make the converter which looks up a
+     *                  {@link java.nio.charset.Charset} remember its results
+     *                  with a {@link MemoizingConverter}
+     */
+    public Jdk14ConverterPack(boolean memoizing) {
+        this.memoizing = memoizing;
     }
 
     public Iterator newConverters() {
@@ -35,7 +52,8 @@ public class Jdk14ConverterPack extends ConverterPack {
         converters.add(new CharsetToStringConverter());
         converters.add(new InetSocketAddressToStringConverter());
         converters.add(new PatternToStringConverter());
-        converters.add(new StringToCharsetConverter());
+        Converter charset = new StringToCharsetConverter();
+        converters.add(memoizing? new MemoizingConverter(charset, CACHE_SIZE) : charset);
         converters.add(new StringToCurrencyConverter());
         converters.add(new StringToInetSocketAddressConverter());
         converters.add(new StringToPatternConverter());
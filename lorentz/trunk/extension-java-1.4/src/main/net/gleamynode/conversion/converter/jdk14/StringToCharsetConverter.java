@@ -33,6 +33,14 @@ public class StringToCharsetConverter extends Converter {
         super(String.class, Charset.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) {
 		return Charset.forName((String)o);
 	}
@@ -33,6 +33,14 @@ public class StringToCurrencyConverter extends Converter {
         super(String.class, Currency.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) {
 		return Currency.getInstance((String)o);
 	}
@@ -34,6 +34,14 @@ public class StringToInetSocketAddressConverter extends Converter {
         super(String.class, InetSocketAddress.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) {
         String s = (String)o;
 		int colonPos = s.lastIndexOf(':');
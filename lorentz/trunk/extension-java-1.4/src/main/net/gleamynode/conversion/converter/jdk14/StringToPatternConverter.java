@@ -33,6 +33,14 @@ public class StringToPatternConverter extends Converter {
         super(String.class, Pattern.class);
 	}
 	
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) {
 		return Pattern.compile((String)o);
 	}
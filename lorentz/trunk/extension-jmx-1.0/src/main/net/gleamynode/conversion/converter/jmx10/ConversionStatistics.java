@@ -0,0 +1,116 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.converter.jmx10;
+
+import net.gleamynode.conversion.Converter;
+import net.gleamynode.conversion.support.ConversionMetrics;
+
+/**
+ * A standard MBean which exposes the {@link ConversionMetrics} of the
+ * conversions performed by {@link Converter}.  It starts collecting when it
+ * is enabled, and registering it to an <tt>MBeanServer</tt> doesn't enable
+ * it, so the conversions cost nothing extra until it is asked to.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public class ConversionStatistics implements ConversionStatisticsMBean {
+    private final ConversionMetrics metrics;
+
+    public ConversionStatistics() {
+        this(new ConversionMetrics());
+    }
+
+    public ConversionStatistics(ConversionMetrics metrics) {
+        if (metrics == null)
+            throw new NullPointerException("metrics");
+        this.metrics = metrics;
+    }
+
+    public ConversionMetrics getMetrics() {
+        return metrics;
+    }
+
+    public boolean isEnabled() {
+        return Converter.getListener() == metrics;
+    }
+
+    public synchronized void setEnabled(boolean enabled) {
+        if (enabled) {
+            Converter.setListener(metrics);
+        } else if (isEnabled()) {
+            Converter.setListener(null);
+        }
+    }
+
+    public long getLookupCount() {
+        return metrics.getLookupCount();
+    }
+
+    public long getCacheHitCount() {
+        return metrics.getCacheHitCount();
+    }
+
+    public double getCacheHitRatio() {
+        return metrics.getCacheHitRatio();
+    }
+
+    public long getConversionCount() {
+        return metrics.getConversionCount();
+    }
+
+    public long getFailureCount() {
+        return metrics.getFailureCount();
+    }
+
+    public double getAverageSearchTime() {
+        long searches = metrics.getLookupCount() - metrics.getCacheHitCount();
+        return searches == 0? 0 : (double) metrics.getTotalSearchTime() / searches;
+    }
+
+    public double getAverageConversionTime() {
+        long conversions = metrics.getConversionCount();
+        return conversions == 0? 0 : (double) metrics.getTotalConversionTime() / conversions;
+    }
+
+    public long[] getPathLengthHistogram() {
+        return metrics.getPathLengthHistogram();
+    }
+
+    public long[] getSearchTimeHistogram() {
+        return metrics.getSearchTimeHistogram();
+    }
+
+    public long[] getConversionTimeHistogram() {
+        return metrics.getConversionTimeHistogram();
+    }
+
+    public String[] getTopPairs(int count) {
+        ConversionMetrics.Pair[] pairs = metrics.getPairs();
+        String[] result = new String[Math.max(0, Math.min(count, pairs.length))];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = pairs[i].toString();
+        }
+        return result;
+    }
+
+    public void reset() {
+        metrics.reset();
+    }
+}
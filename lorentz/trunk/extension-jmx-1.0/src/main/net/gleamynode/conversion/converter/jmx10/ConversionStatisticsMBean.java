@@ -0,0 +1,69 @@
+/*
+ *   @(#) $Id$
+ *
+ *   Copyright 2004 Trustin Lee
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package net.gleamynode.conversion.converter.jmx10;
+
+/**
+ * The management interface of {@link ConversionStatistics}.  All times are
+ * in nanoseconds.
+ *
+ * @author Trustin Lee
+ * @version $Rev$, $Date$
+ */
+public interface ConversionStatisticsMBean {
+    /**
+     * Returns <tt>true</tt> if the statistics are being collected.
+     */
+    boolean isEnabled();
+
+    /**
+     * Starts or stops collecting the statistics.
+     */
+    void setEnabled(boolean enabled);
+
+    long getLookupCount();
+
+    long getCacheHitCount();
+
+    double getCacheHitRatio();
+
+    long getConversionCount();
+
+    long getFailureCount();
+
+    double getAverageSearchTime();
+
+    double getAverageConversionTime();
+
+    long[] getPathLengthHistogram();
+
+    long[] getSearchTimeHistogram();
+
+    long[] getConversionTimeHistogram();
+
+    /**
+     * Returns the statistics of the specified number of the most frequently
+     * converted pairs of source and target type.
+     */
+    String[] getTopPairs(int count);
+
+    /**
+     * Clears all the statistics.
+     */
+    void reset();
+}
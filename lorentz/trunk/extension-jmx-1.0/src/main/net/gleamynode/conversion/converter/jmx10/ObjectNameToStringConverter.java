@@ -33,6 +33,14 @@ public class ObjectNameToStringConverter extends Converter {
         super(ObjectName.class, String.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) {
 		return ((ObjectName) o).getCanonicalName();
 	}
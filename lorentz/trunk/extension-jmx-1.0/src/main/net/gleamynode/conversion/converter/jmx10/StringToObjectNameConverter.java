@@ -34,6 +34,14 @@ public class StringToObjectNameConverter extends Converter {
         super(String.class, ObjectName.class);
 	}
 
+	public boolean supportsConversion() {
+		return true;
+	}
+
+	public boolean supportsCopy() {
+		return false;
+	}
+
 	public Object doConversion(Object o, ConverterContext ctx) throws MalformedObjectNameException {
 		return new ObjectName((String)o);
 	}